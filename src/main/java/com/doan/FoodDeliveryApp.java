@@ -5,18 +5,22 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.BasicStroke;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.io.Serializable;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.io.File;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 public class FoodDeliveryApp {
 
     // -------------------- Save File DTO --------------------
     static class DataBundle implements java.io.Serializable {
+        // pinned to the value older builds computed, so existing save files still load
+        private static final long serialVersionUID = -1155457727812492981L;
         Map<String, User> users;
         List<FoodItem> foods;
         List<String> categories;
@@ -24,3528 +28,11576 @@ public class FoodDeliveryApp {
         List<String> logs;
         List<Complaint> complaints;
         List<String> restaurants; // list of restaurant names for quick access
+        long journalEpoch; // journal generation this snapshot already contains
+        transient Map<UUID, List<Message>> chats; // live chat by order id, written inline with each order
+        transient Map<String, Cart> carts; // saved carts by customer; snapshot format 3 and later
     }
 
-    private final String SAVE_FILE = "food_delivery_app_data.bin";
+    // -------------------- Events --------------------
+    // In-process publish/subscribe for store changes. Publishers call in after the change is
+    // applied and journaled; plain subscribers run on the publishing thread, EDT subscribers get
+    // the events of one frame delivered together.
+    static class EventBus {
+        enum Topic {
+            ORDER, MENU, CHAT, COMPLAINT
+        }
+
+        static class Event {
+            final Topic topic;
+            final UUID id; // order, food item or complaint id; CHAT events carry the order id
+            final Object subject; // the changed Order/FoodItem/Message/Complaint, null when removed or cleared
 
-    private void loadData() {
-        try (ObjectInputStream ois = new ObjectInputStream(new java.io.FileInputStream(SAVE_FILE))) {
-            DataBundle db = (DataBundle) ois.readObject();
-            if (db.users != null) users.putAll(db.users);
-            if (db.foods != null) foods.addAll(db.foods);
-            if (db.categories != null) categories.addAll(db.categories);
-            if (db.orders != null) orders.addAll(db.orders);
-            if (db.logs != null) logs.addAll(db.logs);
-            if (db.complaints != null) complaints.addAll(db.complaints);
-            // restaurants is derived, no need to load explicitly
-            System.out.println("Data loaded from file.");
-        } catch (Exception ex) {
-            System.out.println("No saved data found, starting with fresh seed data.");
-            seedData();
+            Event(Topic topic, UUID id, Object subject) {
+                this.topic = topic;
+                this.id = id;
+                this.subject = subject;
+            }
         }
-    }
 
-    private void saveData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new java.io.FileOutputStream(SAVE_FILE))) {
-            DataBundle db = new DataBundle();
-            db.users = users;
-            db.foods = foods;
-            db.categories = categories;
-            db.orders = orders;
-            db.logs = logs;
-            db.complaints = complaints;
-            // collect restaurants from foods
-            db.restaurants = foods.stream()
-                .filter(f -> f.restaurantOwner != null)
-                .map(f -> f.restaurantOwner)
-                .distinct()
-                .collect(Collectors.toList());
-            oos.writeObject(db);
-            System.out.println("Data saved.");
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        interface Subscription {
+            void cancel();
         }
-    }
 
-    // -------------------- Data models --------------------
-    enum Role {
-        CUSTOMER, SHIPPER, RESTAURANT, ADMIN, OWNER, ADMINISTRATOR, CUSTOMER_SERVICE
-    }
+        static final int FRAME_MS = 16;
 
-    static class User implements Serializable {
-        private static final long serialVersionUID = 1L;
-        final String username;
-        String password;
-        Role role;
-        String address = "";
-        String phone = "";
-        String profileImagePath = null;
-        String restaurantName = null;
-        String shipperName = null;
-        List<String> myCategories = new ArrayList<>();
-        boolean isOpen = true; // for restaurants: open/closed status
-        // for shippers
-        List<Double> shipperRatings = new ArrayList<>();
-        List<String> shipperComments = new ArrayList<>();
+        private final Map<Topic, List<java.util.function.Consumer<Event>>> subscribers = new EnumMap<>(Topic.class);
 
-        User(String u, String p, Role r) {
-            username = u;
-            password = p;
-            role = r;
+        EventBus() {
+            for (Topic t : Topic.values())
+                subscribers.put(t, new java.util.concurrent.CopyOnWriteArrayList<>());
         }
 
-        @Override
-        public String toString() {
-            return username + " (" + role + ")";
+        void publish(Topic topic, UUID id, Object subject) {
+            Event e = new Event(topic, id, subject);
+            for (java.util.function.Consumer<Event> s : subscribers.get(topic)) {
+                try {
+                    s.accept(e);
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace(); // one broken subscriber must not stop the others or the publisher
+                }
+            }
         }
-    }
 
-    static class FoodItem implements Serializable {
-        private static final long serialVersionUID = 3L;
-        UUID id = UUID.randomUUID();
-        String name;
-        String description;
-        double price;
-        double rating; // 0..5, computed from ratings list
-        Color colorPreview; // used as image placeholder
-        String category;
-        String imagePath = null; // path to local image file
-        String restaurantOwner = null; // username of restaurant that owns this food
-        boolean inStock = true; // stock status
-        List<String> variations = new ArrayList<>(); // food variations like sizes, flavors
-        Map<String, Double> variationPrices = new HashMap<>(); // additional price for each variation
-        // ratings and comments
-        List<Double> ratings = new ArrayList<>();
-        List<String> comments = new ArrayList<>();
+        Subscription subscribe(Topic topic, java.util.function.Consumer<Event> subscriber) {
+            List<java.util.function.Consumer<Event>> list = subscribers.get(topic);
+            list.add(subscriber);
+            return () -> list.remove(subscriber);
+        }
 
-        FoodItem(String name, String desc, double price, double rating, Color colorPreview, String category) {
-            this.name = name;
-            this.description = desc;
-            this.price = price;
-            this.rating = rating;
-            this.colorPreview = colorPreview;
-            this.category = category;
+        /**
+         * Delivers events on the EDT in batches: the first event of a burst arms a one-frame timer
+         * and everything published until it fires arrives in a single call, in publish order.
+         */
+        Subscription subscribeOnEdt(Topic topic, java.util.function.Consumer<List<Event>> batch) {
+            java.util.concurrent.ConcurrentLinkedQueue<Event> pending = new java.util.concurrent.ConcurrentLinkedQueue<>();
+            java.util.concurrent.atomic.AtomicBoolean armed = new java.util.concurrent.atomic.AtomicBoolean();
+            javax.swing.Timer frame = new javax.swing.Timer(FRAME_MS, null);
+            frame.setRepeats(false);
+            frame.addActionListener(ev -> {
+                armed.set(false);
+                List<Event> events = new ArrayList<>();
+                for (Event e; (e = pending.poll()) != null;)
+                    events.add(e);
+                if (!events.isEmpty())
+                    batch.accept(events);
+            });
+            Subscription sub = subscribe(topic, e -> {
+                pending.add(e);
+                if (armed.compareAndSet(false, true))
+                    frame.start();
+            });
+            return () -> {
+                sub.cancel();
+                frame.stop();
+            };
         }
 
-        void updateRating() {
-            if (ratings.isEmpty()) {
-                rating = 0;
-            } else {
-                rating = ratings.stream().mapToDouble(d -> d).average().orElse(0);
-            }
+        /** The last event per id in a batch, in order of first appearance. */
+        static Collection<Event> latestById(List<Event> batch) {
+            Map<UUID, Event> last = new LinkedHashMap<>();
+            for (Event e : batch)
+                last.put(e.id, e);
+            return last.values();
         }
     }
 
-    static class Complaint implements Serializable {
-        private static final long serialVersionUID = 11L;
-        UUID id = UUID.randomUUID();
-        String author; // username
-        Role authorRole;
-        String message;
-        Date created = new Date();
-        String status = "Pending";
-
-        Complaint(String author, Role authorRole, String message) {
-            this.author = author;
-            this.authorRole = authorRole;
-            this.message = message;
+    // -------------------- Store --------------------
+    // Owns the data and its persistence (snapshot, journal, archive) independently of Swing,
+    // so the services below can run headless. Mutations and service reads go through `lock`.
+    static class Store {
+        private static final int CHECKPOINT_EVERY_RECORDS = 5000; // compact journal into a snapshot after this many
+        static final int CHECKPOINT_CHECK_MS = 60_000;
+        private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("store.loadData");
+        private static final Metrics.Histogram SAVE_TIME = Metrics.histogram("store.saveData");
+
+        private final String SAVE_FILE;
+        private final Journal journal;
+        final OrderArchive archive;
+        final ChatStore chats;
+        final ReviewStore reviews;
+        private long journalEpoch = 0;
+
+        final Map<String, User> users = new HashMap<>();
+        final UserIndex userIndex = new UserIndex(); // derived from `users`, never persisted
+        final List<FoodItem> foods = new ArrayList<>();
+        final CatalogIndex catalog = new CatalogIndex(); // derived from `foods`, never persisted
+        final SearchIndex search = new SearchIndex(); // derived from `foods`, never persisted
+        final SalesAnalytics sales = new SalesAnalytics(this); // derived from orders, built on first use
+        final List<String> categories = new ArrayList<>();
+        final List<Order> orders = new ArrayList<>();
+        final OrderIndex orderIndex = new OrderIndex(); // active orders only; settled ones are archived
+        final OpLog ops; // admin-visible operation log, kept in its own rotating files
+        final List<Complaint> complaints = new ArrayList<>();
+        private final Map<String, Cart> carts = new HashMap<>(); // saved carts by customer, kept line by line
+        final EventBus events = new EventBus(); // change notifications, published once a change is journaled
+
+        private final java.util.concurrent.locks.ReentrantReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+
+        Store(String saveFile, String journalFile, String archiveFile, String chatFile, String reviewFile, String logDir) {
+            this.SAVE_FILE = saveFile;
+            this.journal = new Journal(new File(journalFile));
+            this.archive = new OrderArchive(new File(archiveFile));
+            this.chats = new ChatStore(new File(chatFile));
+            this.reviews = new ReviewStore(new File(reviewFile));
+            this.ops = new OpLog(new File(logDir));
+            Metrics.gauge("store.orders.live", orders::size);
+            Metrics.gauge("store.journal.records", journal::recordCount);
+            Metrics.gauge("oplog.dropped", ops::dropped);
         }
 
-        @Override
-        public String toString() {
-            return String.format("[%s] %s (%s): %s [%s]", id.toString().substring(0, 6), author, authorRole, message,
-                    status);
+        void withWriteLock(Runnable action) {
+            lock.writeLock().lock();
+            try {
+                action.run();
+            } finally {
+                lock.writeLock().unlock();
+            }
         }
-    }
-
-    static class OrderItem implements Serializable {
-        private static final long serialVersionUID = 3L;
-        FoodItem food;
-        int qty;
-        String variation = "";
 
-        OrderItem(FoodItem f, int q) {
-            food = f;
-            qty = q;
+        <T> T withWriteLock(java.util.function.Supplier<T> action) {
+            lock.writeLock().lock();
+            try {
+                return action.get();
+            } finally {
+                lock.writeLock().unlock();
+            }
         }
 
-        OrderItem(FoodItem f, int q, String v) {
-            food = f;
-            qty = q;
-            variation = v;
+        <T> T withReadLock(java.util.function.Supplier<T> action) {
+            lock.readLock().lock();
+            try {
+                return action.get();
+            } finally {
+                lock.readLock().unlock();
+            }
         }
-    }
 
-    enum OrderStatus {
-        PLACED, PREPARING, READY_FOR_PICKUP, ACCEPTED_BY_SHIPPER, DELIVERING, DELIVERED, CANCELLED
-    }
+        void loadData() {
+            long t0 = System.nanoTime();
+            withWriteLock(this::load);
+            LOAD_TIME.since(t0);
+        }
 
-    static class Message implements Serializable {
-        private static final long serialVersionUID = 10L;
-        String sender;
-        String text;
-        Date time = new Date();
+        void saveData() {
+            long t0 = System.nanoTime();
+            withWriteLock(this::save);
+            SAVE_TIME.since(t0);
+        }
 
-        Message(String s, String t) {
-            sender = s;
-            text = t;
+        RatingStats foodRating(FoodItem f) {
+            return reviews.stats(ReviewStore.Kind.FOOD, f.id.toString());
         }
-    }
 
-    static class Order implements Serializable {
-        private static final long serialVersionUID = 4L;
-        UUID id = UUID.randomUUID();
-        User customer;
-        List<OrderItem> items = new ArrayList<>();
-        OrderStatus status = OrderStatus.PLACED;
-        double total;
-        String addressSnapshot;
-        String phoneSnapshot;
-        String complaint = null; // customer complaint text
-        String note = null; // customer note for restaurant
-        String assignedShipper = null; // username of shipper who accepted
-        Date created = new Date();
+        RatingStats shipperRating(String shipper) {
+            return reviews.stats(ReviewStore.Kind.SHIPPER, shipper);
+        }
 
-        // chat between shipper and customer
-        List<Message> chat = new ArrayList<>();
+        RatingStats restaurantRating(String restaurant) {
+            return reviews.stats(ReviewStore.Kind.RESTAURANT, restaurant);
+        }
 
-        // ratings and comments
-        Map<FoodItem, Double> foodRatings = new HashMap<>();
-        Map<FoodItem, String> foodComments = new HashMap<>();
-        Double shipperRating;
-        String shipperComment;
+        /**
+         * Ratings used to be kept as lists on the food and the shipper. Moves whatever the review
+         * store does not hold yet into it (the count tells how far an interrupted run got).
+         */
+        private void migrateReviews() throws IOException {
+            Date now = new Date();
+            int moved = 0;
+            for (FoodItem f : foods) {
+                for (int i = foodRating(f).count(); i < f.ratings.size(); i++, moved++) {
+                    String comment = i < f.comments.size() ? f.comments.get(i) : "";
+                    reviews.add(ReviewStore.Kind.FOOD, f.id.toString(), f.restaurantOwner,
+                            new Review(null, (int) Math.round(f.ratings.get(i)), comment, now));
+                }
+                f.ratings = new ArrayList<>();
+                f.comments = new ArrayList<>();
+            }
+            for (User u : users.values()) {
+                for (int i = shipperRating(u.username).count(); i < u.shipperRatings.size(); i++, moved++) {
+                    String comment = i < u.shipperComments.size() ? u.shipperComments.get(i) : "";
+                    reviews.add(ReviewStore.Kind.SHIPPER, u.username, null,
+                            new Review(null, (int) Math.round(u.shipperRatings.get(i)), comment, now));
+                }
+                u.shipperRatings = new ArrayList<>();
+                u.shipperComments = new ArrayList<>();
+            }
+            if (moved > 0) {
+                reviews.sync();
+                System.out.println("Moved " + moved + " ratings to the review store.");
+            }
+        }
 
-        void recalcTotal() {
-            total = items.stream().mapToDouble(i -> (i.food.price + i.food.variationPrices.getOrDefault(i.variation, 0.0)) * i.qty).sum();
+        /** Chat of an order, oldest first; orders archived before the chat store kept it inline. */
+        List<Message> chatHistory(Order o) {
+            List<Message> h = chats.history(o.id);
+            return h.isEmpty() && !o.chat.isEmpty() ? new ArrayList<>(o.chat) : h;
         }
-    }
 
-    // -------------------- In-memory "database" --------------------
-    private final Map<String, User> users = new HashMap<>();
-    private final List<FoodItem> foods = new ArrayList<>();
-    private final List<String> categories = new ArrayList<>();
-    private final List<Order> orders = new ArrayList<>();
-    private final List<String> logs = new ArrayList<>(); // simple log for admin ops
-    private final List<Complaint> complaints = new ArrayList<>();
+        /** Flushes the journal tail and unmaps the archive; no full rewrite of the store. */
+        void close() {
+            withWriteLock(() -> {
+                journal.close();
+                archive.close();
+                chats.close();
+                reviews.close();
+            });
+            ops.close();
+        }
 
-    // Application state
-    private User currentUser = null;
-    private final Map<FoodItem, Map<String, Integer>> cart = new HashMap<>();
-    private String selectedRestaurant = null; // Track currently selected restaurant
-    private boolean isSelectingRestaurant = false; // Flag to prevent unnecessary refreshes
+        private void load() {
+            // each store opens on its own, so one bad file does not leave the others closed
+            try {
+                archive.open();
+            } catch (IOException ex) {
+                ex.printStackTrace(); // settled orders stay in the heap until the archive opens
+            }
+            try {
+                chats.open();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            try {
+                reviews.open();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            try {
+                ops.open();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            boolean loaded = false;
+            boolean legacy = false;
+            boolean movedLogs = false;
+            try (java.io.BufferedInputStream in = new java.io.BufferedInputStream(new java.io.FileInputStream(SAVE_FILE))) {
+                DataBundle db;
+                if (SnapshotCodec.isSnapshot(in)) {
+                    db = SnapshotCodec.read(in);
+                } else {
+                    // pre-codec save file written by ObjectOutputStream; migrated by the checkpoint below
+                    db = (DataBundle) new ObjectInputStream(in).readObject();
+                    adoptLegacyPrices(db);
+                    legacy = true;
+                }
+                if (db.users != null) users.putAll(db.users);
+                if (db.foods != null) foods.addAll(db.foods);
+                if (db.categories != null) categories.addAll(db.categories);
+                if (db.orders != null) orders.addAll(db.orders);
+                if (db.logs != null && !db.logs.isEmpty()) {
+                    moveLegacyLogs(db.logs); // older snapshots carried the log as strings
+                    movedLogs = true;
+                }
+                if (db.complaints != null) complaints.addAll(db.complaints);
+                if (db.carts != null) carts.putAll(db.carts);
+                journalEpoch = db.journalEpoch;
+                // chat lives in the chat store; snapshots and legacy saves carry it inline
+                for (Order o : orders) {
+                    chats.load(o.id, o.chat);
+                    o.chat.clear();
+                }
+                // restaurants is derived, no need to load explicitly
+                loaded = true;
+                System.out.println("Data loaded from file.");
+            } catch (Exception ex) {
+                System.out.println("No saved data found, starting with fresh seed data.");
+            }
 
-    // -------------------- UI references --------------------
-    private JFrame frame;
-    private DefaultListModel<String> catListModel;
-    private DefaultListModel<String> restListModel;
-    private JList<String> restList;
-    private JList<String> catList;
-    private JPanel itemsPanel; // right side card area
-    private JLabel statusLabel;
-    private JButton dashboardButton;
-    private JButton cartButton;
-    private JLabel userLabel;
-    private JButton logoutButton;
-    private JButton loginBtn;
-    private JButton registerBtn;
-    private JLabel avatarLabel;
-    private JPanel rightPanel;
-    private JPanel topPanel;
+            // replay whatever was journaled after the snapshot (crash or normal shutdown)
+            try {
+                journal.replay(journalEpoch, new JournalReplayer());
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+            int replayed = journal.recordCount(); // records applied, also when replay stopped early
+            if (replayed > 0) System.out.println("Replayed " + replayed + " journal records.");
 
-    // Image cache for performance
-    private final Map<String, ImageIcon> imageCache = new HashMap<>();
+            try {
+                migrateReviews();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
 
-    private void preloadImages() {
-        // Preload images in background thread for better performance
-        SwingUtilities.invokeLater(() -> {
-            new Thread(() -> {
-                // Preload restaurant images
-                for (User user : users.values()) {
-                    if (user.role == Role.RESTAURANT && user.profileImagePath != null) {
-                        loadScaledImageIcon(user.profileImagePath, 120, 120);
-                    }
-                }
-                // Preload food images
-                for (FoodItem food : foods) {
-                    if (food.imagePath != null) {
-                        loadScaledImageIcon(food.imagePath, 180, 120);
+            // a delivered order whose chat never reached the history file (crash in between)
+            for (Order o : orders) {
+                if (o.status == OrderStatus.DELIVERED || o.status == OrderStatus.CANCELLED) {
+                    try {
+                        chats.offload(o.id);
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
                     }
                 }
-            }).start();
-        });
-    }
+            }
 
-    // -------------------- Constructor & UI build --------------------
-    public FoodDeliveryApp() {
-        loadData(); // <── use saved data first
-        preloadImages(); // Preload images for better startup performance
-        SwingUtilities.invokeLater(this::createAndShowGUI);
+            if (!loaded && replayed == 0) {
+                seedData();
+                userIndex.rebuild(users.values());
+                catalog.rebuild(foods);
+                search.rebuild(foods);
+                orderIndex.rebuild(orders);
+                saveData(); // checkpoint the seed so later journal records can refer to it
+                return;
+            }
+            userIndex.rebuild(users.values());
+            catalog.rebuild(foods);
+            search.rebuild(foods);
+            orderIndex.rebuild(orders);
+            try {
+                journal.open(journalEpoch);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            if (legacy || movedLogs || orders.stream().anyMatch(this::isSettled)) {
+                saveData(); // rewrite in the compact format and move settled orders to the archive
+                if (legacy) System.out.println("Migrated legacy save file.");
+            }
+        }
 
-        // Save automatically when closing window
-        Runtime.getRuntime().addShutdownHook(new Thread(this::saveData));
-    }
-
-    private void seedData() {
-        // seed users
-        users.put("admin", new User("admin", "admin123", Role.ADMIN));
-        users.put("owner", new User("owner", "owner123", Role.OWNER));
-        users.put("shipper", new User("shipper", "shipper123", Role.SHIPPER));
-        users.put("administrator", new User("administrator", "adminops123", Role.ADMINISTRATOR));
-        users.put("support", new User("support", "support123", Role.CUSTOMER_SERVICE));
-        users.put("customer1", new User("customer1", "pass123", Role.CUSTOMER));
-        users.put("shipper1", new User("shipper1", "shipper123", Role.SHIPPER));
-        User restAccount = new User("pizzahub", "rest123", Role.RESTAURANT);
-        restAccount.restaurantName = "Pizza Hub";
-        users.put(restAccount.username, restAccount);
-        restAccount.myCategories.add("All");
-        restAccount.myCategories.add("Pizza");
-        restAccount.myCategories.add("Combos");
-
-        // seed categories & foods
-        categories.add("All");
-        categories.add("Burgers");
-        categories.add("Pizza");
-        categories.add("Drinks");
-        categories.add("Dessert");
+        /** Checkpoint: writes a full snapshot, then starts a new, empty journal generation. */
+        private void save() {
+            if (archive.usable()) {
+                try {
+                    archiveSettledOrders();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    return;
+                }
+                try {
+                    if (archive.compactIfNeeded())
+                        System.out.println("Compacted the order archive to " + archive.count() + " orders.");
+                } catch (IOException ex) {
+                    ex.printStackTrace(); // the archive carries on from its uncompacted file
+                }
+            }
+            long nextEpoch = journalEpoch + 1;
+            File tmp = new File(SAVE_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new java.io.BufferedOutputStream(new java.io.FileOutputStream(tmp), 64 * 1024))) {
+                DataBundle db = new DataBundle();
+                db.users = users;
+                db.foods = foods;
+                db.categories = categories;
+                db.orders = orders;
+                db.logs = new ArrayList<>(); // the op log has its own files
+                db.complaints = complaints;
+                db.carts = carts;
+                db.journalEpoch = nextEpoch;
+                db.chats = chats.liveHistories();
+                // collect restaurants from foods
+                db.restaurants = foods.stream()
+                    .filter(f -> f.restaurantOwner != null)
+                    .map(f -> f.restaurantOwner)
+                    .distinct()
+                    .collect(Collectors.toList());
+                SnapshotCodec.write(db, out);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                return;
+            }
+            try {
+                java.nio.file.Files.move(tmp.toPath(), new File(SAVE_FILE).toPath(),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                journalEpoch = nextEpoch;
+                journal.restart(nextEpoch);
+                System.out.println("Data saved.");
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
 
-        foods.add(new FoodItem("Classic Burger", "Beef patty, lettuce, tomato", 6.99, 4.5, new Color(0xFFB3BA),
-                "Burgers"));
-        foods.add(new FoodItem("Cheese Burger", "Double cheese", 8.49, 4.7, new Color(0xFFDFBA), "Burgers"));
-        foods.add(
-                new FoodItem("Margherita Pizza", "Fresh basil & mozzarella", 10.99, 4.6, new Color(0xFFFFE0), "Pizza"));
-        foods.add(new FoodItem("Pepperoni Pizza", "Classic pepperoni", 12.50, 4.4, new Color(0xC1FFC1), "Pizza"));
-        foods.add(new FoodItem("Coke", "330ml can", 1.50, 4.1, new Color(0xB3E5FC), "Drinks"));
-        foods.add(new FoodItem("Chocolate Cake", "Slice of heaven", 4.75, 4.8, new Color(0xE1BEE7), "Dessert"));
+        private boolean isSettled(Order o) {
+            return o.status == OrderStatus.DELIVERED || o.status == OrderStatus.CANCELLED;
+        }
 
-        // set restaurant owner for all seeded foods
-        for (FoodItem f : foods) {
-            f.restaurantOwner = "Pizza Hub";
+        /** Moves settled orders out of the heap; the archive is forced before the snapshot drops them. */
+        private void archiveSettledOrders() throws IOException {
+            Set<Order> settled = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Order o : orders) {
+                if (isSettled(o))
+                    settled.add(o);
+            }
+            if (settled.isEmpty())
+                return;
+            for (Order o : settled)
+                archive.put(o);
+            archive.force();
+            orders.removeIf(settled::contains);
+            settled.forEach(orderIndex::remove);
+            System.out.println("Archived " + settled.size() + " settled orders.");
         }
 
-        // seed a sample order
-        Order sample = new Order();
-        sample.customer = users.get("customer1");
-        sample.items.add(new OrderItem(foods.get(0), 1));
-        sample.items.add(new OrderItem(foods.get(4), 2));
-        sample.recalcTotal();
-        sample.status = OrderStatus.PLACED;
-        orders.add(sample);
+        private FoodItem foodById(UUID id) {
+            return catalog.get(id);
+        }
 
-        logs.add("System seeded with sample data at " + new Date());
-    }
+        Order archivedOrder(UUID id) {
+            try {
+                return archive.get(id, users, this::foodById);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        }
 
-    private double parsePrice(String priceText) {
-        // Remove commas and parse as double
-        return Double.parseDouble(priceText.replace(",", ""));
-    }
+        /** Visits archived order headers, swallowing read errors like the rest of the UI does. */
+        void forEachArchived(java.util.function.Consumer<OrderArchive.Header> action) {
+            try {
+                archive.forEachHeader(action);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
 
-    private String formatPrice(double price) {
-        // Format price with commas for display
-        return String.format("%,.0f", price);
-    }
+        /** Same, restricted to one archive posting key such as {@code OrderArchive.KEY_CUSTOMER + username}. */
+        void forEachArchived(String key, java.util.function.Consumer<OrderArchive.Header> action) {
+            try {
+                archive.forEachHeader(key, action);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
 
-    private void createAndShowGUI() {
-        // Set sky blue theme
-        Color skyBlue = new Color(135, 206, 235); // Sky blue
-        Color lightSkyBlue = new Color(173, 216, 230); // Light sky blue
+        /** Active order from the index, otherwise the archived one decoded on demand. */
+        Order findOrder(UUID id) {
+            if (id == null)
+                return null;
+            Order o = orderIndex.get(id);
+            return o != null ? o : archivedOrder(id);
+        }
 
-        frame = new JFrame("Food Delivery Demo");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(1000, 700);
-        frame.setLocationRelativeTo(null);
-        frame.getContentPane().setBackground(skyBlue);
+        void checkpointIfNeeded() {
+            if (journal.recordCount() >= CHECKPOINT_EVERY_RECORDS) {
+                saveData();
+            }
+        }
 
-        JPanel topBar = buildTopBar();
-        JSplitPane split = new JSplitPane();
-        split.setDividerLocation(180);
-        split.setResizeWeight(0.3);
-        split.setLeftComponent(buildCategoryList());
-        split.setRightComponent(buildItemsArea());
+        // journal helpers used at every mutation site; user and menu edits also keep the indexes current
+        void userChanged(User u) {
+            withWriteLock(() -> {
+                userIndex.put(u);
+                journal.append(Journal.USER_PUT, out -> Journal.writeUser(out, u));
+            });
+        }
 
-        statusLabel = new JLabel(" Welcome! Please login or register to start ordering.                                                                                                                                                                                 HOTLINE: 0919246425");
-        statusLabel.setBorder(new EmptyBorder(6, 6, 6, 6));
-        statusLabel.setBackground(lightSkyBlue);
-        statusLabel.setOpaque(true);
+        void userRemoved(String username) {
+            withWriteLock(() -> {
+                userIndex.remove(username);
+                carts.remove(username);
+                journal.append(Journal.USER_REMOVE, out -> Journal.writeStr(out, username));
+            });
+        }
 
-        JPanel mainPanel = new JPanel(new BorderLayout());
-        mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
-        mainPanel.setBackground(new Color(240, 248, 255));
-        mainPanel.add(topBar, BorderLayout.NORTH);
-        mainPanel.add(split, BorderLayout.CENTER);
-        mainPanel.add(statusLabel, BorderLayout.SOUTH);
+        // every menu edit (add, edit, stock, image, category, rating) passes through these two
+        void foodChanged(FoodItem f) {
+            withWriteLock(() -> {
+                catalog.put(f);
+                search.put(f);
+                journal.append(Journal.FOOD_PUT, out -> Journal.writeFood(out, f));
+            });
+            events.publish(EventBus.Topic.MENU, f.id, f);
+        }
 
-        frame.getContentPane().add(mainPanel);
+        void foodRemoved(FoodItem f) {
+            withWriteLock(() -> {
+                catalog.remove(f);
+                search.remove(f);
+                journal.append(Journal.FOOD_REMOVE, out -> Journal.writeUuid(out, f.id));
+            });
+            events.publish(EventBus.Topic.MENU, f.id, null);
+        }
 
-        frame.setVisible(true);
+        /** Journals the order; an archived one is rewritten in the archive and forced after the lock. */
+        void orderChanged(Order o) {
+            withWriteLock(() -> {
+                if (o.archived) {
+                    // settled orders are updated in the archive directly (ratings, complaints)
+                    try {
+                        archive.put(o);
+                        archive.publish();
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                    return;
+                }
+                orderIndex.put(o);
+                journal.append(Journal.ORDER_PUT_PRICED, out -> Journal.writeOrder(out, o));
+            });
+            if (o.archived)
+                syncArchive();
+            events.publish(EventBus.Topic.ORDER, o.id, o);
+        }
 
-        loadCategories();
-        refreshItems("All");
-    }
+        private void syncArchive() {
+            try {
+                archive.sync();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
 
-    private JPanel buildTopBar() {
-        topPanel = new JPanel(new BorderLayout());
-        topPanel.setBorder(new EmptyBorder(6, 6, 6, 6));
-        topPanel.setBackground(new Color(135, 206, 235)); // Sky blue
+        void orderStatusChanged(Order o) {
+            if (o.archived) {
+                orderChanged(o);
+                return;
+            }
+            withWriteLock(() -> {
+                orderIndex.put(o);
+                journal.append(Journal.ORDER_STATUS, out -> Journal.writeOrderStatus(out, o));
+                if (o.status == OrderStatus.DELIVERED)
+                    sales.record(o);
+            });
+            events.publish(EventBus.Topic.ORDER, o.id, o);
+        }
 
-        JPanel left = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        left.setOpaque(false);
-        left.setBackground(new Color(135, 206, 235));
-        JLabel title = new JLabel("Food Delivery");
-        title.setFont(title.getFont().deriveFont(20f).deriveFont(Font.BOLD));
-        title.setForeground(Color.WHITE);
-        left.add(title);
+        void orderRemoved(Order o) {
+            withWriteLock(() -> {
+                orderIndex.remove(o);
+                if (o.archived) {
+                    try {
+                        archive.remove(o.id);
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                    return;
+                }
+                journal.append(Journal.ORDER_REMOVE, out -> Journal.writeUuid(out, o.id));
+            });
+            if (o.archived)
+                syncArchive();
+            events.publish(EventBus.Topic.ORDER, o.id, null);
+        }
 
-        JPanel right = new JPanel();
-        right.setLayout(new BoxLayout(right, BoxLayout.X_AXIS));
-        right.add(Box.createHorizontalGlue()); // push components to right
-        right.setOpaque(false);
-        right.setBackground(new Color(135, 206, 235));
+        void journalChat(Order o, Message m) {
+            withWriteLock(() -> journal.append(Journal.CHAT, out -> Journal.writeMessage(out, o, m)));
+            events.publish(EventBus.Topic.CHAT, o.id, m);
+        }
 
-        rightPanel = right;
+        void journalChatCleared(Order o) {
+            withWriteLock(() -> journal.append(Journal.CHAT_CLEAR, out -> Journal.writeUuid(out, o.id)));
+            events.publish(EventBus.Topic.CHAT, o.id, null);
+        }
 
-        avatarLabel = new JLabel(); // will hold profile image
-        avatarLabel.setPreferredSize(new Dimension(32, 32));
-        avatarLabel.setBorder(new EmptyBorder(0, 0, 0, 6));
-        right.add(avatarLabel);
+        /** Adds a menu category unless it is already listed; false when it was. */
+        boolean categoryAdded(String name) {
+            return withWriteLock(() -> {
+                if (categories.contains(name))
+                    return false;
+                categories.add(name);
+                journal.append(Journal.CATEGORY_PUT, out -> Journal.writeStr(out, name));
+                return true;
+            });
+        }
 
-        userLabel = new JLabel("Not logged in");
-        userLabel.setForeground(Color.WHITE);
-        right.add(userLabel);
+        void journalComplaint(Complaint c) {
+            withWriteLock(() -> journal.append(Journal.COMPLAINT_PUT, out -> Journal.writeComplaint(out, c)));
+            events.publish(EventBus.Topic.COMPLAINT, c.id, c);
+        }
 
-        loginBtn = new JButton("Login");
-        loginBtn.setBackground(new Color(0, 191, 255)); // Deep sky blue
-        loginBtn.setForeground(Color.WHITE);
-        loginBtn.setFocusPainted(false);
-        loginBtn.setPreferredSize(new Dimension(80, 30));
-        loginBtn.addActionListener(e -> showLoginDialog());
-        right.add(loginBtn);
+        /** Saves one line of a customer's cart, {@code qty} 0 dropping it; journaled like any other change. */
+        void cartLineChanged(String customer, FoodItem f, int variation, int qty) {
+            String name = f.variationName(variation);
+            withWriteLock(() -> {
+                putCartLine(customer, f, variation, qty);
+                journal.append(Journal.CART_LINE, out -> Journal.writeCartLine(out, customer, f, name, qty));
+            });
+        }
 
-        registerBtn = new JButton("Register");
-        registerBtn.setBackground(new Color(0, 191, 255));
-        registerBtn.setForeground(Color.WHITE);
-        registerBtn.setFocusPainted(false);
-        registerBtn.setPreferredSize(new Dimension(80, 30));
-        registerBtn.addActionListener(e -> showRegisterDialog());
-        right.add(registerBtn);
+        void cartCleared(String customer) {
+            withWriteLock(() -> {
+                if (carts.remove(customer) != null)
+                    journal.append(Journal.CART_CLEAR, out -> Journal.writeStr(out, customer));
+            });
+        }
 
-        // NEW: Logout button (hidden by default)
-        logoutButton = new JButton("Logout");
-            logoutButton.setBackground(new Color(255, 69, 0)); // Red orange
-        logoutButton.setForeground(Color.WHITE);
-        logoutButton.setFocusPainted(false);
-        logoutButton.setPreferredSize(new Dimension(80, 30));
-        logoutButton.setVisible(false);
-        logoutButton.addActionListener(e -> {
-            currentUser = null;
-            userLabel.setText("Not logged in");
-            avatarLabel.setIcon(null);
-            // disable and reset dashboard button label/size
-            dashboardButton.setEnabled(false);
-            dashboardButton.setText("Setting");
-            FontMetrics fmReset = dashboardButton.getFontMetrics(dashboardButton.getFont());
-            int resetW = fmReset.stringWidth("Setting") + 40;
-            dashboardButton.setPreferredSize(new Dimension(Math.max(resetW, 100), 30));
-            logoutButton.setVisible(false); // hide logout
-            loginBtn.setVisible(true);
-            registerBtn.setVisible(true);
-            cartButton.setVisible(false); // hide cart
-            statusLabel.setText("You have logged out.");
-            rightPanel.invalidate();
-            rightPanel.revalidate();
-            rightPanel.repaint();
-            topPanel.invalidate();
-            topPanel.revalidate();
-            topPanel.repaint();
-            frame.invalidate();
-            frame.revalidate();
-            frame.repaint();
-        });
-        right.add(logoutButton);
+        /** Adds the customer's saved cart, if any, to {@code into}; its listeners run outside the store lock. */
+        void loadCart(String customer, Cart into) {
+            Cart copy = withReadLock(() -> {
+                Cart c = new Cart();
+                Cart saved = carts.get(customer);
+                if (saved != null)
+                    c.addAll(saved);
+                return c;
+            });
+            into.addAll(copy);
+        }
 
-        cartButton = new JButton("Cart (0)");
-        cartButton.setBackground(new Color(34, 139, 34)); // Green
-        cartButton.setForeground(Color.WHITE);
-        cartButton.setFocusPainted(false);
-        cartButton.setPreferredSize(new Dimension(80, 30));
-        cartButton.setVisible(false); // Initially hidden
-        cartButton.addActionListener(e -> showCartDialog());
-        right.add(cartButton);
+        private void putCartLine(String customer, FoodItem f, int variation, int qty) {
+            Cart c = carts.computeIfAbsent(customer, k -> new Cart());
+            c.set(f, variation, qty);
+            if (c.isEmpty())
+                carts.remove(customer);
+        }
 
-        // Dashboard/Settings button: label depends on logged-in role
-        String dashText = "Setting";
-        if (currentUser != null) {
-            if (currentUser.role == Role.RESTAURANT) dashText = "Manage Your Restaurant";
-            else if (currentUser.role == Role.CUSTOMER) dashText = "Your Orders";
-            else if (currentUser.role == Role.SHIPPER) dashText = "View Current Orders";
-            else if (currentUser.role == Role.CUSTOMER_SERVICE) dashText = "View Current Complaint";
-            else dashText = "Setting";
+        /** Records who did what (and to which order, if any); never blocks. */
+        void log(String actor, String action, UUID order, String detail) {
+            ops.append(actor, action, order, detail);
         }
 
-        dashboardButton = new JButton(dashText);
-        dashboardButton.setBackground(new Color(255, 215, 0)); // Gold
-        dashboardButton.setForeground(Color.BLACK);
-        dashboardButton.setFocusPainted(false);
-        dashboardButton.setOpaque(true);
-        // size to fit text using FontMetrics
-        FontMetrics fm = dashboardButton.getFontMetrics(dashboardButton.getFont());
-        int w = fm.stringWidth(dashText) + 40; // padding
-        dashboardButton.setPreferredSize(new Dimension(Math.max(w, 100), 30));
-        dashboardButton.addActionListener(e -> showDashboard());
-        dashboardButton.setEnabled(false);
-        right.add(dashboardButton);
+        /** Serialized saves kept prices as VND doubles on the objects; move them to Money fields. */
+        private static void adoptLegacyPrices(DataBundle db) {
+            if (db.foods != null)
+                for (FoodItem f : db.foods)
+                    f.adoptLegacyPrices();
+            if (db.orders != null)
+                for (Order o : db.orders)
+                    o.adoptLegacyPrices();
+        }
 
-        topPanel.add(left, BorderLayout.WEST);
-        topPanel.add(right, BorderLayout.EAST);
-        return topPanel;
-    }
+        /** Lines were "<Date.toString()> - <text>"; keep their time where it parses. */
+        private void moveLegacyLogs(List<String> lines) {
+            java.text.SimpleDateFormat format = new java.text.SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+            for (String line : lines) {
+                int dash = line.indexOf(" - ");
+                long time = System.currentTimeMillis();
+                String text = line;
+                if (dash > 0) {
+                    try {
+                        time = format.parse(line.substring(0, dash)).getTime();
+                        text = line.substring(dash + 3);
+                    } catch (java.text.ParseException ex) {
+                        // not a timestamp; keep the whole line
+                    }
+                }
+                ops.append(new OpLog.Entry(time, null, "legacy", null, text));
+            }
+        }
 
-    private JPanel buildCategoryList() {
-        // Create tabbed pane with restaurants and categories
-        JTabbedPane tabbedPane = new JTabbedPane();
-        tabbedPane.setBackground(new Color(173, 216, 230)); // Light sky blue
-        tabbedPane.setFont(tabbedPane.getFont().deriveFont(Font.BOLD, 16f)); // Bigger tab font
+        /** Applies journal records on top of the loaded snapshot, updating existing objects in place. */
+        private class JournalReplayer implements Journal.RecordHandler {
+            private final Map<UUID, FoodItem> knownFoods = new HashMap<>();
+            private final Map<UUID, Order> orderById = new HashMap<>();
+
+            JournalReplayer() {
+                for (FoodItem f : foods)
+                    knownFoods.put(f.id, f);
+                for (Order o : orders) {
+                    orderById.put(o.id, o);
+                    for (OrderItem it : o.items)
+                        knownFoods.putIfAbsent(it.food.id, it.food);
+                }
+                for (Cart c : carts.values())
+                    for (int i = 0; i < c.size(); i++)
+                        knownFoods.putIfAbsent(c.food(i).id, c.food(i));
+            }
 
-        // Restaurants tab
-        JPanel restPanel = new JPanel(new BorderLayout());
-        restPanel.setBackground(new Color(173, 216, 230));
-        restPanel.setBorder(new EmptyBorder(6, 6, 6, 6));
+            @Override
+            public void apply(byte type, DataInputStream in) throws IOException {
+                switch (type) {
+                    case Journal.USER_PUT: {
+                        User u = Journal.readUser(in);
+                        User existing = users.get(u.username);
+                        if (existing == null) {
+                            users.put(u.username, u);
+                        } else {
+                            existing.password = u.password;
+                            existing.role = u.role;
+                            existing.address = u.address;
+                            existing.phone = u.phone;
+                            existing.profileImagePath = u.profileImagePath;
+                            existing.restaurantName = u.restaurantName;
+                            existing.shipperName = u.shipperName;
+                            existing.myCategories = u.myCategories;
+                            existing.isOpen = u.isOpen;
+                            existing.shipperRatings = u.shipperRatings;
+                            existing.shipperComments = u.shipperComments;
+                        }
+                        break;
+                    }
+                    case Journal.USER_REMOVE: {
+                        String username = Journal.readStr(in);
+                        users.remove(username);
+                        carts.remove(username);
+                        break;
+                    }
+                    case Journal.CART_LINE: {
+                        String customer = Journal.readStr(in);
+                        FoodItem f = knownFoods.get(Journal.readUuid(in));
+                        String variation = Journal.readStr(in);
+                        int qty = in.readInt();
+                        int v = f == null ? Cart.NO_VARIATION : f.variationIndex(variation);
+                        if (f != null && (v != Cart.NO_VARIATION || variation.isEmpty())) // else the variation was dropped since
+                            putCartLine(customer, f, v, qty);
+                        break;
+                    }
+                    case Journal.CART_CLEAR:
+                        carts.remove(Journal.readStr(in));
+                        break;
+                    case Journal.CATEGORY_PUT: {
+                        String name = Journal.readStr(in);
+                        if (!categories.contains(name))
+                            categories.add(name);
+                        break;
+                    }
+                    case Journal.FOOD_PUT: {
+                        FoodItem f = Journal.readFood(in);
+                        FoodItem existing = knownFoods.get(f.id);
+                        if (existing == null) {
+                            knownFoods.put(f.id, f);
+                            foods.add(f);
+                        } else {
+                            existing.name = f.name;
+                            existing.description = f.description;
+                            existing.priceMinor = f.priceMinor;
+                            existing.rating = f.rating;
+                            existing.colorPreview = f.colorPreview;
+                            existing.category = f.category;
+                            existing.imagePath = f.imagePath;
+                            existing.restaurantOwner = f.restaurantOwner;
+                            existing.inStock = f.inStock;
+                            existing.variations = f.variations;
+                            existing.variationMinor = f.variationMinor;
+                            existing.ratings = f.ratings;
+                            existing.comments = f.comments;
+                            if (!foods.contains(existing))
+                                foods.add(existing);
+                        }
+                        break;
+                    }
+                    case Journal.FOOD_REMOVE: {
+                        FoodItem f = knownFoods.get(Journal.readUuid(in));
+                        if (f != null)
+                            foods.remove(f);
+                        break;
+                    }
+                    case Journal.ORDER_PUT:
+                        readOrderInto(in, false);
+                        break;
+                    case Journal.ORDER_PUT_PRICED:
+                        readOrderInto(in, true);
+                        break;
+                    case Journal.ORDER_STATUS: {
+                        Order o = orderById.get(Journal.readUuid(in));
+                        OrderStatus st = OrderStatus.values()[in.readByte()];
+                        String shipper = Journal.readStr(in);
+                        if (o != null) {
+                            o.status = st;
+                            o.assignedShipper = shipper;
+                        }
+                        break;
+                    }
+                    case Journal.ORDER_REMOVE: {
+                        Order o = orderById.remove(Journal.readUuid(in));
+                        if (o != null)
+                            orders.remove(o);
+                        break;
+                    }
+                    case Journal.CHAT: {
+                        Order o = orderById.get(Journal.readUuid(in));
+                        Message m = new Message(Journal.readStr(in), Journal.readStr(in));
+                        m.time = new Date(in.readLong());
+                        if (o != null)
+                            chats.append(o.id, m.sender, m.text, m.time.getTime());
+                        break;
+                    }
+                    case Journal.CHAT_CLEAR: {
+                        // the channel was offloaded to the history file before this was journaled
+                        chats.drop(Journal.readUuid(in));
+                        break;
+                    }
+                    case Journal.COMPLAINT_PUT: {
+                        UUID id = Journal.readUuid(in);
+                        Complaint c = complaints.stream().filter(x -> x.id.equals(id)).findFirst().orElse(null);
+                        String author = Journal.readStr(in);
+                        Role role = Role.values()[in.readByte()];
+                        String message = Journal.readStr(in);
+                        if (c == null) {
+                            c = new Complaint(author, role, message);
+                            c.id = id;
+                            complaints.add(c);
+                        }
+                        c.created = new Date(in.readLong());
+                        c.status = Journal.readStr(in);
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown journal record type " + type);
+                }
+            }
 
-        restListModel = new DefaultListModel<>();
-        restList = new JList<>(restListModel);
-        restList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        restList.setFixedCellHeight(180); // Reduced height for smaller images
-        // populate restaurants
-        refreshRestaurantList();
+            /** {@code priced} for ORDER_PUT_PRICED; older ORDER_PUT items take their food's current price. */
+            private void readOrderInto(DataInputStream in, boolean priced) throws IOException {
+                UUID id = Journal.readUuid(in);
+                Order o = orderById.get(id);
+                boolean isNew = o == null;
+                if (isNew) {
+                    o = new Order();
+                    o.id = id;
+                }
+                String customer = Journal.readStr(in);
+                o.customer = customer == null ? null : users.get(customer);
+                if (o.customer == null && customer != null)
+                    o.customer = new User(customer, "", Role.CUSTOMER); // account was deleted since
+                int n = in.readInt();
+                List<OrderItem> items = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    FoodItem f = knownFoods.get(Journal.readUuid(in));
+                    int qty = in.readInt();
+                    String variation = Journal.readStr(in);
+                    long unit = priced ? in.readLong() : -1;
+                    if (f != null) {
+                        OrderItem it = new OrderItem(f, qty, variation);
+                        if (priced)
+                            it.unitMinor = unit;
+                        items.add(it);
+                    }
+                }
+                o.items = items;
+                o.status = OrderStatus.values()[in.readByte()];
+                o.totalMinor = priced ? in.readLong() : Money.of(in.readDouble());
+                o.addressSnapshot = Journal.readStr(in);
+                o.phoneSnapshot = Journal.readStr(in);
+                o.complaint = Journal.readStr(in);
+                o.note = Journal.readStr(in);
+                o.assignedShipper = Journal.readStr(in);
+                o.created = new Date(in.readLong());
+                int nr = in.readInt();
+                o.foodRatings.clear();
+                o.foodComments.clear();
+                for (int i = 0; i < nr; i++) {
+                    FoodItem f = knownFoods.get(Journal.readUuid(in));
+                    double r = in.readDouble();
+                    String comment = Journal.readStr(in);
+                    if (f != null) {
+                        o.foodRatings.put(f, r);
+                        if (comment != null)
+                            o.foodComments.put(f, comment);
+                    }
+                }
+                o.shipperRating = in.readBoolean() ? in.readDouble() : null;
+                o.shipperComment = Journal.readStr(in);
+                if (isNew) {
+                    orderById.put(id, o);
+                    orders.add(o);
+                }
+            }
+        }
 
-        restList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
-                String sel = restList.getSelectedValue(); // restaurant display name with status
-                if (sel != null) {
-                    // Strip status from name
-                    String restaurantName = sel.replace(" (Open)", "").replace(" (Closed)", "");
-                    selectedRestaurant = restaurantName;
-                    isSelectingRestaurant = true;
+        private void seedData() {
+            // seed users
+            users.put("admin", new User("admin", "admin123", Role.ADMIN));
+            users.put("owner", new User("owner", "owner123", Role.OWNER));
+            users.put("shipper", new User("shipper", "shipper123", Role.SHIPPER));
+            users.put("administrator", new User("administrator", "adminops123", Role.ADMINISTRATOR));
+            users.put("support", new User("support", "support123", Role.CUSTOMER_SERVICE));
+            users.put("customer1", new User("customer1", "pass123", Role.CUSTOMER));
+            users.put("shipper1", new User("shipper1", "shipper123", Role.SHIPPER));
+            User restAccount = new User("pizzahub", "rest123", Role.RESTAURANT);
+            restAccount.restaurantName = "Pizza Hub";
+            users.put(restAccount.username, restAccount);
+            restAccount.myCategories.add("All");
+            restAccount.myCategories.add("Pizza");
+            restAccount.myCategories.add("Combos");
+
+            // seed categories & foods
+            categories.add("All");
+            categories.add("Burgers");
+            categories.add("Pizza");
+            categories.add("Drinks");
+            categories.add("Dessert");
+
+            foods.add(new FoodItem("Classic Burger", "Beef patty, lettuce, tomato", Money.of(6.99), 4.5, new Color(0xFFB3BA),
+                    "Burgers"));
+            foods.add(new FoodItem("Cheese Burger", "Double cheese", Money.of(8.49), 4.7, new Color(0xFFDFBA), "Burgers"));
+            foods.add(
+                    new FoodItem("Margherita Pizza", "Fresh basil & mozzarella", Money.of(10.99), 4.6, new Color(0xFFFFE0), "Pizza"));
+            foods.add(new FoodItem("Pepperoni Pizza", "Classic pepperoni", Money.of(12.50), 4.4, new Color(0xC1FFC1), "Pizza"));
+            foods.add(new FoodItem("Coke", "330ml can", Money.of(1.50), 4.1, new Color(0xB3E5FC), "Drinks"));
+            foods.add(new FoodItem("Chocolate Cake", "Slice of heaven", Money.of(4.75), 4.8, new Color(0xE1BEE7), "Dessert"));
+
+            // set restaurant owner for all seeded foods
+            for (FoodItem f : foods) {
+                f.restaurantOwner = "Pizza Hub";
+            }
 
-                    // 1) load categories chỉ của nhà hàng được chọn
-                    loadCategoriesForRestaurant(restaurantName);
+            // seed a sample order
+            Order sample = new Order();
+            sample.customer = users.get("customer1");
+            sample.items.add(new OrderItem(foods.get(0), 1));
+            sample.items.add(new OrderItem(foods.get(4), 2));
+            sample.recalcTotal();
+            sample.status = OrderStatus.PLACED;
+            orders.add(sample);
 
-                    // 2) show only its foods (all categories initially)
-                    refreshItemsByRestaurant(restaurantName);
+            ops.append(null, "system.seed", null, "System seeded with sample data");
+        }
+    }
 
-                    isSelectingRestaurant = false;
-                } else {
-                    selectedRestaurant = null;
-                    isSelectingRestaurant = true;
+    // -------------------- Services --------------------
+    // Headless API over the Store. Validation failures are IllegalStateExceptions whose message
+    // is meant for the user; the Swing dialogs show it as is. Callers do their own logging.
 
-                    // nếu không chọn nhà hàng nào: load categories toàn bộ (nguyên hàm hiện tại)
-                    loadCategories(); // hàm bạn đã có — rebuild categories từ tất cả foods
-                    refreshItems("All");
+    static class UserService {
+        private final Store store;
 
-                    isSelectingRestaurant = false;
-                }
-            }
-        });
+        UserService(Store store) {
+            this.store = store;
+        }
 
-        restPanel.add(new JScrollPane(restList), BorderLayout.CENTER);
-        tabbedPane.addTab("Restaurants", restPanel);
+        /** The matching user, or null when the name or password is wrong. */
+        User login(String username, String password) {
+            return store.withReadLock(() -> {
+                User u = store.users.get(username);
+                return u != null && u.password.equals(password) ? u : null;
+            });
+        }
 
-        // Categories tab
-        JPanel catPanel = new JPanel(new BorderLayout());
-        catPanel.setBackground(new Color(173, 216, 230));
-        catPanel.setBorder(new EmptyBorder(6, 6, 6, 6));
+        void register(User u) {
+            store.withWriteLock(() -> {
+                if (store.users.containsKey(u.username))
+                    throw new IllegalStateException("Username already taken.");
+                store.users.put(u.username, u);
+                store.userChanged(u);
+            });
+        }
 
-        catListModel = new DefaultListModel<>();
-        catList = new JList<>(catListModel);
-        catList.setFont(catList.getFont().deriveFont(Font.BOLD, 20f)); // Much bigger font for categories
-        catList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        catList.setSelectedIndex(0);
-        catList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting() && !isSelectingRestaurant) {
-                String sel = catList.getSelectedValue();
-                if (sel != null) {
-                    if (selectedRestaurant != null) {
-                        // Filter by both restaurant and category
-                        refreshItemsByRestaurantAndCategory(selectedRestaurant, sel);
-                    } else {
-                        // No restaurant selected, filter by category only
-                        refreshItems(sel);
-                    }
-                }
-            }
-        });
+        User get(String username) {
+            return store.withReadLock(() -> store.users.get(username));
+        }
 
-        catPanel.add(new JScrollPane(catList), BorderLayout.CENTER);
+        List<User> all() {
+            return store.withReadLock(() -> new ArrayList<>(store.users.values()));
+        }
 
-        JButton loadCatBtn = new JButton("Reload App");
-        loadCatBtn.addActionListener(e -> {
-            selectedRestaurant = null;
-            restList.clearSelection();
-            refreshRestaurantList();
-            loadCategories();
-            refreshItems("All");
-        });
-        catPanel.add(loadCatBtn, BorderLayout.SOUTH);
-
-        tabbedPane.addTab("Categories", catPanel);
+        List<User> withRole(Role role) {
+            return store.withReadLock(() -> new ArrayList<>(store.userIndex.withRole(role)));
+        }
 
-        JScrollPane wrapper = new JScrollPane(tabbedPane);
-        wrapper.setBorder(BorderFactory.createTitledBorder("Navigation"));
+        /** The account behind a restaurant name, or null. */
+        User restaurant(String restaurantName) {
+            return store.withReadLock(() -> store.userIndex.restaurant(restaurantName));
+        }
 
-        // Main panel with tabs and reload button below
-        JPanel mainPanel = new JPanel(new BorderLayout());
-        mainPanel.add(wrapper, BorderLayout.CENTER);
+        void update(User u) {
+            store.userChanged(u);
+        }
 
-        JButton reloadBtn = new JButton("Reload App");
-        reloadBtn.addActionListener(e -> {
-            selectedRestaurant = null;
-            restList.clearSelection();
-            refreshRestaurantList();
-            loadCategories();
-            refreshItems("All");
-        });
-        mainPanel.add(reloadBtn, BorderLayout.SOUTH);
+        /** Applies an edit to the account and journals it, all under the store lock. */
+        void update(User u, java.util.function.Consumer<User> change) {
+            store.withWriteLock(() -> {
+                change.accept(u);
+                store.userChanged(u);
+            });
+        }
 
-        return mainPanel;
+        void remove(String username) {
+            store.withWriteLock(() -> {
+                if (store.users.remove(username) != null)
+                    store.userRemoved(username);
+            });
+        }
     }
 
-    private JScrollPane buildItemsArea() {
-        itemsPanel = new JPanel();
-        itemsPanel.setLayout(new WrapLayout(FlowLayout.LEFT, 14, 14));
-        itemsPanel.setBackground(new Color(173, 216, 230)); // Light sky blue
-        itemsPanel.setDoubleBuffered(true); // Enable double buffering for smoother rendering
-        JScrollPane sp = new JScrollPane(itemsPanel);
-        sp.setBorder(BorderFactory.createTitledBorder("Food Menu"));
-        return sp;
-    }
+    static class CatalogService {
+        private final Store store;
 
-    private void refreshItems(String categoryFilter) {
-        itemsPanel.removeAll();
-        List<FoodItem> list = foods.stream()
-                .filter(f -> "All".equals(categoryFilter) || f.category.equals(categoryFilter))
-                .collect(Collectors.toList());
+        CatalogService(Store store) {
+            this.store = store;
+        }
 
-        for (FoodItem f : list) {
-            itemsPanel.add(createFoodCard(f));
+        /** Menu items for the given restaurant and category; null or "All" means no filter. */
+        List<FoodItem> browse(String restaurant, String category) {
+            boolean anyCategory = category == null || "All".equals(category);
+            return store.withReadLock(() -> {
+                Collection<FoodItem> view;
+                if (restaurant == null)
+                    view = anyCategory ? store.catalog.all() : store.catalog.byCategory(category);
+                else
+                    view = anyCategory ? store.catalog.byRestaurant(restaurant)
+                            : store.catalog.byRestaurantAndCategory(restaurant, category);
+                return new ArrayList<>(view);
+            });
         }
-        itemsPanel.revalidate();
-        itemsPanel.repaint();
-    }
 
-    private void refreshRestaurantList() {
-        restListModel.clear();
-        // gom các tên nhà hàng từ food items
-        Set<String> set = new LinkedHashSet<>();
-        for (FoodItem f : foods) {
-            if (f.restaurantOwner != null) {
-                set.add(f.restaurantOwner);
-            }
+        /** Full-text search over the whole menu, best match first. */
+        List<FoodItem> search(String query, int limit) {
+            return store.withReadLock(() -> store.search.search(query, limit));
         }
-        // đổ vào JList with status
-        for (String r : set) {
-            User restUser = users.values().stream()
-                .filter(u -> u.role == Role.RESTAURANT && r.equals(u.restaurantName))
-                .findFirst().orElse(null);
-            String status = (restUser != null && restUser.isOpen) ? " (Open)" : " (Closed)";
-            restListModel.addElement(r + status);
+
+        FoodItem get(UUID id) {
+            return store.withReadLock(() -> store.catalog.get(id));
         }
-        // Set custom renderer for colors
-        restList.setCellRenderer(new RestaurantListRenderer());
-    }
 
-    private void refreshItemsByRestaurant(String restaurantName) {
-        if (restaurantName == null) {
-            return; // Don't refresh if restaurant name is null
+        List<String> categories() {
+            return store.withReadLock(() -> new ArrayList<>(store.catalog.categories()));
         }
-        itemsPanel.removeAll();
-        List<FoodItem> list = foods.stream()
-                .filter(f -> restaurantName.equals(f.restaurantOwner))
-                .collect(Collectors.toList());
-        for (FoodItem f : list)
-            itemsPanel.add(createFoodCard(f));
-        itemsPanel.revalidate();
-        itemsPanel.repaint();
-    }
 
-    private void refreshItemsByRestaurantAndCategory(String restaurantName, String categoryFilter) {
-        if (restaurantName == null || categoryFilter == null) {
-            return; // Don't refresh if parameters are null
+        List<String> restaurants() {
+            return store.withReadLock(() -> new ArrayList<>(store.catalog.restaurants()));
         }
-        itemsPanel.removeAll();
-        List<FoodItem> list = foods.stream()
-                .filter(f -> restaurantName.equals(f.restaurantOwner))
-                .filter(f -> "All".equals(categoryFilter) || categoryFilter.equals(f.category))
-                .collect(Collectors.toList());
-        for (FoodItem f : list)
-            itemsPanel.add(createFoodCard(f));
-        itemsPanel.revalidate();
-        itemsPanel.repaint();
-    }
-
-    private JPanel createFoodCard(FoodItem f) {
-        JPanel card = new JPanel(new BorderLayout());
-        card.setPreferredSize(new Dimension(200, 280)); // Adjusted width for smaller images
-        card.setBorder(BorderFactory.createLineBorder(new Color(135, 206, 235), 2, true)); // Sky blue border
-        card.setBackground(new Color(240, 248, 255)); // Alice blue
-
-        // image top: show real image if available, else colored preview
-        JLabel imgLabel = new JLabel();
-        imgLabel.setPreferredSize(new Dimension(180, 120)); // Reduced size for better performance
-        imgLabel.setBorder(new EmptyBorder(6, 6, 6, 6));
-
-        ImageIcon ico = loadScaledImageIcon(f.imagePath, 180, 120); // Reduced size for better performance
-        if (ico != null) {
-            imgLabel.setIcon(ico);
-        } else {
-            // fallback: colored box
-            JPanel placeholder = new JPanel();
-            placeholder.setPreferredSize(new Dimension(180, 120)); // Reduced size for better performance
-            placeholder.setBackground(f.colorPreview);
-            placeholder.setBorder(new EmptyBorder(6, 6, 6, 6));
-            card.add(placeholder, BorderLayout.NORTH);
-        }
-        // if we set icon, add the label
-        if (imgLabel.getIcon() != null) {
-            card.add(imgLabel, BorderLayout.NORTH);
-        }
-
-        // center: name, price, desc
-        JPanel center = new JPanel();
-        center.setLayout(new BoxLayout(center, BoxLayout.Y_AXIS));
-        center.setBorder(new EmptyBorder(6, 6, 6, 6));
-        JLabel name = new JLabel(f.name);
-        name.setFont(name.getFont().deriveFont(14f).deriveFont(Font.BOLD));
-        center.add(name);
-        JLabel price = new JLabel("VND " + formatPrice(f.price));
-        price.setFont(price.getFont().deriveFont(16f).deriveFont(Font.BOLD));
-        price.setForeground(new Color(34, 139, 34)); // Forest green for price
-        center.add(price);
-        JLabel rating = new JLabel(String.format("⭐ %.1f (%d reviews)", f.rating, f.ratings.size()));
-        center.add(rating);
-        JLabel desc = new JLabel("<html>" + f.description + "</html>");
-        desc.setFont(desc.getFont().deriveFont(11f)); // Slightly larger than default
-        center.add(desc);
-        card.add(center, BorderLayout.CENTER);
-
-        // bottom: add to cart + qty
-        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        JButton add = new JButton("Add");
-        add.setBackground(new Color(0, 191, 255));
-        add.setForeground(Color.WHITE);
-        add.setFocusPainted(false);
-        // Check if restaurant is open
-        User restUser = users.values().stream()
-            .filter(u -> u.role == Role.RESTAURANT && f.restaurantOwner != null && f.restaurantOwner.equals(u.restaurantName))
-            .findFirst().orElse(null);
-        boolean isOpen = restUser == null || restUser.isOpen;
-        boolean canAdd = isOpen && f.inStock;
-        add.setEnabled(canAdd);
-        add.setText(canAdd ? "Add" : (f.inStock ? "Closed" : "Out of Stock"));
-        add.addActionListener(e -> {
-            if (!isOpen) {
-                JOptionPane.showMessageDialog(frame, "This restaurant is currently closed.");
-                return;
-            }
-            if (!f.inStock) {
-                JOptionPane.showMessageDialog(frame, "This item is out of stock.");
-                return;
-            }
-            String selectedVariation = "";
-            if (!f.variations.isEmpty()) {
-                // Create options with prices, but store variation names separately
-                String[] options = new String[f.variations.size()];
-                String[] variationNames = f.variations.toArray(new String[0]);
-                
-                for (int i = 0; i < f.variations.size(); i++) {
-                    String v = f.variations.get(i);
-                    double variationPrice = f.variationPrices.getOrDefault(v, 0.0);
-                    if (variationPrice == 0.0) {
-                        options[i] = v; // Just show variation name if price is 0
-                    } else {
-                        String priceDisplay = (variationPrice > 0 ? "+" : "") + formatPrice(variationPrice);
-                        options[i] = v + " " + priceDisplay + " (VND)";
-                    }
-                }
-                
-                JComboBox<String> varBox = new JComboBox<>(options);
-                int result = JOptionPane.showConfirmDialog(frame, varBox, "Choose variation", JOptionPane.OK_CANCEL_OPTION);
-                if (result == JOptionPane.OK_OPTION) {
-                    int selectedIndex = varBox.getSelectedIndex();
-                    selectedVariation = variationNames[selectedIndex]; // Use the actual variation name
-                } else {
-                    return;
-                }
-            }
-            cart.computeIfAbsent(f, k -> new HashMap<>()).merge(selectedVariation, 1, Integer::sum);
-            updateCartButton();
-            log(String.format("%s added %s%s to cart", userOrAnon(), f.name, selectedVariation.isEmpty() ? "" : " (" + selectedVariation + ")"));
-            statusLabel.setText("Added to cart: " + f.name + (selectedVariation.isEmpty() ? "" : " (" + selectedVariation + ")"));
-        });
-        bottom.add(add);
 
-        JButton reviewsBtn = new JButton("Reviews");
-        reviewsBtn.setBackground(new Color(0, 191, 255));
-        reviewsBtn.setForeground(Color.WHITE);
-        reviewsBtn.setFocusPainted(false);
-        reviewsBtn.addActionListener(e -> showFoodReviewsDialog(f));
-        bottom.add(reviewsBtn);
+        List<String> categoriesForRestaurant(String restaurant) {
+            return store.withReadLock(() -> new ArrayList<>(store.catalog.categoriesForRestaurant(restaurant)));
+        }
 
-        // If current user is ADMIN allow inline remove (quick demo)
-        if (currentUser != null && currentUser.role == Role.ADMIN) {
-            JButton remove = new JButton("Remove");
-            remove.setBackground(new Color(255, 69, 0)); // Red orange for remove
-            remove.setForeground(Color.WHITE);
-            remove.setFocusPainted(false);
-            remove.addActionListener(e -> {
-                int confirm = JOptionPane.showConfirmDialog(frame, "Remove " + f.name + "?", "Confirm",
-                        JOptionPane.YES_NO_OPTION);
-                if (confirm == JOptionPane.YES_OPTION) {
-                    foods.remove(f);
-                    refreshItems(catList.getSelectedValue());
-                    log("Admin removed food: " + f.name);
-                }
+        /** Categories an item can be filed under: the listed ones, then any only the menu uses. */
+        List<String> allCategories() {
+            return store.withReadLock(() -> {
+                Set<String> all = new LinkedHashSet<>(store.categories);
+                all.addAll(store.catalog.categories());
+                return new ArrayList<>(all);
             });
-            bottom.add(remove);
         }
 
-        card.add(bottom, BorderLayout.SOUTH);
-        return card;
-    }
+        /** Every menu item, in the order they were added. */
+        List<FoodItem> all() {
+            return store.withReadLock(() -> new ArrayList<>(store.foods));
+        }
 
-    private void updateCartButton() {
-        int totalQty = cart.values().stream().mapToInt(m -> m.values().stream().mapToInt(Integer::intValue).sum()).sum();
-        cartButton.setText("Cart (" + totalQty + ")");
+        /** Closed restaurants and out-of-stock items cannot be ordered. */
+        boolean isOrderable(FoodItem f) {
+            return store.withReadLock(() -> {
+                User rest = store.userIndex.restaurant(f.restaurantOwner);
+                return f.inStock && (rest == null || rest.isOpen);
+            });
+        }
+
+        void addFood(FoodItem f) {
+            store.withWriteLock(() -> {
+                store.foods.add(f);
+                store.foodChanged(f);
+            });
+        }
+
+        void save(FoodItem f) {
+            store.withWriteLock(() -> {
+                if (store.catalog.get(f.id) == null)
+                    store.foods.add(f);
+                store.foodChanged(f);
+            });
+        }
+
+        /** Applies an edit to the item and journals it, all under the store lock. */
+        void update(FoodItem f, java.util.function.Consumer<FoodItem> change) {
+            store.withWriteLock(() -> {
+                change.accept(f);
+                store.foodChanged(f);
+            });
+        }
+
+        void removeFood(FoodItem f) {
+            store.withWriteLock(() -> {
+                store.foods.remove(f);
+                store.foodRemoved(f);
+            });
+        }
+
+        /** False when the category was already listed. */
+        boolean addCategory(String name) {
+            return store.categoryAdded(name);
+        }
+
+        /** Re-files a restaurant's items from one of its categories into another. */
+        void recategorize(String restaurant, String from, String to) {
+            store.withWriteLock(() -> {
+                // copy first: re-filing moves each item out of the bucket being iterated
+                for (FoodItem f : new ArrayList<>(store.catalog.byRestaurantAndCategory(restaurant, from))) {
+                    f.category = to;
+                    store.foodChanged(f);
+                }
+            });
+        }
     }
 
-    // -------------------- dialogs & dashboards --------------------
-    /** CUSTOMER: profile settings — change password, address, phone */
-    private void showCustomerSettingsDialog() {
-        if (currentUser == null || currentUser.role != Role.CUSTOMER) {
-            JOptionPane.showMessageDialog(frame, "Only customers can edit profile.");
-            return;
+    static class OrderService {
+        static final long CANCEL_WINDOW_MS = 60_000; // orders can be cancelled for one minute after placing
+        private static final Metrics.Histogram CHECKOUT = Metrics.histogram("order.checkout");
+        private static final Metrics.Histogram TRANSITION = Metrics.histogram("order.transition");
+        private static final Metrics.Counter REJECTED = Metrics.counter("order.checkout.rejected");
+        private static final Metrics.Counter CONFLICTS = Metrics.counter("order.transition.refused");
+        private static final Metrics.Counter[] REACHED = Arrays.stream(OrderStatus.values())
+                .map(st -> Metrics.counter("order.reached." + st.name().toLowerCase())).toArray(Metrics.Counter[]::new);
+
+        private final Store store;
+        private final List<java.util.function.BiConsumer<Order, OrderStatus>> statusListeners =
+                new java.util.concurrent.CopyOnWriteArrayList<>();
+
+        OrderService(Store store) {
+            this.store = store;
         }
 
-        JPanel p = new JPanel(new GridLayout(0, 1));
+        /** Called on the changing thread after every successful transition, with the new status. */
+        void onStatusChange(java.util.function.BiConsumer<Order, OrderStatus> listener) {
+            statusListeners.add(listener);
+        }
 
-        // Current info
-        JPasswordField oldPassFld = new JPasswordField();
-        JPasswordField newPassFld = new JPasswordField();
-        JTextField addrFld = new JTextField(currentUser.address);
-        JTextField phoneFld = new JTextField(currentUser.phone);
-        JButton changeImgBtn = new JButton("Change Profile Image");
-        JLabel imgSelectedLabel = new JLabel(
-                currentUser.profileImagePath == null ? "No image" : currentUser.profileImagePath);
-        changeImgBtn.addActionListener(ev -> {
-            JFileChooser chooser = new JFileChooser();
-            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-            if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-                String pth = chooser.getSelectedFile().getAbsolutePath();
-                imgSelectedLabel.setText(chooser.getSelectedFile().getName());
-                currentUser.profileImagePath = pth; // temporarily set — will be saved on OK
+        private void fireStatus(Order o, OrderStatus to) {
+            REACHED[to.ordinal()].inc();
+            for (java.util.function.BiConsumer<Order, OrderStatus> l : statusListeners)
+                l.accept(o, to);
+        }
+
+        Order checkout(User customer, Cart cart, String note) {
+            long t0 = System.nanoTime();
+            try {
+                Order o = placeOrder(customer, cart, note);
+                REACHED[OrderStatus.PLACED.ordinal()].inc();
+                return o;
+            } catch (IllegalStateException ex) {
+                REJECTED.inc();
+                throw ex;
+            } finally {
+                CHECKOUT.since(t0);
             }
-        });
-        p.add(changeImgBtn);
-        p.add(imgSelectedLabel);
+        }
 
-        p.add(new JLabel("Enter current password:"));
-        p.add(oldPassFld);
+        private Order placeOrder(User customer, Cart cart, String note) {
+            if (customer == null || customer.role != Role.CUSTOMER)
+                throw new IllegalStateException("You must be logged in as a customer to checkout.");
+            return store.withWriteLock(() -> {
+                Order o = new Order();
+                o.customer = customer;
+                for (int i = 0; i < cart.size(); i++)
+                    o.items.add(new OrderItem(cart.food(i), cart.qty(i), cart.variationName(i))); // prices fixed here
+                if (o.items.isEmpty())
+                    throw new IllegalStateException("Your cart is empty.");
+                for (OrderItem item : o.items) {
+                    User rest = store.userIndex.restaurant(item.food.restaurantOwner);
+                    if (!item.food.inStock)
+                        throw new IllegalStateException(item.food.name + " is out of stock.");
+                    if (rest != null && !rest.isOpen)
+                        throw new IllegalStateException(item.food.restaurantOwner + " is closed.");
+                }
+                o.addressSnapshot = customer.address;
+                o.phoneSnapshot = customer.phone;
+                if (note != null && !note.trim().isEmpty())
+                    o.note = note.trim();
+                o.recalcTotal();
+                store.orders.add(o);
+                store.orderChanged(o);
+                return o;
+            });
+        }
 
-        p.add(new JLabel("New password:"));
-        p.add(newPassFld);
+        /** Active order from the index, otherwise the archived one. */
+        Order get(UUID id) {
+            return store.withReadLock(() -> store.findOrder(id));
+        }
 
-        p.add(new JLabel("Address:"));
-        p.add(addrFld);
+        /** Active (not yet archived) order, or null. */
+        Order active(UUID id) {
+            return store.withReadLock(() -> store.orderIndex.get(id));
+        }
 
-        p.add(new JLabel("Phone number:"));
-        p.add(phoneFld);
+        List<Order> all() {
+            return store.withReadLock(() -> new ArrayList<>(store.orderIndex.all()));
+        }
 
-        int res = JOptionPane.showConfirmDialog(frame, p, "Profile Settings",
-                JOptionPane.OK_CANCEL_OPTION);
+        List<Order> withStatus(OrderStatus status) {
+            return store.withReadLock(() -> new ArrayList<>(store.orderIndex.withStatus(status)));
+        }
 
-        if (res == JOptionPane.OK_OPTION) {
-            String oldp = new String(oldPassFld.getPassword());
-            String newp = new String(newPassFld.getPassword());
+        List<Complaint> complaints() {
+            return store.withReadLock(() -> new ArrayList<>(store.complaints));
+        }
 
-            // verify old password
-            if (!currentUser.password.equals(oldp)) {
-                JOptionPane.showMessageDialog(frame, "Incorrect current password.");
+        /** Deletes an order, active or archived. */
+        void remove(Order o) {
+            if (o.archived) {
+                store.orderRemoved(o); // takes the lock itself and forces the archive after it
                 return;
             }
+            store.withWriteLock(() -> {
+                store.orders.remove(o);
+                store.orderRemoved(o);
+            });
+        }
+
+        List<Order> forCustomer(String username) {
+            return store.withReadLock(() -> new ArrayList<>(store.orderIndex.byCustomer(username)));
+        }
+
+        List<Order> forShipper(String username) {
+            return store.withReadLock(() -> new ArrayList<>(store.orderIndex.byShipper(username)));
+        }
+
+        List<Order> forRestaurant(String restaurantName) {
+            return store.withReadLock(() -> new ArrayList<>(store.orderIndex.byRestaurant(restaurantName)));
+        }
+
+        /** Ready orders no shipper has taken yet. */
+        List<Order> available() {
+            return store.withReadLock(() -> store.orderIndex.withStatus(OrderStatus.READY_FOR_PICKUP).stream()
+                    .filter(o -> o.assignedShipper == null)
+                    .collect(Collectors.toList()));
+        }
 
-            if (!newp.isBlank()) {
-                currentUser.password = newp;
+        // Status changes are decided by Order.transition (a CAS), not by the store lock; the lock
+        // only orders the index/journal updates that follow. Those re-read the live status, so a
+        // late writer still records the newest state.
+
+        /** Restaurant-side progress (PREPARING, READY_FOR_PICKUP) by one legal step. */
+        void setStatus(Order o, OrderStatus to) {
+            if (to != OrderStatus.PREPARING && to != OrderStatus.READY_FOR_PICKUP)
+                throw new IllegalArgumentException("Restaurants can only move orders to PREPARING or READY_FOR_PICKUP, not " + to + ".");
+            long t0 = System.nanoTime();
+            OrderStatus from = o.status;
+            if (o.archived || !o.transition(from, to)) {
+                CONFLICTS.inc();
+                throw new IllegalStateException("Order " + o.id + " is " + o.status + " and cannot move to " + to + ".");
             }
+            store.orderStatusChanged(o);
+            fireStatus(o, to);
+            TRANSITION.since(t0);
+        }
 
-            currentUser.address = addrFld.getText().trim();
-            currentUser.phone = phoneFld.getText().trim();
+        /** Assigns a ready order to the shipper; false when another shipper got there first. */
+        boolean accept(Order o, User shipper) {
+            long t0 = System.nanoTime();
+            if (o.archived || !o.assign(shipper.username)) {
+                CONFLICTS.inc();
+                return false;
+            }
+            store.orderStatusChanged(o);
+            fireStatus(o, OrderStatus.ACCEPTED_BY_SHIPPER);
+            TRANSITION.since(t0);
+            return true;
+        }
 
-            log("Customer updated profile: " + currentUser.username);
-            // update top bar avatar
-            Component[] rightComps = ((JPanel) ((JPanel) frame.getContentPane().getComponent(0)).getComponent(1))
-                    .getComponents();
-            for (Component c : rightComps) {
-                if (c instanceof JLabel) {
-                    ImageIcon ico = loadScaledImageIcon(currentUser.profileImagePath, 32, 32);
-                    ((JLabel) c).setIcon(ico);
-                    break;
+        /** Shipper-side progress; only the assigned shipper may move the order on. */
+        boolean advance(Order o, User shipper, OrderStatus from, OrderStatus to) {
+            long t0 = System.nanoTime();
+            if (!shipper.username.equals(o.assignedShipper) || !o.transition(from, to)) {
+                CONFLICTS.inc();
+                return false;
+            }
+            store.orderStatusChanged(o);
+            if (to == OrderStatus.DELIVERED) {
+                // move the chat out of memory into the history file once the order is completed;
+                // its fsync runs outside the store lock, and chat() already refuses new messages
+                try {
+                    if (store.chats.offload(o.id))
+                        store.journalChatCleared(o);
+                } catch (IOException ex) {
+                    ex.printStackTrace(); // the chat stays live; the next load offloads it again
                 }
             }
+            fireStatus(o, to);
+            TRANSITION.since(t0);
+            return true;
+        }
 
-            JOptionPane.showMessageDialog(frame, "Profile updated successfully!");
+        /** Throws with the reason when the order can no longer be cancelled by this user. */
+        void checkCancellable(Order o, User by) {
+            if (by.role == Role.CUSTOMER && o.customer != by)
+                throw new IllegalStateException("You can only cancel your own orders.");
+            if (o.status != OrderStatus.PLACED)
+                throw new IllegalStateException("Can only cancel orders that are placed.");
+            if (new Date().getTime() - o.created.getTime() > CANCEL_WINDOW_MS)
+                throw new IllegalStateException("Cannot cancel order after 1 minute.");
         }
-    }
 
-    private void showLoginDialog() {
-        JPanel p = new JPanel(new GridLayout(0, 1));
-        JTextField userFld = new JTextField();
-        JPasswordField passFld = new JPasswordField();
-        p.add(new JLabel("Username:"));
-        p.add(userFld);
-        p.add(new JLabel("Password:"));
-        p.add(passFld);
+        void cancel(Order o, User by) {
+            long t0 = System.nanoTime();
+            checkCancellable(o, by);
+            if (!o.transition(OrderStatus.PLACED, OrderStatus.CANCELLED)) {
+                CONFLICTS.inc();
+                throw new IllegalStateException("Can only cancel orders that are placed.");
+            }
+            store.orderStatusChanged(o);
+            fireStatus(o, OrderStatus.CANCELLED);
+            TRANSITION.since(t0);
+        }
 
-        int res = JOptionPane.showConfirmDialog(frame, p, "Login", JOptionPane.OK_CANCEL_OPTION);
-        if (res == JOptionPane.OK_OPTION) {
-            String u = userFld.getText().trim();
-            String pass = new String(passFld.getPassword());
-            User found = users.get(u);
-            if (found != null && found.password.equals(pass)) {
-                currentUser = found;
-                if (avatarLabel != null) {
-                    ImageIcon ico = loadScaledImageIcon(currentUser.profileImagePath, 32, 32);
-                    if (ico != null)
-                        avatarLabel.setIcon(ico);
-                    else
-                        avatarLabel.setIcon(null);
+        Message chat(Order o, User sender, String text) {
+            return store.withWriteLock(() -> {
+                if (o.status == OrderStatus.DELIVERED || o.status == OrderStatus.CANCELLED)
+                    throw new IllegalStateException("Chat is closed for this order.");
+                Message m = store.chats.append(o.id, sender.username, text, System.currentTimeMillis());
+                store.journalChat(o, m);
+                return m;
+            });
+        }
+
+        /** Stores the customer's food and shipper ratings once; comments may be empty. */
+        void rate(Order o, Map<FoodItem, Integer> foodRatings, Map<FoodItem, String> foodComments,
+                int shipperRating, String shipperComment) {
+            store.withWriteLock(() -> {
+                if (o.shipperRating != null)
+                    throw new IllegalStateException("This order has already been rated.");
+                Date now = new Date();
+                try {
+                    for (OrderItem item : o.items) {
+                        FoodItem f = item.food;
+                        Integer rating = foodRatings.get(f);
+                        if (rating == null)
+                            continue;
+                        String comment = foodComments.getOrDefault(f, "");
+                        o.foodRatings.put(f, (double) rating);
+                        if (!comment.isEmpty())
+                            o.foodComments.put(f, comment);
+                        store.reviews.add(ReviewStore.Kind.FOOD, f.id.toString(), f.restaurantOwner,
+                                new Review(o.customer.username, rating, comment, now));
+                        f.rating = store.foodRating(f).average();
+                        store.foodChanged(f);
+                    }
+                    o.shipperRating = (double) shipperRating;
+                    if (shipperComment != null && !shipperComment.isEmpty())
+                        o.shipperComment = shipperComment;
+                    if (o.assignedShipper != null)
+                        store.reviews.add(ReviewStore.Kind.SHIPPER, o.assignedShipper, null,
+                                new Review(o.customer.username, shipperRating, o.shipperComment != null ? o.shipperComment : "", now));
+                } catch (IOException ex) {
+                    ex.printStackTrace();
                 }
-                userLabel.setText("Logged in: " + currentUser.username + " [" + currentUser.role + "]");
-                dashboardButton.setEnabled(true);
-                // update dashboard button text and size for current role
-                String dashText;
-                if (currentUser.role == Role.RESTAURANT) dashText = "Manage Your Restaurant";
-                else if (currentUser.role == Role.CUSTOMER) dashText = "Your Orders";
-                else if (currentUser.role == Role.SHIPPER) dashText = "View Current Orders";
-                else if (currentUser.role == Role.CUSTOMER_SERVICE) dashText = "View Current Complaint";
-                else dashText = "Setting";
-                dashboardButton.setText(dashText);
-                FontMetrics fmDash = dashboardButton.getFontMetrics(dashboardButton.getFont());
-                int dashW = fmDash.stringWidth(dashText) + 40; // padding
-                dashboardButton.setPreferredSize(new Dimension(Math.max(dashW, 100), 30));
-                statusLabel.setText("Welcome back, " + currentUser.username + "!");
-                log("User logged in: " + currentUser.username);
-                refreshForRole();
-                // Hide login/register, show logout
-                loginBtn.setVisible(false);
-                registerBtn.setVisible(false);
-                logoutButton.setVisible(true);
-                cartButton.setVisible(currentUser.role == Role.CUSTOMER);
-                System.out.println("Logout button visible: " + logoutButton.isVisible());
-                rightPanel.invalidate();
-                rightPanel.revalidate();
-                rightPanel.repaint();
-                topPanel.invalidate();
-                topPanel.revalidate();
-                topPanel.repaint();
-                frame.invalidate();
-                frame.revalidate();
-                frame.repaint();
-            } else {
-                JOptionPane.showMessageDialog(frame, "Invalid username/password");
-            }
+            });
+            store.orderChanged(o); // outside the lock: an archived order is forced to disk here
+        }
+
+        void complain(Order o, String text) {
+            store.withWriteLock(() -> {
+                o.complaint = text;
+            });
+            store.orderChanged(o);
+        }
+
+        void resolveComplaint(Order o) {
+            store.withWriteLock(() -> {
+                o.complaint = null;
+            });
+            store.orderChanged(o);
         }
-    }
 
-    private String userOrAnon() {
-        return currentUser == null ? "Anonymous" : currentUser.username;
+        /** A complaint that is not tied to an order, e.g. filed by a shipper. */
+        Complaint fileComplaint(User by, String text) {
+            return store.withWriteLock(() -> {
+                Complaint c = new Complaint(by.username, by.role, text);
+                store.complaints.add(c);
+                store.journalComplaint(c);
+                return c;
+            });
+        }
     }
 
-    private void showRegisterDialog() {
-        JDialog dlg = new JDialog(frame, "Register", true);
-        dlg.setSize(400, 350);
-        dlg.setLocationRelativeTo(frame);
-        dlg.getContentPane().setBackground(new Color(173, 216, 230)); // Light sky blue
+    // -------------------- Dispatch --------------------
+    // Collects orders as they become READY_FOR_PICKUP and, once per batch window, offers each one
+    // to the best online shipper. Shippers take an offer through OrderService.accept, so the CAS
+    // in Order.transition still decides; declined or expired offers go back into the next window.
+    static class DispatchEngine {
+        /** Receives offers on the dispatch thread; implementations must return quickly. */
+        interface OfferListener {
+            void offered(Offer offer);
+        }
 
-        JPanel p = new JPanel(new GridBagLayout());
-        p.setBackground(new Color(240, 248, 255));
-        p.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.insets = new Insets(8, 8, 8, 8);
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        gbc.gridx = 0;
-        gbc.gridy = 0;
+        static class Offer {
+            final Order order;
+            final User shipper;
+            final long offeredAt = System.currentTimeMillis();
+            final long readyAt; // when the order entered the dispatch queue
+            final double distanceKm;
+            private final DispatchEngine engine;
+
+            Offer(DispatchEngine engine, Order order, User shipper, long readyAt, double distanceKm) {
+                this.engine = engine;
+                this.order = order;
+                this.shipper = shipper;
+                this.readyAt = readyAt;
+                this.distanceKm = distanceKm;
+            }
 
-        // Username
-        p.add(new JLabel("Choose username:"), gbc);
-        gbc.gridx = 1;
-        JTextField userFld = new JTextField(16);
-        p.add(userFld, gbc);
+            /** True when this shipper now owns the order. */
+            boolean accept() {
+                return engine.accepted(this);
+            }
 
-        // Password
-        gbc.gridx = 0;
-        gbc.gridy++;
-        p.add(new JLabel("Choose password:"), gbc);
-        gbc.gridx = 1;
-        JPasswordField passFld = new JPasswordField(16);
-        p.add(passFld, gbc);
+            void decline() {
+                engine.declined(this);
+            }
+        }
 
-        // Role selector
-        gbc.gridx = 0;
-        gbc.gridy++;
-        p.add(new JLabel("Register as:"), gbc);
-        gbc.gridx = 1;
-        JComboBox<String> roleBox = new JComboBox<>(new String[] { "Customer", "Shipper", "Restaurant" });
-        p.add(roleBox, gbc);
+        // tuning; read on every window so they can be changed while running
+        volatile long windowMs;
+        volatile int maxBatch = 500; // orders considered per window, oldest first
+        volatile long offerTimeoutMs = 15_000;
+        volatile int maxLoad = 3; // active deliveries plus open offers per shipper
+        volatile double weightDistance = 1.0, weightLoad = 2.0, weightRating = 0.5;
+
+        private final OrderService orders;
+        private final java.util.concurrent.ConcurrentLinkedQueue<Order> incoming = new java.util.concurrent.ConcurrentLinkedQueue<>();
+        private final Map<UUID, Long> readySince = new java.util.concurrent.ConcurrentHashMap<>();
+        private final Map<String, OfferListener> online = new java.util.concurrent.ConcurrentHashMap<>();
+        private final Map<String, User> onlineUsers = new java.util.concurrent.ConcurrentHashMap<>();
+        private final Map<UUID, Offer> openOffers = new java.util.concurrent.ConcurrentHashMap<>();
+        private final Map<UUID, Set<String>> declinedBy = new java.util.concurrent.ConcurrentHashMap<>();
+        private final Map<String, Integer> active = new java.util.concurrent.ConcurrentHashMap<>(); // accepted, not delivered
+        private final java.util.concurrent.ScheduledExecutorService timer =
+                java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "dispatch");
+                    t.setDaemon(true);
+                    return t;
+                });
+        private final java.util.concurrent.atomic.AtomicLong offersMade = new java.util.concurrent.atomic.AtomicLong();
+        private final java.util.concurrent.atomic.AtomicLong ordersAssigned = new java.util.concurrent.atomic.AtomicLong();
+
+        DispatchEngine(OrderService orders, long windowMs) {
+            this.orders = orders;
+            this.windowMs = windowMs;
+            orders.onStatusChange(this::statusChanged);
+        }
 
-        // Shipper name field (hidden unless Shipper chosen)
-        gbc.gridx = 0;
-        gbc.gridy++;
-        JLabel shipperLbl = new JLabel("Shipper name:");
-        JTextField shipperFld = new JTextField(16);
-        // initially hidden
-        shipperLbl.setVisible(false);
-        shipperFld.setVisible(false);
-        p.add(shipperLbl, gbc);
-        gbc.gridx = 1;
-        p.add(shipperFld, gbc);
+        void start() {
+            for (Order o : orders.available())
+                submit(o);
+            timer.schedule(this::windowLoop, windowMs, java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
 
-        // Restaurant name field (hidden unless Restaurant chosen)
-        gbc.gridx = 0;
-        gbc.gridy++;
-        JLabel restLbl = new JLabel("Restaurant name:");
-        JTextField restFld = new JTextField(16);
-        // initially hidden
-        restLbl.setVisible(false);
-        restFld.setVisible(false);
-        p.add(restLbl, gbc);
-        gbc.gridx = 1;
-        p.add(restFld, gbc);
+        void stop() {
+            timer.shutdownNow();
+        }
 
-        // Show/hide fields based on selection
-        roleBox.addActionListener(ae -> {
-            String sel = (String) roleBox.getSelectedItem();
-            boolean isShipper = "Shipper".equals(sel);
-            boolean isRest = "Restaurant".equals(sel);
-            shipperLbl.setVisible(isShipper);
-            shipperFld.setVisible(isShipper);
-            restLbl.setVisible(isRest);
-            restFld.setVisible(isRest);
-            // revalidate parent so changes appear
-            p.revalidate();
-            p.repaint();
-        });
+        void online(User shipper, OfferListener listener) {
+            int busy = 0;
+            for (Order o : orders.forShipper(shipper.username)) {
+                if (o.status == OrderStatus.ACCEPTED_BY_SHIPPER || o.status == OrderStatus.DELIVERING)
+                    busy++;
+            }
+            if (busy > 0)
+                active.put(shipper.username, busy);
+            onlineUsers.put(shipper.username, shipper);
+            online.put(shipper.username, listener);
+        }
 
-        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        buttonPanel.setBackground(new Color(240, 248, 255));
-        JButton okBtn = new JButton("Register");
-        okBtn.setBackground(new Color(0, 191, 255));
-        okBtn.setForeground(Color.WHITE);
-        okBtn.setFocusPainted(false);
-        JButton cancelBtn = new JButton("Cancel");
-        cancelBtn.setBackground(new Color(255, 69, 0));
-        cancelBtn.setForeground(Color.WHITE);
-        cancelBtn.setFocusPainted(false);
+        void offline(User shipper) {
+            online.remove(shipper.username);
+            onlineUsers.remove(shipper.username);
+            // hand its open offers to someone else next window
+            openOffers.values().removeIf(offer -> {
+                if (!offer.shipper.username.equals(shipper.username))
+                    return false;
+                requeue(offer.order);
+                return true;
+            });
+        }
 
-        okBtn.addActionListener(e -> {
-            String u = userFld.getText().trim();
-            String pass = new String(passFld.getPassword());
-            String roleChoice = (String) roleBox.getSelectedItem();
+        void submit(Order o) {
+            if (readySince.putIfAbsent(o.id, System.currentTimeMillis()) == null)
+                incoming.add(o);
+        }
 
-            if (u.isEmpty() || pass.isEmpty()) {
-                JOptionPane.showMessageDialog(dlg, "Username and password required.");
+        long offersMade() {
+            return offersMade.get();
+        }
+
+        long ordersAssigned() {
+            return ordersAssigned.get();
+        }
+
+        int backlog() {
+            return readySince.size();
+        }
+
+        private void statusChanged(Order o, OrderStatus to) {
+            if (to == OrderStatus.READY_FOR_PICKUP) {
+                submit(o);
                 return;
             }
-            if (users.containsKey(u)) {
-                JOptionPane.showMessageDialog(dlg, "Username already taken.");
-                return;
+            if (to == OrderStatus.ACCEPTED_BY_SHIPPER || to == OrderStatus.CANCELLED) {
+                // taken through an offer or by hand from the list; either way it leaves the queue
+                readySince.remove(o.id);
+                declinedBy.remove(o.id);
+                openOffers.remove(o.id);
             }
+            if (to == OrderStatus.ACCEPTED_BY_SHIPPER)
+                active.merge(o.assignedShipper, 1, Integer::sum);
+            else if (to == OrderStatus.DELIVERED)
+                active.computeIfPresent(o.assignedShipper, (k, n) -> n > 1 ? n - 1 : null);
+        }
 
-            Role assignedRole = Role.CUSTOMER;
-            if ("Shipper".equals(roleChoice))
-                assignedRole = Role.SHIPPER;
-            else if ("Restaurant".equals(roleChoice))
-                assignedRole = Role.RESTAURANT;
+        private void requeue(Order o) {
+            if (o.status == OrderStatus.READY_FOR_PICKUP && readySince.containsKey(o.id))
+                incoming.add(o);
+        }
 
-            User nu = new User(u, pass, assignedRole);
+        private boolean accepted(Offer offer) {
+            if (openOffers.remove(offer.order.id, offer) && orders.accept(offer.order, offer.shipper)) {
+                ordersAssigned.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
 
-            // Handle shipper name
-            if (assignedRole == Role.SHIPPER) {
-                String sname = shipperFld.getText().trim();
-                if (sname.isEmpty()) {
-                    JOptionPane.showMessageDialog(dlg, "Please provide a shipper name.");
-                    return;
-                }
-                nu.shipperName = sname;
+        private void declined(Offer offer) {
+            if (openOffers.remove(offer.order.id, offer)) {
+                declinedBy.computeIfAbsent(offer.order.id, k -> java.util.concurrent.ConcurrentHashMap.newKeySet())
+                        .add(offer.shipper.username);
+                requeue(offer.order);
             }
+        }
 
-            // Handle restaurant name
-            if (assignedRole == Role.RESTAURANT) {
-                String rname = restFld.getText().trim();
-                if (rname.isEmpty()) {
-                    JOptionPane.showMessageDialog(dlg, "Please provide a restaurant name.");
-                    return;
+        private void windowLoop() {
+            try {
+                dispatchWindow();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            } finally {
+                if (!timer.isShutdown())
+                    timer.schedule(this::windowLoop, windowMs, java.util.concurrent.TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /** One batch: expire stale offers, then greedily match the oldest waiting orders. */
+        void dispatchWindow() {
+            long now = System.currentTimeMillis();
+            for (Offer offer : openOffers.values()) {
+                if (now - offer.offeredAt > offerTimeoutMs)
+                    declined(offer);
+            }
+
+            Map<UUID, Order> batch = new LinkedHashMap<>();
+            List<Order> later = new ArrayList<>();
+            Order o;
+            while ((o = incoming.poll()) != null) {
+                if (o.status != OrderStatus.READY_FOR_PICKUP || o.assignedShipper != null) {
+                    readySince.remove(o.id); // taken by hand, or cancelled
+                    declinedBy.remove(o.id);
+                } else if (!openOffers.containsKey(o.id)) {
+                    if (batch.size() < maxBatch)
+                        batch.put(o.id, o);
+                    else
+                        later.add(o);
                 }
-                nu.restaurantName = rname;
-                nu.myCategories.add("Main");
-                nu.myCategories.add("Drinks");
+            }
+            incoming.addAll(later);
+            if (batch.isEmpty() || online.isEmpty()) {
+                incoming.addAll(batch.values());
+                return;
             }
 
-            refreshRestaurantList();
-            catListModel.addElement("All"); // only if you need to ensure 'All' exists
-            // optional: set some defaults
-            nu.address = "";
-            nu.phone = "";
+            Map<String, Integer> load = new HashMap<>(active);
+            for (Offer offer : openOffers.values())
+                load.merge(offer.shipper.username, 1, Integer::sum);
+            List<Order> waiting = new ArrayList<>(batch.values());
+            waiting.sort(Comparator.comparingLong(w -> readySince.getOrDefault(w.id, now)));
+            for (Order w : waiting) {
+                Set<String> declined = declinedBy.getOrDefault(w.id, Collections.emptySet());
+                double[] pickup = position(restaurantOf(w));
+                User best = null;
+                double bestScore = Double.MAX_VALUE, bestKm = 0;
+                for (User s : onlineUsers.values()) {
+                    int l = load.getOrDefault(s.username, 0);
+                    if (l >= maxLoad || declined.contains(s.username))
+                        continue;
+                    double km = distanceKm(position(s.username), pickup);
+                    double score = weightDistance * km + weightLoad * l - weightRating * ratingAverage(s.username);
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestKm = km;
+                        best = s;
+                    }
+                }
+                if (best == null) {
+                    if (declined.size() >= onlineUsers.size())
+                        declinedBy.remove(w.id); // everyone said no once; start over
+                    incoming.add(w);
+                    continue;
+                }
+                load.merge(best.username, 1, Integer::sum);
+                Offer offer = new Offer(this, w, best, readySince.getOrDefault(w.id, now), bestKm);
+                openOffers.put(w.id, offer);
+                offersMade.incrementAndGet();
+                OfferListener listener = online.get(best.username);
+                if (listener != null)
+                    listener.offered(offer);
+            }
+        }
 
-            users.put(u, nu);
-            log("New user registered: " + u + " role=" + assignedRole
-                    + (nu.shipperName == null ? "" : " shipper=" + nu.shipperName)
-                    + (nu.restaurantName == null ? "" : " rest=" + nu.restaurantName));
-            JOptionPane.showMessageDialog(dlg, "Registered. You can now login.");
-            dlg.dispose();
-        });
+        static String restaurantOf(Order o) {
+            return o.items.isEmpty() ? "" : String.valueOf(o.items.get(0).food.restaurantOwner);
+        }
 
-        cancelBtn.addActionListener(e -> dlg.dispose());
+        /** Recent reviews weigh more; shippers with no reviews yet count as average. */
+        double ratingAverage(String shipper) {
+            RatingStats r = orders.store.shipperRating(shipper);
+            return r.count() == 0 ? 3.0 : r.decayedAverage();
+        }
 
-        buttonPanel.add(okBtn);
-        buttonPanel.add(cancelBtn);
+        /** Simulated location inside a 10 km square, stable for a given name. */
+        static double[] position(String key) {
+            int h = key.hashCode() * 0x9E3779B1;
+            return new double[] { ((h >>> 16) & 0xFFFF) / 65535.0 * 10, (h & 0xFFFF) / 65535.0 * 10 };
+        }
 
-        dlg.setLayout(new BorderLayout());
-        dlg.add(p, BorderLayout.CENTER);
-        dlg.add(buttonPanel, BorderLayout.SOUTH);
-        dlg.setVisible(true);
+        static double distanceKm(double[] a, double[] b) {
+            return Math.hypot(a[0] - b[0], a[1] - b[1]);
+        }
     }
 
-    private void showCartDialog() {
-        if (cart.isEmpty()) {
-            JOptionPane.showMessageDialog(frame, "Cart is empty.");
-            return;
+    // -------------------- Snapshot format --------------------
+    // Versioned binary encoding of a DataBundle. Every string is written once into a
+    // string table and referenced by index; orders point at users and foods by table
+    // index instead of embedding them; ratings are stored as raw doubles.
+    // Layout: [magic][version][epoch][strings][users][foods][categories][orders][logs][complaints]
+    static class SnapshotCodec {
+        private static final int MAGIC = 0x46445331; // "FDS1"
+        // 2: prices and totals as Money minor units, items carry their price; 3: saved carts
+        static final int VERSION = 3;
+
+        static boolean isSnapshot(java.io.BufferedInputStream in) throws IOException {
+            in.mark(4);
+            byte[] b = new byte[4];
+            int n = in.readNBytes(b, 0, 4);
+            in.reset();
+            return n == 4 && ((b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF)) == MAGIC;
         }
-        JDialog dlg = new JDialog(frame, "Cart", true);
-        dlg.setSize(600, 500);
-        dlg.setLocationRelativeTo(frame);
-        dlg.getContentPane().setBackground(new Color(173, 216, 230)); // Light sky blue
 
-        JPanel main = new JPanel(new BorderLayout());
-        main.setBackground(new Color(240, 248, 255));
-        DefaultListModel<String> model = new DefaultListModel<>();
-        List<FoodItem> tempFoods = new ArrayList<>();
-        List<String> tempVars = new ArrayList<>();
-        cart.forEach((food, varMap) -> varMap.forEach((var, qty) -> {
-            double itemPrice = food.price + food.variationPrices.getOrDefault(var, 0.0);
-            model.addElement(qty + " x " + food.name + (var.isEmpty() ? "" : " (" + var + ")") + "  - VND " + formatPrice(itemPrice * qty));
-            tempFoods.add(food);
-            tempVars.add(var);
-        }));
-        JList<String> list = new JList<>(model);
-        main.add(new JScrollPane(list), BorderLayout.CENTER);
+        static void write(DataBundle db, DataOutputStream out) throws IOException {
+            // users and foods reachable only through orders (deleted since) still need a table slot
+            Map<User, Integer> userIdx = new LinkedHashMap<>();
+            Map<FoodItem, Integer> foodIdx = new LinkedHashMap<>();
+            for (User u : db.users.values())
+                userIdx.putIfAbsent(u, userIdx.size());
+            for (FoodItem f : db.foods)
+                foodIdx.putIfAbsent(f, foodIdx.size());
+            for (Order o : db.orders) {
+                if (o.customer != null)
+                    userIdx.putIfAbsent(o.customer, userIdx.size());
+                for (OrderItem it : o.items)
+                    foodIdx.putIfAbsent(it.food, foodIdx.size());
+                for (FoodItem f : o.foodRatings.keySet())
+                    foodIdx.putIfAbsent(f, foodIdx.size());
+            }
+            Map<String, Cart> carts = db.carts != null ? db.carts : Collections.emptyMap();
+            for (Cart c : carts.values())
+                for (int i = 0; i < c.size(); i++)
+                    foodIdx.putIfAbsent(c.food(i), foodIdx.size());
+
+            // body goes to a buffer first so the string table can precede it
+            Strings strings = new Strings();
+            java.io.ByteArrayOutputStream bodyBytes = new java.io.ByteArrayOutputStream(1 << 16);
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+
+            writeVarInt(body, userIdx.size());
+            for (User u : userIdx.keySet()) {
+                body.writeBoolean(db.users.get(u.username) == u);
+                strings.write(body, u.username);
+                strings.write(body, u.password);
+                body.writeByte(u.role.ordinal());
+                strings.write(body, u.address);
+                strings.write(body, u.phone);
+                strings.write(body, u.profileImagePath);
+                strings.write(body, u.restaurantName);
+                strings.write(body, u.shipperName);
+                strings.writeList(body, u.myCategories);
+                body.writeBoolean(u.isOpen);
+                writeDoubles(body, u.shipperRatings);
+                strings.writeList(body, u.shipperComments);
+            }
 
-        // Note text area
-        JPanel notePanel = new JPanel(new BorderLayout());
-        notePanel.setBorder(BorderFactory.createTitledBorder("Note for Restaurant (optional)"));
-        JTextArea noteArea = new JTextArea(4, 50);
-        noteArea.setLineWrap(true);
-        noteArea.setWrapStyleWord(true);
-        JScrollPane noteScroll = new JScrollPane(noteArea);
-        noteScroll.setPreferredSize(new Dimension(550, 80));
-        notePanel.add(noteScroll, BorderLayout.CENTER);
-        main.add(notePanel, BorderLayout.SOUTH);
+            Set<FoodItem> listed = Collections.newSetFromMap(new IdentityHashMap<>());
+            listed.addAll(db.foods);
+            writeVarInt(body, foodIdx.size());
+            for (FoodItem f : foodIdx.keySet()) {
+                body.writeBoolean(listed.contains(f));
+                body.writeLong(f.id.getMostSignificantBits());
+                body.writeLong(f.id.getLeastSignificantBits());
+                strings.write(body, f.name);
+                strings.write(body, f.description);
+                body.writeLong(f.priceMinor);
+                body.writeDouble(f.rating);
+                body.writeInt(f.colorPreview == null ? 0xFFFFFF : f.colorPreview.getRGB());
+                strings.write(body, f.category);
+                strings.write(body, f.imagePath);
+                strings.write(body, f.restaurantOwner);
+                body.writeBoolean(f.inStock);
+                writeVarInt(body, f.variations.size());
+                for (int v = 0; v < f.variations.size(); v++) {
+                    strings.write(body, f.variations.get(v));
+                    body.writeLong(f.variationPrice(v));
+                }
+                writeDoubles(body, f.ratings);
+                strings.writeList(body, f.comments);
+            }
 
-        double total = cart.entrySet().stream().mapToDouble(e -> {
-            FoodItem food = e.getKey();
-            return e.getValue().entrySet().stream().mapToDouble(varEntry -> {
-                String var = varEntry.getKey();
-                int qty = varEntry.getValue();
-                double itemPrice = food.price + food.variationPrices.getOrDefault(var, 0.0);
-                return itemPrice * qty;
-            }).sum();
-        }).sum();
-        JLabel totalLbl = new JLabel("Total: VND " + formatPrice(total));
-        totalLbl.setBorder(new EmptyBorder(6, 6, 6, 6));
-        main.add(totalLbl, BorderLayout.NORTH);
+            strings.writeList(body, db.categories);
+
+            writeVarInt(body, db.orders.size());
+            for (Order o : db.orders) {
+                body.writeLong(o.id.getMostSignificantBits());
+                body.writeLong(o.id.getLeastSignificantBits());
+                writeVarInt(body, o.customer == null ? 0 : userIdx.get(o.customer) + 1);
+                writeVarInt(body, o.items.size());
+                for (OrderItem it : o.items) {
+                    writeVarInt(body, foodIdx.get(it.food));
+                    writeVarInt(body, it.qty);
+                    strings.write(body, it.variation);
+                    body.writeLong(it.unitMinor);
+                }
+                OrderStatus status = o.status; // read once, before the shipper it was published after
+                body.writeByte(status.ordinal());
+                body.writeLong(o.totalMinor);
+                strings.write(body, o.addressSnapshot);
+                strings.write(body, o.phoneSnapshot);
+                strings.write(body, o.complaint);
+                strings.write(body, o.note);
+                strings.write(body, o.shipperAt(status));
+                body.writeLong(o.created.getTime());
+                List<Message> chat = db.chats != null ? db.chats.getOrDefault(o.id, o.chat) : o.chat;
+                writeVarInt(body, chat.size());
+                for (Message m : chat) {
+                    strings.write(body, m.sender);
+                    strings.write(body, m.text);
+                    body.writeLong(m.time.getTime());
+                }
+                writeVarInt(body, o.foodRatings.size());
+                for (Map.Entry<FoodItem, Double> e : o.foodRatings.entrySet()) {
+                    writeVarInt(body, foodIdx.get(e.getKey()));
+                    body.writeDouble(e.getValue());
+                    strings.write(body, o.foodComments.get(e.getKey()));
+                }
+                body.writeBoolean(o.shipperRating != null);
+                if (o.shipperRating != null)
+                    body.writeDouble(o.shipperRating);
+                strings.write(body, o.shipperComment);
+            }
 
-        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        JButton checkout = new JButton("Checkout");
-        checkout.setBackground(new Color(0, 191, 255));
-        checkout.setForeground(Color.WHITE);
-        checkout.setFocusPainted(false);
-        checkout.addActionListener(e -> {
-            if (currentUser == null || currentUser.role != Role.CUSTOMER) {
-                JOptionPane.showMessageDialog(dlg, "You must be logged in as a customer to checkout.");
-                return;
+            // log lines are almost all unique, so they stay out of the string table
+            writeVarInt(body, db.logs.size());
+            for (String line : db.logs)
+                body.writeUTF(line);
+
+            writeVarInt(body, db.complaints.size());
+            for (Complaint c : db.complaints) {
+                body.writeLong(c.id.getMostSignificantBits());
+                body.writeLong(c.id.getLeastSignificantBits());
+                strings.write(body, c.author);
+                body.writeByte(c.authorRole.ordinal());
+                strings.write(body, c.message);
+                body.writeLong(c.created.getTime());
+                strings.write(body, c.status);
             }
-            // Payment method choice
-            String[] options = {"Cash on Delivery", "Online Payment"};
-            int choice = JOptionPane.showOptionDialog(dlg, "Choose payment method:", "Payment Method",
-                    JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
-            if (choice == JOptionPane.CLOSED_OPTION) return; // cancelled
 
-            boolean isCashOnDelivery = (choice == 0);
+            writeVarInt(body, carts.size());
+            for (Map.Entry<String, Cart> e : carts.entrySet()) {
+                Cart c = e.getValue();
+                strings.write(body, e.getKey());
+                writeVarInt(body, c.size());
+                for (int i = 0; i < c.size(); i++) {
+                    writeVarInt(body, foodIdx.get(c.food(i)));
+                    strings.write(body, c.variationName(i));
+                    writeVarInt(body, c.qty(i));
+                }
+            }
+            body.flush();
+
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(db.journalEpoch);
+            writeVarInt(out, strings.table.size());
+            for (String str : strings.table.keySet()) {
+                byte[] b = str.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                writeVarInt(out, b.length);
+                out.write(b);
+            }
+            bodyBytes.writeTo(out);
+        }
 
-            // create order
-            Order o = new Order();
-            o.customer = currentUser;
-            cart.forEach((food, varMap) -> varMap.forEach((var, qty) -> o.items.add(new OrderItem(food, qty, var))));
-            o.addressSnapshot = currentUser.address;
-            o.phoneSnapshot = currentUser.phone;
-            String noteText = noteArea.getText().trim();
-            if (!noteText.isEmpty()) {
-                o.note = noteText;
-            }
-            o.recalcTotal();
-            orders.add(o);
-            cart.clear();
-            updateCartButton();
-            log("Order placed by " + currentUser.username + " orderId=" + o.id + " payment=" + (isCashOnDelivery ? "COD" : "Online"));
-            statusLabel.setText("Order placed! Order ID: " + o.id.toString().substring(0, 6));
-            dlg.dispose();
+        static DataBundle read(java.io.InputStream raw) throws IOException {
+            DataInputStream in = new DataInputStream(raw);
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a snapshot file");
+            int version = in.readShort();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported snapshot version " + version);
+            boolean v1 = version == 1; // VND doubles, items priced from their food
+            DataBundle db = new DataBundle();
+            db.journalEpoch = in.readLong();
 
-            if (isCashOnDelivery) {
-                JOptionPane.showMessageDialog(frame, "Order placed!\nID: " + o.id + "\nTotal: VND " + formatPrice(o.total) + "\nPayment: Cash on Delivery");
-            } else {
-                // Open payment dialog
-                JDialog paymentDialog = new JDialog(frame, "Payment", true);
-                paymentDialog.setLayout(new BorderLayout());
-                // QR Code panel
-                JPanel qrPanel = new JPanel() {
-                    @Override
-                    protected void paintComponent(Graphics g) {
-                        super.paintComponent(g);
-                        // Simple QR code pattern
-                        int size = Math.min(getWidth(), getHeight()) - 20;
-                        int cellSize = size / 21; // 21x21 grid
-                        int offsetX = (getWidth() - size) / 2;
-                        int offsetY = (getHeight() - size) / 2;
-                        g.setColor(Color.BLACK);
-                        // Draw a simple QR-like pattern
-                        for (int i = 0; i < 21; i++) {
-                            for (int j = 0; j < 21; j++) {
-                                // Create a pattern that looks like QR code
-                                boolean draw = false;
-                                if ((i < 7 && j < 7) || (i < 7 && j > 13) || (i > 13 && j < 7)) {
-                                    draw = true; // position squares
-                                } else if (i == 2 || j == 2 || i == 18 || j == 18) {
-                                    draw = true; // alignment
-                                } else if ((i + j) % 3 == 0) {
-                                    draw = true; // some pattern
-                                }
-                                if (draw) {
-                                    g.fillRect(offsetX + i * cellSize, offsetY + j * cellSize, cellSize, cellSize);
-                                }
-                            }
-                        }
-                    }
-                };
-                qrPanel.setPreferredSize(new Dimension(200, 200));
-                qrPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
-                paymentDialog.add(qrPanel, BorderLayout.CENTER);
-                // Total label
-                JLabel totalLabel = new JLabel("Total: VND " + formatPrice(o.total), SwingConstants.CENTER);
-                totalLabel.setFont(new Font("Arial", Font.BOLD, 16));
-                totalLabel.setBorder(new EmptyBorder(10, 10, 10, 10));
-                paymentDialog.add(totalLabel, BorderLayout.NORTH);
-                // Payment done button
-                JButton paymentDoneButton = new JButton("Payment Done");
-                paymentDoneButton.addActionListener(ev -> paymentDialog.dispose());
-                JPanel buttonPanel = new JPanel();
-                buttonPanel.add(paymentDoneButton);
-                paymentDialog.add(buttonPanel, BorderLayout.SOUTH);
-                paymentDialog.pack();
-                paymentDialog.setLocationRelativeTo(frame);
-                paymentDialog.setVisible(true);
+            String[] table = new String[readVarInt(in)];
+            for (int i = 0; i < table.length; i++) {
+                byte[] b = new byte[readVarInt(in)];
+                in.readFully(b);
+                table[i] = new String(b, java.nio.charset.StandardCharsets.UTF_8);
             }
-        });
-        bottom.add(checkout);
 
-        JButton removeBtn = new JButton("Remove Selected");
-        removeBtn.addActionListener(e -> {
-            int idx = list.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select an item to remove.");
-                return;
+            User[] userTable = new User[readVarInt(in)];
+            db.users = new HashMap<>(userTable.length * 2);
+            for (int i = 0; i < userTable.length; i++) {
+                boolean inMap = in.readBoolean();
+                User u = new User(str(in, table), str(in, table), Role.values()[in.readByte()]);
+                u.address = str(in, table);
+                u.phone = str(in, table);
+                u.profileImagePath = str(in, table);
+                u.restaurantName = str(in, table);
+                u.shipperName = str(in, table);
+                u.myCategories = strList(in, table);
+                u.isOpen = in.readBoolean();
+                u.shipperRatings = doubles(in);
+                u.shipperComments = strList(in, table);
+                userTable[i] = u;
+                if (inMap)
+                    db.users.put(u.username, u);
             }
-            FoodItem food = tempFoods.get(idx);
-            String var = tempVars.get(idx);
-            Map<String, Integer> varMap = cart.get(food);
-            if (varMap != null) {
-                int current = varMap.get(var);
-                if (current > 1) {
-                    varMap.put(var, current - 1);
-                } else {
-                    varMap.remove(var);
-                    if (varMap.isEmpty()) {
-                        cart.remove(food);
-                    }
+
+            FoodItem[] foodTable = new FoodItem[readVarInt(in)];
+            db.foods = new ArrayList<>(foodTable.length);
+            for (int i = 0; i < foodTable.length; i++) {
+                boolean listed = in.readBoolean();
+                UUID id = new UUID(in.readLong(), in.readLong());
+                String name = str(in, table), description = str(in, table);
+                long price = v1 ? Money.of(in.readDouble()) : in.readLong();
+                FoodItem f = new FoodItem(name, description, price, in.readDouble(), new Color(in.readInt()), str(in, table));
+                f.id = id;
+                f.imagePath = str(in, table);
+                f.restaurantOwner = str(in, table);
+                f.inStock = in.readBoolean();
+                int nv = readVarInt(in);
+                for (int v = 0; v < nv; v++) {
+                    String variation = str(in, table);
+                    f.addVariation(variation, v1 ? Money.of(in.readDouble()) : in.readLong());
                 }
+                f.ratings = doubles(in);
+                f.comments = strList(in, table);
+                foodTable[i] = f;
+                if (listed)
+                    db.foods.add(f);
             }
-            updateCartButton();
-            // Refresh the dialog
-            dlg.dispose();
-            if (!cart.isEmpty()) {
-                showCartDialog();
-            } else {
-                JOptionPane.showMessageDialog(frame, "Cart is now empty.");
+
+            db.categories = strList(in, table);
+
+            int orderCount = readVarInt(in);
+            db.orders = new ArrayList<>(orderCount);
+            for (int i = 0; i < orderCount; i++) {
+                Order o = new Order();
+                o.id = new UUID(in.readLong(), in.readLong());
+                int cust = readVarInt(in);
+                o.customer = cust == 0 ? null : userTable[cust - 1];
+                int ni = readVarInt(in);
+                for (int k = 0; k < ni; k++) {
+                    OrderItem it = new OrderItem(foodTable[readVarInt(in)], readVarInt(in), str(in, table));
+                    if (!v1)
+                        it.unitMinor = in.readLong();
+                    o.items.add(it);
+                }
+                o.status = OrderStatus.values()[in.readByte()];
+                o.totalMinor = v1 ? Money.of(in.readDouble()) : in.readLong();
+                o.addressSnapshot = str(in, table);
+                o.phoneSnapshot = str(in, table);
+                o.complaint = str(in, table);
+                o.note = str(in, table);
+                o.assignedShipper = str(in, table);
+                o.created = new Date(in.readLong());
+                int nm = readVarInt(in);
+                for (int k = 0; k < nm; k++) {
+                    Message m = new Message(str(in, table), str(in, table));
+                    m.time = new Date(in.readLong());
+                    o.chat.add(m);
+                }
+                int nr = readVarInt(in);
+                for (int k = 0; k < nr; k++) {
+                    FoodItem f = foodTable[readVarInt(in)];
+                    o.foodRatings.put(f, in.readDouble());
+                    String comment = str(in, table);
+                    if (comment != null)
+                        o.foodComments.put(f, comment);
+                }
+                o.shipperRating = in.readBoolean() ? in.readDouble() : null;
+                o.shipperComment = str(in, table);
+                db.orders.add(o);
             }
-        });
-        bottom.add(removeBtn);
 
-        JButton editAddr = new JButton("Edit address/phone");
-        editAddr.addActionListener(e -> {
-            int idx = list.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select an item first.");
-                return;
+            int logCount = readVarInt(in);
+            db.logs = new ArrayList<>(logCount);
+            for (int i = 0; i < logCount; i++)
+                db.logs.add(in.readUTF());
+
+            int complaintCount = readVarInt(in);
+            db.complaints = new ArrayList<>(complaintCount);
+            for (int i = 0; i < complaintCount; i++) {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                Complaint c = new Complaint(str(in, table), Role.values()[in.readByte()], str(in, table));
+                c.id = id;
+                c.created = new Date(in.readLong());
+                c.status = str(in, table);
+                db.complaints.add(c);
             }
-            FoodItem f = tempFoods.get(idx); // <-- FIX CHÍNH
-            if (currentUser != null) {
-                boolean isAdmin = currentUser.role == Role.ADMIN;
-                boolean isOwner = (currentUser.role == Role.RESTAURANT &&
-                        currentUser.restaurantName != null &&
-                        currentUser.restaurantName.equals(f.restaurantOwner));
-                if (isAdmin || isOwner) {
-                    JButton edit = new JButton("Edit");
-                    edit.addActionListener(ev -> {
-                        // open small edit dialog - name, price, category, image
-                        JTextField nameF = new JTextField(f.name);
-                        JTextField priceF = new JTextField(String.valueOf(f.price));
-                        JTextField ratingF = new JTextField(String.valueOf(f.rating));
-                        String[] catArray;
-                        if (currentUser != null && currentUser.role == Role.RESTAURANT
-                                && !currentUser.myCategories.isEmpty()) {
-                            catArray = currentUser.myCategories.toArray(new String[0]);
-                        } else {
-                            catArray = categories.toArray(new String[0]);
-                        }
-                        JComboBox<String> catBox = new JComboBox<>(catArray);
-                        catBox.setSelectedItem(f.category);
-                        JPanel p = new JPanel(new GridLayout(0, 1));
-                        p.add(new JLabel("Name:"));
-                        p.add(nameF);
-                        p.add(new JLabel("Price:"));
-                        p.add(priceF);
-                        p.add(new JLabel("Rating:"));
-                        p.add(ratingF);
-                        p.add(new JLabel("Category:"));
-                        p.add(catBox);
 
-                        // change image button (optional)
-                        JButton changeImg = new JButton("Change Image");
-                        JLabel imgLbl = new JLabel(f.imagePath == null ? "No image" : f.imagePath);
-                        final String[] newImg = { f.imagePath };
-                        changeImg.addActionListener(ae -> {
-                            JFileChooser chooser = new JFileChooser();
-                            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-                            if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-                                newImg[0] = chooser.getSelectedFile().getAbsolutePath();
-                                imgLbl.setText(chooser.getSelectedFile().getName());
-                            }
-                        });
-                        p.add(changeImg);
-                        p.add(imgLbl);
+            int cartCount = version >= 3 ? readVarInt(in) : 0;
+            db.carts = new HashMap<>(cartCount * 2);
+            for (int i = 0; i < cartCount; i++) {
+                String customer = str(in, table);
+                Cart c = new Cart();
+                for (int k = readVarInt(in); k > 0; k--) {
+                    FoodItem f = foodTable[readVarInt(in)];
+                    String variation = str(in, table);
+                    int qty = readVarInt(in);
+                    int v = f.variationIndex(variation);
+                    if (v != Cart.NO_VARIATION || variation.isEmpty())
+                        c.add(f, v, qty);
+                }
+                if (!c.isEmpty())
+                    db.carts.put(customer, c);
+            }
+            return db;
+        }
 
-                        int r = JOptionPane.showConfirmDialog(frame, p, "Edit Food", JOptionPane.OK_CANCEL_OPTION);
-                        if (r == JOptionPane.OK_OPTION) {
-                            try {
-                                f.name = nameF.getText().trim();
-                                f.price = parsePrice(priceF.getText().trim());
-                                f.rating = Double.parseDouble(ratingF.getText().trim());
-                                f.category = (String) catBox.getSelectedItem();
-                                f.imagePath = newImg[0];
-                                refreshItems(catList.getSelectedValue());
-                            } catch (Exception ex) {
-                                JOptionPane.showMessageDialog(frame, "Invalid input.");
-                            }
-                        }
-                    });
-                    bottom.add(edit);
+        /** Interning string table; index 0 is reserved for null. */
+        private static class Strings {
+            final Map<String, Integer> table = new LinkedHashMap<>();
 
-                    JButton remove = new JButton("Remove");
-                    remove.addActionListener(ev -> {
-                        int confirm = JOptionPane.showConfirmDialog(frame, "Remove " + f.name + "?", "Confirm",
-                                JOptionPane.YES_NO_OPTION);
-                        if (confirm == JOptionPane.YES_OPTION) {
-                            foods.remove(f);
-                            refreshItems(catList.getSelectedValue());
-                            log("Removed food " + f.name);
-                        }
-                    });
-                    bottom.add(remove);
+            void write(DataOutputStream out, String s) throws IOException {
+                if (s == null) {
+                    writeVarInt(out, 0);
+                    return;
                 }
+                Integer idx = table.get(s);
+                if (idx == null) {
+                    idx = table.size();
+                    table.put(s, idx);
+                }
+                writeVarInt(out, idx + 1);
             }
-        });
 
-        // add Edit button to bottom and show dialog
-        bottom.add(editAddr);
+            void writeList(DataOutputStream out, List<String> list) throws IOException {
+                writeVarInt(out, list.size());
+                for (String s : list)
+                    write(out, s);
+            }
+        }
 
-        notePanel.add(bottom, BorderLayout.SOUTH);
-        main.add(notePanel, BorderLayout.SOUTH);
-        dlg.getContentPane().add(main);
-        dlg.setVisible(true);
-    }
+        private static String str(DataInputStream in, String[] table) throws IOException {
+            int idx = readVarInt(in);
+            return idx == 0 ? null : table[idx - 1];
+        }
 
-    private void showDashboard() {
-        if (currentUser == null) {
-            JOptionPane.showMessageDialog(frame, "Login required.");
-            return;
+        private static List<String> strList(DataInputStream in, String[] table) throws IOException {
+            int n = readVarInt(in);
+            List<String> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                list.add(str(in, table));
+            return list;
         }
-        switch (currentUser.role) {
-            case ADMIN:
-                showAdminPanel();
-                break;
-            case OWNER:
-                showOwnerPanel();
-                break;
-            case SHIPPER:
-                showShipperPanel();
-                break;
-            case ADMINISTRATOR:
-                showAdministratorPanel();
-                break;
-            case CUSTOMER_SERVICE:
-                showCustomerServicePanel();
-                break;
-            case CUSTOMER:
-                showCustomerPanel();
-                break;
-            case RESTAURANT:
-                showRestaurantPanel();
-                break;
+
+        private static void writeDoubles(DataOutputStream out, List<Double> list) throws IOException {
+            writeVarInt(out, list.size());
+            for (Double d : list)
+                out.writeDouble(d);
+        }
+
+        private static List<Double> doubles(DataInputStream in) throws IOException {
+            int n = readVarInt(in);
+            List<Double> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                list.add(in.readDouble());
+            return list;
+        }
+
+        static void writeVarInt(DataOutputStream out, int v) throws IOException {
+            while ((v & ~0x7F) != 0) {
+                out.writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.writeByte(v);
+        }
+
+        static int readVarInt(DataInputStream in) throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.readUnsignedByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+            }
+            throw new IOException("Malformed varint");
         }
     }
 
-    private ImageIcon loadScaledImageIcon(String path, int w, int h) {
-        if (path == null || path.isBlank())
-            return null;
+    // -------------------- Write-ahead journal --------------------
+    // Append-only log of mutations. Records are buffered and fsync'ed in batches by a
+    // background flusher, so a crash loses at most FSYNC_INTERVAL_MS of work.
+    // Layout: header [magic][epoch], then records [len][type + payload][crc32].
+    static class Journal {
+        static final byte USER_PUT = 1, USER_REMOVE = 2, FOOD_PUT = 3, FOOD_REMOVE = 4, ORDER_PUT = 5,
+                ORDER_STATUS = 6, ORDER_REMOVE = 7, CHAT = 8, CHAT_CLEAR = 9, COMPLAINT_PUT = 10,
+                ORDER_PUT_PRICED = 11, // ORDER_PUT with item prices and the total in Money minor units
+                CART_LINE = 12, CART_CLEAR = 13, CATEGORY_PUT = 14;
+        static final long FSYNC_INTERVAL_MS = 100;
+        private static final int MAGIC = 0x46444A31; // "FDJ1"
+        private static final int HEADER_BYTES = 12;
+        private static final int MAX_RECORD = 16 * 1024 * 1024;
+
+        interface RecordWriter {
+            void write(DataOutputStream out) throws IOException;
+        }
 
-        // Create cache key with path and dimensions
-        String cacheKey = path + "_" + w + "x" + h;
+        interface RecordHandler {
+            void apply(byte type, DataInputStream in) throws IOException;
+        }
+
+        private final File file;
+        private java.io.FileOutputStream fos;
+        private DataOutputStream out;
+        private boolean dirty = false;
+        private int records = 0;
+        private long validLength = 0; // bytes of the existing file that passed replay
+        private java.util.concurrent.ScheduledExecutorService flusher;
 
-        // Check cache first
-        ImageIcon cached = imageCache.get(cacheKey);
-        if (cached != null) {
-            return cached;
+        Journal(File file) {
+            this.file = file;
         }
 
-        try {
-            File f = new File(path);
-            if (!f.exists() || !f.canRead())
-                return null;
+        /**
+         * Replays all intact records of the given epoch. A torn or corrupt tail is ignored. A
+         * record the handler cannot apply stops the replay there; the whole file is first copied
+         * aside so the records from that one on are not lost when {@link #open} cuts it back.
+         */
+        int replay(long epoch, RecordHandler handler) throws IOException {
+            validLength = 0;
+            if (!file.exists())
+                return 0;
+            int count = 0;
+            long valid = 0;
+            Exception failure = null;
+            try (DataInputStream in = new DataInputStream(
+                    new java.io.BufferedInputStream(new java.io.FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readLong() != epoch)
+                    return 0; // older generation, already folded into the snapshot
+                valid = HEADER_BYTES;
+                while (true) {
+                    int len;
+                    try {
+                        len = in.readInt();
+                    } catch (java.io.EOFException eof) {
+                        break;
+                    }
+                    if (len <= 0 || len > MAX_RECORD)
+                        break;
+                    byte[] body = new byte[len];
+                    in.readFully(body);
+                    int crc = in.readInt();
+                    java.util.zip.CRC32 c = new java.util.zip.CRC32();
+                    c.update(body);
+                    if ((int) c.getValue() != crc)
+                        break;
+                    try {
+                        handler.apply(body[0], new DataInputStream(new java.io.ByteArrayInputStream(body, 1, len - 1)));
+                    } catch (IOException | RuntimeException ex) {
+                        failure = ex;
+                        break;
+                    }
+                    valid += 8 + len;
+                    count++;
+                }
+            } catch (java.io.EOFException torn) {
+                // partially written record from a crash
+            } finally {
+                validLength = valid;
+                records = count;
+            }
+            if (failure != null) {
+                File aside = new File(file.getPath() + "." + epoch + "-" + valid + ".unreplayed");
+                java.nio.file.Files.copy(file.toPath(), aside.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Journal replay stopped at byte " + valid + " (" + failure + "); kept a copy in "
+                        + aside.getName());
+            }
+            return count;
+        }
 
-            // Use ImageIO for better error handling
-            Image img = javax.imageio.ImageIO.read(f);
-            if (img == null)
-                return null;
+        /** Opens for appending, keeping the records accepted by the last replay. */
+        synchronized void open(long epoch) throws IOException {
+            if (validLength >= HEADER_BYTES) {
+                try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw")) {
+                    raf.setLength(validLength);
+                }
+                fos = new java.io.FileOutputStream(file, true);
+                out = new DataOutputStream(new java.io.BufferedOutputStream(fos, 64 * 1024));
+            } else {
+                fos = new java.io.FileOutputStream(file);
+                out = new DataOutputStream(new java.io.BufferedOutputStream(fos, 64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeLong(epoch);
+                dirty = true;
+                records = 0;
+            }
+            if (flusher == null) {
+                flusher = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "journal-fsync");
+                    t.setDaemon(true);
+                    return t;
+                });
+                flusher.scheduleWithFixedDelay(this::sync, FSYNC_INTERVAL_MS, FSYNC_INTERVAL_MS,
+                        java.util.concurrent.TimeUnit.MILLISECONDS);
+            }
+        }
 
-            Image scaled = img.getScaledInstance(w, h, Image.SCALE_FAST);
-            ImageIcon icon = new ImageIcon(scaled);
+        /** Starts a new generation after a checkpoint; the previous records are discarded. */
+        synchronized void restart(long epoch) throws IOException {
+            closeStream();
+            validLength = 0;
+            open(epoch);
+            sync();
+        }
 
-            // Cache the scaled image
-            imageCache.put(cacheKey, icon);
-            return icon;
-        } catch (Exception ex) {
-            // Silently ignore image loading errors
-            return null;
+        void append(byte type, RecordWriter writer) {
+            java.io.ByteArrayOutputStream bos = new java.io.ByteArrayOutputStream(128);
+            try {
+                DataOutputStream d = new DataOutputStream(bos);
+                d.writeByte(type);
+                writer.write(d);
+            } catch (IOException ex) {
+                throw new java.io.UncheckedIOException(ex);
+            }
+            byte[] body = bos.toByteArray();
+            java.util.zip.CRC32 c = new java.util.zip.CRC32();
+            c.update(body);
+            synchronized (this) {
+                if (out == null)
+                    return;
+                try {
+                    out.writeInt(body.length);
+                    out.write(body);
+                    out.writeInt((int) c.getValue());
+                    dirty = true;
+                    records++;
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
         }
-    }
 
-    // Admin: add/remove categories & foods, and manage users
-    private void showAdminPanel() {
-        JDialog dlg = new JDialog(frame, "Admin Panel", true);
-        dlg.setSize(900, 600);
-        dlg.setLocationRelativeTo(frame);
+        synchronized int recordCount() {
+            return records;
+        }
 
-        JTabbedPane tabbedPane = new JTabbedPane();
+        /** Group commit: one flush + fsync covers every record appended since the last call. */
+        void sync() {
+            java.io.FileOutputStream target;
+            synchronized (this) {
+                if (!dirty || out == null)
+                    return;
+                try {
+                    out.flush();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    return;
+                }
+                dirty = false;
+                target = fos;
+            }
+            try {
+                target.getFD().sync();
+            } catch (IOException ex) {
+                // stream was closed by a concurrent restart; its data was synced there
+            }
+        }
 
-        // Tab 1: Menu Management
-        JPanel menuPanel = createMenuManagementPanel(dlg);
-        tabbedPane.addTab("Menu Management", menuPanel);
+        synchronized void close() {
+            if (flusher != null) {
+                flusher.shutdown();
+                flusher = null;
+            }
+            closeStream();
+        }
 
-        // Tab 2: User Management
-        JPanel userPanel = createUserManagementPanel(dlg);
-        tabbedPane.addTab("User Management", userPanel);
+        private synchronized void closeStream() {
+            if (out == null)
+                return;
+            try {
+                out.flush();
+                fos.getFD().sync();
+                out.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            out = null;
+            fos = null;
+            dirty = false;
+        }
 
-        // Tab 3: Order Management
-        JPanel orderPanel = createAdminOrderManagementPanel(dlg);
-        tabbedPane.addTab("Order Management", orderPanel);
+        // ---- record encoding ----
+        static void writeStr(DataOutputStream out, String s) throws IOException {
+            if (s == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] b = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
 
-        dlg.getContentPane().add(tabbedPane);
-        dlg.setVisible(true);
-    }
+        static String readStr(DataInputStream in) throws IOException {
+            int n = in.readInt();
+            if (n < 0)
+                return null;
+            byte[] b = new byte[n];
+            in.readFully(b);
+            return new String(b, java.nio.charset.StandardCharsets.UTF_8);
+        }
 
-    private JPanel createMenuManagementPanel(JDialog dlg) {
-        JPanel main = new JPanel(new BorderLayout());
+        static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+        }
 
-        // Left: list categories
-        DefaultListModel<String> catModel = new DefaultListModel<>();
-        categories.forEach(catModel::addElement);
-        JList<String> cats = new JList<>(catModel);
-        cats.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        main.add(new JScrollPane(cats), BorderLayout.WEST);
+        static UUID readUuid(DataInputStream in) throws IOException {
+            return new UUID(in.readLong(), in.readLong());
+        }
 
-        // Right: foods list with add/remove
-        DefaultListModel<String> foodModel = new DefaultListModel<>();
-        foods.forEach(f -> foodModel.addElement(f.category + " - " + f.name + " (VND " + formatPrice(f.price) + ")"));
-        JList<String> foodList = new JList<>(foodModel);
-        main.add(new JScrollPane(foodList), BorderLayout.CENTER);
+        static void writeStrList(DataOutputStream out, List<String> list) throws IOException {
+            out.writeInt(list.size());
+            for (String s : list)
+                writeStr(out, s);
+        }
 
-        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        JButton addCat = new JButton("Add Category");
-        addCat.addActionListener(e -> {
-            String name = JOptionPane.showInputDialog(dlg, "Category name:");
-            if (name != null && !name.isBlank()) {
-                categories.add(name);
-                catModel.addElement(name);
-                catListModel.addElement(name); // update main UI
-                log("Admin added category: " + name);
-            }
-        });
-        bottom.add(addCat);
+        static List<String> readStrList(DataInputStream in) throws IOException {
+            int n = in.readInt();
+            List<String> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                list.add(readStr(in));
+            return list;
+        }
 
-        JButton addFood = new JButton("Add Food");
-        addFood.addActionListener(e -> {
-            JTextField nameF = new JTextField();
-            JTextArea descF = new JTextArea(3, 20);
-            JScrollPane descScroll = new JScrollPane(descF);
-            JTextField priceF = new JTextField();
-            JTextField ratingF = new JTextField("4.0");
-            JComboBox<String> catBox = new JComboBox<>(categories.toArray(new String[0]));
-            JPanel p = new JPanel(new GridLayout(0, 1));
-            p.add(new JLabel("Name:"));
-            p.add(nameF);
-            p.add(new JLabel("Description:"));
-            p.add(descScroll);
-            p.add(new JLabel("Price:"));
-            p.add(priceF);
-            p.add(new JLabel("Rating (0..5):"));
-            p.add(ratingF);
-            p.add(new JLabel("Category:"));
-            p.add(catBox);
-            JButton chooseImg = new JButton("Choose Image");
-            JLabel chosenLbl = new JLabel("No image selected");
-            final String[] chosenPath = { null };
+        static void writeDoubleList(DataOutputStream out, List<Double> list) throws IOException {
+            out.writeInt(list.size());
+            for (Double d : list)
+                out.writeDouble(d);
+        }
 
-            chooseImg.addActionListener(ae2 -> {
-                JFileChooser chooser = new JFileChooser();
-                chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-                if (chooser.showOpenDialog(dlg) == JFileChooser.APPROVE_OPTION) {
-                    chosenPath[0] = chooser.getSelectedFile().getAbsolutePath();
-                    chosenLbl.setText(chooser.getSelectedFile().getName());
-                }
-            });
+        static List<Double> readDoubleList(DataInputStream in) throws IOException {
+            int n = in.readInt();
+            List<Double> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                list.add(in.readDouble());
+            return list;
+        }
 
-            p.add(new JLabel("Food Image:"));
-            p.add(chooseImg);
-            p.add(chosenLbl);
-            refreshRestaurantList();
+        static void writeUser(DataOutputStream out, User u) throws IOException {
+            writeStr(out, u.username);
+            writeStr(out, u.password);
+            out.writeByte(u.role.ordinal());
+            writeStr(out, u.address);
+            writeStr(out, u.phone);
+            writeStr(out, u.profileImagePath);
+            writeStr(out, u.restaurantName);
+            writeStr(out, u.shipperName);
+            writeStrList(out, u.myCategories);
+            out.writeBoolean(u.isOpen);
+            writeDoubleList(out, u.shipperRatings);
+            writeStrList(out, u.shipperComments);
+        }
 
-            if (JOptionPane.showConfirmDialog(dlg, p, "Add Food",
-                    JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
-                try {
-                    String name = nameF.getText().trim();
-                    String desc = descF.getText().trim();
-                    double pr = parsePrice(priceF.getText().trim());
-                    double r = Double.parseDouble(ratingF.getText().trim());
-                    String c = (String) catBox.getSelectedItem();
-                    FoodItem nf = new FoodItem(name, desc, pr, r, randomPastelColor(), c);
-                    nf.imagePath = chosenPath[0]; // set selected image path (may be null)
-                    foods.add(nf);
-                    foodModel.addElement(nf.category + " - " + nf.name + " (VND " + formatPrice(nf.price) + ")");
-                    refreshItems(catList.getSelectedValue());
-                    log("Admin added food: " + nf.name + (nf.imagePath == null ? "" : " (with image)"));
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(dlg, "Invalid input.");
-                }
-            }
-        });
-        bottom.add(addFood);
+        static User readUser(DataInputStream in) throws IOException {
+            User u = new User(readStr(in), readStr(in), Role.values()[in.readByte()]);
+            u.address = readStr(in);
+            u.phone = readStr(in);
+            u.profileImagePath = readStr(in);
+            u.restaurantName = readStr(in);
+            u.shipperName = readStr(in);
+            u.myCategories = readStrList(in);
+            u.isOpen = in.readBoolean();
+            u.shipperRatings = readDoubleList(in);
+            u.shipperComments = readStrList(in);
+            return u;
+        }
 
-        JButton removeFood = new JButton("Remove Selected Food");
-        removeFood.addActionListener(e -> {
-            int idx = foodList.getSelectedIndex();
-            if (idx >= 0) {
-                FoodItem f = foods.get(idx);
-                int c = JOptionPane.showConfirmDialog(dlg, "Remove " + f.name + "?", "Confirm",
-                        JOptionPane.YES_NO_OPTION);
-                if (c == JOptionPane.YES_OPTION) {
-                    foods.remove(f);
-                    foodModel.remove(idx);
-                    refreshItems(catList.getSelectedValue());
-                    log("Admin removed food: " + f.name);
-                }
+        static void writeFood(DataOutputStream out, FoodItem f) throws IOException {
+            writeUuid(out, f.id);
+            writeStr(out, f.name);
+            writeStr(out, f.description);
+            out.writeDouble(Money.toVnd(f.priceMinor)); // prices stay VND doubles here, exact both ways
+            out.writeDouble(f.rating);
+            out.writeInt(f.colorPreview == null ? 0xFFFFFF : f.colorPreview.getRGB());
+            writeStr(out, f.category);
+            writeStr(out, f.imagePath);
+            writeStr(out, f.restaurantOwner);
+            out.writeBoolean(f.inStock);
+            out.writeInt(f.variations.size());
+            for (int i = 0; i < f.variations.size(); i++) {
+                writeStr(out, f.variations.get(i));
+                out.writeDouble(Money.toVnd(f.variationPrice(i)));
             }
-        });
-        bottom.add(removeFood);
-        refreshRestaurantList();
+            writeDoubleList(out, f.ratings);
+            writeStrList(out, f.comments);
+        }
 
-        JButton changeImg = new JButton("Change Image for Selected");
-        changeImg.addActionListener(ev -> {
-            int idx = foodList.getSelectedIndex();
-            if (idx < 0)
-                return;
-            FoodItem f = foods.get(idx);
-            JFileChooser chooser = new JFileChooser();
-            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-            if (chooser.showOpenDialog(dlg) == JFileChooser.APPROVE_OPTION) {
-                f.imagePath = chooser.getSelectedFile().getAbsolutePath();
-                log("Admin changed image for " + f.name);
-                refreshItems(catList.getSelectedValue());
-                JOptionPane.showMessageDialog(dlg, "Image updated for " + f.name);
+        static FoodItem readFood(DataInputStream in) throws IOException {
+            UUID id = readUuid(in);
+            FoodItem f = new FoodItem(readStr(in), readStr(in), Money.of(in.readDouble()), in.readDouble(),
+                    new Color(in.readInt()), readStr(in));
+            f.id = id;
+            f.imagePath = readStr(in);
+            f.restaurantOwner = readStr(in);
+            f.inStock = in.readBoolean();
+            int nv = in.readInt();
+            for (int i = 0; i < nv; i++)
+                f.addVariation(readStr(in), Money.of(in.readDouble()));
+            f.ratings = readDoubleList(in);
+            f.comments = readStrList(in);
+            return f;
+        }
+
+        // orders refer to their customer by username and to foods by id; written as ORDER_PUT_PRICED
+        static void writeOrder(DataOutputStream out, Order o) throws IOException {
+            writeUuid(out, o.id);
+            writeStr(out, o.customer == null ? null : o.customer.username);
+            out.writeInt(o.items.size());
+            for (OrderItem it : o.items) {
+                writeUuid(out, it.food.id);
+                out.writeInt(it.qty);
+                writeStr(out, it.variation);
+                out.writeLong(it.unitMinor);
             }
-        });
-        bottom.add(changeImg);
+            OrderStatus status = o.status;
+            out.writeByte(status.ordinal());
+            out.writeLong(o.totalMinor);
+            writeStr(out, o.addressSnapshot);
+            writeStr(out, o.phoneSnapshot);
+            writeStr(out, o.complaint);
+            writeStr(out, o.note);
+            writeStr(out, o.shipperAt(status));
+            out.writeLong(o.created.getTime());
+            out.writeInt(o.foodRatings.size());
+            for (Map.Entry<FoodItem, Double> e : o.foodRatings.entrySet()) {
+                writeUuid(out, e.getKey().id);
+                out.writeDouble(e.getValue());
+                writeStr(out, o.foodComments.get(e.getKey()));
+            }
+            out.writeBoolean(o.shipperRating != null);
+            if (o.shipperRating != null)
+                out.writeDouble(o.shipperRating);
+            writeStr(out, o.shipperComment);
+        }
 
-        main.add(bottom, BorderLayout.SOUTH);
-        return main;
-    }
+        static void writeCartLine(DataOutputStream out, String customer, FoodItem f, String variation, int qty)
+                throws IOException {
+            writeStr(out, customer);
+            writeUuid(out, f.id);
+            writeStr(out, variation);
+            out.writeInt(qty);
+        }
 
-    private JPanel createUserManagementPanel(JDialog dlg) {
-        JPanel main = new JPanel(new BorderLayout());
+        static void writeOrderStatus(DataOutputStream out, Order o) throws IOException {
+            writeUuid(out, o.id);
+            OrderStatus status = o.status;
+            out.writeByte(status.ordinal());
+            writeStr(out, o.shipperAt(status));
+        }
 
-        // List of users
-        DefaultListModel<String> userModel = new DefaultListModel<>();
-        users.values().forEach(u -> userModel.addElement(u.username + " - " + u.role));
-        JList<String> userList = new JList<>(userModel);
-        userList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        main.add(new JScrollPane(userList), BorderLayout.CENTER);
+        static void writeMessage(DataOutputStream out, Order o, Message m) throws IOException {
+            writeUuid(out, o.id);
+            writeStr(out, m.sender);
+            writeStr(out, m.text);
+            out.writeLong(m.time.getTime());
+        }
 
-        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        static void writeComplaint(DataOutputStream out, Complaint c) throws IOException {
+            writeUuid(out, c.id);
+            writeStr(out, c.author);
+            out.writeByte(c.authorRole.ordinal());
+            writeStr(out, c.message);
+            out.writeLong(c.created.getTime());
+            writeStr(out, c.status);
+        }
+    }
 
-        JButton addUser = new JButton("Add User");
-        addUser.addActionListener(e -> showAddEditUserDialog(dlg, null, userModel));
-        bottom.add(addUser);
+    // -------------------- Thumbnail cache --------------------
+    // Pre-scaled images on disk so a cold start does not re-decode full-size photos. One file per
+    // (path, size), named from a hash of the path; the header records the source file's mtime and
+    // length, and a mismatch means the thumbnail is stale and gets rebuilt. Pixels are stored raw,
+    // which decodes with a single bulk read.
+    // File: [MAGIC][mtime][length][w][h][alpha][w*h ints]
+    static class ThumbnailCache {
+        private static final int MAGIC = 0x46445448; // "FDTH"
+        private final File dir;
+
+        ThumbnailCache(File dir) {
+            this.dir = dir;
+        }
 
-        JButton editUser = new JButton("Edit Selected User");
-        editUser.addActionListener(e -> {
-            int idx = userList.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select a user first.");
-                return;
-            }
-            String selected = userModel.get(idx);
-            String uname = selected.split(" - ")[0];
-            User u = users.get(uname);
-            if (u != null) {
-                showAddEditUserDialog(dlg, u, userModel);
+        /** Returns the cached thumbnail if it was made from the file as it is now, else null. */
+        java.awt.image.BufferedImage read(File source, int w, int h) {
+            File f = fileFor(source.getAbsolutePath(), w, h);
+            if (!f.isFile())
+                return null;
+            try (DataInputStream in = new DataInputStream(
+                    new java.io.BufferedInputStream(new java.io.FileInputStream(f), 64 * 1024))) {
+                if (in.readInt() != MAGIC || in.readLong() != source.lastModified() || in.readLong() != source.length()
+                        || in.readInt() != w || in.readInt() != h)
+                    return null;
+                boolean alpha = in.readBoolean();
+                byte[] raw = new byte[w * h * 4];
+                in.readFully(raw);
+                java.awt.image.BufferedImage img = new java.awt.image.BufferedImage(w, h,
+                        alpha ? java.awt.image.BufferedImage.TYPE_INT_ARGB : java.awt.image.BufferedImage.TYPE_INT_RGB);
+                int[] px = ((java.awt.image.DataBufferInt) img.getRaster().getDataBuffer()).getData();
+                java.nio.ByteBuffer.wrap(raw).asIntBuffer().get(px);
+                return img;
+            } catch (IOException | RuntimeException ex) {
+                return null; // unreadable or truncated: rebuild from the source
             }
-        });
-        bottom.add(editUser);
+        }
 
-        JButton deleteUser = new JButton("Delete Selected User");
-        deleteUser.addActionListener(e -> {
-            int idx = userList.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select a user first.");
+        void write(File source, java.awt.image.BufferedImage img) {
+            int w = img.getWidth(), h = img.getHeight();
+            if (!(img.getRaster().getDataBuffer() instanceof java.awt.image.DataBufferInt))
                 return;
-            }
-            String selected = userModel.get(idx);
-            String uname = selected.split(" - ")[0];
-            User u = users.get(uname);
-            if (u != null) {
-                int confirm = JOptionPane.showConfirmDialog(dlg, "Delete user " + uname + "?", "Confirm",
-                        JOptionPane.YES_NO_OPTION);
-                if (confirm == JOptionPane.YES_OPTION) {
-                    users.remove(uname);
-                    logs.removeIf(entry -> entry.contains(uname));
-                    userModel.remove(idx);
-                    log("Admin deleted user: " + uname);
-                    JOptionPane.showMessageDialog(dlg, "User deleted.");
+            int[] px = ((java.awt.image.DataBufferInt) img.getRaster().getDataBuffer()).getData();
+            File f = fileFor(source.getAbsolutePath(), w, h);
+            File tmp = new File(f.getPath() + ".tmp" + Thread.currentThread().getId());
+            try {
+                java.nio.file.Files.createDirectories(dir.toPath());
+                try (DataOutputStream out = new DataOutputStream(
+                        new java.io.BufferedOutputStream(new java.io.FileOutputStream(tmp), 64 * 1024))) {
+                    out.writeInt(MAGIC);
+                    out.writeLong(source.lastModified());
+                    out.writeLong(source.length());
+                    out.writeInt(w);
+                    out.writeInt(h);
+                    out.writeBoolean(img.getColorModel().hasAlpha());
+                    java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(px.length * 4);
+                    buf.asIntBuffer().put(px);
+                    out.write(buf.array());
                 }
+                java.nio.file.Files.move(tmp.toPath(), f.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                        java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                tmp.delete(); // the cache is best effort
             }
-        });
-        bottom.add(deleteUser);
+        }
 
-        main.add(bottom, BorderLayout.SOUTH);
-        return main;
+        /** Deletes every size cached for one source path. */
+        void invalidate(String path) {
+            String prefix = hash(new File(path).getAbsolutePath()) + "_";
+            File[] files = dir.listFiles((d, name) -> name.startsWith(prefix));
+            if (files != null)
+                for (File f : files)
+                    f.delete();
+        }
+
+        private File fileFor(String absolutePath, int w, int h) {
+            return new File(dir, hash(absolutePath) + "_" + w + "x" + h + ".thumb");
+        }
+
+        private static String hash(String s) {
+            try {
+                byte[] d = java.security.MessageDigest.getInstance("SHA-1")
+                        .digest(s.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < 10; i++)
+                    sb.append(String.format("%02x", d[i]));
+                return sb.toString();
+            } catch (java.security.NoSuchAlgorithmException ex) {
+                return Integer.toHexString(s.hashCode());
+            }
+        }
     }
 
-    private void showAddEditUserDialog(JDialog parent, User editingUser, DefaultListModel<String> userModel) {
-        JPanel p = new JPanel(new GridBagLayout());
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.insets = new Insets(4, 4, 4, 4);
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        gbc.gridx = 0;
-        gbc.gridy = 0;
+    // -------------------- Image service --------------------
+    // Decodes and scales images on a small daemon pool, never on the EDT. Scaled results live in
+    // an LRU bounded by pixel bytes; concurrent requests for the same path and size share one
+    // decode, and callers are called back on the EDT once the image is ready.
+    static class ImageService {
+        private static final Metrics.Histogram DECODE = Metrics.histogram("image.decode");
+        private static final Metrics.Counter HITS = Metrics.counter("image.cache.hit");
+        private static final Metrics.Counter MISSES = Metrics.counter("image.cache.miss");
+        private static final Metrics.Counter THUMB_HITS = Metrics.counter("image.thumbnail.hit");
+        private final long maxBytes;
+        private long bytes = 0;
+        private final LinkedHashMap<String, ImageIcon> cache = new LinkedHashMap<>(64, 0.75f, true);
+        private final Set<String> failed = new HashSet<>(); // unreadable paths; not retried on every paint
+        private final Map<String, List<Runnable>> inFlight = new HashMap<>(); // key -> EDT callbacks
+        private final java.util.concurrent.ExecutorService pool;
+        private final ThumbnailCache thumbs;
+
+        ImageService(int threads, long maxBytes, ThumbnailCache thumbs) {
+            this.maxBytes = maxBytes;
+            this.thumbs = thumbs;
+            this.pool = java.util.concurrent.Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "image-decode");
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            });
+        }
 
-        // Username
-        p.add(new JLabel("Username:"), gbc);
-        gbc.gridx = 1;
-        JTextField userFld = new JTextField(editingUser != null ? editingUser.username : "", 16);
-        if (editingUser != null) userFld.setEditable(false); // can't change username
-        p.add(userFld, gbc);
+        private static String key(String path, int w, int h) {
+            return path + "_" + w + "x" + h;
+        }
 
-        // Password
-        gbc.gridx = 0;
-        gbc.gridy++;
-        p.add(new JLabel("Password:"), gbc);
-        gbc.gridx = 1;
-        JTextField passFld = new JTextField(editingUser != null ? editingUser.password : "", 16);
-        p.add(passFld, gbc);
+        /**
+         * Returns the scaled icon if it is cached; otherwise queues a decode (once per key) and
+         * returns null so the caller can show its placeholder. {@code onReady} runs on the EDT
+         * when the decode produced an image.
+         */
+        ImageIcon request(String path, int w, int h, Runnable onReady) {
+            if (path == null || path.isBlank())
+                return null;
+            String key = key(path, w, h);
+            synchronized (this) {
+                ImageIcon cached = cache.get(key);
+                if (cached != null || failed.contains(key)) {
+                    HITS.inc();
+                    return cached;
+                }
+                MISSES.inc();
+                List<Runnable> waiters = inFlight.get(key);
+                if (waiters != null) {
+                    if (onReady != null)
+                        waiters.add(onReady);
+                    return null;
+                }
+                waiters = new ArrayList<>();
+                if (onReady != null)
+                    waiters.add(onReady);
+                inFlight.put(key, waiters);
+            }
+            pool.execute(() -> decode(path, w, h, key));
+            return null;
+        }
 
-        // Role
-        gbc.gridx = 0;
-        gbc.gridy++;
-        p.add(new JLabel("Role:"), gbc);
-        gbc.gridx = 1;
-        JComboBox<String> roleBox = new JComboBox<>(new String[] { "CUSTOMER", "SHIPPER", "RESTAURANT", "ADMIN", "OWNER", "ADMINISTRATOR", "CUSTOMER_SERVICE" });
-        if (editingUser != null) roleBox.setSelectedItem(editingUser.role.toString());
-        p.add(roleBox, gbc);
+        /** Drops every cached size of one path, in memory and on disk, after its image was changed. */
+        void invalidate(String path) {
+            if (path == null || path.isBlank())
+                return;
+            String prefix = path + "_";
+            synchronized (this) {
+                for (Iterator<Map.Entry<String, ImageIcon>> it = cache.entrySet().iterator(); it.hasNext();) {
+                    Map.Entry<String, ImageIcon> e = it.next();
+                    if (e.getKey().startsWith(prefix)) {
+                        bytes -= sizeOf(e.getValue());
+                        it.remove();
+                    }
+                }
+                failed.removeIf(k -> k.startsWith(prefix));
+            }
+            pool.execute(() -> thumbs.invalidate(path));
+        }
 
-        // Address
-        gbc.gridx = 0;
-        gbc.gridy++;
-        p.add(new JLabel("Address:"), gbc);
-        gbc.gridx = 1;
-        JTextField addrFld = new JTextField(editingUser != null ? editingUser.address : "", 16);
-        p.add(addrFld, gbc);
+        private void decode(String path, int w, int h, String key) {
+            long t0 = System.nanoTime();
+            ImageIcon icon = null;
+            try {
+                File f = new File(path);
+                if (f.exists() && f.canRead()) {
+                    // thumbnail on disk first; full decode only when it is missing or stale
+                    java.awt.image.BufferedImage scaled = thumbs.read(f, w, h);
+                    if (scaled != null)
+                        THUMB_HITS.inc();
+                    else {
+                        java.awt.image.BufferedImage img = javax.imageio.ImageIO.read(f);
+                        if (img != null) {
+                            scaled = scale(img, w, h);
+                            thumbs.write(f, scaled);
+                        }
+                    }
+                    if (scaled != null)
+                        icon = new ImageIcon(scaled);
+                }
+            } catch (Exception ex) {
+                // Silently ignore image loading errors; the placeholder stays
+            }
+            DECODE.since(t0);
+            List<Runnable> waiters;
+            synchronized (this) {
+                waiters = inFlight.remove(key);
+                if (icon == null) {
+                    failed.add(key);
+                } else {
+                    cache.put(key, icon);
+                    bytes += sizeOf(icon);
+                    evict();
+                }
+            }
+            if (icon != null && waiters != null && !waiters.isEmpty())
+                SwingUtilities.invokeLater(() -> waiters.forEach(Runnable::run));
+        }
 
-        // Phone
-        gbc.gridx = 0;
-        gbc.gridy++;
-        p.add(new JLabel("Phone:"), gbc);
-        gbc.gridx = 1;
-        JTextField phoneFld = new JTextField(editingUser != null ? editingUser.phone : "", 16);
-        p.add(phoneFld, gbc);
+        /** Scales once into a compatible buffer so painting never rescales. */
+        static java.awt.image.BufferedImage scale(java.awt.image.BufferedImage src, int w, int h) {
+            java.awt.image.BufferedImage dst = new java.awt.image.BufferedImage(w, h,
+                    src.getColorModel().hasAlpha() ? java.awt.image.BufferedImage.TYPE_INT_ARGB
+                            : java.awt.image.BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = dst.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(src, 0, 0, w, h, null);
+            g.dispose();
+            return dst;
+        }
 
-        // Profile Image
-        gbc.gridx = 0;
-        gbc.gridy++;
-        p.add(new JLabel("Profile Image:"), gbc);
-        gbc.gridx = 1;
-        JButton chooseImgBtn = new JButton("Choose Image");
-        JLabel imgLbl = new JLabel(editingUser != null && editingUser.profileImagePath != null ? editingUser.profileImagePath : "No image");
-        final String[] imgPath = { editingUser != null ? editingUser.profileImagePath : null };
-        chooseImgBtn.addActionListener(ae -> {
-            JFileChooser chooser = new JFileChooser();
-            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-            if (chooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
-                imgPath[0] = chooser.getSelectedFile().getAbsolutePath();
-                imgLbl.setText(chooser.getSelectedFile().getName());
+        private void evict() {
+            Iterator<Map.Entry<String, ImageIcon>> it = cache.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= sizeOf(it.next().getValue());
+                it.remove();
             }
-        });
-        JPanel imgPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        imgPanel.add(chooseImgBtn);
-        imgPanel.add(imgLbl);
-        p.add(imgPanel, gbc);
+        }
 
-        // Restaurant Name (if role is RESTAURANT)
-        gbc.gridx = 0;
-        gbc.gridy++;
-        JLabel restLbl = new JLabel("Restaurant Name:");
-        JTextField restFld = new JTextField(editingUser != null ? editingUser.restaurantName : "", 16);
-        restLbl.setVisible(false);
-        restFld.setVisible(false);
-        p.add(restLbl, gbc);
-        gbc.gridx = 1;
-        p.add(restFld, gbc);
+        private static long sizeOf(ImageIcon icon) {
+            return 4L * Math.max(1, icon.getIconWidth()) * Math.max(1, icon.getIconHeight());
+        }
+    }
 
-        // Show/hide restaurant field based on role
-        roleBox.addActionListener(ae -> {
-            String sel = (String) roleBox.getSelectedItem();
-            boolean isRest = "RESTAURANT".equals(sel);
-            restLbl.setVisible(isRest);
-            restFld.setVisible(isRest);
-            p.revalidate();
-            p.repaint();
-        });
-        if (editingUser != null && editingUser.role == Role.RESTAURANT) {
-            restLbl.setVisible(true);
-            restFld.setVisible(true);
+    // -------------------- User index --------------------
+    // Role buckets plus restaurant name -> RESTAURANT user, maintained next to `users` so that
+    // open/closed checks and avatar lookups on cards and list cells do not scan every account.
+    static class UserIndex {
+        private final Map<Role, Map<String, User>> byRole = new EnumMap<>(Role.class);
+        private final Map<String, User> byRestaurant = new HashMap<>();
+        private final Map<String, Object[]> keysOf = new HashMap<>(); // username -> {role, restaurantName} as filed
+
+        void rebuild(Collection<User> users) {
+            byRole.clear();
+            byRestaurant.clear();
+            keysOf.clear();
+            for (User u : users)
+                put(u);
         }
 
-        int res = JOptionPane.showConfirmDialog(parent, p, editingUser == null ? "Add User" : "Edit User",
-                JOptionPane.OK_CANCEL_OPTION);
-        if (res == JOptionPane.OK_OPTION) {
-            String uname = userFld.getText().trim();
-            String pass = passFld.getText();
-            String roleStr = (String) roleBox.getSelectedItem();
-            Role role = Role.valueOf(roleStr);
-            String addr = addrFld.getText().trim();
-            String phone = phoneFld.getText().trim();
+        /** Files a new user or re-files one whose role or restaurant name was edited. */
+        void put(User u) {
+            Object[] old = keysOf.get(u.username);
+            if (old != null && old[0] == u.role && Objects.equals(old[1], u.restaurantName)
+                    && byRole.get(u.role).get(u.username) == u)
+                return;
+            if (old != null)
+                unfile(u.username, old);
+            keysOf.put(u.username, new Object[] { u.role, u.restaurantName });
+            byRole.computeIfAbsent(u.role, k -> new LinkedHashMap<>()).put(u.username, u);
+            if (u.role == Role.RESTAURANT && u.restaurantName != null)
+                byRestaurant.putIfAbsent(u.restaurantName, u);
+        }
 
-            if (editingUser == null) {
-                // Add new user
-                if (uname.isEmpty() || pass.isEmpty()) {
-                    JOptionPane.showMessageDialog(parent, "Username and password required.");
-                    return;
-                }
-                if (users.containsKey(uname)) {
-                    JOptionPane.showMessageDialog(parent, "Username already taken.");
-                    return;
-                }
-                User nu = new User(uname, pass, role);
-                nu.address = addr;
-                nu.phone = phone;
-                nu.profileImagePath = imgPath[0];
-                if (role == Role.RESTAURANT) {
-                    nu.restaurantName = restFld.getText().trim();
-                    nu.myCategories.add("All");
-                    nu.myCategories.add("Main");
-                }
-                users.put(uname, nu);
-                userModel.addElement(nu.username + " - " + nu.role);
-                log("Admin added user: " + uname + " role=" + role);
-                JOptionPane.showMessageDialog(parent, "User added.");
-            } else {
-                // Edit existing user
-                editingUser.password = pass;
-                editingUser.role = role;
-                editingUser.address = addr;
-                editingUser.phone = phone;
-                editingUser.profileImagePath = imgPath[0];
-                if (role == Role.RESTAURANT) {
-                    editingUser.restaurantName = restFld.getText().trim();
-                } else {
-                    editingUser.restaurantName = null;
-                    editingUser.myCategories.clear();
+        void remove(String username) {
+            Object[] old = keysOf.remove(username);
+            if (old != null)
+                unfile(username, old);
+        }
+
+        private void unfile(String username, Object[] keys) {
+            Map<String, User> bucket = byRole.get(keys[0]);
+            User u = bucket == null ? null : bucket.remove(username);
+            String name = (String) keys[1];
+            if (name != null && u != null && byRestaurant.get(name) == u) {
+                byRestaurant.remove(name);
+                // two accounts may share a restaurant name; hand the slot to the other one
+                for (User other : withRole(Role.RESTAURANT)) {
+                    if (name.equals(other.restaurantName)) {
+                        byRestaurant.put(name, other);
+                        break;
+                    }
                 }
-                userModel.set(userModel.indexOf(editingUser.username + " - " + editingUser.role), editingUser.username + " - " + editingUser.role);
-                log("Admin edited user: " + editingUser.username);
-                JOptionPane.showMessageDialog(parent, "User updated.");
             }
         }
+
+        User restaurant(String restaurantName) {
+            return restaurantName == null ? null : byRestaurant.get(restaurantName);
+        }
+
+        Collection<User> withRole(Role role) {
+            Map<String, User> bucket = byRole.get(role);
+            return bucket == null ? Collections.emptyList() : Collections.unmodifiableCollection(bucket.values());
+        }
     }
 
-    private JPanel createAdminOrderManagementPanel(JDialog dlg) {
-        JPanel main = new JPanel(new BorderLayout());
+    // -------------------- Order index --------------------
+    // Active orders by id, customer, assigned shipper, restaurant and status. Buckets keep the
+    // order in which orders were first indexed (checkout order), even after an order is re-filed
+    // because its status or shipper changed. Settled orders leave the index when archived.
+    static class OrderIndex {
+        private final Map<UUID, Order> byId = new HashMap<>();
+        private final Map<UUID, Long> seqOf = new HashMap<>();
+        private final Map<UUID, Keys> keysOf = new HashMap<>();
+        private final TreeMap<Long, Order> all = new TreeMap<>();
+        private final Map<String, TreeMap<Long, Order>> byCustomer = new HashMap<>();
+        private final Map<String, TreeMap<Long, Order>> byShipper = new HashMap<>();
+        private final Map<String, TreeMap<Long, Order>> byRestaurant = new HashMap<>();
+        private final Map<OrderStatus, TreeMap<Long, Order>> byStatus = new EnumMap<>(OrderStatus.class);
+        private long nextSeq = 0;
+
+        /** The keys an order was filed under, so it can be unfiled after the order itself changed. */
+        private static final class Keys {
+            String customer;
+            String shipper;
+            Set<String> restaurants;
+            OrderStatus status;
+        }
 
-        // List of all orders
-        DefaultListModel<String> orderModel = new DefaultListModel<>();
-        orders.forEach(order -> orderModel.addElement(formatOrderLine(order)));
-        JList<String> orderList = new JList<>(orderModel);
-        orderList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        main.add(new JScrollPane(orderList), BorderLayout.CENTER);
+        void rebuild(Collection<Order> orders) {
+            byId.clear();
+            seqOf.clear();
+            keysOf.clear();
+            all.clear();
+            byCustomer.clear();
+            byShipper.clear();
+            byRestaurant.clear();
+            byStatus.clear();
+            nextSeq = 0;
+            for (Order o : orders)
+                put(o);
+        }
 
-        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        /** Indexes a new order or re-files one after a transition (status, shipper). */
+        void put(Order o) {
+            Long seq = seqOf.get(o.id);
+            if (seq == null) {
+                seq = nextSeq++;
+                seqOf.put(o.id, seq);
+            }
+            byId.put(o.id, o);
+            all.put(seq, o);
+            Keys old = keysOf.get(o.id);
+            Keys now = keysOf(o);
+            if (old == null || !Objects.equals(old.customer, now.customer)) {
+                if (old != null)
+                    removeFrom(byCustomer, old.customer, seq);
+                addTo(byCustomer, now.customer, seq, o);
+            }
+            if (old == null || !Objects.equals(old.shipper, now.shipper)) {
+                if (old != null)
+                    removeFrom(byShipper, old.shipper, seq);
+                addTo(byShipper, now.shipper, seq, o);
+            }
+            if (old == null || !old.restaurants.equals(now.restaurants)) {
+                if (old != null)
+                    for (String r : old.restaurants)
+                        removeFrom(byRestaurant, r, seq);
+                for (String r : now.restaurants)
+                    addTo(byRestaurant, r, seq, o);
+            }
+            if (old == null || old.status != now.status) {
+                if (old != null)
+                    removeFrom(byStatus, old.status, seq);
+                addTo(byStatus, now.status, seq, o);
+            }
+            keysOf.put(o.id, now);
+        }
 
-        JButton viewDetailsBtn = new JButton("View Details");
-        viewDetailsBtn.addActionListener(e -> {
-            int idx = orderList.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select an order first.");
+        void remove(Order o) {
+            Keys old = keysOf.remove(o.id);
+            Long seq = seqOf.remove(o.id);
+            if (old == null || seq == null)
                 return;
+            byId.remove(o.id);
+            all.remove(seq);
+            removeFrom(byCustomer, old.customer, seq);
+            removeFrom(byShipper, old.shipper, seq);
+            for (String r : old.restaurants)
+                removeFrom(byRestaurant, r, seq);
+            removeFrom(byStatus, old.status, seq);
+        }
+
+        private static Keys keysOf(Order o) {
+            Keys k = new Keys();
+            k.customer = o.customer == null ? null : o.customer.username;
+            k.shipper = o.assignedShipper;
+            k.status = o.status;
+            k.restaurants = new LinkedHashSet<>();
+            for (OrderItem it : o.items) {
+                if (it.food.restaurantOwner != null)
+                    k.restaurants.add(it.food.restaurantOwner);
             }
-            Order selectedOrder = orders.get(idx);
-            showOrderDetailsDialog(dlg, selectedOrder);
-        });
-        bottom.add(viewDetailsBtn);
+            return k;
+        }
 
-        JButton deleteOrderBtn = new JButton("Delete Order");
-        deleteOrderBtn.addActionListener(e -> {
-            int idx = orderList.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select an order first.");
+        private static <K> void addTo(Map<K, TreeMap<Long, Order>> index, K key, Long seq, Order o) {
+            if (key != null)
+                index.computeIfAbsent(key, x -> new TreeMap<>()).put(seq, o);
+        }
+
+        private static <K> void removeFrom(Map<K, TreeMap<Long, Order>> index, K key, Long seq) {
+            if (key == null)
                 return;
-            }
-            Order selectedOrder = orders.get(idx);
-            int confirm = JOptionPane.showConfirmDialog(dlg, "Delete order " + selectedOrder.id + "?", "Confirm",
-                    JOptionPane.YES_NO_OPTION);
-            if (confirm == JOptionPane.YES_OPTION) {
-                orders.remove(idx);
-                orderModel.remove(idx);
-                log("Admin deleted order: " + selectedOrder.id);
-                JOptionPane.showMessageDialog(dlg, "Order deleted.");
-            }
-        });
-        bottom.add(deleteOrderBtn);
+            TreeMap<Long, Order> bucket = index.get(key);
+            if (bucket == null)
+                return;
+            bucket.remove(seq);
+            if (bucket.isEmpty())
+                index.remove(key);
+        }
 
-        main.add(bottom, BorderLayout.SOUTH);
-        return main;
-    }
+        private static Collection<Order> view(TreeMap<Long, Order> bucket) {
+            return bucket == null ? Collections.emptyList() : Collections.unmodifiableCollection(bucket.values());
+        }
 
-    private void showOrderDetailsDialog(JDialog parent, Order o) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Order ID: ").append(o.id).append("\n");
-        sb.append("Status: ").append(o.status).append("\n");
-        sb.append("Ordered at: ").append(o.created).append("\n");
-        sb.append("Address: ").append(o.addressSnapshot).append("\n");
-        sb.append("Phone: ").append(o.phoneSnapshot).append("\n\n");
-        sb.append("Items Ordered:\n");
-        for (OrderItem item : o.items) {
-            double itemPrice = item.food.price + item.food.variationPrices.getOrDefault(item.variation, 0.0);
-            String variationText = item.variation.isEmpty() ? "" : " (" + item.variation + ")";
-            sb.append("- ").append(item.food.name).append(variationText).append(" x").append(item.qty).append("  VND ").append(formatPrice(itemPrice * item.qty)).append("\n");
+        Order get(UUID id) {
+            return byId.get(id);
         }
-        sb.append("\nTotal: VND ").append(String.format("%.2f", o.total)).append("\n");
 
-        if (o.note != null && !o.note.isEmpty()) {
-            sb.append("\nCustomer Note: ").append(o.note).append("\n");
+        Collection<Order> all() {
+            return Collections.unmodifiableCollection(all.values());
         }
 
-        if (o.assignedShipper != null) {
-            User shipper = users.get(o.assignedShipper);
-            if (shipper != null) {
-                sb.append("\nShipper Information:\n");
-                sb.append("Name: ").append(shipper.username).append("\n");
-                sb.append("Phone: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
-                sb.append("Rating: ").append(String.format("%.1f", shipper.shipperRatings.stream().mapToDouble(d -> d).average().orElse(0))).append(" (").append(shipper.shipperRatings.size()).append(" reviews)\n");
+        Collection<Order> byCustomer(String username) {
+            return view(byCustomer.get(username));
+        }
 
-                if (o.status == OrderStatus.DELIVERING) {
-                    sb.append("\n🚚 Delivery Information:\n");
-                    sb.append("Shipper is currently delivering your order.\n");
-                    sb.append("Contact shipper: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
-                    sb.append("Estimated delivery: Soon\n");
-                }
-            }
-        } else {
-            sb.append("\nNo shipper assigned yet.\n");
+        Collection<Order> byShipper(String username) {
+            return view(byShipper.get(username));
         }
 
-        JTextArea ta = new JTextArea(sb.toString());
-        ta.setEditable(false);
-        JScrollPane sp = new JScrollPane(ta);
-        sp.setPreferredSize(new Dimension(500, 400));
-        JOptionPane.showMessageDialog(parent, sp, "Order Details", JOptionPane.PLAIN_MESSAGE);
+        Collection<Order> byRestaurant(String restaurantName) {
+            return view(byRestaurant.get(restaurantName));
+        }
+
+        Collection<Order> withStatus(OrderStatus status) {
+            return view(byStatus.get(status));
+        }
     }
 
-    private void showVirtualMapDialog(Order o) {
-        JDialog dlg = new JDialog(frame, "Track Shipper - Order " + o.id, true);
-        dlg.setSize(600, 500);
-        dlg.setLocationRelativeTo(frame);
+    // -------------------- Catalog index --------------------
+    // Secondary indexes over `foods` so that browse filters cost O(result) instead of a full scan.
+    // Buckets are ordered by the sequence in which an item was first indexed, which matches the
+    // order of the `foods` list (items are only ever appended to it). Each item remembers the keys
+    // it was filed under, so edits to restaurant/category can be re-filed without a rebuild.
+    static class CatalogIndex {
+        private final Map<UUID, FoodItem> byId = new HashMap<>();
+        private final Map<UUID, Long> seqOf = new HashMap<>();
+        private final Map<UUID, String[]> keysOf = new HashMap<>(); // {restaurant, category} as filed
+        private final TreeMap<Long, FoodItem> all = new TreeMap<>();
+        private final Map<String, TreeMap<Long, FoodItem>> byCategory = new HashMap<>();
+        private final Map<String, TreeMap<Long, FoodItem>> byRestaurant = new HashMap<>();
+        private final Map<String, TreeMap<Long, FoodItem>> byRestaurantCategory = new HashMap<>();
+        // item counts per key, in first-seen order; used to list categories/restaurants without scanning
+        private final Map<String, Integer> categoryCounts = new LinkedHashMap<>();
+        private final Map<String, Integer> restaurantCounts = new LinkedHashMap<>();
+        private final Map<String, Map<String, Integer>> restaurantCategoryCounts = new HashMap<>();
+        private long nextSeq = 0;
+
+        void rebuild(Collection<FoodItem> foods) {
+            byId.clear();
+            seqOf.clear();
+            keysOf.clear();
+            all.clear();
+            byCategory.clear();
+            byRestaurant.clear();
+            byRestaurantCategory.clear();
+            categoryCounts.clear();
+            restaurantCounts.clear();
+            restaurantCategoryCounts.clear();
+            nextSeq = 0;
+            for (FoodItem f : foods)
+                put(f);
+        }
 
-        JPanel mapPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                drawVirtualMap(g, getWidth(), getHeight(), o);
+        /** Adds a new item or re-files an existing one after its restaurant/category changed. */
+        void put(FoodItem f) {
+            String[] old = keysOf.get(f.id);
+            if (old != null) {
+                if (Objects.equals(old[0], f.restaurantOwner) && Objects.equals(old[1], f.category)) {
+                    byId.put(f.id, f); // same keys; just make sure the latest instance is indexed
+                    all.put(seqOf.get(f.id), f);
+                    return;
+                }
+                unfile(f.id, old);
             }
-        };
-        mapPanel.setBackground(Color.WHITE);
-        dlg.getContentPane().add(mapPanel);
-        dlg.setVisible(true);
-    }
-
-    private void drawVirtualMap(Graphics g, int width, int height, Order o) {
-        // Draw background (sky)
-        g.setColor(new Color(135, 206, 235)); // Sky blue
-        g.fillRect(0, 0, width, height);
+            Long seq = seqOf.get(f.id);
+            if (seq == null) {
+                seq = nextSeq++;
+                seqOf.put(f.id, seq);
+            }
+            byId.put(f.id, f);
+            all.put(seq, f);
+            String r = f.restaurantOwner, c = f.category;
+            keysOf.put(f.id, new String[] { r, c });
+            if (c != null) {
+                byCategory.computeIfAbsent(c, k -> new TreeMap<>()).put(seq, f);
+                categoryCounts.merge(c, 1, Integer::sum);
+            }
+            if (r != null) {
+                byRestaurant.computeIfAbsent(r, k -> new TreeMap<>()).put(seq, f);
+                restaurantCounts.merge(r, 1, Integer::sum);
+                if (c != null) {
+                    byRestaurantCategory.computeIfAbsent(pairKey(r, c), k -> new TreeMap<>()).put(seq, f);
+                    restaurantCategoryCounts.computeIfAbsent(r, k -> new LinkedHashMap<>()).merge(c, 1, Integer::sum);
+                }
+            }
+        }
 
-        // Draw roads (zigzag pattern)
-        g.setColor(Color.GRAY);
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setStroke(new BasicStroke(8)); // Thicker roads
+        void remove(FoodItem f) {
+            String[] old = keysOf.remove(f.id);
+            if (old == null)
+                return;
+            unfile(f.id, old);
+            byId.remove(f.id);
+            all.remove(seqOf.remove(f.id));
+        }
 
-        // Horizontal zigzag roads
-        int[] yLevels = {120, 270, 420};
-        for (int y : yLevels) {
-            int x = 0;
-            while (x < width) {
-                int nextX = Math.min(x + 100 + (int)(Math.random() * 50), width);
-                int nextY = y + (int)(Math.random() * 40 - 20); // Slight vertical variation
-                g2d.drawLine(x, y, nextX, nextY);
-                x = nextX;
-                y = nextY;
+        private void unfile(UUID id, String[] keys) {
+            Long seq = seqOf.get(id);
+            String r = keys[0], c = keys[1];
+            if (c != null) {
+                removeFrom(byCategory, c, seq);
+                decrement(categoryCounts, c);
+            }
+            if (r != null) {
+                removeFrom(byRestaurant, r, seq);
+                decrement(restaurantCounts, r);
+                if (c != null) {
+                    removeFrom(byRestaurantCategory, pairKey(r, c), seq);
+                    Map<String, Integer> counts = restaurantCategoryCounts.get(r);
+                    if (counts != null) {
+                        decrement(counts, c);
+                        if (counts.isEmpty())
+                            restaurantCategoryCounts.remove(r);
+                    }
+                }
             }
         }
 
-        // Vertical zigzag roads
-        int[] xLevels = {120, 270, 420};
-        for (int x : xLevels) {
-            int y = 0;
-            while (y < height) {
-                int nextY = Math.min(y + 100 + (int)(Math.random() * 50), height);
-                int nextX = x + (int)(Math.random() * 40 - 20); // Slight horizontal variation
-                g2d.drawLine(x, y, nextX, nextY);
-                x = nextX;
-                y = nextY;
-            }
+        private static void removeFrom(Map<String, TreeMap<Long, FoodItem>> index, String key, Long seq) {
+            TreeMap<Long, FoodItem> bucket = index.get(key);
+            if (bucket == null)
+                return;
+            bucket.remove(seq);
+            if (bucket.isEmpty())
+                index.remove(key);
         }
 
-        // Reset stroke
-        g2d.setStroke(new BasicStroke());
+        private static void decrement(Map<String, Integer> counts, String key) {
+            counts.computeIfPresent(key, (k, n) -> n > 1 ? n - 1 : null);
+        }
 
-        // Draw yellow center lines on roads (simplified)
-        g.setColor(Color.YELLOW);
-        g2d.setStroke(new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{5, 5}, 0));
-        // For simplicity, draw some dashed lines along main roads
-        g2d.drawLine(0, 120, width, 120);
-        g2d.drawLine(0, 270, width, 270);
-        g2d.drawLine(0, 420, width, 420);
-        g2d.drawLine(120, 0, 120, height);
-        g2d.drawLine(270, 0, 270, height);
-        g2d.drawLine(420, 0, 420, height);
-        g2d.setStroke(new BasicStroke()); // Reset
+        private static String pairKey(String restaurant, String category) {
+            return restaurant + '\u0000' + category;
+        }
 
-        // Draw houses
-        g.setColor(Color.ORANGE);
-        // Some houses around
-        int[][] housePositions = {
-            {50, 50}, {200, 50}, {350, 50}, {500, 50},
-            {50, 200}, {350, 200}, {500, 200},
-            {50, 350}, {200, 350}, {500, 350},
-            {50, 500}, {200, 500}, {350, 500}, {500, 500}
-        };
-        for (int[] pos : housePositions) {
-            if (pos[0] < width - 30 && pos[1] < height - 30) {
-                // House body
-                g.fillRect(pos[0], pos[1], 25, 20);
-                // Roof
-                g.setColor(Color.RED);
-                int[] xPoints = {pos[0], pos[0] + 12, pos[0] + 25};
-                int[] yPoints = {pos[1], pos[1] - 10, pos[1]};
-                g.fillPolygon(xPoints, yPoints, 3);
-                g.setColor(Color.ORANGE);
-            }
+        private static Collection<FoodItem> view(TreeMap<Long, FoodItem> bucket) {
+            return bucket == null ? Collections.emptyList() : Collections.unmodifiableCollection(bucket.values());
         }
 
-        // Simulate customer location (a house)
-        int customerX = width / 2;
-        int customerY = height / 2;
-        g.setColor(Color.BLUE);
-        g.fillRect(customerX - 10, customerY - 10, 20, 15); // House
-        g.setColor(Color.RED);
-        int[] roofX = {customerX - 10, customerX, customerX + 10};
-        int[] roofY = {customerY - 10, customerY - 20, customerY - 10};
-        g.fillPolygon(roofX, roofY, 3);
-        g.setColor(Color.BLACK);
-        g.drawString("Your House", customerX - 25, customerY - 25);
+        FoodItem get(UUID id) {
+            return byId.get(id);
+        }
 
-        // Simulate shipper location (moving van or something)
-        int shipperX = customerX + (int)(Math.random() * 200 - 100);
-        int shipperY = customerY + (int)(Math.random() * 200 - 100);
-        g.setColor(Color.GREEN);
-        g.fillRect(shipperX - 8, shipperY - 5, 16, 10); // Van body
-        g.setColor(Color.BLACK);
-        g.fillOval(shipperX - 10, shipperY + 5, 4, 4); // Wheels
-        g.fillOval(shipperX + 6, shipperY + 5, 4, 4);
-        g.drawString("🚚 Shipper", shipperX - 20, shipperY - 10);
+        Collection<FoodItem> all() {
+            return Collections.unmodifiableCollection(all.values());
+        }
 
-        // Draw a path line (dotted)
-        g.setColor(Color.RED);
-        Stroke dashed = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{9}, 0);
-        g2d.setStroke(dashed);
-        g2d.drawLine(customerX, customerY, shipperX, shipperY);
-        g2d.setStroke(new BasicStroke()); // Reset
+        Collection<FoodItem> byCategory(String category) {
+            return view(byCategory.get(category));
+        }
 
-        // Add some labels
-        g.setColor(Color.BLACK);
-        g.drawString("Virtual Town Map - Shipper is delivering!", 10, 20);
-        g.drawString("Estimated arrival: Soon", 10, 40);
-    }
+        Collection<FoodItem> byRestaurant(String restaurant) {
+            return view(byRestaurant.get(restaurant));
+        }
 
-    private void showRestaurantPanel() {
-        if (currentUser == null || currentUser.role != Role.RESTAURANT) {
-            JOptionPane.showMessageDialog(frame, "Only restaurant accounts can manage a menu.");
-            return;
+        Collection<FoodItem> byRestaurantAndCategory(String restaurant, String category) {
+            return view(byRestaurantCategory.get(pairKey(restaurant, category)));
         }
-        JDialog dlg = new JDialog(frame, "Restaurant Panel - " + currentUser.restaurantName, true);
-        dlg.setSize(900, 600);
-        dlg.setLocationRelativeTo(frame);
-        JTabbedPane tabbedPane = new JTabbedPane();
 
-        // Tab 1: Menu Management
-        JPanel menuPanel = createRestaurantMenuManagementPanel(dlg);
-        tabbedPane.addTab("Menu", menuPanel);
-
-        // Tab 2: Order Management
-        JPanel orderPanel = createOrderManagementPanel(dlg);
-        tabbedPane.addTab("Orders", orderPanel);
+        /** Categories that have at least one item, in first-seen order. */
+        Set<String> categories() {
+            return Collections.unmodifiableSet(categoryCounts.keySet());
+        }
 
-        // Tab 3: Settings
-        JPanel settingsPanel = createRestaurantSettingsPanel(dlg);
-        tabbedPane.addTab("Settings", settingsPanel);
+        Set<String> categoriesForRestaurant(String restaurant) {
+            Map<String, Integer> counts = restaurantCategoryCounts.get(restaurant);
+            return counts == null ? Collections.emptySet() : Collections.unmodifiableSet(counts.keySet());
+        }
 
-        dlg.getContentPane().add(tabbedPane);
-        dlg.setVisible(true);
+        /** Restaurants that have at least one item, in first-seen order. */
+        Set<String> restaurants() {
+            return Collections.unmodifiableSet(restaurantCounts.keySet());
+        }
     }
 
-    private JPanel createRestaurantSettingsPanel(JDialog dlg) {
-        JPanel main = new JPanel(new BorderLayout());
-        main.setBorder(new EmptyBorder(20, 20, 20, 20));
+    // -------------------- Search index --------------------
+    // Inverted index over name, category, variations and description. Text is folded to
+    // lowercase ASCII first (Vietnamese diacritics and đ dropped), so "pho bo" finds "Phở bò".
+    // Each query term matches exactly, as a prefix, or within one edit; the edit lookup goes
+    // through a map of single-deletion variants, so it never walks the dictionary.
+    // Items get a fresh doc number on every edit; stale numbers are skipped at query time and
+    // dropped by a rebuild once they outnumber the live ones.
+    static class SearchIndex {
+        private static final int NAME = 1, CATEGORY = 2, VARIATION = 4, DESCRIPTION = 8;
+        private static final float[] FIELD_WEIGHT = new float[16]; // by field mask: the best field wins
+        private static final float EXACT = 1f, PREFIX = 0.7f, FUZZY = 0.5f;
+        private static final int MAX_EXPANSIONS = 64; // prefix/fuzzy terms tried per query term
+        private static final int MIN_FUZZY_LENGTH = 4;
+        static {
+            for (int m = 1; m < 16; m++)
+                FIELD_WEIGHT[m] = (m & NAME) != 0 ? 3f : (m & CATEGORY) != 0 ? 2f : (m & VARIATION) != 0 ? 1.5f : 1f;
+        }
 
-        JLabel statusLabel = new JLabel("Restaurant Status: " + (currentUser.isOpen ? "OPEN" : "CLOSED"));
-        statusLabel.setFont(statusLabel.getFont().deriveFont(16f).deriveFont(Font.BOLD));
-        statusLabel.setForeground(currentUser.isOpen ? Color.GREEN : Color.RED);
-        main.add(statusLabel, BorderLayout.NORTH);
+        private static class Postings {
+            int[] docs = new int[2];
+            byte[] fields = new byte[2];
+            int n;
 
-        JPanel center = new JPanel(new GridLayout(0, 1, 10, 10));
-        JButton toggleBtn = new JButton(currentUser.isOpen ? "Close Restaurant" : "Open Restaurant");
-        toggleBtn.setBackground(new Color(0, 191, 255));
-        toggleBtn.setForeground(Color.WHITE);
-        toggleBtn.setFocusPainted(false);
-        toggleBtn.addActionListener(e -> {
-            currentUser.isOpen = !currentUser.isOpen;
-            statusLabel.setText("Restaurant Status: " + (currentUser.isOpen ? "OPEN" : "CLOSED"));
-            statusLabel.setForeground(currentUser.isOpen ? Color.GREEN : Color.RED);
-            toggleBtn.setText(currentUser.isOpen ? "Close Restaurant" : "Open Restaurant");
-            // Update the restaurant list display
-            refreshRestaurantList();
-            // Refresh items if this restaurant is selected
-            if (restList.getSelectedValue() != null && restList.getSelectedValue().replace(" (Open)", "").replace(" (Closed)", "").equals(currentUser.restaurantName)) {
-                refreshItemsByRestaurant(currentUser.restaurantName);
+            void add(int doc, int fieldMask) {
+                if (n == docs.length) {
+                    docs = Arrays.copyOf(docs, n * 2);
+                    fields = Arrays.copyOf(fields, n * 2);
+                }
+                docs[n] = doc;
+                fields[n++] = (byte) fieldMask;
             }
-            log("Restaurant " + currentUser.username + " " + (currentUser.isOpen ? "opened" : "closed") + " their restaurant");
-        });
-        center.add(toggleBtn);
+        }
 
-        JButton changeImgBtn = new JButton("Change Restaurant Logo");
-        changeImgBtn.setBackground(new Color(0, 191, 255));
-        changeImgBtn.setForeground(Color.WHITE);
-        changeImgBtn.setFocusPainted(false);
-        changeImgBtn.addActionListener(e -> {
-            JFileChooser chooser = new JFileChooser();
-            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-            if (chooser.showOpenDialog(dlg) == JFileChooser.APPROVE_OPTION) {
-                currentUser.profileImagePath = chooser.getSelectedFile().getAbsolutePath();
-                refreshRestaurantList(); // Update the list to show new image
-                log("Restaurant " + currentUser.username + " changed profile image");
-                JOptionPane.showMessageDialog(dlg, "Restaurant image updated!");
+        /** Per-thread scoring arrays, indexed by doc; only the entries a query touched are reset. */
+        private static class Scratch {
+            float[] score = new float[0], best = new float[0];
+            int[] matched = new int[0], bestFor = new int[0];
+            int[] touched = new int[64];
+
+            void ensure(int docs) {
+                if (score.length < docs) {
+                    int n = Math.max(docs, score.length * 2);
+                    score = new float[n];
+                    best = new float[n];
+                    matched = new int[n];
+                    bestFor = new int[n];
+                }
             }
-        });
-        center.add(changeImgBtn);
-        main.add(center, BorderLayout.CENTER);
+        }
 
-        return main;
-    }
+        private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+        private final Map<String, List<String>> deletions = new HashMap<>(); // term minus one char -> terms
+        private final Map<UUID, Integer> docOf = new HashMap<>();
+        private FoodItem[] docs = new FoodItem[16]; // null once the doc is stale
+        private float[] boost = new float[16]; // rating and stock factor, fixed when the doc is indexed
+        private int nDocs, dead;
+
+        void rebuild(Collection<FoodItem> foods) {
+            terms.clear();
+            deletions.clear();
+            docOf.clear();
+            docs = new FoodItem[Math.max(16, foods.size())];
+            boost = new float[docs.length];
+            nDocs = 0;
+            dead = 0;
+            for (FoodItem f : foods)
+                put(f);
+        }
 
-    private JPanel createRestaurantMenuManagementPanel(JDialog dlg) {
-        JPanel main = new JPanel(new BorderLayout());
-        main.setBorder(new EmptyBorder(10, 10, 10, 10));
+        /** Indexes a new item, or re-indexes one whose text may have changed. */
+        void put(FoodItem f) {
+            kill(f.id);
+            Map<String, Integer> fieldsOf = new HashMap<>();
+            addTokens(fieldsOf, f.name, NAME);
+            addTokens(fieldsOf, f.category, CATEGORY);
+            if (f.variations != null)
+                for (String v : f.variations)
+                    addTokens(fieldsOf, v, VARIATION);
+            addTokens(fieldsOf, f.description, DESCRIPTION);
+            if (nDocs == docs.length) {
+                docs = Arrays.copyOf(docs, nDocs * 2);
+                boost = Arrays.copyOf(boost, nDocs * 2);
+            }
+            int doc = nDocs++;
+            docs[doc] = f;
+            boost[doc] = (1f + (float) f.rating / 10f) * (f.inStock ? 1f : 0.5f);
+            docOf.put(f.id, doc);
+            for (Map.Entry<String, Integer> e : fieldsOf.entrySet()) {
+                String term = e.getKey();
+                Postings p = terms.get(term);
+                if (p == null) {
+                    terms.put(term, p = new Postings());
+                    if (term.length() >= MIN_FUZZY_LENGTH && !isNumber(term))
+                        for (int i = 0; i < term.length(); i++)
+                            deletions.computeIfAbsent(deleteAt(term, i), k -> new ArrayList<>(1)).add(term);
+                }
+                p.add(doc, e.getValue());
+            }
+        }
 
-        // Food list with custom renderer
-        DefaultListModel<String> model = new DefaultListModel<>();
-        List<FoodItem> myFoods = foods.stream()
-                .filter(f -> currentUser.restaurantName != null && currentUser.restaurantName.equals(f.restaurantOwner))
-                .collect(Collectors.toList());
-        myFoods.forEach(f -> model.addElement(f.name + " - VND " + formatPrice(f.price) + (f.inStock ? "" : " (Out of Stock)")));
+        void remove(FoodItem f) {
+            kill(f.id);
+        }
 
-        JList<String> list = new JList<>(model);
-        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        list.setCellRenderer(new FoodListRenderer(myFoods));
-        list.setFixedCellHeight(120); // Increased height for bigger 100x100 images
-        JScrollPane listScroll = new JScrollPane(list);
-        listScroll.setPreferredSize(new Dimension(400, 400));
+        private void kill(UUID id) {
+            Integer doc = docOf.remove(id);
+            if (doc == null)
+                return;
+            docs[doc] = null;
+            if (++dead > 1024 && dead > nDocs - dead) {
+                List<FoodItem> live = new ArrayList<>(nDocs - dead);
+                for (int d = 0; d < nDocs; d++)
+                    if (docs[d] != null)
+                        live.add(docs[d]);
+                rebuild(live);
+            }
+        }
 
-        // Buttons panel
-        JPanel buttonsPanel = new JPanel(new GridLayout(0, 1, 5, 5));
-        buttonsPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        /**
+         * Items matching every query term, best first. Relevance is the sum over query terms of
+         * match quality (exact, prefix, one edit) times field weight, scaled up by the item's
+         * rating and down when it is out of stock.
+         */
+        List<FoodItem> search(String query, int limit) {
+            List<String> words = new ArrayList<>(new LinkedHashSet<>(tokens(query)));
+            if (words.isEmpty() || limit <= 0)
+                return new ArrayList<>();
+            List<List<Postings>> hits = new ArrayList<>();
+            List<float[]> quality = new ArrayList<>();
+            for (String w : words) {
+                List<Postings> ps = new ArrayList<>();
+                List<Float> qs = new ArrayList<>();
+                expand(w, ps, qs);
+                if (ps.isEmpty())
+                    return new ArrayList<>(); // a term nothing matches
+                float[] q = new float[qs.size()];
+                for (int i = 0; i < q.length; i++)
+                    q[i] = qs.get(i);
+                hits.add(ps);
+                quality.add(q);
+            }
+            // start from the rarest term so the candidate set is as small as possible
+            Integer[] order = new Integer[words.size()];
+            int[] sizes = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+                for (Postings p : hits.get(i))
+                    sizes[i] += p.n;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> sizes[i]));
+
+            Scratch s = SCRATCH.get();
+            s.ensure(nDocs);
+            int nTouched = 0;
+            for (int round = 0; round < order.length; round++) {
+                List<Postings> ps = hits.get(order[round]);
+                float[] q = quality.get(order[round]);
+                int stamp = round + 1;
+                for (int k = 0; k < ps.size(); k++) {
+                    Postings p = ps.get(k);
+                    for (int j = 0; j < p.n; j++) {
+                        int d = p.docs[j];
+                        if (docs[d] == null || s.matched[d] != round)
+                            continue; // stale, or missed an earlier term
+                        float sc = q[k] * FIELD_WEIGHT[p.fields[j]];
+                        if (s.bestFor[d] != stamp) {
+                            s.bestFor[d] = stamp;
+                            s.best[d] = sc;
+                            if (round == 0) {
+                                if (nTouched == s.touched.length)
+                                    s.touched = Arrays.copyOf(s.touched, nTouched * 2);
+                                s.touched[nTouched++] = d;
+                            }
+                        } else if (sc > s.best[d]) {
+                            s.best[d] = sc;
+                        }
+                    }
+                }
+                for (int t = 0; t < nTouched; t++) {
+                    int d = s.touched[t];
+                    if (s.bestFor[d] == stamp && s.matched[d] == round) {
+                        s.score[d] += s.best[d];
+                        s.matched[d] = round + 1;
+                    }
+                }
+            }
 
-        JButton addBtn = new JButton("Add Food");
-        addBtn.setBackground(new Color(34, 139, 34));
-        addBtn.setForeground(Color.WHITE);
-        addBtn.setFocusPainted(false);
-        addBtn.setPreferredSize(new Dimension(150, 40));
+            // keep the best `limit` in a min-heap on the final rank
+            int rounds = order.length;
+            PriorityQueue<double[]> top = new PriorityQueue<>(Comparator.comparingDouble(e -> e[0]));
+            for (int t = 0; t < nTouched; t++) {
+                int d = s.touched[t];
+                if (s.matched[d] == rounds) {
+                    float rank = s.score[d] * boost[d];
+                    if (top.size() < limit)
+                        top.add(new double[] { rank, d });
+                    else if (rank > top.peek()[0]) {
+                        top.poll();
+                        top.add(new double[] { rank, d });
+                    }
+                }
+                s.score[d] = 0;
+                s.matched[d] = 0;
+                s.bestFor[d] = 0;
+            }
+            FoodItem[] out = new FoodItem[top.size()];
+            for (int i = out.length - 1; i >= 0; i--)
+                out[i] = docs[(int) top.poll()[1]];
+            return new ArrayList<>(Arrays.asList(out));
+        }
 
-        JButton editBtn = new JButton("Edit Selected Food");
-        editBtn.setBackground(new Color(0, 191, 255));
-        editBtn.setForeground(Color.WHITE);
-        editBtn.setFocusPainted(false);
-        editBtn.setPreferredSize(new Dimension(150, 40));
+        /** Dictionary terms a query term stands for, with their match quality. */
+        private void expand(String w, List<Postings> ps, List<Float> qs) {
+            Postings exact = terms.get(w);
+            if (exact != null) {
+                ps.add(exact);
+                qs.add(EXACT);
+            }
+            int n = 0;
+            for (Map.Entry<String, Postings> e : terms.subMap(w, false, w + Character.MAX_VALUE, false).entrySet()) {
+                if (n++ == MAX_EXPANSIONS)
+                    break;
+                ps.add(e.getValue());
+                qs.add(PREFIX);
+            }
+            if (w.length() < MIN_FUZZY_LENGTH || isNumber(w))
+                return;
+            // one edit: same-length substitution/transposition or an extra char on either side
+            Set<String> near = new HashSet<>();
+            List<String> same = deletions.get(w); // query is missing a char
+            if (same != null)
+                near.addAll(same);
+            for (int i = 0; i < w.length(); i++) {
+                String del = deleteAt(w, i);
+                if (terms.containsKey(del) && del.length() >= MIN_FUZZY_LENGTH)
+                    near.add(del); // query has an extra char
+                List<String> cands = deletions.get(del);
+                if (cands != null)
+                    for (String c : cands)
+                        if (c.length() == w.length() && oneSwapOrSub(w, c))
+                            near.add(c);
+            }
+            near.remove(w);
+            n = 0;
+            for (String t : near) {
+                if (t.startsWith(w))
+                    continue; // already counted as a prefix
+                if (n++ == MAX_EXPANSIONS)
+                    break;
+                ps.add(terms.get(t));
+                qs.add(FUZZY);
+            }
+        }
 
-        JButton removeBtn = new JButton("Remove Selected Food");
-        removeBtn.setBackground(new Color(255, 69, 0));
-        removeBtn.setForeground(Color.WHITE);
-        removeBtn.setFocusPainted(false);
-        removeBtn.setPreferredSize(new Dimension(150, 40));
+        private static boolean oneSwapOrSub(String a, String b) {
+            int first = -1, diffs = 0;
+            for (int i = 0; i < a.length(); i++) {
+                if (a.charAt(i) != b.charAt(i)) {
+                    if (diffs++ == 0)
+                        first = i;
+                }
+            }
+            if (diffs == 1)
+                return true;
+            return diffs == 2 && first + 1 < a.length() && a.charAt(first) == b.charAt(first + 1)
+                    && a.charAt(first + 1) == b.charAt(first);
+        }
 
-        JButton stockBtn = new JButton("Add Stock/Remove Stock Selected Food");
-        stockBtn.setBackground(new Color(255, 215, 0));
-        stockBtn.setForeground(Color.BLACK);
-        stockBtn.setFocusPainted(false);
-        stockBtn.setPreferredSize(new Dimension(150, 40));
+        private static String deleteAt(String s, int i) {
+            return s.substring(0, i) + s.substring(i + 1);
+        }
 
-        buttonsPanel.add(addBtn);
-        buttonsPanel.add(editBtn);
-        buttonsPanel.add(removeBtn);
-        buttonsPanel.add(stockBtn);
+        private static boolean isNumber(String s) {
+            for (int i = 0; i < s.length(); i++)
+                if (!Character.isDigit(s.charAt(i)))
+                    return false;
+            return true;
+        }
 
-        // Category management panel
-        JPanel catPanel = new JPanel(new BorderLayout());
-        catPanel.setBorder(BorderFactory.createTitledBorder("Categories"));
-        catPanel.setPreferredSize(new Dimension(200, 200));
+        private static void addTokens(Map<String, Integer> fieldsOf, String text, int field) {
+            for (String t : tokens(text))
+                fieldsOf.merge(t, field, (a, b) -> a | b);
+        }
 
-        DefaultListModel<String> catModel = new DefaultListModel<>();
-        currentUser.myCategories.forEach(catModel::addElement);
-        JList<String> catList = new JList<>(catModel);
-        catList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        JScrollPane catScroll = new JScrollPane(catList);
+        /** Lowercase ASCII words: accents stripped, đ folded to d, everything else a separator. */
+        static List<String> tokens(String text) {
+            List<String> out = new ArrayList<>();
+            if (text == null || text.isEmpty())
+                return out;
+            String folded = java.text.Normalizer.normalize(text, java.text.Normalizer.Form.NFD);
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i <= folded.length(); i++) {
+                char c = i < folded.length() ? folded.charAt(i) : ' ';
+                if (Character.getType(c) == Character.NON_SPACING_MARK)
+                    continue;
+                if (c == 'đ' || c == 'Đ')
+                    c = 'd';
+                if (Character.isLetterOrDigit(c)) {
+                    word.append(Character.toLowerCase(c));
+                } else if (word.length() > 0) {
+                    out.add(word.toString());
+                    word.setLength(0);
+                }
+            }
+            return out;
+        }
+    }
 
-        JPanel catButtons = new JPanel(new FlowLayout());
-        JButton addCatBtn = new JButton("Add");
-        JButton editCatBtn = new JButton("Edit");
-        JButton delCatBtn = new JButton("Remove");
-        catButtons.add(addCatBtn);
-        catButtons.add(editCatBtn);
-        catButtons.add(delCatBtn);
+    // -------------------- Metrics --------------------
+    // Process-wide counters, gauges and latency histograms. Hot paths keep their Counter or
+    // Histogram in a static final field and record with atomic adds only, so recording never
+    // locks or allocates. Histograms are log-linear like HdrHistogram: 32 sub-buckets per power
+    // of two (about 3% error) over nanoseconds. Read through dump(), which the administrator
+    // panel shows, or over JMX as com.doan:type=Metrics.
+    static final class Metrics implements javax.management.DynamicMBean {
+        static final Metrics REGISTRY = new Metrics();
+        static final String OBJECT_NAME = "com.doan:type=Metrics";
+
+        private final Map<String, Counter> counters = new java.util.concurrent.ConcurrentSkipListMap<>();
+        private final Map<String, java.util.function.LongSupplier> gauges = new java.util.concurrent.ConcurrentSkipListMap<>();
+        private final Map<String, Histogram> histograms = new java.util.concurrent.ConcurrentSkipListMap<>();
+
+        private Metrics() {
+            gauges.put("jvm.heap.used_bytes",
+                    () -> java.lang.management.ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+            gauges.put("jvm.gc.count", () -> java.lang.management.ManagementFactory.getGarbageCollectorMXBeans().stream()
+                    .mapToLong(java.lang.management.GarbageCollectorMXBean::getCollectionCount).sum());
+            gauges.put("jvm.gc.ms", () -> java.lang.management.ManagementFactory.getGarbageCollectorMXBeans().stream()
+                    .mapToLong(java.lang.management.GarbageCollectorMXBean::getCollectionTime).sum());
+        }
 
-        catPanel.add(catScroll, BorderLayout.CENTER);
-        catPanel.add(catButtons, BorderLayout.SOUTH);
+        static Counter counter(String name) {
+            return REGISTRY.counters.computeIfAbsent(name, k -> new Counter());
+        }
 
-        // Right panel combining buttons and categories
-        JPanel rightPanel = new JPanel(new BorderLayout());
-        rightPanel.add(buttonsPanel, BorderLayout.NORTH);
-        rightPanel.add(catPanel, BorderLayout.CENTER);
+        static Histogram histogram(String name) {
+            return REGISTRY.histograms.computeIfAbsent(name, k -> new Histogram());
+        }
 
-        // Split pane
-        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, listScroll, rightPanel);
-        splitPane.setDividerLocation(400);
-        splitPane.setResizeWeight(0.6);
-        main.add(splitPane, BorderLayout.CENTER);
+        /** Sampled only when read; a later registration under the same name replaces the earlier one. */
+        static void gauge(String name, java.util.function.LongSupplier value) {
+            REGISTRY.gauges.put(name, value);
+        }
 
-        // Action listeners
-        addBtn.addActionListener(e -> {
-            JDialog addDialog = new JDialog(dlg, "Add New Food", true);
-            addDialog.setSize(500, 600);
-            addDialog.setLocationRelativeTo(dlg);
+        /** Makes the registry visible to jconsole/VisualVM; a second call is a no-op. */
+        static void registerMBean() {
+            try {
+                java.lang.management.ManagementFactory.getPlatformMBeanServer().registerMBean(REGISTRY,
+                        new javax.management.ObjectName(OBJECT_NAME));
+            } catch (javax.management.InstanceAlreadyExistsException ex) {
+                // already registered
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
 
-            JPanel panel = new JPanel(new GridBagLayout());
-            GridBagConstraints gbc = new GridBagConstraints();
-            gbc.insets = new Insets(5, 5, 5, 5);
-            gbc.fill = GridBagConstraints.HORIZONTAL;
+        static final class Counter {
+            private final java.util.concurrent.atomic.LongAdder n = new java.util.concurrent.atomic.LongAdder();
 
-            JTextField nameField = new JTextField(20);
-            JTextArea descArea = new JTextArea(3, 20);
-            JScrollPane descScroll = new JScrollPane(descArea);
-            JTextField priceField = new JTextField(10);
-            JTextField variationsField = new JTextField(20); // New field for variations
-            JComboBox<String> catBox = new JComboBox<>(currentUser.myCategories.toArray(new String[0]));
-            JButton chooseImgBtn = new JButton("Choose Image");
-            JLabel imgLabel = new JLabel("No image selected");
-            final String[] imgPath = {null};
+            void inc() {
+                n.increment();
+            }
 
-            chooseImgBtn.addActionListener(ae -> {
-                JFileChooser chooser = new JFileChooser();
-                chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-                if (chooser.showOpenDialog(addDialog) == JFileChooser.APPROVE_OPTION) {
-                    imgPath[0] = chooser.getSelectedFile().getAbsolutePath();
-                    imgLabel.setText(new File(imgPath[0]).getName());
-                }
-            });
+            void add(long delta) {
+                n.add(delta);
+            }
 
-            gbc.gridx = 0; gbc.gridy = 0; panel.add(new JLabel("Name:"), gbc);
-            gbc.gridx = 1; panel.add(nameField, gbc);
+            long get() {
+                return n.sum();
+            }
+        }
 
-            gbc.gridx = 0; gbc.gridy = 1; panel.add(new JLabel("Description:"), gbc);
-            gbc.gridx = 1; gbc.fill = GridBagConstraints.BOTH; gbc.weighty = 1.0;
-            panel.add(descScroll, gbc);
-            gbc.weighty = 0; gbc.fill = GridBagConstraints.HORIZONTAL;
+        static final class Histogram {
+            private static final int SUB = 32;
+            private final java.util.concurrent.atomic.AtomicLongArray counts = new java.util.concurrent.atomic.AtomicLongArray(2 * SUB + 58 * SUB);
+            private final java.util.concurrent.atomic.LongAdder n = new java.util.concurrent.atomic.LongAdder();
+            private final java.util.concurrent.atomic.LongAdder sum = new java.util.concurrent.atomic.LongAdder();
+            private final java.util.concurrent.atomic.AtomicLong max = new java.util.concurrent.atomic.AtomicLong();
+
+            void record(long nanos) {
+                long v = Math.max(0, nanos);
+                counts.incrementAndGet(bucket(v));
+                n.increment();
+                sum.add(v);
+                if (v > max.get())
+                    max.accumulateAndGet(v, Math::max);
+            }
 
-            gbc.gridx = 0; gbc.gridy = 2; panel.add(new JLabel("Price (VND):"), gbc);
-            gbc.gridx = 1; panel.add(priceField, gbc);
+            /** Records the time since {@code startNanos} (a System.nanoTime() reading). */
+            void since(long startNanos) {
+                record(System.nanoTime() - startNanos);
+            }
 
-            gbc.gridx = 0; gbc.gridy = 3; panel.add(new JLabel("Category:"), gbc);
-            gbc.gridx = 1; panel.add(catBox, gbc);
+            private static int bucket(long v) {
+                if (v < 2 * SUB)
+                    return (int) v;
+                int shift = 63 - Long.numberOfLeadingZeros(v) - 5; // keep the top six bits
+                return 2 * SUB + (shift - 1) * SUB + (int) ((v >>> shift) - SUB);
+            }
 
-            gbc.gridx = 0; gbc.gridy = 4; panel.add(new JLabel("Variations:"), gbc);
-            gbc.gridx = 1; panel.add(variationsField, gbc);
+            /** Midpoint of the bucket's range. */
+            private static long value(int bucket) {
+                if (bucket < 2 * SUB)
+                    return bucket;
+                int shift = (bucket - 2 * SUB) / SUB + 1;
+                long low = (long) ((bucket - 2 * SUB) % SUB + SUB) << shift;
+                return low + (1L << shift) / 2;
+            }
 
-            JButton addVariationButton = new JButton("Add Variation");
-            addVariationButton.addActionListener(ae -> {
-                JTextField varNameField = new JTextField();
-                JTextField varPriceField = new JTextField("0");
-                JPanel varPanel = new JPanel(new GridLayout(0, 2));
-                varPanel.add(new JLabel("Variation Name:"));
-                varPanel.add(varNameField);
-                varPanel.add(new JLabel("Additional Price (VND):"));
-                varPanel.add(varPriceField);
-                int result = JOptionPane.showConfirmDialog(addDialog, varPanel, "Add Variation", JOptionPane.OK_CANCEL_OPTION);
-                if (result == JOptionPane.OK_OPTION) {
-                    String varName = varNameField.getText().trim();
-                    String varPriceStr = varPriceField.getText().trim();
-                    if (!varName.isEmpty()) {
-                        try {
-                            double varPrice = parsePrice(varPriceStr);
-                            String current = variationsField.getText().trim();
-                            String newVar = varName + ":" + varPrice;
-                            if (!current.isEmpty()) {
-                                variationsField.setText(current + ", " + newVar);
-                            } else {
-                                variationsField.setText(newVar);
-                            }
-                        } catch (Exception ex) {
-                            JOptionPane.showMessageDialog(addDialog, "Invalid price");
-                        }
-                    }
-                }
-            });
-            gbc.gridx = 0; gbc.gridy = 5; gbc.gridwidth = 2; panel.add(addVariationButton, gbc);
+            long count() {
+                return n.sum();
+            }
 
-            gbc.gridx = 0; gbc.gridy = 6; panel.add(new JLabel("Image:"), gbc);
-            gbc.gridx = 1; panel.add(chooseImgBtn, gbc);
+            long max() {
+                return max.get();
+            }
 
-            gbc.gridx = 0; gbc.gridy = 7; gbc.gridwidth = 2; panel.add(imgLabel, gbc);
+            double mean() {
+                long c = n.sum();
+                return c == 0 ? 0 : (double) sum.sum() / c;
+            }
 
-            JPanel buttonPanel = new JPanel(new FlowLayout());
-            JButton okBtn = new JButton("Add");
-            JButton cancelBtn = new JButton("Cancel");
-            buttonPanel.add(okBtn);
-            buttonPanel.add(cancelBtn);
+            /** Nanoseconds at quantile q (0..1); concurrent records may shift it by a bucket. */
+            long percentile(double q) {
+                long total = 0;
+                for (int i = 0; i < counts.length(); i++)
+                    total += counts.get(i);
+                if (total == 0)
+                    return 0;
+                long rank = Math.max(1, (long) Math.ceil(q * total));
+                for (int i = 0; i < counts.length(); i++) {
+                    rank -= counts.get(i);
+                    if (rank <= 0)
+                        return Math.min(value(i), max.get());
+                }
+                return max.get();
+            }
+        }
 
-            addDialog.add(panel, BorderLayout.CENTER);
-            addDialog.add(buttonPanel, BorderLayout.SOUTH);
+        /** Plain-text table of everything registered; latencies in microseconds. */
+        String dump() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "# metrics at %tF %<tT%n", System.currentTimeMillis()));
+            sb.append(String.format(Locale.US, "%-40s %12s%n", "counter / gauge", "value"));
+            counters.forEach((name, c) -> sb.append(String.format(Locale.US, "%-40s %12d%n", name, c.get())));
+            gauges.forEach((name, g) -> sb.append(String.format(Locale.US, "%-40s %12d%n", name, g.getAsLong())));
+            sb.append(String.format(Locale.US, "%n%-40s %9s %10s %10s %10s %10s %10s%n", "latency (us)", "count", "mean",
+                    "p50", "p90", "p99", "max"));
+            histograms.forEach((name, h) -> sb.append(String.format(Locale.US, "%-40s %9d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    name, h.count(), h.mean() / 1000, h.percentile(0.5) / 1000.0, h.percentile(0.9) / 1000.0,
+                    h.percentile(0.99) / 1000.0, h.max() / 1000.0)));
+            return sb.toString();
+        }
 
-            okBtn.addActionListener(ae -> {
+        // JMX: counters and gauges as Long attributes, each histogram as <name>.count/.mean_us/.p50_us/.p99_us/.max_us
+        private static final String[] HISTOGRAM_FIELDS = { "count", "mean_us", "p50_us", "p90_us", "p99_us", "max_us" };
+
+        @Override
+        public Object getAttribute(String attribute) throws javax.management.AttributeNotFoundException {
+            Counter c = counters.get(attribute);
+            if (c != null)
+                return c.get();
+            java.util.function.LongSupplier g = gauges.get(attribute);
+            if (g != null)
+                return g.getAsLong();
+            int dot = attribute.lastIndexOf('.');
+            Histogram h = dot < 0 ? null : histograms.get(attribute.substring(0, dot));
+            if (h != null) {
+                switch (attribute.substring(dot + 1)) {
+                    case "count":
+                        return h.count();
+                    case "mean_us":
+                        return h.mean() / 1000;
+                    case "p50_us":
+                        return h.percentile(0.5) / 1000.0;
+                    case "p90_us":
+                        return h.percentile(0.9) / 1000.0;
+                    case "p99_us":
+                        return h.percentile(0.99) / 1000.0;
+                    case "max_us":
+                        return h.max() / 1000.0;
+                    default:
+                        break;
+                }
+            }
+            throw new javax.management.AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public void setAttribute(javax.management.Attribute attribute) throws javax.management.AttributeNotFoundException {
+            throw new javax.management.AttributeNotFoundException("metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public javax.management.AttributeList getAttributes(String[] attributes) {
+            javax.management.AttributeList list = new javax.management.AttributeList();
+            for (String name : attributes) {
                 try {
-                    String name = nameField.getText().trim();
-                    String desc = descArea.getText().trim();
-                    double price = parsePrice(priceField.getText().trim());
-                    String cat = (String) catBox.getSelectedItem();
-                    FoodItem fi = new FoodItem(name, desc, price, 0, randomPastelColor(), cat);
-                    fi.restaurantOwner = currentUser.restaurantName;
-                    fi.imagePath = imgPath[0];
-                    String variationsText = variationsField.getText().trim();
-                    if (!variationsText.isEmpty()) {
-                        String[] varParts = variationsText.split(",");
-                        for (String part : varParts) {
-                            String trimmed = part.trim();
-                            if (trimmed.contains(":")) {
-                                String[] namePrice = trimmed.split(":", 2);
-                                String varName = namePrice[0].trim();
-                                double varPrice = 0;
-                                if (namePrice.length > 1) {
-                                    try {
-                                        varPrice = parsePrice(namePrice[1].trim());
-                                    } catch (Exception ex) {
-                                        // ignore invalid price, set to 0
-                                    }
-                                }
-                                fi.variations.add(varName);
-                                fi.variationPrices.put(varName, varPrice);
-                            } else {
-                                // old format, assume price 0
-                                fi.variations.add(trimmed);
-                                fi.variationPrices.put(trimmed, 0.0);
-                            }
-                        }
-                    }
-                    foods.add(fi);
-                    myFoods.add(fi);
-                    model.addElement(fi.name + " - VND " + fi.price);
-                    list.setCellRenderer(new FoodListRenderer(myFoods));
-                    list.revalidate();
-                    list.repaint();
-                    refreshItems("All");
-                    refreshRestaurantList();
-                    log("Restaurant " + currentUser.username + " added food: " + name);
-                    addDialog.dispose();
-                } catch (NumberFormatException ex) {
-                    JOptionPane.showMessageDialog(addDialog, "Invalid price");
+                    list.add(new javax.management.Attribute(name, getAttribute(name)));
+                } catch (javax.management.AttributeNotFoundException ex) {
+                    // left out, as the contract allows
                 }
-            });
+            }
+            return list;
+        }
 
-            cancelBtn.addActionListener(ae -> addDialog.dispose());
+        @Override
+        public javax.management.AttributeList setAttributes(javax.management.AttributeList attributes) {
+            return new javax.management.AttributeList();
+        }
 
-            addDialog.setVisible(true);
-        });
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws javax.management.ReflectionException {
+            if ("dump".equals(actionName))
+                return dump();
+            throw new javax.management.ReflectionException(new NoSuchMethodException(actionName));
+        }
 
-        editBtn.addActionListener(e -> {
-            int idx = list.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select a food item to edit");
-                return;
-            }
-            FoodItem fi = myFoods.get(idx);
+        @Override
+        public javax.management.MBeanInfo getMBeanInfo() {
+            List<javax.management.MBeanAttributeInfo> attrs = new ArrayList<>();
+            for (String name : counters.keySet())
+                attrs.add(new javax.management.MBeanAttributeInfo(name, "java.lang.Long", "counter", true, false, false));
+            for (String name : gauges.keySet())
+                attrs.add(new javax.management.MBeanAttributeInfo(name, "java.lang.Long", "gauge", true, false, false));
+            for (String name : histograms.keySet())
+                for (String field : HISTOGRAM_FIELDS)
+                    attrs.add(new javax.management.MBeanAttributeInfo(name + "." + field,
+                            field.equals("count") ? "java.lang.Long" : "java.lang.Double", "latency", true, false, false));
+            javax.management.MBeanOperationInfo dump = new javax.management.MBeanOperationInfo("dump",
+                    "all metrics as text", new javax.management.MBeanParameterInfo[0], "java.lang.String",
+                    javax.management.MBeanOperationInfo.INFO);
+            return new javax.management.MBeanInfo(Metrics.class.getName(), "Food delivery hot-path metrics",
+                    attrs.toArray(new javax.management.MBeanAttributeInfo[0]), null,
+                    new javax.management.MBeanOperationInfo[] { dump }, null);
+        }
+    }
 
-            JDialog editDialog = new JDialog(dlg, "Edit Food", true);
-            editDialog.setSize(500, 600);
-            editDialog.setLocationRelativeTo(dlg);
+    // -------------------- EDT watchdog --------------------
+    // Measures how long the event dispatch thread takes to get to a posted probe (the lag a user
+    // feels) and how long each event takes to dispatch. When a probe waits longer than STALL_MS,
+    // the watchdog thread snapshots the EDT's stack right then, while the slow handler is still
+    // on it, and tags it with what the user was doing: the label a handler set through tag(), or
+    // else a description of the event being dispatched. Once the EDT frees up, the stall is
+    // counted in the metrics and handed to the reporter (the app writes it to the op log).
+    static final class EdtWatchdog extends EventQueue {
+        private static final long CHECK_MS = 50;
+        private static final long STALL_MS = 300;
+        private static final int TOP_FRAMES = 4; // where the EDT actually is, often inside the JDK
+        private static final int STACK_FRAMES = 12; // top frames plus the app's own callers below them
+        private static final Metrics.Histogram LAG = Metrics.histogram("ui.edt.lag");
+        private static final Metrics.Histogram DISPATCH = Metrics.histogram("ui.edt.dispatch");
+        private static final Metrics.Histogram STALL = Metrics.histogram("ui.edt.stall");
+        private static final Metrics.Counter STALLS = Metrics.counter("ui.edt.stalls");
+
+        private final java.util.function.Consumer<String> reporter; // called on the EDT, one line per stall
+        private volatile Thread edt;
+        private volatile AWTEvent current; // innermost event being dispatched; modal dialogs nest them
+        private volatile String action; // label for the current event, set by its handler
+        private int completed; // EDT only: events finished, to tell whether one had others nested in it
+
+        private volatile long probeAt; // nanoTime the outstanding probe was posted, 0 when none
+        private volatile String stall; // captured by the watchdog thread while the probe is late
+        private final Runnable probe = this::probeRan;
+
+        EdtWatchdog(java.util.function.Consumer<String> reporter) {
+            this.reporter = reporter;
+        }
 
-            JPanel panel = new JPanel(new GridBagLayout());
-            GridBagConstraints gbc = new GridBagConstraints();
-            gbc.insets = new Insets(5, 5, 5, 5);
-            gbc.fill = GridBagConstraints.HORIZONTAL;
+        /** Replaces the system event queue with this one and starts the watchdog thread. */
+        void install() {
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(this);
+            Thread t = new Thread(this::watch, "edt-watchdog");
+            t.setDaemon(true);
+            t.start();
+        }
 
-            JTextField nameField = new JTextField(fi.name, 20);
-            JTextArea descArea = new JTextArea(fi.description, 3, 20);
-            JScrollPane descScroll = new JScrollPane(descArea);
-            JTextField priceField = new JTextField(String.valueOf(fi.price), 10);
-            JTextField variationsField = new JTextField(fi.variations.isEmpty() ? "" : fi.variations.stream().map(v -> v + ":" + fi.variationPrices.getOrDefault(v, 0.0)).collect(Collectors.joining(", ")), 20);
-            JComboBox<String> catBox = new JComboBox<>(currentUser.myCategories.toArray(new String[0]));
-            catBox.setSelectedItem(fi.category);
-            JButton chooseImgBtn = new JButton("Choose Image");
-            JLabel imgLabel = new JLabel(fi.imagePath != null ? new File(fi.imagePath).getName() : "No image selected");
-            final String[] imgPath = {fi.imagePath};
+        /** Names what the event being handled is doing, e.g. "restaurant selected"; EDT only. */
+        void tag(String what) {
+            action = what;
+        }
 
-            chooseImgBtn.addActionListener(ae -> {
-                JFileChooser chooser = new JFileChooser();
-                chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-                if (chooser.showOpenDialog(editDialog) == JFileChooser.APPROVE_OPTION) {
-                    imgPath[0] = chooser.getSelectedFile().getAbsolutePath();
-                    imgLabel.setText(new File(imgPath[0]).getName());
+        @Override
+        protected void dispatchEvent(AWTEvent e) {
+            Thread self = Thread.currentThread();
+            if (edt != self)
+                edt = self;
+            AWTEvent outer = current;
+            String outerAction = action;
+            current = e;
+            action = null;
+            int before = completed;
+            long t0 = System.nanoTime();
+            try {
+                super.dispatchEvent(e);
+            } finally {
+                if (completed == before)
+                    DISPATCH.since(t0); // an event that ran a modal loop would only measure the user
+                completed++;
+                current = outer;
+                action = outerAction;
+            }
+        }
+
+        private void watch() {
+            while (true) {
+                try {
+                    Thread.sleep(CHECK_MS);
+                } catch (InterruptedException ex) {
+                    return;
                 }
-            });
+                long posted = probeAt;
+                if (posted == 0) {
+                    probeAt = System.nanoTime();
+                    SwingUtilities.invokeLater(probe);
+                } else if (stall == null && System.nanoTime() - posted > STALL_MS * 1_000_000) {
+                    stall = capture();
+                }
+            }
+        }
 
-            gbc.gridx = 0; gbc.gridy = 0; panel.add(new JLabel("Name:"), gbc);
-            gbc.gridx = 1; panel.add(nameField, gbc);
+        private void probeRan() {
+            long waited = System.nanoTime() - probeAt;
+            LAG.record(waited);
+            String captured = stall;
+            stall = null;
+            probeAt = 0;
+            if (captured != null) {
+                STALLS.inc();
+                STALL.record(waited);
+                reporter.accept(captured.replace("{ms}", Long.toString(waited / 1_000_000)));
+            }
+        }
 
-            gbc.gridx = 0; gbc.gridy = 1; panel.add(new JLabel("Description:"), gbc);
-            gbc.gridx = 1; gbc.fill = GridBagConstraints.BOTH; gbc.weighty = 1.0;
-            panel.add(descScroll, gbc);
-            gbc.weighty = 0; gbc.fill = GridBagConstraints.HORIZONTAL;
+        /** "<what> blocked the EDT for {ms} ms at <frames>"; {ms} is filled in when it ends. */
+        private String capture() {
+            Thread t = edt;
+            String what = action != null ? action : describe(current);
+            StringBuilder sb = new StringBuilder(what).append(" blocked the EDT for {ms} ms");
+            if (t != null) {
+                StackTraceElement[] frames = t.getStackTrace();
+                sb.append(" at ");
+                int shown = 0;
+                for (int i = 0; i < frames.length && shown < STACK_FRAMES; i++) {
+                    StackTraceElement f = frames[i];
+                    String cls = f.getClassName();
+                    boolean ours = cls.startsWith("com.doan.") && !cls.contains("$$Lambda")
+                            && !cls.equals(EdtWatchdog.class.getName());
+                    if (i >= TOP_FRAMES && !ours)
+                        continue;
+                    sb.append(shown++ == 0 ? "" : " < ").append(cls.substring(cls.lastIndexOf('.') + 1)).append('.')
+                            .append(f.getMethodName()).append(':').append(f.getLineNumber());
+                }
+            }
+            return sb.toString();
+        }
 
-            gbc.gridx = 0; gbc.gridy = 2; panel.add(new JLabel("Price (VND):"), gbc);
-            gbc.gridx = 1; panel.add(priceField, gbc);
+        private static String describe(AWTEvent e) {
+            if (e == null)
+                return "idle";
+            if (e instanceof java.awt.event.ActionEvent)
+                return "action \"" + ((java.awt.event.ActionEvent) e).getActionCommand() + "\"";
+            String source = e.getSource() == null ? "" : " on " + e.getSource().getClass().getSimpleName();
+            if (e instanceof java.awt.event.MouseEvent)
+                return "mouse" + source;
+            if (e instanceof java.awt.event.KeyEvent)
+                return "key" + source;
+            if (e instanceof java.awt.event.InvocationEvent)
+                return "invokeLater/timer task";
+            return e.getClass().getSimpleName() + source;
+        }
+    }
 
-            gbc.gridx = 0; gbc.gridy = 3; panel.add(new JLabel("Category:"), gbc);
-            gbc.gridx = 1; panel.add(catBox, gbc);
+    // -------------------- Operation log --------------------
+    // Admin-visible audit trail. Callers claim a slot in a fixed ring with one CAS and never
+    // block or format anything: an entry is the raw millisecond clock plus typed fields. One
+    // daemon thread drains the ring into segment files of about 1 MB and deletes the oldest
+    // once there are more than MAX_SEGMENTS. The viewer reads pages, newest first, from the
+    // files through a per-segment offset index. When the ring is full, entries are dropped
+    // and counted instead of stalling the UI.
+    // Record: [len][time][actor][action][hasOrder][msb][lsb][detail]
+    static class OpLog {
+        private static final int CAPACITY = 1 << 13; // ring slots, a power of two
+        private static final long SEGMENT_BYTES = 1 << 20;
+        private static final int MAX_SEGMENTS = 8;
+        private static final long IDLE_PARK_NS = 5_000_000; // writer poll interval when the ring is empty
+
+        static final class Entry {
+            final long time;
+            final String actor; // username, or null for the system
+            final String action; // dotted verb such as "order.accept"
+            final UUID order; // null when the entry is not about one order
+            final String detail;
+
+            Entry(long time, String actor, String action, UUID order, String detail) {
+                this.time = time;
+                this.actor = actor;
+                this.action = action;
+                this.order = order;
+                this.detail = detail;
+            }
 
-            gbc.gridx = 0; gbc.gridy = 4; panel.add(new JLabel("Variations:"), gbc);
-            gbc.gridx = 1; panel.add(variationsField, gbc);
+            @Override
+            public String toString() {
+                return String.format("%tF %<tT  %-14s %-18s %-8s %s", time, actor == null ? "system" : actor, action,
+                        order == null ? "" : order.toString().substring(0, 6), detail == null ? "" : detail);
+            }
+        }
 
-            JButton addVariationButton = new JButton("Add Variation");
-            addVariationButton.addActionListener(ae -> {
-                JTextField varNameField = new JTextField();
-                JTextField varPriceField = new JTextField("0");
-                JPanel varPanel = new JPanel(new GridLayout(0, 2));
-                varPanel.add(new JLabel("Variation Name:"));
-                varPanel.add(varNameField);
-                varPanel.add(new JLabel("Additional Price (VND):"));
-                varPanel.add(varPriceField);
-                int result = JOptionPane.showConfirmDialog(editDialog, varPanel, "Add Variation", JOptionPane.OK_CANCEL_OPTION);
-                if (result == JOptionPane.OK_OPTION) {
-                    String varName = varNameField.getText().trim();
-                    String varPriceStr = varPriceField.getText().trim();
-                    if (!varName.isEmpty()) {
-                        try {
-                            double varPrice = parsePrice(varPriceStr);
-                            String current = variationsField.getText().trim();
-                            String newVar = varName + ":" + varPrice;
-                            if (!current.isEmpty()) {
-                                variationsField.setText(current + ", " + newVar);
-                            } else {
-                                variationsField.setText(newVar);
-                            }
-                        } catch (Exception ex) {
-                            JOptionPane.showMessageDialog(editDialog, "Invalid price");
+        /** Which entries a page shows; null or empty fields match anything. */
+        static final class Filter {
+            final String actor, action, text;
+
+            Filter(String actor, String action, String text) {
+                this.actor = blankToNull(actor);
+                this.action = blankToNull(action);
+                this.text = blankToNull(text) == null ? null : text.trim().toLowerCase();
+            }
+
+            private static String blankToNull(String s) {
+                return s == null || s.trim().isEmpty() ? null : s.trim();
+            }
+
+            boolean matches(Entry e) {
+                if (actor != null && !actor.equalsIgnoreCase(e.actor))
+                    return false;
+                if (action != null && (e.action == null || !e.action.startsWith(action)))
+                    return false;
+                if (text == null)
+                    return true;
+                return (e.detail != null && e.detail.toLowerCase().contains(text))
+                        || (e.order != null && e.order.toString().startsWith(text));
+            }
+        }
+
+        private static final class Segment {
+            final File file;
+            final int number;
+            long[] offsets = new long[256];
+            int n;
+            long length;
+
+            Segment(File file, int number) {
+                this.file = file;
+                this.number = number;
+            }
+
+            void add(long offset) {
+                if (n == offsets.length)
+                    offsets = Arrays.copyOf(offsets, n * 2);
+                offsets[n++] = offset;
+            }
+        }
+
+        private final Entry[] ring = new Entry[CAPACITY];
+        private final java.util.concurrent.atomic.AtomicLongArray published = new java.util.concurrent.atomic.AtomicLongArray(CAPACITY);
+        private final java.util.concurrent.atomic.AtomicLong claimed = new java.util.concurrent.atomic.AtomicLong();
+        private final java.util.concurrent.atomic.AtomicLong dropped = new java.util.concurrent.atomic.AtomicLong();
+        private volatile long consumed; // every entry before this one is in a segment file and flushed
+
+        private final File dir;
+        private final List<Segment> segments = new ArrayList<>(); // oldest first; guarded by itself
+        private DataOutputStream out; // writer thread only
+        private Thread writer;
+        private volatile boolean running;
+
+        OpLog(File dir) {
+            this.dir = dir;
+            for (int i = 0; i < CAPACITY; i++)
+                published.set(i, -1);
+        }
+
+        /** Indexes the existing segments (a torn tail is cut off) and starts the writer. */
+        void open() throws IOException {
+            if (!dir.isDirectory() && !dir.mkdirs())
+                throw new IOException("cannot create " + dir);
+            File[] files = dir.listFiles((d, name) -> name.matches("ops-\\d+\\.log"));
+            List<Segment> found = new ArrayList<>();
+            for (File f : files == null ? new File[0] : files)
+                found.add(new Segment(f, Integer.parseInt(f.getName().replaceAll("\\D", ""))));
+            found.sort(Comparator.comparingInt(s -> s.number));
+            for (Segment s : found) {
+                long pos = 0, len = s.file.length();
+                try (DataInputStream in = new DataInputStream(
+                        new java.io.BufferedInputStream(new java.io.FileInputStream(s.file), 64 * 1024))) {
+                    while (pos + 4 <= len) {
+                        int bytes = in.readInt();
+                        if (bytes <= 0 || pos + 4 + bytes > len)
+                            break;
+                        for (int left = bytes, k; left > 0; left -= k) {
+                            if ((k = in.skipBytes(left)) <= 0)
+                                throw new java.io.EOFException();
                         }
+                        s.add(pos);
+                        pos += 4 + bytes;
                     }
                 }
-            });
-            gbc.gridx = 0; gbc.gridy = 5; gbc.gridwidth = 2; panel.add(addVariationButton, gbc);
-
-            gbc.gridx = 0; gbc.gridy = 6; panel.add(new JLabel("Image:"), gbc);
-            gbc.gridx = 1; panel.add(chooseImgBtn, gbc);
+                if (pos < len)
+                    try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(s.file, "rw")) {
+                        raf.setLength(pos);
+                    }
+                s.length = pos;
+            }
+            synchronized (segments) {
+                segments.addAll(found);
+            }
+            running = true;
+            writer = new Thread(this::drain, "oplog-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
 
-            gbc.gridx = 0; gbc.gridy = 7; gbc.gridwidth = 2; panel.add(imgLabel, gbc);
+        void append(String actor, String action, UUID order, String detail) {
+            append(new Entry(System.currentTimeMillis(), actor, action, order, detail));
+        }
 
-            JPanel buttonPanel = new JPanel(new FlowLayout());
-            JButton okBtn = new JButton("Update");
-            JButton cancelBtn = new JButton("Cancel");
-            buttonPanel.add(okBtn);
-            buttonPanel.add(cancelBtn);
+        /** Lock-free; drops the entry (and counts it) if the writer is a full ring behind. */
+        void append(Entry e) {
+            long seq;
+            do {
+                seq = claimed.get();
+                if (seq - consumed >= CAPACITY) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            } while (!claimed.compareAndSet(seq, seq + 1));
+            int slot = (int) (seq & (CAPACITY - 1));
+            ring[slot] = e;
+            published.set(slot, seq); // makes the entry visible to the writer
+        }
 
-            editDialog.add(panel, BorderLayout.CENTER);
-            editDialog.add(buttonPanel, BorderLayout.SOUTH);
+        long dropped() {
+            return dropped.get();
+        }
 
-            okBtn.addActionListener(ae -> {
+        private void drain() {
+            while (running || consumed < claimed.get()) {
+                long next = consumed;
                 try {
-                    fi.name = nameField.getText().trim();
-                    fi.description = descArea.getText().trim();
-                    fi.price = parsePrice(priceField.getText().trim());
-                    fi.category = (String) catBox.getSelectedItem();
-                    String variationsText = variationsField.getText().trim();
-                    fi.variations.clear();
-                    fi.variationPrices.clear();
-                    if (!variationsText.isEmpty()) {
-                        String[] varParts = variationsText.split(",");
-                        for (String part : varParts) {
-                            String trimmed = part.trim();
-                            if (trimmed.contains(":")) {
-                                String[] namePrice = trimmed.split(":", 2);
-                                String varName = namePrice[0].trim();
-                                double varPrice = 0;
-                                if (namePrice.length > 1) {
-                                    try {
-                                        varPrice = parsePrice(namePrice[1].trim());
-                                    } catch (Exception ex) {
-                                        // ignore invalid price, set to 0
-                                    }
-                                }
-                                fi.variations.add(varName);
-                                fi.variationPrices.put(varName, varPrice);
-                            } else {
-                                // old format, assume price 0
-                                fi.variations.add(trimmed);
-                                fi.variationPrices.put(trimmed, 0.0);
-                            }
-                        }
+                    while (published.get((int) (next & (CAPACITY - 1))) == next) {
+                        int slot = (int) (next & (CAPACITY - 1));
+                        Entry e = ring[slot];
+                        ring[slot] = null;
+                        write(e);
+                        next++;
                     }
-                    fi.imagePath = imgPath[0];
-                    model.set(idx, fi.name + " - VND " + formatPrice(fi.price));
-                    list.setCellRenderer(new FoodListRenderer(myFoods));
-                    list.revalidate();
-                    list.repaint();
-                    refreshItems("All");
-                    refreshRestaurantList();
-                    log("Restaurant " + currentUser.username + " edited food: " + fi.name);
-                    editDialog.dispose();
-                } catch (NumberFormatException ex) {
-                    JOptionPane.showMessageDialog(editDialog, "Invalid price");
+                    if (next != consumed && out != null)
+                        out.flush();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
                 }
-            });
+                if (next == consumed) {
+                    if (!running)
+                        break; // a claimed slot that was never published; nothing more will come
+                    java.util.concurrent.locks.LockSupport.parkNanos(IDLE_PARK_NS);
+                }
+                consumed = next;
+            }
+            try {
+                if (out != null)
+                    out.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
 
-            cancelBtn.addActionListener(ae -> editDialog.dispose());
+        private void write(Entry e) throws IOException {
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream(96);
+            DataOutputStream body = new DataOutputStream(bytes);
+            body.writeLong(e.time);
+            Journal.writeStr(body, e.actor);
+            Journal.writeStr(body, e.action);
+            body.writeBoolean(e.order != null);
+            if (e.order != null)
+                Journal.writeUuid(body, e.order);
+            Journal.writeStr(body, e.detail);
+            Segment s;
+            synchronized (segments) {
+                s = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            }
+            if (s == null || out == null || s.length >= SEGMENT_BYTES)
+                s = rotate(s);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            synchronized (segments) {
+                s.add(s.length);
+            }
+            s.length += 4 + bytes.size();
+        }
 
-            editDialog.setVisible(true);
-        });
+        /** Starts the next segment file and deletes the oldest ones past MAX_SEGMENTS. */
+        private Segment rotate(Segment current) throws IOException {
+            if (out != null)
+                out.close();
+            Segment s = current;
+            if (s == null || s.length >= SEGMENT_BYTES) {
+                int number = s == null ? 1 : s.number + 1;
+                s = new Segment(new File(dir, String.format("ops-%05d.log", number)), number);
+            }
+            out = new DataOutputStream(new java.io.BufferedOutputStream(new java.io.FileOutputStream(s.file, true), 16 * 1024));
+            synchronized (segments) {
+                if (s != current)
+                    segments.add(s);
+                while (segments.size() > MAX_SEGMENTS)
+                    if (!segments.remove(0).file.delete())
+                        System.out.println("Could not delete old log segment.");
+            }
+            return s;
+        }
 
-        removeBtn.addActionListener(e -> {
-            int idx = list.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select a food item to remove");
-                return;
+        /** Waits (briefly) until everything appended so far is on disk. */
+        void sync() {
+            long target = claimed.get();
+            long deadline = System.nanoTime() + 1_000_000_000L;
+            while (consumed < target && running && System.nanoTime() < deadline)
+                java.util.concurrent.locks.LockSupport.parkNanos(1_000_000);
+        }
+
+        /** Up to `limit` matching entries, newest first, after skipping the `from` newest matches. */
+        List<Entry> page(Filter filter, int from, int limit) {
+            sync();
+            List<Segment> snapshot = new ArrayList<>();
+            List<long[]> offsets = new ArrayList<>();
+            synchronized (segments) {
+                for (Segment s : segments) {
+                    snapshot.add(s);
+                    offsets.add(Arrays.copyOf(s.offsets, s.n));
+                }
             }
-            FoodItem fi = myFoods.get(idx);
-            int confirm = JOptionPane.showConfirmDialog(dlg, "Remove '" + fi.name + "'?", "Confirm Removal", JOptionPane.YES_NO_OPTION);
-            if (confirm == JOptionPane.YES_OPTION) {
-                foods.remove(fi);
-                myFoods.remove(idx);
-                model.remove(idx);
-                list.setCellRenderer(new FoodListRenderer(myFoods));
-                list.revalidate();
-                list.repaint();
-                refreshItems("All");
-                refreshRestaurantList();
-                log("Restaurant " + currentUser.username + " removed food: " + fi.name);
+            List<Entry> page = new ArrayList<>();
+            int skipped = 0;
+            for (int k = snapshot.size() - 1; k >= 0 && page.size() < limit; k--) {
+                long[] at = offsets.get(k);
+                try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(snapshot.get(k).file, "r")) {
+                    for (int i = at.length - 1; i >= 0 && page.size() < limit; i--) {
+                        raf.seek(at[i]);
+                        byte[] body = new byte[raf.readInt()];
+                        raf.readFully(body);
+                        Entry e = decode(body);
+                        if (!filter.matches(e))
+                            continue;
+                        if (skipped < from)
+                            skipped++;
+                        else
+                            page.add(e);
+                    }
+                } catch (IOException ex) {
+                    // rotated away while we were reading; older entries are gone anyway
+                    break;
+                }
             }
-        });
+            return page;
+        }
 
-        stockBtn.addActionListener(e -> {
-            int idx = list.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select a food item to toggle stock");
+        private static Entry decode(byte[] body) throws IOException {
+            DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(body));
+            long time = in.readLong();
+            String actor = Journal.readStr(in);
+            String action = Journal.readStr(in);
+            UUID order = in.readBoolean() ? Journal.readUuid(in) : null;
+            return new Entry(time, actor, action, order, Journal.readStr(in));
+        }
+
+        /** Drains what is queued and stops the writer. */
+        void close() {
+            if (!running)
                 return;
+            sync();
+            running = false;
+            try {
+                writer.join(2000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
             }
-            FoodItem fi = myFoods.get(idx);
-            fi.inStock = !fi.inStock;
-            model.set(idx, fi.name + " - VND " + fi.price + (fi.inStock ? "" : " (Out of Stock)"));
-            list.revalidate();
-            list.repaint();
-            refreshItems("All");
-            log("Restaurant " + currentUser.username + " toggled stock for: " + fi.name + " to " + (fi.inStock ? "in stock" : "out of stock"));
-        });
+        }
+    }
 
-        // Category action listeners
-        addCatBtn.addActionListener(e -> {
-            String name = JOptionPane.showInputDialog(dlg, "New category name:");
-            if (name != null && !name.trim().isEmpty()) {
-                name = name.trim();
-                if (!currentUser.myCategories.contains(name)) {
-                    currentUser.myCategories.add(name);
-                    catModel.addElement(name);
-                    refreshItemsByRestaurant(currentUser.restaurantName);
+    // -------------------- Chat --------------------
+    // Live chat per order in a fixed-size ring: times as longs, senders as a slot into a tiny
+    // per-channel name table (an order has two or three participants), texts as strings.
+    // Message objects are only built for views. When an order is delivered its channel is
+    // appended to an on-disk history file and dropped from memory.
+    static class ChatStore {
+        static final int CAPACITY = 256; // messages kept per live order; older ones fall off
+
+        static class Channel {
+            private final long[] times = new long[CAPACITY];
+            private final byte[] senderSlots = new byte[CAPACITY];
+            private final String[] texts = new String[CAPACITY];
+            private final List<String> senders = new ArrayList<>(3);
+            private int head; // index of the oldest message
+            private int size;
+            private long dropped; // messages pushed out of the ring
+
+            void add(String sender, String text, long time) {
+                int slot = senders.indexOf(sender);
+                if (slot < 0) {
+                    slot = senders.size();
+                    senders.add(sender);
+                }
+                int at = (head + size) % CAPACITY;
+                if (size == CAPACITY) {
+                    head = (head + 1) % CAPACITY;
+                    dropped++;
                 } else {
-                    JOptionPane.showMessageDialog(dlg, "Category already exists");
+                    size++;
                 }
+                times[at] = time;
+                senderSlots[at] = (byte) slot;
+                texts[at] = text;
             }
-        });
 
-        editCatBtn.addActionListener(e -> {
-            int idx = catList.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select a category to edit");
-                return;
+            List<Message> messages() {
+                List<Message> out = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    int at = (head + i) % CAPACITY;
+                    Message m = new Message(senders.get(senderSlots[at]), texts[at]);
+                    m.time = new Date(times[at]);
+                    out.add(m);
+                }
+                return out;
             }
-            String oldName = catModel.get(idx);
-            String newName = JOptionPane.showInputDialog(dlg, "New name:", oldName);
-            if (newName != null && !newName.trim().isEmpty()) {
-                newName = newName.trim();
-                currentUser.myCategories.set(idx, newName);
-                catModel.set(idx, newName);
-                // Update foods with this category
-                for (FoodItem fi : foods) {
-                    if (currentUser.restaurantName.equals(fi.restaurantOwner) && oldName.equals(fi.category)) {
-                        fi.category = newName;
-                    }
-                }
-                refreshItemsByRestaurant(currentUser.restaurantName);
-            }
-        });
+        }
 
-        delCatBtn.addActionListener(e -> {
-            int idx = catList.getSelectedIndex();
-            if (idx < 0) {
-                JOptionPane.showMessageDialog(dlg, "Please select a category to remove");
-                return;
-            }
-            String name = catModel.get(idx);
-            if ("All".equals(name)) {
-                JOptionPane.showMessageDialog(dlg, "Cannot remove 'All' category");
-                return;
-            }
-            int confirm = JOptionPane.showConfirmDialog(dlg, "Remove category '" + name + "'? Foods in this category will be moved to 'All'.", "Confirm", JOptionPane.YES_NO_OPTION);
-            if (confirm == JOptionPane.YES_OPTION) {
-                currentUser.myCategories.remove(name);
-                catModel.remove(idx);
-                // Move foods to "All"
-                for (FoodItem fi : foods) {
-                    if (currentUser.restaurantName.equals(fi.restaurantOwner) && name.equals(fi.category)) {
-                        fi.category = "All";
+        private final Map<UUID, Channel> live = new HashMap<>();
+        private final File historyFile;
+        private final Map<UUID, Long> offloaded = new HashMap<>(); // order id -> record offset in historyFile
+        private java.io.RandomAccessFile history;
+
+        ChatStore(File historyFile) {
+            this.historyFile = historyFile;
+        }
+
+        /** Opens the history file and indexes its records; a torn tail from a crash is cut off. */
+        synchronized void open() throws IOException {
+            history = new java.io.RandomAccessFile(historyFile, "rw");
+            long pos = 0, len = history.length();
+            try (DataInputStream in = new DataInputStream(
+                    new java.io.BufferedInputStream(new java.io.FileInputStream(historyFile), 64 * 1024))) {
+                while (pos + 20 <= len) {
+                    UUID id = new UUID(in.readLong(), in.readLong());
+                    int bytes = in.readInt();
+                    if (pos + 20 + bytes > len)
+                        break;
+                    for (int left = bytes, k; left > 0; left -= k) {
+                        if ((k = in.skipBytes(left)) <= 0)
+                            throw new java.io.EOFException();
                     }
+                    offloaded.put(id, pos);
+                    pos += 20 + bytes;
                 }
-                refreshItemsByRestaurant(currentUser.restaurantName);
             }
-        });
+            if (pos < len)
+                history.setLength(pos);
+        }
 
-        return main;
-    }
+        synchronized Message append(UUID orderId, String sender, String text, long time) {
+            live.computeIfAbsent(orderId, k -> new Channel()).add(sender, text, time);
+            Message m = new Message(sender, text);
+            m.time = new Date(time);
+            return m;
+        }
 
-    private JPanel createOrderManagementPanel(JDialog dlg) {
-        JPanel main = new JPanel(new BorderLayout());
+        /** Seeds a channel from messages carried inline by a snapshot or a legacy save file. */
+        synchronized void load(UUID orderId, List<Message> messages) {
+            for (Message m : messages)
+                live.computeIfAbsent(orderId, k -> new Channel()).add(m.sender, m.text, m.time.getTime());
+        }
 
-        DefaultListModel<String> ordersModel = new DefaultListModel<>();
-        // filter orders that have foods from this restaurant
-        orders.stream()
-            .filter(o -> o.items.stream().anyMatch(item -> currentUser.restaurantName.equals(item.food.restaurantOwner)))
-            .forEach(o -> ordersModel.addElement(formatOrderLine(o)));
-        JList<String> ordersList = new JList<>(ordersModel);
-        main.add(new JScrollPane(ordersList), BorderLayout.CENTER);
+        /** Live messages, or the offloaded history of a delivered order; oldest first. */
+        synchronized List<Message> history(UUID orderId) {
+            Channel c = live.get(orderId);
+            if (c != null)
+                return c.messages();
+            Long at = offloaded.get(orderId);
+            if (at == null || history == null)
+                return new ArrayList<>();
+            try {
+                history.seek(at + 16);
+                byte[] body = new byte[history.readInt()];
+                history.readFully(body);
+                DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(body));
+                int n = in.readInt();
+                List<Message> out = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    long time = in.readLong();
+                    Message m = new Message(Journal.readStr(in), Journal.readStr(in));
+                    m.time = new Date(time);
+                    out.add(m);
+                }
+                return out;
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                return new ArrayList<>();
+            }
+        }
 
-        JPanel bottom = new JPanel();
-        JButton prepare = new JButton("Mark PREPARING");
-        JButton ready = new JButton("Mark READY FOR PICKUP");
-        JButton cancel = new JButton("Cancel Order");
-        JButton viewDetails = new JButton("View Order Details");
-        prepare.addActionListener(e -> {
-            int i = ordersList.getSelectedIndex();
-            if (i < 0) return;
-            Order o = findOrderFromDisplay(ordersModel.get(i));
-            if (o != null) {
-                o.status = OrderStatus.PREPARING;
-                log("Restaurant " + currentUser.username + " set PREPARING order " + o.id);
-                ordersModel.set(i, formatOrderLine(o));
+        /** Live channels, for the snapshot. */
+        synchronized Map<UUID, List<Message>> liveHistories() {
+            Map<UUID, List<Message>> out = new HashMap<>();
+            for (Map.Entry<UUID, Channel> e : live.entrySet())
+                out.put(e.getKey(), e.getValue().messages());
+            return out;
+        }
+
+        /**
+         * Writes the channel to the history file (forced), then frees it. True once the messages
+         * are in the file, also when they already were; a failed write or force leaves the channel
+         * live. The force runs outside this store's monitor, so other chats are not held up by it;
+         * callers should not hold the store lock either.
+         */
+        boolean offload(UUID orderId) throws IOException {
+            java.io.RandomAccessFile file;
+            long at;
+            synchronized (this) {
+                if (!live.containsKey(orderId) || history == null)
+                    return false;
+                if (offloaded.containsKey(orderId)) {
+                    live.remove(orderId);
+                    return true;
+                }
+                file = history;
+                at = write(orderId, live.get(orderId));
             }
-        });
-        ready.addActionListener(e -> {
-            int i = ordersList.getSelectedIndex();
-            if (i < 0) return;
-            Order o = findOrderFromDisplay(ordersModel.get(i));
-            if (o != null) {
-                o.status = OrderStatus.READY_FOR_PICKUP;
-                log("Restaurant " + currentUser.username + " set READY order " + o.id);
-                ordersModel.set(i, formatOrderLine(o));
+            file.getFD().sync();
+            synchronized (this) {
+                offloaded.put(orderId, at);
+                live.remove(orderId);
             }
-        });
-        cancel.addActionListener(e -> {
-            int i = ordersList.getSelectedIndex();
-            if (i < 0) return;
-            Order o = findOrderFromDisplay(ordersModel.get(i));
-            if (o == null) return;
-            if (o.status != OrderStatus.PLACED) {
-                JOptionPane.showMessageDialog(dlg, "Can only cancel orders that are placed after 1 minute.");
-                return;
+            return true;
+        }
+
+        /** Appends the channel's messages as one history record and returns its offset. */
+        private long write(UUID orderId, Channel c) throws IOException {
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream(64 + c.size * 48);
+            DataOutputStream body = new DataOutputStream(bytes);
+            List<Message> messages = c.messages();
+            body.writeInt(messages.size());
+            for (Message m : messages) {
+                body.writeLong(m.time.getTime());
+                Journal.writeStr(body, m.sender);
+                Journal.writeStr(body, m.text);
             }
-            long diff = new Date().getTime() - o.created.getTime();
-            if (diff > 60000) { // 1 minute
-                JOptionPane.showMessageDialog(dlg, "Cannot cancel order after 1 minute.");
-                return;
+            long at = history.length();
+            try {
+                history.seek(at);
+                history.writeLong(orderId.getMostSignificantBits());
+                history.writeLong(orderId.getLeastSignificantBits());
+                history.writeInt(bytes.size());
+                history.write(bytes.toByteArray());
+            } catch (IOException ex) {
+                try {
+                    history.setLength(at); // no half record for the next one to land behind
+                } catch (IOException again) {
+                    ex.addSuppressed(again);
+                }
+                throw ex;
             }
-            int confirm = JOptionPane.showConfirmDialog(dlg, "Cancel this order?", "Confirm", JOptionPane.YES_NO_OPTION);
-            if (confirm == JOptionPane.YES_OPTION) {
-                o.status = OrderStatus.CANCELLED;
-                log("Order " + o.id + " cancelled by restaurant " + currentUser.username);
-                ordersModel.set(i, formatOrderLine(o));
-                JOptionPane.showMessageDialog(dlg, "Order cancelled.");
+            return at;
+        }
+
+        /** Forgets a live channel whose messages are already offloaded (journal replay). */
+        synchronized void drop(UUID orderId) {
+            live.remove(orderId);
+        }
+
+        synchronized void close() {
+            try {
+                if (history != null)
+                    history.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
             }
-        });
-        viewDetails.addActionListener(e -> {
-            int i = ordersList.getSelectedIndex();
-            if (i < 0) return;
-            Order o = findOrderFromDisplay(ordersModel.get(i));
-            if (o == null) return;
+            history = null;
+        }
+    }
 
-            StringBuilder sb = new StringBuilder();
-            sb.append("Order ID: ").append(o.id).append("\n");
-            sb.append("Status: ").append(o.status).append("\n");
-            sb.append("Ordered at: ").append(o.created).append("\n");
-            sb.append("Address: ").append(o.addressSnapshot).append("\n");
-            sb.append("Phone: ").append(o.phoneSnapshot).append("\n\n");
-            sb.append("Items Ordered:\n");
-            for (OrderItem item : o.items) {
-                double itemPrice = item.food.price + item.food.variationPrices.getOrDefault(item.variation, 0.0);
-                String variationText = item.variation.isEmpty() ? "" : " (" + item.variation + ")";
-                sb.append("- ").append(item.food.name).append(variationText).append(" x").append(item.qty).append("  VND ").append(formatPrice(itemPrice * item.qty)).append("\n");
+    // -------------------- Reviews --------------------
+    // Every rating is one append-only record in the review file; nothing but a per-subject list
+    // of record offsets and a running aggregate stays in memory. Food reviews are indexed under
+    // the food and under its restaurant, so both aggregate and page without a scan.
+    // Record: [len][kind][subject][restaurant][stars][time][author][comment]
+    static class Review {
+        final String author; // null for reviews migrated from before the review store
+        final int stars;
+        final String comment;
+        final Date time;
+
+        Review(String author, int stars, String comment, Date time) {
+            this.author = author;
+            this.stars = stars;
+            this.comment = comment;
+            this.time = time;
+        }
+    }
+
+    /** Running rating aggregate; every update is O(1). */
+    static class RatingStats {
+        static final long HALF_LIFE_MS = 30L * 24 * 60 * 60 * 1000; // a review counts half as much after 30 days
+
+        private int count;
+        private long sum;
+        private final int[] stars = new int[6]; // histogram, index = stars
+        private double decayedSum, decayedWeight; // both relative to `latest`
+        private long latest;
+
+        synchronized void add(int stars, long time) {
+            stars = Math.max(1, Math.min(5, stars)); // the histogram has slots for 1..5 only
+            count++;
+            sum += stars;
+            this.stars[stars]++;
+            if (time >= latest) {
+                double f = Math.pow(0.5, (double) (time - latest) / HALF_LIFE_MS);
+                decayedSum = decayedSum * f + stars;
+                decayedWeight = decayedWeight * f + 1;
+                latest = time;
+            } else { // out of order (migration): age the new review instead
+                double w = Math.pow(0.5, (double) (latest - time) / HALF_LIFE_MS);
+                decayedSum += stars * w;
+                decayedWeight += w;
             }
-            sb.append("\nTotal: VND ").append(String.format("%.2f", o.total)).append("\n");
+        }
 
-            if (o.note != null && !o.note.isEmpty()) {
-                sb.append("\nCustomer Note: ").append(o.note).append("\n");
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized double average() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /** Average where recent reviews weigh more; equals average() when all are equally old. */
+        synchronized double decayedAverage() {
+            return decayedWeight == 0 ? 0 : decayedSum / decayedWeight;
+        }
+
+        synchronized int[] histogram() {
+            return stars.clone();
+        }
+
+        String summary() {
+            int[] h = histogram();
+            return String.format("⭐ %.1f (%d reviews) · recent %.1f · 5★ %d · 4★ %d · 3★ %d · 2★ %d · 1★ %d",
+                    average(), count(), decayedAverage(), h[5], h[4], h[3], h[2], h[1]);
+        }
+    }
+
+    static class ReviewStore {
+        enum Kind { FOOD, SHIPPER, RESTAURANT }
+
+        static final RatingStats NONE = new RatingStats(); // never added to
+
+        private static class Subject {
+            final RatingStats stats = new RatingStats();
+            long[] offsets = new long[4];
+            int n;
+
+            void add(long offset, int stars, long time) {
+                if (n == offsets.length)
+                    offsets = Arrays.copyOf(offsets, n * 2);
+                offsets[n++] = offset;
+                stats.add(stars, time);
             }
+        }
 
-            if (o.assignedShipper != null) {
-                User shipper = users.get(o.assignedShipper);
-                if (shipper != null) {
-                    sb.append("\nShipper Information:\n");
-                    sb.append("Name: ").append(shipper.shipperName != null ? shipper.shipperName : shipper.username).append("\n");
-                    sb.append("Phone: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
-                    sb.append("Rating: ").append(String.format("%.1f", shipper.shipperRatings.stream().mapToDouble(d -> d).average().orElse(0))).append(" (").append(shipper.shipperRatings.size()).append(" reviews)\n");
+        private final File file;
+        private final Map<Kind, Map<String, Subject>> subjects = new EnumMap<>(Kind.class);
+        private java.io.RandomAccessFile out;
 
-                    if (o.status == OrderStatus.DELIVERING) {
-                        sb.append("\n🚚 Delivery Information:\n");
-                        sb.append("Shipper is currently delivering your order.\n");
-                        sb.append("Contact shipper: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
-                        sb.append("Estimated delivery: Soon\n");
-                    }
+        ReviewStore(File file) {
+            this.file = file;
+            for (Kind k : Kind.values())
+                subjects.put(k, new java.util.concurrent.ConcurrentHashMap<>());
+        }
+
+        /**
+         * Indexes the review file and builds the aggregates; a torn tail from a crash is cut off and
+         * a record that does not decode (bad kind, stars out of 1..5) is skipped.
+         */
+        synchronized void open() throws IOException {
+            out = new java.io.RandomAccessFile(file, "rw");
+            long pos = 0, len = out.length();
+            int skipped = 0;
+            try (DataInputStream in = new DataInputStream(
+                    new java.io.BufferedInputStream(new java.io.FileInputStream(file), 64 * 1024))) {
+                while (pos + 4 <= len) {
+                    int bytes = in.readInt();
+                    if (bytes <= 0 || pos + 4 + bytes > len)
+                        break;
+                    byte[] body = new byte[bytes];
+                    in.readFully(body);
+                    if (!indexRecord(pos, body))
+                        skipped++;
+                    pos += 4 + bytes;
                 }
-            } else {
-                sb.append("\nNo shipper assigned yet.\n");
             }
+            if (pos < len)
+                out.setLength(pos);
+            if (skipped > 0)
+                System.out.println("Skipped " + skipped + " unreadable reviews in " + file + ".");
+        }
 
-            JTextArea ta = new JTextArea(sb.toString());
-            ta.setEditable(false);
-            JScrollPane sp = new JScrollPane(ta);
-            sp.setPreferredSize(new Dimension(500, 400));
-            JOptionPane.showMessageDialog(dlg, sp, "Order Details", JOptionPane.PLAIN_MESSAGE);
-        });
-        bottom.add(prepare);
-        bottom.add(ready);
-        bottom.add(cancel);
-        bottom.add(viewDetails);
-        main.add(bottom, BorderLayout.SOUTH);
-        return main;
-    }
+        private boolean indexRecord(long pos, byte[] body) {
+            try {
+                DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(body));
+                int kind = in.readByte();
+                String subject = Journal.readStr(in);
+                String restaurant = Journal.readStr(in);
+                int stars = in.readByte();
+                long time = in.readLong();
+                if (kind < 0 || kind >= Kind.values().length || subject == null || stars < 1 || stars > 5)
+                    return false;
+                index(pos, Kind.values()[kind], subject, restaurant, stars, time);
+                return true;
+            } catch (IOException | RuntimeException ex) {
+                return false;
+            }
+        }
 
-    // Owner: view orders, mark preparing / ready
-    private void showOwnerPanel() {
-        JDialog dlg = new JDialog(frame, "Owner - Orders", true);
-        dlg.setSize(800, 500);
-        dlg.setLocationRelativeTo(frame);
-        JPanel main = new JPanel(new BorderLayout());
+        private void index(long pos, Kind kind, String subject, String restaurant, int stars, long time) {
+            subjects.get(kind).computeIfAbsent(subject, k -> new Subject()).add(pos, stars, time);
+            if (restaurant != null)
+                subjects.get(Kind.RESTAURANT).computeIfAbsent(restaurant, k -> new Subject()).add(pos, stars, time);
+        }
 
-        DefaultListModel<String> ordersModel = new DefaultListModel<>();
-        orders.forEach(o -> ordersModel.addElement(formatOrderLine(o)));
-        JList<String> ordersList = new JList<>(ordersModel);
-        main.add(new JScrollPane(ordersList), BorderLayout.CENTER);
+        /** Appends a review; `restaurant` (food reviews only) also counts it towards that restaurant. */
+        synchronized void add(Kind kind, String subject, String restaurant, Review r) throws IOException {
+            if (out == null)
+                throw new IOException("review store is closed");
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream(64);
+            DataOutputStream body = new DataOutputStream(bytes);
+            body.writeByte(kind.ordinal());
+            Journal.writeStr(body, subject);
+            Journal.writeStr(body, restaurant);
+            body.writeByte(r.stars);
+            body.writeLong(r.time.getTime());
+            Journal.writeStr(body, r.author);
+            Journal.writeStr(body, r.comment);
+            long at = out.length();
+            out.seek(at);
+            out.writeInt(bytes.size());
+            out.write(bytes.toByteArray());
+            index(at, kind, subject, restaurant, r.stars, r.time.getTime());
+        }
 
-        JPanel bottom = new JPanel();
-        JButton prepare = new JButton("Mark PREPARING");
-        JButton ready = new JButton("Mark READY FOR PICKUP");
-        prepare.addActionListener(e -> {
-            int i = ordersList.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = orders.get(i);
-            o.status = OrderStatus.PREPARING;
-            log("Owner set PREPARING order " + o.id);
-            ordersModel.set(i, formatOrderLine(o));
-        });
-        ready.addActionListener(e -> {
-            int i = ordersList.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = orders.get(i);
-            o.status = OrderStatus.READY_FOR_PICKUP;
-            log("Owner set READY order " + o.id);
-            ordersModel.set(i, formatOrderLine(o));
-        });
-        bottom.add(prepare);
-        bottom.add(ready);
-        main.add(bottom, BorderLayout.SOUTH);
+        RatingStats stats(Kind kind, String subject) {
+            Subject s = subject == null ? null : subjects.get(kind).get(subject);
+            return s == null ? NONE : s.stats;
+        }
 
-        dlg.getContentPane().add(main);
-        dlg.setVisible(true);
+        /** Up to `limit` reviews, newest first, skipping the `from` newest. */
+        synchronized List<Review> page(Kind kind, String subject, int from, int limit) throws IOException {
+            from = Math.max(0, from);
+            limit = Math.max(1, limit);
+            Subject s = subjects.get(kind).get(subject);
+            List<Review> page = new ArrayList<>();
+            if (s == null || out == null)
+                return page;
+            for (int i = s.n - 1 - from; i >= 0 && page.size() < limit; i--) {
+                out.seek(s.offsets[i]);
+                byte[] body = new byte[out.readInt()];
+                out.readFully(body);
+                DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(body));
+                in.readByte();
+                Journal.readStr(in);
+                Journal.readStr(in);
+                int stars = in.readByte();
+                Date time = new Date(in.readLong());
+                page.add(new Review(Journal.readStr(in), stars, Journal.readStr(in), time));
+            }
+            return page;
+        }
+
+        synchronized void sync() throws IOException {
+            if (out != null)
+                out.getFD().sync();
+        }
+
+        synchronized void close() {
+            try {
+                if (out != null)
+                    out.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            out = null;
+        }
     }
 
-    // Shipper: accept and mark shipped/delivered
-    private void showShipperPanel() {
-        JPanel right = new JPanel(new GridLayout(0, 1, 6, 6));
-        JButton accept = new JButton("Accept (Assign to me)");
-        JButton view = new JButton("View Details");
-        JButton myOrdersBtn = new JButton("My Orders");
-        right.add(accept);
-        right.add(view);
-        right.add(myOrdersBtn);
-        if (currentUser == null || currentUser.role != Role.SHIPPER) {
-            JOptionPane.showMessageDialog(frame, "Only shippers can open this panel.");
-            return;
+    // -------------------- Order archive --------------------
+    // Settled (DELIVERED/CANCELLED) orders live in an append-only file instead of the heap.
+    // The file is memory-mapped; only a primitive index (id, creation time, offset) is kept
+    // in memory, and records are decoded on demand. Updating an archived order appends a new
+    // version of the record; removing it appends a tombstone.
+    // Record: [len][kind][msb][lsb][created][status][total][flags][customer][shipper][restaurants][payload]
+    static class OrderArchive {
+        private static final byte KIND_ORDER = 1, KIND_TOMBSTONE = 2;
+        private static final int FLAG_COMPLAINT = 1;
+
+        /** Summary fields readable straight from the mapped file without decoding the order. */
+        static class Header {
+            UUID id;
+            long created;
+            OrderStatus status;
+            long totalMinor;
+            boolean hasComplaint;
+            String customer;
+            String shipper;
+            List<String> restaurants;
         }
-        JDialog dlg = new JDialog(frame, "Shipper - Orders", true);
-        dlg.setSize(900, 500);
-        dlg.setLocationRelativeTo(frame);
-        JPanel main = new JPanel(new BorderLayout());
-        JButton fileComplaintBtn = new JButton("File Complaint");
-        right.add(fileComplaintBtn);
-        fileComplaintBtn.addActionListener(e -> {
-            String text = JOptionPane.showInputDialog(dlg, "Describe your complaint:");
-            if (text != null && !text.isBlank()) {
-                Complaint c = new Complaint(currentUser.username, currentUser.role, text);
-                complaints.add(c);
-                log("Complaint filed by " + currentUser.username);
-                JOptionPane.showMessageDialog(dlg, "Complaint submitted.");
+
+        // superseded versions and tombstones are dropped by rewriting the file once they pass
+        // this many bytes and outweigh the live records
+        private static final long COMPACT_MIN_DEAD = 1 << 20;
+
+        private final File file;
+        private java.nio.channels.FileChannel channel;
+        private Mapping mapped = Mapping.EMPTY;
+        private long end; // bytes appended so far; the mapping catches up in force()
+        private long liveBytes; // bytes of the records the index points at; the rest is dead
+        private boolean usable; // set by a successful open(); appends are refused until then
+
+        // index: parallel primitive arrays, plus an open-addressing table from id to entry
+        private int size;
+        private long[] msb;
+        private long[] lsb;
+        private long[] createdAt;
+        private long[] offsets; // -1 once removed
+        private int[] lengths; // record length including the length prefix
+        private int live;
+        private int[] byCreated; // entries sorted by creation time, rebuilt lazily
+        private boolean byCreatedStale;
+        private int[] slots; // entry + 1, 0 = empty
+        // secondary postings (entry numbers) per customer, shipper, restaurant and complaint flag
+        static final String KEY_CUSTOMER = "c:", KEY_SHIPPER = "s:", KEY_RESTAURANT = "r:", KEY_COMPLAINT = "!";
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final BitSet posted = new BitSet();
+        private final BitSet complaintPosted = new BitSet();
+
+        private static final class Postings {
+            int[] entries = new int[4];
+            int n;
+
+            void add(int e) {
+                if (n == entries.length)
+                    entries = Arrays.copyOf(entries, n * 2);
+                entries[n++] = e;
             }
-        });
-        DefaultListModel<String> model = new DefaultListModel<>();
-        // show available orders (not assigned)
-        orders.forEach(o -> {
-            if (o.assignedShipper == null
-                    && (o.status == OrderStatus.READY_FOR_PICKUP || o.status == OrderStatus.PLACED))
-                model.addElement(formatOrderLine(o));
-        });
+        }
 
-        JList<String> list = new JList<>(model);
-        main.add(new JScrollPane(list), BorderLayout.CENTER);
+        /**
+         * The file mapped read-only in fixed-size chunks, so offsets are longs and the file can
+         * grow past 2 GB; a read may straddle two chunks. Never changes once built, so readers
+         * can share it without the archive lock.
+         */
+        static final class Mapping {
+            static final int CHUNK_BITS = 26; // 64 MB
+            private static final long CHUNK = 1L << CHUNK_BITS, MASK = CHUNK - 1;
+            static final Mapping EMPTY = new Mapping(new java.nio.MappedByteBuffer[0], 0);
+
+            private final java.nio.MappedByteBuffer[] chunks;
+            final long size;
+
+            private Mapping(java.nio.MappedByteBuffer[] chunks, long size) {
+                this.chunks = chunks;
+                this.size = size;
+            }
 
-        accept.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o == null)
-                return;
-            synchronized (o) {
-                if (o.assignedShipper != null) {
-                    JOptionPane.showMessageDialog(dlg, "This order was already accepted by " + o.assignedShipper);
-                    return;
+            /** The first `newSize` bytes of the file; whole chunks already mapped are reused. */
+            Mapping grow(java.nio.channels.FileChannel channel, long newSize) throws IOException {
+                int n = (int) ((newSize + MASK) >>> CHUNK_BITS);
+                java.nio.MappedByteBuffer[] next = new java.nio.MappedByteBuffer[n];
+                int whole = (int) Math.min(Math.min(size, newSize) >>> CHUNK_BITS, n);
+                System.arraycopy(chunks, 0, next, 0, whole);
+                for (int i = whole; i < n; i++) {
+                    long from = (long) i << CHUNK_BITS;
+                    next[i] = channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, from,
+                            Math.min(CHUNK, newSize - from));
                 }
-                o.assignedShipper = currentUser.username;
-                o.status = OrderStatus.ACCEPTED_BY_SHIPPER;
-                log("Shipper " + currentUser.username + " accepted order " + o.id);
-                model.remove(i);
-                JOptionPane.showMessageDialog(dlg, "Order accepted. Open 'My Orders' to manage it.");
+                return new Mapping(next, newSize);
             }
-        });
 
-        view.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o == null)
-                return;
-            JOptionPane.showMessageDialog(dlg, formatOrderDetailed(o));
-        });
+            byte get(long pos) {
+                return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & MASK));
+            }
 
-        myOrdersBtn.addActionListener(e -> {
-            // show orders assigned to me
-            DefaultListModel<String> myModel = new DefaultListModel<>();
-            orders.forEach(o -> {
-                if (currentUser.username.equals(o.assignedShipper))
-                    myModel.addElement(formatOrderLine(o));
-            });
-            JList<String> myList = new JList<>(myModel);
-            JButton inTransit = new JButton("Mark DELIVERING");
-            JButton delivered = new JButton("Mark DELIVERED");
-            JButton chatBtn = new JButton("Open Chat");
-            JPanel bot = new JPanel();
-            bot.add(inTransit);
-            bot.add(delivered);
-            bot.add(chatBtn);
+            int getInt(long pos) {
+                java.nio.MappedByteBuffer c = chunks[(int) (pos >>> CHUNK_BITS)];
+                int i = (int) (pos & MASK);
+                return i + 4 <= c.capacity() ? c.getInt(i) : (int) bigEndian(pos, 4);
+            }
 
-            JDialog md = new JDialog(dlg, "My Orders - " + currentUser.username, true);
-            md.setSize(800, 450);
-            md.setLocationRelativeTo(dlg);
-            md.getContentPane().add(new JScrollPane(myList), BorderLayout.CENTER);
-            md.getContentPane().add(bot, BorderLayout.SOUTH);
+            long getLong(long pos) {
+                java.nio.MappedByteBuffer c = chunks[(int) (pos >>> CHUNK_BITS)];
+                int i = (int) (pos & MASK);
+                return i + 8 <= c.capacity() ? c.getLong(i) : bigEndian(pos, 8);
+            }
 
-            inTransit.addActionListener(ae -> {
-                int sel = myList.getSelectedIndex();
-                if (sel < 0)
-                    return;
-                Order o = findOrderFromDisplay(myModel.get(sel));
-                if (o != null && currentUser.username.equals(o.assignedShipper)
-                        && o.status == OrderStatus.ACCEPTED_BY_SHIPPER) {
-                    o.status = OrderStatus.DELIVERING;
-                    log("Shipper " + currentUser.username + " set DELIVERING for " + o.id);
-                    myModel.set(sel, formatOrderLine(o));
-                }
-            });
+            private long bigEndian(long pos, int n) {
+                long v = 0;
+                for (int k = 0; k < n; k++)
+                    v = (v << 8) | (get(pos + k) & 0xFF);
+                return v;
+            }
 
-            delivered.addActionListener(ae -> {
-                int sel = myList.getSelectedIndex();
-                if (sel < 0)
-                    return;
-                Order o = findOrderFromDisplay(myModel.get(sel));
-                if (o != null && currentUser.username.equals(o.assignedShipper) && o.status == OrderStatus.DELIVERING) {
-                    o.status = OrderStatus.DELIVERED;
-                    // clear chat history when order is completed
-                    o.chat.clear();
-                    log("Shipper " + currentUser.username + " marked DELIVERED for " + o.id + " and cleared chat history");
-                    myModel.set(sel, formatOrderLine(o));
-                }
-            });
+            /** The record at `offset`, length prefix included. */
+            DataInputStream record(long offset) {
+                long limit = offset + 4 + getInt(offset);
+                return new DataInputStream(new java.io.InputStream() {
+                    private long pos = offset;
 
-            chatBtn.addActionListener(ae -> {
-                int sel = myList.getSelectedIndex();
-                if (sel < 0)
-                    return;
-                Order o = findOrderFromDisplay(myModel.get(sel));
-                if (o != null && (o.status == OrderStatus.ACCEPTED_BY_SHIPPER || o.status == OrderStatus.DELIVERING)) {
-                    showChatDialog(o);
-                } else {
-                    JOptionPane.showMessageDialog(md, "Chat available only when order is accepted by shipper or delivering.");
+                    @Override
+                    public int read() {
+                        return pos < limit ? get(pos++) & 0xFF : -1;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) {
+                        if (pos >= limit)
+                            return -1;
+                        java.nio.ByteBuffer c = chunks[(int) (pos >>> CHUNK_BITS)].duplicate();
+                        c.position((int) (pos & MASK));
+                        int n = (int) Math.min(Math.min(len, limit - pos), c.remaining());
+                        c.get(b, off, n);
+                        pos += n;
+                        return n;
+                    }
+                });
+            }
+        }
+
+        OrderArchive(File file) {
+            this.file = file;
+            clearIndex();
+        }
+
+        /**
+         * Maps the file and indexes it, cutting off a torn tail. Fields are only replaced once the
+         * whole file has been read; on failure the archive stays closed and unusable.
+         */
+        synchronized void open() throws IOException {
+            usable = false;
+            java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(file.toPath(),
+                    java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.READ,
+                    java.nio.file.StandardOpenOption.WRITE);
+            try {
+                long fileSize = ch.size();
+                Mapping m = Mapping.EMPTY.grow(ch, fileSize);
+                long pos = 0;
+                while (pos + 4 <= fileSize) {
+                    int len = m.getInt(pos);
+                    if (len <= 0 || pos + 4 + len > fileSize)
+                        break; // torn tail from a crash
+                    byte kind = m.get(pos + 4);
+                    long hi = m.getLong(pos + 5), lo = m.getLong(pos + 13);
+                    if (kind == KIND_ORDER) {
+                        long offset = pos;
+                        Mapping at = m;
+                        post(index(hi, lo, m.getLong(pos + 21), pos, 4 + len), m.get(pos + 38),
+                                () -> at.record(offset));
+                    } else {
+                        unindex(hi, lo);
+                    }
+                    pos += 4 + len;
                 }
-            });
+                if (pos < fileSize) {
+                    // drop the mapping over the tail before cutting it (a mapped region blocks truncation on Windows)
+                    m = Mapping.EMPTY;
+                    System.gc();
+                    ch.truncate(pos);
+                    m = Mapping.EMPTY.grow(ch, pos);
+                }
+                channel = ch;
+                mapped = m;
+                end = pos;
+                usable = true;
+            } catch (IOException | RuntimeException ex) {
+                clearIndex();
+                ch.close();
+                throw ex;
+            }
+        }
 
-            md.setVisible(true);
-        });
+        /** False when the last open() failed; the store then leaves settled orders in the heap. */
+        synchronized boolean usable() {
+            return usable;
+        }
 
-        main.add(right, BorderLayout.EAST);
-        dlg.getContentPane().add(main);
-        dlg.setVisible(true);
-    }
+        synchronized int count() {
+            return live;
+        }
 
-    // Administrator: manage customer accounts & view logs, apply discounts
-    private void showAdministratorPanel() {
-        JDialog dlg = new JDialog(frame, "Administrator - Accounts & Logs", true);
-        dlg.setSize(800, 600);
-        dlg.setLocationRelativeTo(frame);
-        JPanel main = new JPanel(new BorderLayout());
-        DefaultListModel<String> userModel = new DefaultListModel<>();
-        users.values().forEach(u -> userModel.addElement(u.username + " - " + u.role));
-        JList<String> userList = new JList<>(userModel);
-        main.add(new JScrollPane(userList), BorderLayout.WEST);
+        synchronized boolean contains(UUID id) {
+            int e = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return e >= 0 && offsets[e] >= 0;
+        }
 
-        DefaultListModel<String> logModel = new DefaultListModel<>();
-        logs.forEach(logModel::addElement);
-        JList<String> logList = new JList<>(logModel);
-        main.add(new JScrollPane(logList), BorderLayout.CENTER);
+        /** Appends (or supersedes) an order; call {@link #force()} to make a batch durable. */
+        synchronized void put(Order o) throws IOException {
+            java.io.ByteArrayOutputStream bos = new java.io.ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeInt(0); // length placeholder
+            out.writeByte(KIND_ORDER);
+            out.writeLong(o.id.getMostSignificantBits());
+            out.writeLong(o.id.getLeastSignificantBits());
+            out.writeLong(o.created.getTime());
+            out.writeByte(o.status.ordinal());
+            out.writeDouble(Money.toVnd(o.totalMinor)); // amounts stay VND doubles in this format, exact both ways
+            out.writeByte(o.complaint != null ? FLAG_COMPLAINT : 0);
+            Journal.writeStr(out, o.customer == null ? null : o.customer.username);
+            Journal.writeStr(out, o.assignedShipper);
+            Set<String> restaurants = new LinkedHashSet<>();
+            for (OrderItem it : o.items)
+                if (it.food.restaurantOwner != null)
+                    restaurants.add(it.food.restaurantOwner);
+            Journal.writeStrList(out, new ArrayList<>(restaurants));
+            writePayload(out, o);
+            out.flush();
+            byte[] record = bos.toByteArray();
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.wrap(record);
+            buf.putInt(0, record.length - 4);
+            long offset = append(buf);
+            // posted from the bytes in hand; the mapping is only extended once per batch, in force()
+            post(index(o.id.getMostSignificantBits(), o.id.getLeastSignificantBits(), o.created.getTime(), offset,
+                    record.length), record[38], () -> new DataInputStream(new java.io.ByteArrayInputStream(record)));
+        }
 
-        JPanel bottom = new JPanel();
-        JButton disable = new JButton("Delete Selected Customer");
-        disable.addActionListener(e -> {
-            int i = userList.getSelectedIndex();
-            if (i < 0)
-                return;
-            String s = userModel.get(i);
-            String uname = s.split(" - ")[0];
-            User u = users.get(uname);
-            if (u != null && u.role == Role.CUSTOMER) {
-                users.remove(uname);
-                userModel.remove(i);
-                log("Administrator deleted customer: " + uname);
-                JOptionPane.showMessageDialog(dlg, "Deleted " + uname);
-            } else {
-                JOptionPane.showMessageDialog(dlg, "Can only delete customers.");
+        synchronized void remove(UUID id) throws IOException {
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(4 + 17);
+            buf.putInt(17).put(KIND_TOMBSTONE).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+            buf.flip();
+            append(buf);
+            unindex(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+
+        /** Makes the appended records durable and visible through the mapping. */
+        synchronized void force() throws IOException {
+            channel.force(false);
+            remapIfGrown();
+        }
+
+        /** Makes the appended records visible through the mapping; {@link #sync()} makes them durable. */
+        synchronized void publish() throws IOException {
+            remapIfGrown();
+        }
+
+        synchronized void sync() throws IOException {
+            if (usable)
+                channel.force(false);
+        }
+
+        /**
+         * Rewrites the live records into a fresh file once superseded versions and tombstones make
+         * up most of it, so they stop costing disk and a rescan in {@link #open()}. Called at
+         * checkpoints; returns whether it rewrote. {@link Records} taken earlier keep reading the
+         * old mapping.
+         */
+        synchronized boolean compactIfNeeded() throws IOException {
+            long dead = end - liveBytes;
+            if (!usable || dead < COMPACT_MIN_DEAD || dead <= liveBytes)
+                return false;
+            int[] keep = java.util.stream.IntStream.range(0, size).filter(e -> offsets[e] >= 0).boxed()
+                    .sorted(Comparator.comparingLong(e -> offsets[e])).mapToInt(Integer::intValue).toArray();
+            File tmp = new File(file.getPath() + ".tmp");
+            try (java.nio.channels.FileChannel out = java.nio.channels.FileChannel.open(tmp.toPath(),
+                    java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.WRITE,
+                    java.nio.file.StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (int i = 0; i < keep.length;) {
+                    // adjacent live records go across in one transfer
+                    long from = offsets[keep[i]], to = from + lengths[keep[i]];
+                    for (i++; i < keep.length && offsets[keep[i]] == to; i++)
+                        to += lengths[keep[i]];
+                    while (from < to)
+                        from += channel.transferTo(from, to - from, out);
+                }
+                out.force(true);
             }
-        });
-        JButton changeUserImg = new JButton("Change User Image");
-        changeUserImg.addActionListener(ev -> {
-            int i = userList.getSelectedIndex();
-            if (i < 0)
-                return;
-            String s = userModel.get(i);
-            String uname = s.split(" - ")[0];
-            User u = users.get(uname);
-            if (u == null)
+            try {
+                java.nio.file.Files.move(tmp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                        java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                tmp.delete(); // the old file is untouched
+                throw ex;
+            }
+            channel.close();
+            channel = null;
+            mapped = Mapping.EMPTY;
+            clearIndex();
+            open();
+            return true;
+        }
+
+        /** Decodes one order, or returns null if it is not archived. */
+        synchronized Order get(UUID id, Map<String, User> users, java.util.function.Function<UUID, FoodItem> foods)
+                throws IOException {
+            int e = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (e < 0 || offsets[e] < 0)
+                return null;
+            return decode(offsets[e], users, foods);
+        }
+
+        /** Reads just the header of an archived order, or returns null if it is not archived. */
+        synchronized Header header(UUID id) throws IOException {
+            int e = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (e < 0 || offsets[e] < 0)
+                return null;
+            remapIfGrown();
+            return readHeader(offsets[e]);
+        }
+
+        /** Visits, in creation order, the headers filed under one posting key (e.g. KEY_CUSTOMER + name). */
+        synchronized void forEachHeader(String key, java.util.function.Consumer<Header> action) throws IOException {
+            Postings p = postings.get(key);
+            if (p == null)
                 return;
-            JFileChooser chooser = new JFileChooser();
-            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
-            if (chooser.showOpenDialog(dlg) == JFileChooser.APPROVE_OPTION) {
-                u.profileImagePath = chooser.getSelectedFile().getAbsolutePath();
-                log("Administrator changed profile image for " + u.username);
-                JOptionPane.showMessageDialog(dlg, "Profile image updated for " + u.username);
+            remapIfGrown();
+            int[] entries = Arrays.copyOf(p.entries, p.n);
+            if (!sortedByCreation(entries))
+                entries = Arrays.stream(entries).boxed().sorted(Comparator.comparingLong(e -> createdAt[e]))
+                        .mapToInt(Integer::intValue).toArray();
+            for (int e : entries) {
+                if (offsets[e] < 0)
+                    continue;
+                Header h = readHeader(offsets[e]);
+                if (!KEY_COMPLAINT.equals(key) || h.hasComplaint) // the complaint may have been resolved since
+                    action.accept(h);
             }
-        });
-        bottom.add(changeUserImg);
-        JButton viewAllOrders = new JButton("View All Orders");
-        viewAllOrders.addActionListener(e -> {
-            String text = orders.stream().map(this::formatOrderDetailed).collect(Collectors.joining("\n\n"));
-            JTextArea ta = new JTextArea(text);
-            ta.setEditable(false);
-            JScrollPane sp = new JScrollPane(ta);
-            sp.setPreferredSize(new Dimension(600, 400));
-            JOptionPane.showMessageDialog(dlg, sp, "Orders", JOptionPane.PLAIN_MESSAGE);
-        });
-        bottom.add(disable);
-        bottom.add(viewAllOrders);
-        main.add(bottom, BorderLayout.SOUTH);
+        }
 
-        dlg.getContentPane().add(main);
-        dlg.setVisible(true);
-    }
+        private boolean sortedByCreation(int[] entries) {
+            for (int i = 1; i < entries.length; i++)
+                if (createdAt[entries[i]] < createdAt[entries[i - 1]])
+                    return false;
+            return true;
+        }
 
-    // Customer service: see complaints and resolve
-    private void showCustomerServicePanel() {
-        JDialog dlg = new JDialog(frame, "Customer Service - Complaints", true);
-        dlg.setSize(800, 500);
-        dlg.setLocationRelativeTo(frame);
-        JPanel main = new JPanel(new BorderLayout());
+        /**
+         * Live record offsets and the mapping that holds them. Written records never change, so
+         * these can be read without the archive lock and from several threads at once.
+         */
+        static class Records {
+            private final Mapping mapped;
+            private final long[] offsets;
+
+            Records(Mapping mapped, long[] offsets) {
+                this.mapped = mapped;
+                this.offsets = offsets;
+            }
 
-        DefaultListModel<String> model = new DefaultListModel<>();
-        // Add complaints
-        for (Complaint c : complaints)
-            model.addElement(c.toString());
+            int size() {
+                return offsets.length;
+            }
 
-        // Add orders with complaints
-        for (Order o : orders) {
-            if (o.complaint != null)
-                model.addElement(formatOrderLine(o) + " COMPLAINT: " + o.complaint);
+            /** Feeds the lines of record `i` to the rollups if that order was delivered. */
+            void forEachDeliveredLine(int i, SalesAnalytics.Rollups sales) throws IOException {
+                DataInputStream in = mapped.record(offsets[i]);
+                in.readInt();
+                in.readByte();
+                in.readLong();
+                in.readLong();
+                long created = in.readLong();
+                if (in.readByte() != OrderStatus.DELIVERED.ordinal())
+                    return;
+                in.readDouble();
+                in.readByte();
+                Journal.readStr(in);
+                Journal.readStr(in);
+                Journal.readStrList(in);
+                sales.beginOrder();
+                int n = in.readInt();
+                for (int k = 0; k < n; k++) {
+                    UUID food = Journal.readUuid(in);
+                    String name = Journal.readStr(in);
+                    double price = in.readDouble();
+                    String owner = Journal.readStr(in);
+                    Journal.readStr(in); // variation
+                    double variationPrice = in.readDouble();
+                    sales.line(created, owner, food, name, Money.of(price) + Money.of(variationPrice), in.readInt());
+                }
+            }
         }
 
-        JList<String> list = new JList<>(model);
-        main.add(new JScrollPane(list), BorderLayout.CENTER);
+        synchronized Records records() throws IOException {
+            remapIfGrown();
+            long[] out = new long[size];
+            int n = 0;
+            for (int e = 0; e < size; e++)
+                if (offsets[e] >= 0)
+                    out[n++] = offsets[e];
+            return new Records(mapped, Arrays.copyOf(out, n));
+        }
 
-        JPanel bottom = new JPanel();
-        JButton resolve = new JButton("Resolve & Refund");
-        resolve.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o != null) {
-                o.complaint = null;
-                model.remove(i);
-                log("Customer service resolved complaint for order " + o.id);
-                JOptionPane.showMessageDialog(dlg, "Resolved. (In real system, would issue refund/credit)");
+        /** Visits headers in creation order; nothing but the header is read from the file. */
+        synchronized void forEachHeader(java.util.function.Consumer<Header> action) throws IOException {
+            remapIfGrown();
+            if (byCreatedStale) {
+                byCreated = java.util.stream.IntStream.range(0, size).boxed()
+                        .sorted(Comparator.comparingLong(e -> createdAt[e]))
+                        .mapToInt(Integer::intValue).toArray();
+                byCreatedStale = false;
             }
-        });
-        JButton view = new JButton("View Order Details");
-        view.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o != null)
-                JOptionPane.showMessageDialog(dlg, formatOrderDetailed(o));
-        });
-        bottom.add(view);
-        bottom.add(resolve);
-        main.add(bottom, BorderLayout.SOUTH);
+            for (int e : byCreated) {
+                if (offsets[e] >= 0)
+                    action.accept(readHeader(offsets[e]));
+            }
+        }
 
-        dlg.getContentPane().add(main);
-        dlg.setVisible(true);
-    }
+        synchronized void close() {
+            try {
+                if (channel != null)
+                    channel.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
 
-    // Customer panel: my orders, complaint
-    // CUSTOMER: View orders + profile settings
-    private void showCustomerPanel() {
-        // Show customer's own orders
-        DefaultListModel<String> model = new DefaultListModel<>();
-        orders.forEach(o -> {
-            if (o.customer == currentUser)
-                model.addElement(formatOrderLine(o));
-        });
-        JDialog dlg = new JDialog(frame, "Customer Dashboard", true);
-        dlg.setSize(700, 600);
-        dlg.setLocationRelativeTo(frame);
-        dlg.getContentPane().setBackground(new Color(245, 245, 245));
+        private Header readHeader(long offset) throws IOException {
+            return readHeader(mapped.record(offset));
+        }
 
-        JPanel main = new JPanel(new BorderLayout());
-        main.setBorder(new EmptyBorder(10, 10, 10, 10));
-        main.setBackground(new Color(245, 245, 245));
+        private static Header readHeader(DataInputStream in) throws IOException {
+            in.readInt();
+            in.readByte();
+            Header h = new Header();
+            h.id = new UUID(in.readLong(), in.readLong());
+            h.created = in.readLong();
+            h.status = OrderStatus.values()[in.readByte()];
+            h.totalMinor = Money.of(in.readDouble());
+            h.hasComplaint = (in.readByte() & FLAG_COMPLAINT) != 0;
+            h.customer = Journal.readStr(in);
+            h.shipper = Journal.readStr(in);
+            h.restaurants = Journal.readStrList(in);
+            return h;
+        }
 
-        JList<String> list = new JList<>(model);
-        main.add(new JScrollPane(list), BorderLayout.CENTER);
+        private Order decode(long offset, Map<String, User> users, java.util.function.Function<UUID, FoodItem> foods)
+                throws IOException {
+            remapIfGrown();
+            DataInputStream in = mapped.record(offset);
+            in.readInt();
+            in.readByte();
+            Order o = new Order();
+            o.id = new UUID(in.readLong(), in.readLong());
+            o.created = new Date(in.readLong());
+            o.status = OrderStatus.values()[in.readByte()];
+            o.totalMinor = Money.of(in.readDouble());
+            in.readByte();
+            String customer = Journal.readStr(in);
+            o.customer = customer == null ? null : users.get(customer);
+            if (o.customer == null && customer != null)
+                o.customer = new User(customer, "", Role.CUSTOMER); // account was deleted since
+            o.assignedShipper = Journal.readStr(in);
+            Journal.readStrList(in);
+
+            Map<UUID, FoodItem> byId = new HashMap<>();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                UUID foodId = Journal.readUuid(in);
+                String name = Journal.readStr(in);
+                double price = in.readDouble();
+                String owner = Journal.readStr(in);
+                String variation = Journal.readStr(in);
+                double variationPrice = in.readDouble();
+                int qty = in.readInt();
+                long unit = Money.of(price) + Money.of(variationPrice);
+                FoodItem f = byId.get(foodId);
+                if (f == null)
+                    f = foods.apply(foodId);
+                if (f == null) {
+                    // removed from the menu since; keep what the receipt needs
+                    f = new FoodItem(name, "", 0, 0, Color.LIGHT_GRAY, null);
+                    f.id = foodId;
+                    f.restaurantOwner = owner;
+                    f.inStock = false;
+                    f.priceMinor = Money.of(price);
+                    if (variation != null && !variation.isEmpty())
+                        f.addVariation(variation, Money.of(variationPrice));
+                }
+                byId.put(foodId, f);
+                OrderItem it = new OrderItem(f, qty, variation);
+                it.unitMinor = unit;
+                o.items.add(it);
+            }
+            o.addressSnapshot = Journal.readStr(in);
+            o.phoneSnapshot = Journal.readStr(in);
+            o.complaint = Journal.readStr(in);
+            o.note = Journal.readStr(in);
+            int nm = in.readInt();
+            for (int i = 0; i < nm; i++) {
+                Message m = new Message(Journal.readStr(in), Journal.readStr(in));
+                m.time = new Date(in.readLong());
+                o.chat.add(m);
+            }
+            int nr = in.readInt();
+            for (int i = 0; i < nr; i++) {
+                FoodItem f = byId.get(Journal.readUuid(in));
+                double r = in.readDouble();
+                String comment = Journal.readStr(in);
+                if (f != null) {
+                    o.foodRatings.put(f, r);
+                    if (comment != null)
+                        o.foodComments.put(f, comment);
+                }
+            }
+            o.shipperRating = in.readBoolean() ? in.readDouble() : null;
+            o.shipperComment = Journal.readStr(in);
+            o.archived = true;
+            return o;
+        }
 
-        JButton chatBtn = new JButton("Open Chat");
-        chatBtn.setBackground(new Color(100, 149, 237));
-        chatBtn.setForeground(Color.WHITE);
-        chatBtn.setFocusPainted(false);
-        chatBtn.setOpaque(true);
-        chatBtn.setPreferredSize(new Dimension(80, 25));
-        chatBtn.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o != null && (o.status == OrderStatus.ACCEPTED_BY_SHIPPER || o.status == OrderStatus.DELIVERING)) {
-                showChatDialog(o);
-            } else {
-                JOptionPane.showMessageDialog(dlg, "Chat available only when order is accepted by shipper or delivering.");
+        private static void writePayload(DataOutputStream out, Order o) throws IOException {
+            out.writeInt(o.items.size());
+            for (OrderItem it : o.items) {
+                Journal.writeUuid(out, it.food.id);
+                Journal.writeStr(out, it.food.name);
+                out.writeDouble(Money.toVnd(it.unitMinor)); // unit price; older records split it with the slot below
+                Journal.writeStr(out, it.food.restaurantOwner);
+                Journal.writeStr(out, it.variation);
+                out.writeDouble(0);
+                out.writeInt(it.qty);
             }
-        });
-        JPanel bottom = new JPanel(new GridLayout(0, 4, 8, 8));
-        bottom.setBackground(new Color(245, 245, 245));
-        bottom.add(chatBtn);
+            Journal.writeStr(out, o.addressSnapshot);
+            Journal.writeStr(out, o.phoneSnapshot);
+            Journal.writeStr(out, o.complaint);
+            Journal.writeStr(out, o.note);
+            out.writeInt(o.chat.size());
+            for (Message m : o.chat) {
+                Journal.writeStr(out, m.sender);
+                Journal.writeStr(out, m.text);
+                out.writeLong(m.time.getTime());
+            }
+            out.writeInt(o.foodRatings.size());
+            for (Map.Entry<FoodItem, Double> e : o.foodRatings.entrySet()) {
+                Journal.writeUuid(out, e.getKey().id);
+                out.writeDouble(e.getValue());
+                Journal.writeStr(out, o.foodComments.get(e.getKey()));
+            }
+            out.writeBoolean(o.shipperRating != null);
+            if (o.shipperRating != null)
+                out.writeDouble(o.shipperRating);
+            Journal.writeStr(out, o.shipperComment);
+        }
 
-        // NEW BUTTON: Profile settings
-        JButton settingsBtn = new JButton("Profile Settings");
-        settingsBtn.setBackground(new Color(147, 112, 219));
-        settingsBtn.setForeground(Color.WHITE);
-        settingsBtn.setFocusPainted(false);
-        settingsBtn.setOpaque(true);
-        settingsBtn.setPreferredSize(new Dimension(80, 25));
-        settingsBtn.addActionListener(e -> showCustomerSettingsDialog());
-        bottom.add(settingsBtn);
+        private long append(java.nio.ByteBuffer buf) throws IOException {
+            if (!usable)
+                throw new IOException("Order archive " + file + " is not open");
+            long offset = end;
+            while (buf.hasRemaining())
+                end += channel.write(buf, end);
+            return offset;
+        }
 
-        JButton complainBtn = new JButton("File Complaint");
-        complainBtn.setBackground(new Color(255, 165, 0));
-        complainBtn.setForeground(Color.WHITE);
-        complainBtn.setFocusPainted(false);
-        complainBtn.setOpaque(true);
-        complainBtn.setPreferredSize(new Dimension(80, 25));
-        complainBtn.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o == null)
-                return;
+        private void remapIfGrown() throws IOException {
+            if (end != mapped.size)
+                mapped = mapped.grow(channel, end);
+        }
 
-            String text = JOptionPane.showInputDialog(dlg,
-                    "Describe your issue for order " + o.id + ":");
+        private void clearIndex() {
+            size = 0;
+            msb = new long[1024];
+            lsb = new long[1024];
+            createdAt = new long[1024];
+            offsets = new long[1024];
+            lengths = new int[1024];
+            live = 0;
+            liveBytes = 0;
+            byCreated = new int[0];
+            byCreatedStale = false;
+            slots = new int[2048];
+            postings.clear();
+            posted.clear();
+            complaintPosted.clear();
+        }
 
-            if (text != null && !text.isBlank()) {
-                o.complaint = text;
-                log("Complaint filed by " + currentUser.username + " on order " + o.id);
-                JOptionPane.showMessageDialog(dlg, "Complaint submitted.");
+        private int index(long hi, long lo, long created, long offset, int length) {
+            liveBytes += length;
+            int e = find(hi, lo);
+            if (e >= 0) {
+                if (offsets[e] < 0)
+                    live++;
+                else
+                    liveBytes -= lengths[e];
+                offsets[e] = offset;
+                lengths[e] = length;
+                return e;
             }
-        });
-        bottom.add(complainBtn);
+            if (size == msb.length) {
+                int cap = size * 2;
+                msb = Arrays.copyOf(msb, cap);
+                lsb = Arrays.copyOf(lsb, cap);
+                createdAt = Arrays.copyOf(createdAt, cap);
+                offsets = Arrays.copyOf(offsets, cap);
+                lengths = Arrays.copyOf(lengths, cap);
+            }
+            msb[size] = hi;
+            lsb[size] = lo;
+            createdAt[size] = created;
+            offsets[size] = offset;
+            lengths[size] = length;
+            size++;
+            live++;
+            byCreatedStale = true;
+            if (size * 2 > slots.length)
+                rehash(slots.length * 2);
+            else
+                insertSlot(size - 1);
+            return size - 1;
+        }
 
-        JButton rateBtn = new JButton("Rate Delivered Order");
-        rateBtn.setBackground(new Color(60, 179, 113));
-        rateBtn.setForeground(Color.WHITE);
-        rateBtn.setFocusPainted(false);
-        rateBtn.setOpaque(true);
-        rateBtn.setPreferredSize(new Dimension(80, 25));
-        rateBtn.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0)
-                return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o == null || o.status != OrderStatus.DELIVERED)
+        // customer, shipper and restaurants never change once an order is settled, so an entry is
+        // posted once; the complaint flag can be set later by a newer version of the record
+        private void post(int e, byte flags, java.util.function.Supplier<DataInputStream> record) throws IOException {
+            boolean first = !posted.get(e);
+            boolean complaint = (flags & FLAG_COMPLAINT) != 0 && !complaintPosted.get(e);
+            if (!first && !complaint)
                 return;
-            showRateOrderDialog(o);
-        });
-        bottom.add(rateBtn);
+            Header h = readHeader(record.get());
+            if (first) {
+                posted.set(e);
+                if (h.customer != null)
+                    postings.computeIfAbsent(KEY_CUSTOMER + h.customer, k -> new Postings()).add(e);
+                if (h.shipper != null)
+                    postings.computeIfAbsent(KEY_SHIPPER + h.shipper, k -> new Postings()).add(e);
+                for (String r : h.restaurants)
+                    postings.computeIfAbsent(KEY_RESTAURANT + r, k -> new Postings()).add(e);
+            }
+            if (complaint) {
+                complaintPosted.set(e);
+                postings.computeIfAbsent(KEY_COMPLAINT, k -> new Postings()).add(e);
+            }
+        }
+
+        private void unindex(long hi, long lo) {
+            int e = find(hi, lo);
+            if (e >= 0 && offsets[e] >= 0) {
+                offsets[e] = -1;
+                live--;
+                liveBytes -= lengths[e];
+            }
+        }
+
+        private int find(long hi, long lo) {
+            int mask = slots.length - 1;
+            for (int s = hash(hi, lo) & mask; slots[s] != 0; s = (s + 1) & mask) {
+                int e = slots[s] - 1;
+                if (msb[e] == hi && lsb[e] == lo)
+                    return e;
+            }
+            return -1;
+        }
+
+        private void insertSlot(int e) {
+            int mask = slots.length - 1;
+            int s = hash(msb[e], lsb[e]) & mask;
+            while (slots[s] != 0)
+                s = (s + 1) & mask;
+            slots[s] = e + 1;
+        }
+
+        private void rehash(int capacity) {
+            slots = new int[capacity];
+            for (int e = 0; e < size; e++)
+                insertSlot(e);
+        }
+
+        private static int hash(long hi, long lo) {
+            long h = hi ^ (lo * 0x9E3779B97F4A7C15L);
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    // -------------------- Sales analytics --------------------
+    // Revenue and quantity rollups per restaurant, food, hour of day and day, kept column-wise
+    // (one primitive array per measure, indexed through a small dictionary) so dashboards read
+    // a few arrays instead of walking orders. Revenue is summed in long minor units (see Money) and
+    // only turned into đồng for display. A sale is counted when its order is DELIVERED:
+    // Store.orderStatusChanged feeds it under the store lock, and rebuild() recomputes
+    // everything from the live orders plus the archive on the fork/join pool.
+    static class SalesAnalytics {
+        static final String ALL = ""; // restaurant row that sums every restaurant
+        private static final int LEAF_RECORDS = 2048; // archive records per fork/join leaf
+
+        /** One row of a ranking: a restaurant, a food or a day. */
+        static class Row {
+            final String key;
+            final long revenueMinor;
+            final long qty;
+            final int orders;
+
+            Row(String key, long revenueMinor, long qty, int orders) {
+                this.key = key;
+                this.revenueMinor = revenueMinor;
+                this.qty = qty;
+                this.orders = orders;
+            }
+        }
+
+        /** Revenue and quantity by day for one restaurant; grows in either direction. */
+        static class DaySeries {
+            long first;
+            long[] revenue = new long[0]; // minor units
+            long[] qty = new long[0];
+
+            void add(long day, long rev, long q) {
+                if (revenue.length == 0) {
+                    first = day;
+                    revenue = new long[8];
+                    qty = new long[8];
+                } else if (day < first) {
+                    int shift = (int) (first - day);
+                    long[] r = new long[revenue.length + shift];
+                    long[] n = new long[qty.length + shift];
+                    System.arraycopy(revenue, 0, r, shift, revenue.length);
+                    System.arraycopy(qty, 0, n, shift, qty.length);
+                    revenue = r;
+                    qty = n;
+                    first = day;
+                } else if (day - first >= revenue.length) {
+                    int len = (int) Math.max(revenue.length * 2L, day - first + 1);
+                    revenue = Arrays.copyOf(revenue, len);
+                    qty = Arrays.copyOf(qty, len);
+                }
+                revenue[(int) (day - first)] += rev;
+                qty[(int) (day - first)] += q;
+            }
+
+            void merge(DaySeries o) {
+                for (int i = 0; i < o.revenue.length; i++)
+                    if (o.revenue[i] != 0 || o.qty[i] != 0)
+                        add(o.first + i, o.revenue[i], o.qty[i]);
+            }
+        }
+
+        /** The columns; one instance per fork/join leaf, merged pairwise. Not thread-safe. */
+        static class Rollups {
+            private final TimeZone zone = TimeZone.getDefault();
+            // restaurants (row 0 is ALL)
+            private final Map<String, Integer> restaurantIds = new HashMap<>();
+            private String[] restaurantName = new String[8];
+            private long[] restaurantRevenue = new long[8]; // revenue columns are minor units
+            private long[] restaurantQty = new long[8];
+            private int[] restaurantOrders = new int[8];
+            private long[] hourRevenue = new long[8 * 24]; // restaurant * 24 + hour
+            private long[] hourQty = new long[8 * 24];
+            private DaySeries[] days = new DaySeries[8];
+            private int nRestaurants;
+            // foods
+            private final Map<UUID, Integer> foodIds = new HashMap<>();
+            private UUID[] foodId = new UUID[64];
+            private String[] foodName = new String[64];
+            private int[] foodRestaurant = new int[64];
+            private long[] foodRevenue = new long[64];
+            private long[] foodQty = new long[64];
+            private int nFoods;
+            // restaurants already counted for the order being added
+            private int[] orderRestaurants = new int[4];
+            private int nOrderRestaurants;
+
+            Rollups() {
+                restaurant(ALL);
+            }
+
+            void beginOrder() {
+                nOrderRestaurants = 0;
+                restaurantOrders[0]++;
+            }
+
+            void line(long created, String restaurant, UUID food, String name, long unitMinor, int qty) {
+                int r = restaurant(restaurant == null ? "?" : restaurant);
+                boolean firstLine = true;
+                for (int i = 0; i < nOrderRestaurants; i++)
+                    if (orderRestaurants[i] == r)
+                        firstLine = false;
+                if (firstLine) {
+                    if (nOrderRestaurants == orderRestaurants.length)
+                        orderRestaurants = Arrays.copyOf(orderRestaurants, nOrderRestaurants * 2);
+                    orderRestaurants[nOrderRestaurants++] = r;
+                    restaurantOrders[r]++;
+                }
+                long revenue = unitMinor * qty;
+                long local = created + zone.getOffset(created);
+                int hour = (int) (Math.floorMod(local, 86_400_000L) / 3_600_000L);
+                long day = Math.floorDiv(local, 86_400_000L);
+                add(0, hour, day, revenue, qty);
+                add(r, hour, day, revenue, qty);
+                int f = food(food, name, r);
+                foodRevenue[f] += revenue;
+                foodQty[f] += qty;
+            }
+
+            private void add(int r, int hour, long day, long revenue, long qty) {
+                restaurantRevenue[r] += revenue;
+                restaurantQty[r] += qty;
+                hourRevenue[r * 24 + hour] += revenue;
+                hourQty[r * 24 + hour] += qty;
+                days[r].add(day, revenue, qty);
+            }
+
+            private int restaurant(String name) {
+                Integer id = restaurantIds.get(name);
+                if (id != null)
+                    return id;
+                if (nRestaurants == restaurantName.length) {
+                    int n = nRestaurants * 2;
+                    restaurantName = Arrays.copyOf(restaurantName, n);
+                    restaurantRevenue = Arrays.copyOf(restaurantRevenue, n);
+                    restaurantQty = Arrays.copyOf(restaurantQty, n);
+                    restaurantOrders = Arrays.copyOf(restaurantOrders, n);
+                    hourRevenue = Arrays.copyOf(hourRevenue, n * 24);
+                    hourQty = Arrays.copyOf(hourQty, n * 24);
+                    days = Arrays.copyOf(days, n);
+                }
+                restaurantName[nRestaurants] = name;
+                days[nRestaurants] = new DaySeries();
+                restaurantIds.put(name, nRestaurants);
+                return nRestaurants++;
+            }
+
+            private int food(UUID id, String name, int restaurant) {
+                Integer f = foodIds.get(id);
+                if (f != null)
+                    return f;
+                if (nFoods == foodId.length) {
+                    int n = nFoods * 2;
+                    foodId = Arrays.copyOf(foodId, n);
+                    foodName = Arrays.copyOf(foodName, n);
+                    foodRestaurant = Arrays.copyOf(foodRestaurant, n);
+                    foodRevenue = Arrays.copyOf(foodRevenue, n);
+                    foodQty = Arrays.copyOf(foodQty, n);
+                }
+                foodId[nFoods] = id;
+                foodName[nFoods] = name;
+                foodRestaurant[nFoods] = restaurant;
+                foodIds.put(id, nFoods);
+                return nFoods++;
+            }
+
+            void addOrder(Order o) {
+                beginOrder();
+                long created = o.created.getTime();
+                for (OrderItem it : o.items)
+                    line(created, it.food.restaurantOwner, it.food.id, it.food.name, it.unitMinor, it.qty);
+            }
+
+            void merge(Rollups o) {
+                restaurantOrders[0] += o.restaurantOrders[0];
+                for (int i = 0; i < o.nRestaurants; i++) {
+                    int r = restaurant(o.restaurantName[i]);
+                    restaurantRevenue[r] += o.restaurantRevenue[i];
+                    restaurantQty[r] += o.restaurantQty[i];
+                    if (r != 0)
+                        restaurantOrders[r] += o.restaurantOrders[i];
+                    for (int h = 0; h < 24; h++) {
+                        hourRevenue[r * 24 + h] += o.hourRevenue[i * 24 + h];
+                        hourQty[r * 24 + h] += o.hourQty[i * 24 + h];
+                    }
+                    days[r].merge(o.days[i]);
+                }
+                for (int i = 0; i < o.nFoods; i++) {
+                    int f = food(o.foodId[i], o.foodName[i], restaurant(o.restaurantName[o.foodRestaurant[i]]));
+                    foodRevenue[f] += o.foodRevenue[i];
+                    foodQty[f] += o.foodQty[i];
+                }
+            }
+        }
+
+        private final Store store;
+        private Rollups current = new Rollups();
+        private Rollups delta; // sales recorded while a rebuild is scanning
+        private volatile boolean built;
+        private final Object rebuilding = new Object();
+
+        SalesAnalytics(Store store) {
+            this.store = store;
+        }
+
+        /** Called under the store write lock when an order becomes DELIVERED. */
+        synchronized void record(Order o) {
+            current.addOrder(o);
+            if (delta != null)
+                delta.addOrder(o);
+        }
+
+        /** Recomputes every rollup from live and archived orders, in parallel. */
+        void rebuild() {
+            synchronized (rebuilding) {
+                List<Order> live = new ArrayList<>();
+                OrderArchive.Records[] archived = new OrderArchive.Records[1];
+                // capture the sources and start collecting newer sales in one step, so none is lost or doubled
+                store.withReadLock(() -> {
+                    for (Order o : store.orders)
+                        if (o.status == OrderStatus.DELIVERED)
+                            live.add(o);
+                    try {
+                        archived[0] = store.archive.records();
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                    synchronized (this) {
+                        delta = new Rollups();
+                    }
+                    return null;
+                });
+                Rollups fresh = archived[0] == null ? new Rollups()
+                        : java.util.concurrent.ForkJoinPool.commonPool().invoke(new Build(archived[0], 0, archived[0].size()));
+                for (Order o : live)
+                    fresh.addOrder(o);
+                synchronized (this) {
+                    fresh.merge(delta);
+                    delta = null;
+                    current = fresh;
+                }
+                built = true;
+            }
+        }
+
+        private static class Build extends java.util.concurrent.RecursiveTask<Rollups> {
+            private final OrderArchive.Records records;
+            private final int from, to;
+
+            Build(OrderArchive.Records records, int from, int to) {
+                this.records = records;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected Rollups compute() {
+                if (to - from <= LEAF_RECORDS) {
+                    Rollups r = new Rollups();
+                    for (int i = from; i < to; i++) {
+                        try {
+                            records.forEachDeliveredLine(i, r);
+                        } catch (IOException ex) {
+                            ex.printStackTrace();
+                        }
+                    }
+                    return r;
+                }
+                int mid = (from + to) >>> 1;
+                Build left = new Build(records, from, mid);
+                left.fork();
+                Rollups right = new Build(records, mid, to).compute();
+                Rollups result = left.join();
+                result.merge(right);
+                return result;
+            }
+        }
+
+        private void ensureBuilt() {
+            if (!built)
+                rebuild();
+        }
+
+        /** Revenue, items and orders of one restaurant, or of all with {@link #ALL}. */
+        Row total(String restaurant) {
+            ensureBuilt();
+            synchronized (this) {
+                Rollups v = current;
+                Integer r = v.restaurantIds.get(restaurant);
+                return r == null ? new Row(restaurant, 0, 0, 0)
+                        : new Row(restaurant, v.restaurantRevenue[r], v.restaurantQty[r], v.restaurantOrders[r]);
+            }
+        }
+
+        /** Restaurants by revenue, best first. */
+        List<Row> restaurants() {
+            ensureBuilt();
+            List<Row> out = new ArrayList<>();
+            synchronized (this) {
+                Rollups v = current;
+                for (int r = 1; r < v.nRestaurants; r++)
+                    out.add(new Row(v.restaurantName[r], v.restaurantRevenue[r], v.restaurantQty[r], v.restaurantOrders[r]));
+            }
+            out.sort((a, b) -> Long.compare(b.revenueMinor, a.revenueMinor));
+            return out;
+        }
+
+        /** Best-selling foods by revenue, for one restaurant or {@link #ALL}. */
+        List<Row> topFoods(String restaurant, int n) {
+            ensureBuilt();
+            List<Row> out = new ArrayList<>();
+            synchronized (this) {
+                Rollups v = current;
+                Integer r = v.restaurantIds.get(restaurant);
+                if (r == null)
+                    return out;
+                for (int f = 0; f < v.nFoods; f++)
+                    if (r == 0 || v.foodRestaurant[f] == r)
+                        out.add(new Row(v.foodName[f], v.foodRevenue[f], v.foodQty[f], 0));
+            }
+            out.sort((a, b) -> Long.compare(b.revenueMinor, a.revenueMinor));
+            return out.size() > n ? new ArrayList<>(out.subList(0, n)) : out;
+        }
+
+        /** Revenue in minor units by hour of day (local time), 24 entries. */
+        long[] revenueByHour(String restaurant) {
+            ensureBuilt();
+            synchronized (this) {
+                Rollups v = current;
+                Integer r = v.restaurantIds.get(restaurant);
+                return r == null ? new long[24] : Arrays.copyOfRange(v.hourRevenue, r * 24, r * 24 + 24);
+            }
+        }
+
+        /** Items sold by hour of day (local time), 24 entries. */
+        long[] qtyByHour(String restaurant) {
+            ensureBuilt();
+            synchronized (this) {
+                Rollups v = current;
+                Integer r = v.restaurantIds.get(restaurant);
+                return r == null ? new long[24] : Arrays.copyOfRange(v.hourQty, r * 24, r * 24 + 24);
+            }
+        }
+
+        /** The last `n` days up to today, oldest first; the key is the ISO date. */
+        List<Row> daily(String restaurant, int n) {
+            ensureBuilt();
+            long now = System.currentTimeMillis();
+            long today = Math.floorDiv(now + TimeZone.getDefault().getOffset(now), 86_400_000L);
+            List<Row> out = new ArrayList<>(n);
+            synchronized (this) {
+                Rollups v = current;
+                Integer r = v.restaurantIds.get(restaurant);
+                DaySeries d = r == null ? null : v.days[r];
+                for (long day = today - n + 1; day <= today; day++) {
+                    int i = d == null ? -1 : (int) (day - d.first);
+                    boolean in = i >= 0 && i < d.revenue.length;
+                    out.add(new Row(java.time.LocalDate.ofEpochDay(day).toString(), in ? d.revenue[i] : 0, in ? d.qty[i] : 0, 0));
+                }
+            }
+            return out;
+        }
+    }
+
+    // -------------------- Money --------------------
+    // Prices are long counts of minor units, 1/100 đồng, so sums are exact and a price typed as
+    // 6.99 stays 6.99. Doubles only appear at the edges: user input, JSON, and the older on-disk
+    // records that store VND as a double (exact for any realistic price, see of()).
+    static final class Money {
+        static final long SCALE = 100; // minor units per đồng
+
+        private Money() {
+        }
+
+        /** VND as a double (older records, JSON) to minor units; rounds to the nearest 1/100. */
+        static long of(double vnd) {
+            return Math.round(vnd * SCALE);
+        }
+
+        static double toVnd(long minor) {
+            return minor / (double) SCALE;
+        }
+
+        /** Exact decimal parse of what a user typed, e.g. "45,000" or "6.99". */
+        static long parse(String text) {
+            return new java.math.BigDecimal(text.trim().replace(",", "")).movePointRight(2)
+                    .setScale(0, java.math.RoundingMode.HALF_UP).longValueExact();
+        }
+
+        /** "45,000" or "6.99": grouped đồng, with the fraction only when there is one. */
+        static String format(long minor) {
+            long abs = Math.abs(minor);
+            String whole = String.format("%s%,d", minor < 0 ? "-" : "", abs / SCALE);
+            return abs % SCALE == 0 ? whole : whole + String.format(".%02d", abs % SCALE);
+        }
+
+        /** Plain decimal for edit fields, e.g. "45000" or "6.99", which parse() reads back. */
+        static String plain(long minor) {
+            return java.math.BigDecimal.valueOf(minor, 2).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    // -------------------- Cart --------------------
+    // A customer's cart before checkout. Lines live in parallel primitive arrays; an open-addressing
+    // table of ints (linear probing, power-of-two size) maps (food id, variation index) to its line.
+    // Quantity and total are kept running, with each line's unit price cached, so adding, removing
+    // and reading the badge or the total cost O(1) whatever the cart holds. A removed line is
+    // replaced by the last one. Listeners hear every change, which lets a view update single rows.
+    // Not thread-safe: the EDT owns the app's cart; the store's copies sit under the store lock.
+    static final class Cart {
+        static final int NO_VARIATION = -1;
+
+        enum Change {
+            ADDED, // a new last line
+            UPDATED, // quantity or unit price of a line
+            REMOVED, // the line is gone and the former last line now sits at its index, if it was not the last
+            CLEARED
+        }
+
+        /** {@code food} and {@code variation} are those of the changed line; null and -1 for CLEARED. */
+        interface Listener {
+            void cartChanged(Change change, int line, FoodItem food, int variation);
+        }
+
+        private FoodItem[] foods = new FoodItem[8];
+        private int[] variations = new int[8];
+        private int[] qtys = new int[8];
+        private long[] units = new long[8]; // unit price when the line was last added to or repriced
+        private int size;
+        private int[] slots = new int[16]; // line + 1; 0 marks an empty slot
+        private int totalQty;
+        private long total;
+        private final List<Listener> listeners = new ArrayList<>(2);
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        FoodItem food(int line) {
+            return foods[line];
+        }
+
+        int variation(int line) {
+            return variations[line];
+        }
+
+        String variationName(int line) {
+            return foods[line].variationName(variations[line]);
+        }
+
+        int qty(int line) {
+            return qtys[line];
+        }
+
+        long unitPrice(int line) {
+            return units[line];
+        }
+
+        long lineTotal(int line) {
+            return units[line] * qtys[line];
+        }
+
+        /** What checkout will charge, as long as the cart has been {@link #reprice repriced} after menu edits. */
+        long total() {
+            return total;
+        }
+
+        int totalQty() {
+            return totalQty;
+        }
+
+        EventBus.Subscription listen(Listener l) {
+            listeners.add(l);
+            return () -> listeners.remove(l);
+        }
+
+        /** Adds {@code qty} (negative to take away) and returns the line's new quantity; 0 drops the line. */
+        int add(FoodItem f, int variation, int qty) {
+            int line = find(f, variation);
+            return set(line, f, variation, (line < 0 ? 0 : qtys[line]) + qty);
+        }
+
+        /** By variation name; "" is the plain item. Unknown names are rejected rather than priced at 0. */
+        int add(FoodItem f, String variation, int qty) {
+            int v = f.variationIndex(variation);
+            if (v == NO_VARIATION && variation != null && !variation.isEmpty())
+                throw new IllegalArgumentException(f.name + " has no variation " + variation + ".");
+            return add(f, v, qty);
+        }
+
+        /** Sets the line's quantity outright; 0 or less drops it. */
+        int set(FoodItem f, int variation, int qty) {
+            return set(find(f, variation), f, variation, qty);
+        }
+
+        /** Copies {@code other}'s lines into this cart, adding to quantities already here. */
+        void addAll(Cart other) {
+            for (int i = 0; i < other.size; i++)
+                add(other.foods[i], other.variations[i], other.qtys[i]);
+        }
+
+        /** Picks up a menu edit of {@code f}: every line of it takes the current price. */
+        void reprice(FoodItem f) {
+            for (int line = 0; line < size; line++) {
+                if (!foods[line].id.equals(f.id))
+                    continue;
+                long unit = f.unitPrice(variations[line]);
+                foods[line] = f;
+                if (unit != units[line]) {
+                    total += (unit - units[line]) * qtys[line];
+                    units[line] = unit;
+                    fire(Change.UPDATED, line, f, variations[line]);
+                }
+            }
+        }
+
+        void clear() {
+            if (size == 0)
+                return;
+            Arrays.fill(foods, 0, size, null);
+            Arrays.fill(slots, 0);
+            size = 0;
+            totalQty = 0;
+            total = 0;
+            fire(Change.CLEARED, -1, null, NO_VARIATION);
+        }
+
+        private int set(int line, FoodItem f, int variation, int qty) {
+            if (qty <= 0) {
+                if (line >= 0)
+                    removeLine(line);
+                return 0;
+            }
+            long unit = f.unitPrice(variation);
+            if (line < 0) {
+                line = append(f, variation);
+                qtys[line] = qty;
+                units[line] = unit;
+                totalQty += qty;
+                total += unit * qty;
+                fire(Change.ADDED, line, f, variation);
+            } else {
+                totalQty += qty - qtys[line];
+                total += unit * qty - units[line] * qtys[line];
+                qtys[line] = qty;
+                units[line] = unit;
+                fire(Change.UPDATED, line, f, variation);
+            }
+            return qty;
+        }
+
+        private void fire(Change change, int line, FoodItem food, int variation) {
+            for (int i = 0; i < listeners.size(); i++)
+                listeners.get(i).cartChanged(change, line, food, variation);
+        }
+
+        private int find(FoodItem f, int variation) {
+            return slots[slot(f, variation)] - 1;
+        }
+
+        /** The slot holding (f, variation), or the empty slot where it would go. */
+        private int slot(FoodItem f, int variation) {
+            int mask = slots.length - 1;
+            for (int s = hash(f, variation) & mask;; s = (s + 1) & mask) {
+                int line = slots[s] - 1;
+                if (line < 0 || (variations[line] == variation && foods[line].id.equals(f.id)))
+                    return s;
+            }
+        }
+
+        private int append(FoodItem f, int variation) {
+            if (size == foods.length) {
+                foods = Arrays.copyOf(foods, size * 2);
+                variations = Arrays.copyOf(variations, size * 2);
+                qtys = Arrays.copyOf(qtys, size * 2);
+                units = Arrays.copyOf(units, size * 2);
+            }
+            int line = size++;
+            foods[line] = f;
+            variations[line] = variation;
+            if (size * 2 > slots.length) { // keep the load under 1/2
+                slots = new int[slots.length * 2];
+                for (int i = 0; i < line; i++)
+                    slots[slot(foods[i], variations[i])] = i + 1;
+            }
+            slots[slot(f, variation)] = line + 1;
+            return line;
+        }
+
+        private void removeLine(int line) {
+            FoodItem food = foods[line];
+            int variation = variations[line];
+            totalQty -= qtys[line];
+            total -= units[line] * qtys[line];
+            unslot(slot(food, variation));
+            int last = --size;
+            if (line != last) {
+                slots[slot(foods[last], variations[last])] = line + 1;
+                foods[line] = foods[last];
+                variations[line] = variations[last];
+                qtys[line] = qtys[last];
+                units[line] = units[last];
+            }
+            foods[last] = null;
+            fire(Change.REMOVED, line, food, variation);
+        }
+
+        /** Empties a slot, shifting later entries of the probe run back so lookups still find them. */
+        private void unslot(int hole) {
+            int mask = slots.length - 1;
+            for (int s = (hole + 1) & mask; slots[s] != 0; s = (s + 1) & mask) {
+                int line = slots[s] - 1;
+                int home = hash(foods[line], variations[line]) & mask;
+                // the entry may fill the hole only if its home is not cyclically within (hole, s]
+                boolean between = hole <= s ? hole < home && home <= s : hole < home || home <= s;
+                if (!between) {
+                    slots[hole] = slots[s];
+                    hole = s;
+                }
+            }
+            slots[hole] = 0;
+        }
+
+        private static int hash(FoodItem f, int variation) {
+            long h = f.id.getMostSignificantBits() ^ f.id.getLeastSignificantBits() ^ (variation * 0x9E3779B97F4A7C15L);
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            return (int) (h ^ (h >>> 33));
+        }
+    }
+
+    // -------------------- Data models --------------------
+    enum Role {
+        CUSTOMER, SHIPPER, RESTAURANT, ADMIN, OWNER, ADMINISTRATOR, CUSTOMER_SERVICE
+    }
+
+    static class User implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String username;
+        String password;
+        Role role;
+        String address = "";
+        String phone = "";
+        String profileImagePath = null;
+        String restaurantName = null;
+        String shipperName = null;
+        List<String> myCategories = new ArrayList<>();
+        boolean isOpen = true; // for restaurants: open/closed status
+        // for shippers; reviews from before the review store, moved there on load
+        List<Double> shipperRatings = new ArrayList<>();
+        List<String> shipperComments = new ArrayList<>();
+
+        User(String u, String p, Role r) {
+            username = u;
+            password = p;
+            role = r;
+        }
+
+        @Override
+        public String toString() {
+            return username + " (" + role + ")";
+        }
+    }
+
+    static class FoodItem implements Serializable {
+        private static final long serialVersionUID = 3L;
+        UUID id = UUID.randomUUID();
+        String name;
+        String description;
+        long priceMinor; // base price, Money minor units
+        double rating; // 0..5, average of the food's reviews in the review store
+        Color colorPreview; // used as image placeholder
+        String category;
+        String imagePath = null; // path to local image file
+        String restaurantOwner = null; // username of restaurant that owns this food
+        boolean inStock = true; // stock status
+        List<String> variations = new ArrayList<>(); // food variations like sizes, flavors
+        long[] variationMinor = NO_EXTRAS; // extra price of variations.get(i), Money minor units
+        // ratings and comments from before the review store; moved there on load, empty afterwards
+        List<Double> ratings = new ArrayList<>();
+        List<String> comments = new ArrayList<>();
+        // prices from before Money, still filled in by old serialized saves; see adoptLegacyPrices
+        private double price;
+        private Map<String, Double> variationPrices;
+
+        private static final long[] NO_EXTRAS = new long[0];
+
+        FoodItem(String name, String desc, long priceMinor, double rating, Color colorPreview, String category) {
+            this.name = name;
+            this.description = desc;
+            this.priceMinor = priceMinor;
+            this.rating = rating;
+            this.colorPreview = colorPreview;
+            this.category = category;
+        }
+
+        /** Position of the variation in {@link #variations}, or -1 for "" and unknown names. */
+        int variationIndex(String variation) {
+            return variation == null || variation.isEmpty() ? Cart.NO_VARIATION : variations.indexOf(variation);
+        }
+
+        String variationName(int v) {
+            return v < 0 || v >= variations.size() ? "" : variations.get(v);
+        }
+
+        long variationPrice(int v) {
+            return v < 0 || v >= variationMinor.length ? 0 : variationMinor[v];
+        }
+
+        long unitPrice(int v) {
+            return priceMinor + variationPrice(v);
+        }
+
+        long unitPrice(String variation) {
+            return unitPrice(variationIndex(variation));
+        }
+
+        /** Replaces the variations; {@code extras[i]} is the extra price of {@code names.get(i)}. */
+        void setVariations(List<String> names, long[] extras) {
+            variations = new ArrayList<>(names);
+            variationMinor = Arrays.copyOf(extras, names.size());
+        }
+
+        void addVariation(String name, long extra) {
+            variations.add(name);
+            variationMinor = Arrays.copyOf(variationMinor, variations.size());
+            variationMinor[variations.size() - 1] = extra;
+        }
+
+        /** Converts the double prices of a food read from an old serialized save. */
+        void adoptLegacyPrices() {
+            if (variationMinor != null)
+                return; // already converted (foods are shared between the menu and old orders)
+            priceMinor = Money.of(price);
+            if (variations == null)
+                variations = new ArrayList<>();
+            variationMinor = new long[variations.size()];
+            for (int i = 0; i < variationMinor.length; i++) {
+                Double extra = variationPrices == null ? null : variationPrices.get(variations.get(i));
+                variationMinor[i] = extra == null ? 0 : Money.of(extra);
+            }
+            variationPrices = null;
+        }
+    }
+
+    static class Complaint implements Serializable {
+        private static final long serialVersionUID = 11L;
+        UUID id = UUID.randomUUID();
+        String author; // username
+        Role authorRole;
+        String message;
+        Date created = new Date();
+        String status = "Pending";
+
+        Complaint(String author, Role authorRole, String message) {
+            this.author = author;
+            this.authorRole = authorRole;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s] %s (%s): %s [%s]", id.toString().substring(0, 6), author, authorRole, message,
+                    status);
+        }
+    }
+
+    static class OrderItem implements Serializable {
+        private static final long serialVersionUID = 3L;
+        FoodItem food;
+        int qty;
+        String variation = "";
+        long unitMinor; // price of one, fixed when the order was placed
+
+        OrderItem(FoodItem f, int q) {
+            this(f, q, "");
+        }
+
+        OrderItem(FoodItem f, int q, String v) {
+            food = f;
+            qty = q;
+            variation = v;
+            unitMinor = f.unitPrice(v);
+        }
+
+        long lineTotal() {
+            return unitMinor * qty;
+        }
+    }
+
+    enum OrderStatus {
+        PLACED, PREPARING, READY_FOR_PICKUP, ACCEPTED_BY_SHIPPER, DELIVERING, DELIVERED, CANCELLED;
+
+        /** Legal moves: one step forward along the pipeline, or cancellation before a shipper has it. */
+        boolean canMoveTo(OrderStatus next) {
+            switch (this) {
+                case PLACED:
+                    return next == PREPARING || next == CANCELLED;
+                case PREPARING:
+                    return next == READY_FOR_PICKUP || next == CANCELLED;
+                case READY_FOR_PICKUP:
+                    return next == ACCEPTED_BY_SHIPPER || next == CANCELLED;
+                case ACCEPTED_BY_SHIPPER:
+                    return next == DELIVERING;
+                case DELIVERING:
+                    return next == DELIVERED;
+                default:
+                    return false; // DELIVERED and CANCELLED are final
+            }
+        }
+    }
+
+    static class Message implements Serializable {
+        private static final long serialVersionUID = 10L;
+        String sender;
+        String text;
+        Date time = new Date();
+
+        Message(String s, String t) {
+            sender = s;
+            text = t;
+        }
+    }
+
+    static class Order implements Serializable {
+        private static final long serialVersionUID = 4L;
+        UUID id = UUID.randomUUID();
+        User customer;
+        List<OrderItem> items = new ArrayList<>();
+        volatile OrderStatus status = OrderStatus.PLACED; // live orders change it only through transition()
+        long totalMinor; // sum of the items' line totals, Money minor units
+        private double total; // before Money, still filled in by old serialized saves
+        String addressSnapshot;
+        String phoneSnapshot;
+        String complaint = null; // customer complaint text
+        String note = null; // customer note for restaurant
+        volatile String assignedShipper = null; // username of shipper who accepted
+        Date created = new Date();
+
+        // chat between shipper and customer
+        List<Message> chat = new ArrayList<>();
+
+        // ratings and comments
+        Map<FoodItem, Double> foodRatings = new HashMap<>();
+        Map<FoodItem, String> foodComments = new HashMap<>();
+        Double shipperRating;
+        String shipperComment;
+
+        transient boolean archived; // decoded from the order archive rather than held in `orders`
+
+        private static final java.util.concurrent.atomic.AtomicReferenceFieldUpdater<Order, OrderStatus> STATUS =
+                java.util.concurrent.atomic.AtomicReferenceFieldUpdater.newUpdater(Order.class, OrderStatus.class, "status");
+        private static final java.util.concurrent.atomic.AtomicReferenceFieldUpdater<Order, String> SHIPPER =
+                java.util.concurrent.atomic.AtomicReferenceFieldUpdater.newUpdater(Order.class, String.class, "assignedShipper");
+
+        /**
+         * Atomically moves the order from {@code from} to {@code to}. Fails when another thread
+         * changed the status first or the move is not legal; exactly one racing caller wins.
+         */
+        boolean transition(OrderStatus from, OrderStatus to) {
+            return from.canMoveTo(to) && STATUS.compareAndSet(this, from, to);
+        }
+
+        /**
+         * Hands a ready order to one shipper. The shipper is claimed (a CAS from null) before the
+         * status moves, so whoever sees ACCEPTED_BY_SHIPPER also sees who accepted it.
+         */
+        boolean assign(String shipper) {
+            if (status != OrderStatus.READY_FOR_PICKUP || !SHIPPER.compareAndSet(this, null, shipper))
+                return false;
+            if (transition(OrderStatus.READY_FOR_PICKUP, OrderStatus.ACCEPTED_BY_SHIPPER))
+                return true;
+            assignedShipper = null; // READY only leaves through here, but never keep a claim on another status
+            return false;
+        }
+
+        /** The shipper to save with status `seen`; a claim on a still-READY order is not an acceptance yet. */
+        String shipperAt(OrderStatus seen) {
+            return seen == OrderStatus.READY_FOR_PICKUP ? null : assignedShipper;
+        }
+
+        void recalcTotal() {
+            long sum = 0;
+            for (int i = 0, n = items.size(); i < n; i++)
+                sum += items.get(i).lineTotal();
+            totalMinor = sum;
+        }
+
+        /** Converts an order read from an old serialized save: items take the prices their foods have now. */
+        void adoptLegacyPrices() {
+            for (OrderItem it : items) {
+                it.food.adoptLegacyPrices();
+                it.unitMinor = it.food.unitPrice(it.variation);
+            }
+            totalMinor = Money.of(total);
+        }
+    }
+
+    // -------------------- In-memory "database" --------------------
+    private final Store store = new Store("food_delivery_app_data.bin", "food_delivery_app_data.journal",
+            "food_delivery_app_orders.archive", "food_delivery_app_chat.history",
+            "food_delivery_app_reviews.log", "food_delivery_app_logs");
+    private final UserService userService = new UserService(store);
+    private final CatalogService catalogService = new CatalogService(store);
+    private final OrderService orderService = new OrderService(store);
+    private final DispatchEngine dispatch = new DispatchEngine(orderService, 2000); // offers READY orders every 2 s
+    private final Map<UUID, String> orderLines = new java.util.concurrent.ConcurrentHashMap<>(); // dropped on ORDER events
+
+    // Application state
+    private User currentUser = null;
+    private final Cart cart = new Cart();
+    private String cartOwner = null; // customer whose saved cart `cart` mirrors; null while signed out
+    private String selectedRestaurant = null; // Track currently selected restaurant
+    private boolean isSelectingRestaurant = false; // Flag to prevent unnecessary refreshes
+
+    // -------------------- UI references --------------------
+    private JFrame frame;
+    private DefaultListModel<String> catListModel;
+    private DefaultListModel<String> restListModel;
+    private JList<String> restList;
+    private JList<String> catList;
+    private FoodGrid itemsPanel; // right side card area
+    private String shownRestaurant, shownCategory; // filter behind the cards currently in itemsPanel
+    private String shownQuery; // non-null while itemsPanel shows search results instead
+    private JTextField searchField;
+    private static final int SEARCH_LIMIT = 500;
+    private static final Metrics.Histogram REFRESH_ITEMS = Metrics.histogram("ui.refreshItems");
+    private static final Metrics.Histogram REFRESH_BY_RESTAURANT = Metrics.histogram("ui.refreshItemsByRestaurant");
+    private static final Metrics.Histogram REFRESH_BY_RESTAURANT_CATEGORY = Metrics.histogram("ui.refreshItemsByRestaurantAndCategory");
+    private static final Metrics.Histogram CREATE_CARD = Metrics.histogram("ui.createFoodCard");
+    private static final Metrics.Histogram LOAD_ICON = Metrics.histogram("ui.loadScaledImageIcon");
+    private JLabel statusLabel;
+    private JButton dashboardButton;
+    private JButton cartButton;
+    private JLabel userLabel;
+    private JButton logoutButton;
+    private JButton loginBtn;
+    private JButton registerBtn;
+    private JLabel avatarLabel;
+    private JPanel rightPanel;
+    private JPanel topPanel;
+
+    // Image cache for performance: 2 decode threads, 64 MB of scaled pixels
+    private final String THUMBNAIL_DIR = "food_delivery_app_thumbnails";
+    private final ImageService images = new ImageService(2, 64L * 1024 * 1024, new ThumbnailCache(new File(THUMBNAIL_DIR)));
+
+    // EDT stalls go to the op log with the stack of the handler that caused them
+    private final EdtWatchdog watchdog = new EdtWatchdog(
+            stall -> store.log(currentUser == null ? null : currentUser.username, "ui.stall", null, stall));
+
+    /** Labels the event being handled, so a stall report says what the user was doing. */
+    private void tagAction(String what) {
+        watchdog.tag(what);
+    }
+
+    private void preloadImages() {
+        // Queue decodes on the image pool; nothing waits for them
+        for (User user : userService.withRole(Role.RESTAURANT)) {
+            if (user.profileImagePath != null) {
+                loadScaledImageIcon(user.profileImagePath, 120, 120);
+            }
+        }
+        for (FoodItem food : catalogService.all()) {
+            if (food.imagePath != null) {
+                loadScaledImageIcon(food.imagePath, 180, 120);
+            }
+        }
+    }
+
+    // -------------------- Constructor & UI build --------------------
+    public FoodDeliveryApp() {
+        Metrics.registerMBean();
+        watchdog.install();
+        store.loadData(); // <── use saved data first
+        store.events.subscribe(EventBus.Topic.ORDER, e -> orderLines.remove(e.id));
+        dispatch.start();
+        preloadImages(); // Preload images for better startup performance
+        SwingUtilities.invokeLater(this::createAndShowGUI);
+
+        // Compact the journal into a fresh snapshot once it grows large; the snapshot write and
+        // archive fsync run on their own thread so they never stall the EDT
+        java.util.concurrent.ScheduledExecutorService checkpoints =
+                java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "checkpoint");
+                    t.setDaemon(true);
+                    return t;
+                });
+        checkpoints.scheduleWithFixedDelay(store::checkpointIfNeeded, Store.CHECKPOINT_CHECK_MS,
+                Store.CHECKPOINT_CHECK_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+
+        // Closing only has to flush the journal tail; no full rewrite of the store
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            checkpoints.shutdown();
+            store.close();
+        }));
+    }
+
+    private long parsePrice(String priceText) {
+        // Commas allowed; Money minor units
+        return Money.parse(priceText);
+    }
+
+    private String formatPrice(double price) {
+        // Format a VND amount (analytics) with commas for display; prices use Money.format
+        return String.format("%,.0f", price);
+    }
+
+    private void createAndShowGUI() {
+        // Set sky blue theme
+        Color skyBlue = new Color(135, 206, 235); // Sky blue
+        Color lightSkyBlue = new Color(173, 216, 230); // Light sky blue
+
+        frame = new JFrame("Food Delivery Demo");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(1000, 700);
+        frame.setLocationRelativeTo(null);
+        frame.getContentPane().setBackground(skyBlue);
+
+        JPanel topBar = buildTopBar();
+        JSplitPane split = new JSplitPane();
+        split.setDividerLocation(180);
+        split.setResizeWeight(0.3);
+        split.setLeftComponent(buildCategoryList());
+        split.setRightComponent(buildItemsArea());
+
+        statusLabel = new JLabel(" Welcome! Please login or register to start ordering.                                                                                                                                                                                 HOTLINE: 0919246425");
+        statusLabel.setBorder(new EmptyBorder(6, 6, 6, 6));
+        statusLabel.setBackground(lightSkyBlue);
+        statusLabel.setOpaque(true);
+
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        mainPanel.setBackground(new Color(240, 248, 255));
+        mainPanel.add(topBar, BorderLayout.NORTH);
+        mainPanel.add(split, BorderLayout.CENTER);
+        mainPanel.add(statusLabel, BorderLayout.SOUTH);
+
+        frame.getContentPane().add(mainPanel);
+
+        frame.setVisible(true);
+
+        loadCategories();
+        refreshItems("All");
+    }
+
+    private JPanel buildTopBar() {
+        topPanel = new JPanel(new BorderLayout());
+        topPanel.setBorder(new EmptyBorder(6, 6, 6, 6));
+        topPanel.setBackground(new Color(135, 206, 235)); // Sky blue
+
+        JPanel left = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        left.setOpaque(false);
+        left.setBackground(new Color(135, 206, 235));
+        JLabel title = new JLabel("Food Delivery");
+        title.setFont(title.getFont().deriveFont(20f).deriveFont(Font.BOLD));
+        title.setForeground(Color.WHITE);
+        left.add(title);
+
+        searchField = new JTextField(24);
+        searchField.setToolTipText("Search dishes, e.g. pho bo");
+        // search as you type, once typing pauses
+        javax.swing.Timer searchDelay = new javax.swing.Timer(150, e -> showSearch(searchField.getText()));
+        searchDelay.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                searchDelay.restart();
+            }
+
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                searchDelay.restart();
+            }
+
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                searchDelay.restart();
+            }
+        });
+        left.add(searchField);
+
+        JPanel right = new JPanel();
+        right.setLayout(new BoxLayout(right, BoxLayout.X_AXIS));
+        right.add(Box.createHorizontalGlue()); // push components to right
+        right.setOpaque(false);
+        right.setBackground(new Color(135, 206, 235));
+
+        rightPanel = right;
+
+        avatarLabel = new JLabel(); // will hold profile image
+        avatarLabel.setPreferredSize(new Dimension(32, 32));
+        avatarLabel.setBorder(new EmptyBorder(0, 0, 0, 6));
+        right.add(avatarLabel);
+
+        userLabel = new JLabel("Not logged in");
+        userLabel.setForeground(Color.WHITE);
+        right.add(userLabel);
+
+        loginBtn = new JButton("Login");
+        loginBtn.setBackground(new Color(0, 191, 255)); // Deep sky blue
+        loginBtn.setForeground(Color.WHITE);
+        loginBtn.setFocusPainted(false);
+        loginBtn.setPreferredSize(new Dimension(80, 30));
+        loginBtn.addActionListener(e -> showLoginDialog());
+        right.add(loginBtn);
+
+        registerBtn = new JButton("Register");
+        registerBtn.setBackground(new Color(0, 191, 255));
+        registerBtn.setForeground(Color.WHITE);
+        registerBtn.setFocusPainted(false);
+        registerBtn.setPreferredSize(new Dimension(80, 30));
+        registerBtn.addActionListener(e -> showRegisterDialog());
+        right.add(registerBtn);
+
+        // NEW: Logout button (hidden by default)
+        logoutButton = new JButton("Logout");
+            logoutButton.setBackground(new Color(255, 69, 0)); // Red orange
+        logoutButton.setForeground(Color.WHITE);
+        logoutButton.setFocusPainted(false);
+        logoutButton.setPreferredSize(new Dimension(80, 30));
+        logoutButton.setVisible(false);
+        logoutButton.addActionListener(e -> {
+            currentUser = null;
+            bindCart(null);
+            userLabel.setText("Not logged in");
+            avatarLabel.setIcon(null);
+            // disable and reset dashboard button label/size
+            dashboardButton.setEnabled(false);
+            dashboardButton.setText("Setting");
+            FontMetrics fmReset = dashboardButton.getFontMetrics(dashboardButton.getFont());
+            int resetW = fmReset.stringWidth("Setting") + 40;
+            dashboardButton.setPreferredSize(new Dimension(Math.max(resetW, 100), 30));
+            logoutButton.setVisible(false); // hide logout
+            loginBtn.setVisible(true);
+            registerBtn.setVisible(true);
+            cartButton.setVisible(false); // hide cart
+            statusLabel.setText("You have logged out.");
+            rightPanel.invalidate();
+            rightPanel.revalidate();
+            rightPanel.repaint();
+            topPanel.invalidate();
+            topPanel.revalidate();
+            topPanel.repaint();
+            frame.invalidate();
+            frame.revalidate();
+            frame.repaint();
+        });
+        right.add(logoutButton);
+
+        cartButton = new JButton("Cart (0)");
+        cartButton.setBackground(new Color(34, 139, 34)); // Green
+        cartButton.setForeground(Color.WHITE);
+        cartButton.setFocusPainted(false);
+        cartButton.setPreferredSize(new Dimension(80, 30));
+        cartButton.setVisible(false); // Initially hidden
+        cartButton.addActionListener(e -> showCartDialog());
+        right.add(cartButton);
+        cart.listen(this::cartChanged);
+        // menu edits reach the cart too, so its total stays what checkout will charge
+        store.events.subscribeOnEdt(EventBus.Topic.MENU, batch -> {
+            for (EventBus.Event e : EventBus.latestById(batch))
+                if (e.subject != null)
+                    cart.reprice((FoodItem) e.subject);
+        });
+
+        // Dashboard/Settings button: label depends on logged-in role
+        String dashText = "Setting";
+        if (currentUser != null) {
+            if (currentUser.role == Role.RESTAURANT) dashText = "Manage Your Restaurant";
+            else if (currentUser.role == Role.CUSTOMER) dashText = "Your Orders";
+            else if (currentUser.role == Role.SHIPPER) dashText = "View Current Orders";
+            else if (currentUser.role == Role.CUSTOMER_SERVICE) dashText = "View Current Complaint";
+            else dashText = "Setting";
+        }
+
+        dashboardButton = new JButton(dashText);
+        dashboardButton.setBackground(new Color(255, 215, 0)); // Gold
+        dashboardButton.setForeground(Color.BLACK);
+        dashboardButton.setFocusPainted(false);
+        dashboardButton.setOpaque(true);
+        // size to fit text using FontMetrics
+        FontMetrics fm = dashboardButton.getFontMetrics(dashboardButton.getFont());
+        int w = fm.stringWidth(dashText) + 40; // padding
+        dashboardButton.setPreferredSize(new Dimension(Math.max(w, 100), 30));
+        dashboardButton.addActionListener(e -> showDashboard());
+        dashboardButton.setEnabled(false);
+        right.add(dashboardButton);
+
+        topPanel.add(left, BorderLayout.WEST);
+        topPanel.add(right, BorderLayout.EAST);
+        return topPanel;
+    }
+
+    private JPanel buildCategoryList() {
+        // Create tabbed pane with restaurants and categories
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.setBackground(new Color(173, 216, 230)); // Light sky blue
+        tabbedPane.setFont(tabbedPane.getFont().deriveFont(Font.BOLD, 16f)); // Bigger tab font
+
+        // Restaurants tab
+        JPanel restPanel = new JPanel(new BorderLayout());
+        restPanel.setBackground(new Color(173, 216, 230));
+        restPanel.setBorder(new EmptyBorder(6, 6, 6, 6));
+
+        restListModel = new DefaultListModel<>();
+        restList = new JList<>(restListModel);
+        restList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        restList.setFixedCellHeight(180); // Reduced height for smaller images
+        // populate restaurants
+        refreshRestaurantList();
+
+        restList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                tagAction("restaurant selected");
+                String sel = restList.getSelectedValue(); // restaurant display name with status
+                if (sel != null) {
+                    // Strip status from name
+                    String restaurantName = sel.replace(" (Open)", "").replace(" (Closed)", "");
+                    selectedRestaurant = restaurantName;
+                    isSelectingRestaurant = true;
+
+                    // 1) load categories chỉ của nhà hàng được chọn
+                    loadCategoriesForRestaurant(restaurantName);
+
+                    // 2) show only its foods (all categories initially)
+                    refreshItemsByRestaurant(restaurantName);
+
+                    isSelectingRestaurant = false;
+                } else {
+                    selectedRestaurant = null;
+                    isSelectingRestaurant = true;
+
+                    // nếu không chọn nhà hàng nào: load categories toàn bộ (nguyên hàm hiện tại)
+                    loadCategories(); // hàm bạn đã có — rebuild categories từ tất cả foods
+                    refreshItems("All");
+
+                    isSelectingRestaurant = false;
+                }
+            }
+        });
+
+        restPanel.add(new JScrollPane(restList), BorderLayout.CENTER);
+        tabbedPane.addTab("Restaurants", restPanel);
+
+        // Categories tab
+        JPanel catPanel = new JPanel(new BorderLayout());
+        catPanel.setBackground(new Color(173, 216, 230));
+        catPanel.setBorder(new EmptyBorder(6, 6, 6, 6));
+
+        catListModel = new DefaultListModel<>();
+        catList = new JList<>(catListModel);
+        catList.setFont(catList.getFont().deriveFont(Font.BOLD, 20f)); // Much bigger font for categories
+        catList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        catList.setSelectedIndex(0);
+        catList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting() && !isSelectingRestaurant) {
+                tagAction("category selected");
+                String sel = catList.getSelectedValue();
+                if (sel != null) {
+                    if (selectedRestaurant != null) {
+                        // Filter by both restaurant and category
+                        refreshItemsByRestaurantAndCategory(selectedRestaurant, sel);
+                    } else {
+                        // No restaurant selected, filter by category only
+                        refreshItems(sel);
+                    }
+                }
+            }
+        });
+
+        catPanel.add(new JScrollPane(catList), BorderLayout.CENTER);
+
+        JButton loadCatBtn = new JButton("Reload App");
+        loadCatBtn.addActionListener(e -> {
+            selectedRestaurant = null;
+            restList.clearSelection();
+            refreshRestaurantList();
+            loadCategories();
+            refreshItems("All");
+        });
+        catPanel.add(loadCatBtn, BorderLayout.SOUTH);
+
+        tabbedPane.addTab("Categories", catPanel);
+
+        JScrollPane wrapper = new JScrollPane(tabbedPane);
+        wrapper.setBorder(BorderFactory.createTitledBorder("Navigation"));
+
+        // Main panel with tabs and reload button below
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        mainPanel.add(wrapper, BorderLayout.CENTER);
+
+        JButton reloadBtn = new JButton("Reload App");
+        reloadBtn.addActionListener(e -> {
+            selectedRestaurant = null;
+            restList.clearSelection();
+            refreshRestaurantList();
+            loadCategories();
+            refreshItems("All");
+        });
+        mainPanel.add(reloadBtn, BorderLayout.SOUTH);
+
+        return mainPanel;
+    }
+
+    private JScrollPane buildItemsArea() {
+        itemsPanel = new FoodGrid(new WrapLayout(FlowLayout.LEFT, 14, 14));
+        itemsPanel.setBackground(new Color(173, 216, 230)); // Light sky blue
+        itemsPanel.setDoubleBuffered(true); // Enable double buffering for smoother rendering
+        // menu edits from any window (or the API) show up without a manual refresh
+        store.events.subscribeOnEdt(EventBus.Topic.MENU, batch -> {
+            Set<UUID> changed = new HashSet<>();
+            for (EventBus.Event e : batch)
+                changed.add(e.id);
+            itemsPanel.update(shownQuery != null ? catalogService.search(shownQuery, SEARCH_LIMIT)
+                    : catalogService.browse(shownRestaurant, shownCategory), changed);
+        });
+        JScrollPane sp = new JScrollPane(itemsPanel);
+        sp.setBorder(BorderFactory.createTitledBorder("Food Menu"));
+        return sp;
+    }
+
+    private void showSearch(String text) {
+        tagAction("menu search");
+        String q = text.trim();
+        if (q.isEmpty()) {
+            if (shownQuery != null) {
+                shownQuery = null;
+                itemsPanel.setItems(catalogService.browse(shownRestaurant, shownCategory));
+            }
+            return;
+        }
+        shownQuery = q;
+        itemsPanel.setItems(catalogService.search(q, SEARCH_LIMIT));
+    }
+
+    /** Picking a restaurant or category leaves search mode. */
+    private void clearSearch() {
+        shownQuery = null;
+        if (searchField != null)
+            searchField.setText("");
+    }
+
+    private void refreshItems(String categoryFilter) {
+        long t0 = System.nanoTime();
+        clearSearch();
+        shownRestaurant = null;
+        shownCategory = categoryFilter;
+        itemsPanel.setItems(catalogService.browse(null, categoryFilter));
+        REFRESH_ITEMS.since(t0);
+    }
+
+    private void refreshRestaurantList() {
+        restListModel.clear();
+        // gom các tên nhà hàng từ food items
+        List<String> set = catalogService.restaurants();
+        // đổ vào JList with status
+        for (String r : set) {
+            User restUser = userService.restaurant(r);
+            String status = (restUser != null && restUser.isOpen) ? " (Open)" : " (Closed)";
+            restListModel.addElement(r + status);
+        }
+        // Set custom renderer for colors
+        restList.setCellRenderer(new RestaurantListRenderer());
+    }
+
+    private void refreshItemsByRestaurant(String restaurantName) {
+        if (restaurantName == null) {
+            return; // Don't refresh if restaurant name is null
+        }
+        long t0 = System.nanoTime();
+        clearSearch();
+        shownRestaurant = restaurantName;
+        shownCategory = null;
+        itemsPanel.setItems(catalogService.browse(restaurantName, null));
+        REFRESH_BY_RESTAURANT.since(t0);
+    }
+
+    private void refreshItemsByRestaurantAndCategory(String restaurantName, String categoryFilter) {
+        if (restaurantName == null || categoryFilter == null) {
+            return; // Don't refresh if parameters are null
+        }
+        long t0 = System.nanoTime();
+        clearSearch();
+        shownRestaurant = restaurantName;
+        shownCategory = categoryFilter;
+        itemsPanel.setItems(catalogService.browse(restaurantName, categoryFilter));
+        REFRESH_BY_RESTAURANT_CATEGORY.since(t0);
+    }
+
+    private FoodCard createFoodCard(FoodItem f) {
+        long t0 = System.nanoTime();
+        FoodCard card = new FoodCard().bind(f);
+        CREATE_CARD.since(t0);
+        return card;
+    }
+
+    // -------------------- Food grid --------------------
+    // Virtualized replacement for one JPanel per food: the grid lays cards out exactly like
+    // WrapLayout would (same gaps, left aligned, wrapping to the viewport width), but only the
+    // rows inside the viewport have a card component. Cards scrolled out of view go back to a
+    // pool and are re-bound to whatever item scrolls in.
+    class FoodGrid extends JPanel implements Scrollable {
+        private static final int CARD_W = 200, CARD_H = 280;
+        private static final int OVERSCAN_ROWS = 1; // keep one extra row bound above/below the viewport
+        private final WrapLayout wrap;
+        private List<FoodItem> items = new ArrayList<>();
+        private final Map<Integer, FoodCard> bound = new HashMap<>(); // item index -> card
+        private final ArrayDeque<FoodCard> pool = new ArrayDeque<>();
+        private int columns = 1;
+        private JViewport watchedViewport;
+
+        FoodGrid(WrapLayout wrap) {
+            super(null); // children are positioned by layoutVisible()
+            this.wrap = wrap;
+        }
+
+        /** Menu change: rebinds visible cards in place unless items were added, removed or reordered. */
+        void update(Collection<FoodItem> list, Set<UUID> changed) {
+            List<FoodItem> next = new ArrayList<>(list);
+            boolean sameItems = next.size() == items.size();
+            for (int i = 0; sameItems && i < next.size(); i++)
+                sameItems = next.get(i) == items.get(i);
+            if (!sameItems) {
+                setItems(next);
+                return;
+            }
+            for (Map.Entry<Integer, FoodCard> e : bound.entrySet()) {
+                FoodItem f = items.get(e.getKey());
+                if (changed.contains(f.id))
+                    e.getValue().bind(f);
+            }
+        }
+
+        void setItems(Collection<FoodItem> list) {
+            items = new ArrayList<>(list);
+            for (FoodCard c : bound.values()) {
+                remove(c);
+                pool.push(c);
+            }
+            bound.clear();
+            revalidate();
+            repaint();
+        }
+
+        @Override
+        public void addNotify() {
+            super.addNotify();
+            if (getParent() instanceof JViewport && getParent() != watchedViewport) {
+                watchedViewport = (JViewport) getParent();
+                watchedViewport.addChangeListener(e -> layoutVisible()); // scrolling re-binds rows
+            }
+        }
+
+        @Override
+        public void doLayout() {
+            layoutVisible();
+        }
+
+        private int rowHeight() {
+            return CARD_H + wrap.getVgap();
+        }
+
+        private int availableWidth() {
+            int w = getWidth();
+            if (w == 0 && getParent() != null)
+                w = getParent().getWidth();
+            return w;
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            int cols = wrap.columns(this, availableWidth(), CARD_W);
+            int rows = (items.size() + cols - 1) / cols;
+            Insets in = getInsets();
+            int height = in.top + in.bottom + wrap.getVgap() * 2 + rows * CARD_H + Math.max(0, rows - 1) * wrap.getVgap();
+            int width = in.left + in.right + wrap.getHgap() * 2 + cols * CARD_W + (cols - 1) * wrap.getHgap();
+            return new Dimension(width, height);
+        }
+
+        /** Binds cards to the rows inside the viewport and returns the others to the pool. */
+        private void layoutVisible() {
+            int cols = wrap.columns(this, availableWidth(), CARD_W);
+            if (cols != columns) {
+                columns = cols;
+                revalidate(); // preferred height depends on the column count
+            }
+            Rectangle view = getVisibleRect();
+            Insets in = getInsets();
+            int top = in.top + wrap.getVgap();
+            int firstRow = Math.max(0, (view.y - top) / rowHeight() - OVERSCAN_ROWS);
+            int lastRow = Math.max(0, (view.y + view.height - top) / rowHeight() + OVERSCAN_ROWS);
+            int from = Math.min(items.size(), firstRow * cols);
+            int to = Math.min(items.size(), (lastRow + 1) * cols);
+
+            for (Iterator<Map.Entry<Integer, FoodCard>> it = bound.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<Integer, FoodCard> e = it.next();
+                if (e.getKey() < from || e.getKey() >= to) {
+                    remove(e.getValue());
+                    pool.push(e.getValue());
+                    it.remove();
+                }
+            }
+            for (int i = from; i < to; i++) {
+                FoodCard card = bound.get(i);
+                if (card == null) {
+                    card = pool.isEmpty() ? createFoodCard(items.get(i)) : pool.pop().bind(items.get(i));
+                    bound.put(i, card);
+                    add(card);
+                }
+                int row = i / cols, col = i % cols;
+                card.setBounds(in.left + wrap.getHgap() + col * (CARD_W + wrap.getHgap()), top + row * rowHeight(),
+                        CARD_W, CARD_H);
+                card.validate();
+            }
+            repaint();
+        }
+
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            return getPreferredSize();
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? rowHeight() / 8 : CARD_W / 8;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return true; // wrap to the viewport like WrapLayout does
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+        }
+    }
+
+    // A food card built once and re-bound to other items by the grid; actions read the bound item
+    class FoodCard extends JPanel {
+        private FoodItem food;
+        private final JLabel imgLabel = new JLabel();
+        private final JLabel name = new JLabel();
+        private final JLabel price = new JLabel();
+        private final JLabel rating = new JLabel();
+        private final JLabel desc = new JLabel();
+        private final JButton add = new JButton("Add");
+        private final JButton remove = new JButton("Remove");
+
+        FoodCard() {
+            super(new BorderLayout());
+            setPreferredSize(new Dimension(200, 280)); // Adjusted width for smaller images
+            setBorder(BorderFactory.createLineBorder(new Color(135, 206, 235), 2, true)); // Sky blue border
+            setBackground(new Color(240, 248, 255)); // Alice blue
+
+            // image top: real image if available, else the label is painted as a colored box
+            imgLabel.setPreferredSize(new Dimension(180, 120)); // Reduced size for better performance
+            imgLabel.setBorder(new EmptyBorder(6, 6, 6, 6));
+            add(imgLabel, BorderLayout.NORTH);
+
+            // center: name, price, desc
+            JPanel center = new JPanel();
+            center.setLayout(new BoxLayout(center, BoxLayout.Y_AXIS));
+            center.setBorder(new EmptyBorder(6, 6, 6, 6));
+            name.setFont(name.getFont().deriveFont(14f).deriveFont(Font.BOLD));
+            center.add(name);
+            price.setFont(price.getFont().deriveFont(16f).deriveFont(Font.BOLD));
+            price.setForeground(new Color(34, 139, 34)); // Forest green for price
+            center.add(price);
+            center.add(rating);
+            desc.setFont(desc.getFont().deriveFont(11f)); // Slightly larger than default
+            center.add(desc);
+            add(center, BorderLayout.CENTER);
+
+            // bottom: add to cart + qty
+            JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            add.setBackground(new Color(0, 191, 255));
+            add.setForeground(Color.WHITE);
+            add.setFocusPainted(false);
+            add.addActionListener(e -> addToCart(food));
+            bottom.add(add);
+
+            JButton reviewsBtn = new JButton("Reviews");
+            reviewsBtn.setBackground(new Color(0, 191, 255));
+            reviewsBtn.setForeground(Color.WHITE);
+            reviewsBtn.setFocusPainted(false);
+            reviewsBtn.addActionListener(e -> showFoodReviewsDialog(food));
+            bottom.add(reviewsBtn);
+
+            // If current user is ADMIN allow inline remove (quick demo); shown per bind
+            remove.setBackground(new Color(255, 69, 0)); // Red orange for remove
+            remove.setForeground(Color.WHITE);
+            remove.setFocusPainted(false);
+            remove.addActionListener(e -> {
+                FoodItem f = food;
+                int confirm = JOptionPane.showConfirmDialog(frame, "Remove " + f.name + "?", "Confirm",
+                        JOptionPane.YES_NO_OPTION);
+                if (confirm == JOptionPane.YES_OPTION) {
+                    catalogService.removeFood(f);
+                    refreshItems(catList.getSelectedValue());
+                    log("food.remove", null, f.name);
+                }
+            });
+            bottom.add(remove);
+            add(bottom, BorderLayout.SOUTH);
+        }
+
+        FoodCard bind(FoodItem f) {
+            food = f;
+            // placeholder until the decode lands; then re-bind if this card still shows the same item
+            ImageIcon ico = loadScaledImageIcon(f.imagePath, 180, 120, () -> {
+                if (food == f)
+                    bind(f);
+            });
+            imgLabel.setIcon(ico);
+            imgLabel.setOpaque(ico == null); // fallback: colored box
+            imgLabel.setBackground(f.colorPreview);
+
+            name.setText(f.name);
+            price.setText("VND " + Money.format(f.priceMinor));
+            rating.setText(String.format("⭐ %.1f (%d reviews)", f.rating, store.foodRating(f).count()));
+            desc.setText("<html>" + f.description + "</html>");
+
+            // Check if restaurant is open
+            User restUser = userService.restaurant(f.restaurantOwner);
+            boolean isOpen = restUser == null || restUser.isOpen;
+            boolean canAdd = isOpen && f.inStock;
+            add.setEnabled(canAdd);
+            add.setText(canAdd ? "Add" : (f.inStock ? "Closed" : "Out of Stock"));
+            remove.setVisible(currentUser != null && currentUser.role == Role.ADMIN);
+            return this;
+        }
+    }
+
+    private void addToCart(FoodItem f) {
+        User restUser = userService.restaurant(f.restaurantOwner);
+        if (restUser != null && !restUser.isOpen) {
+            JOptionPane.showMessageDialog(frame, "This restaurant is currently closed.");
+            return;
+        }
+        if (!f.inStock) {
+            JOptionPane.showMessageDialog(frame, "This item is out of stock.");
+            return;
+        }
+        String selectedVariation = "";
+        if (!f.variations.isEmpty()) {
+            // Create options with prices, but store variation names separately
+            String[] options = new String[f.variations.size()];
+            String[] variationNames = f.variations.toArray(new String[0]);
+            
+            for (int i = 0; i < f.variations.size(); i++) {
+                String v = f.variations.get(i);
+                long variationPrice = f.variationPrice(i);
+                if (variationPrice == 0) {
+                    options[i] = v; // Just show variation name if price is 0
+                } else {
+                    String priceDisplay = (variationPrice > 0 ? "+" : "") + Money.format(variationPrice);
+                    options[i] = v + " " + priceDisplay + " (VND)";
+                }
+            }
+            
+            JComboBox<String> varBox = new JComboBox<>(options);
+            int result = JOptionPane.showConfirmDialog(frame, varBox, "Choose variation", JOptionPane.OK_CANCEL_OPTION);
+            if (result == JOptionPane.OK_OPTION) {
+                int selectedIndex = varBox.getSelectedIndex();
+                selectedVariation = variationNames[selectedIndex]; // Use the actual variation name
+            } else {
+                return;
+            }
+        }
+        cart.add(f, selectedVariation, 1);
+        log("cart.add", null, f.name + (selectedVariation.isEmpty() ? "" : " (" + selectedVariation + ")"));
+        statusLabel.setText("Added to cart: " + f.name + (selectedVariation.isEmpty() ? "" : " (" + selectedVariation + ")"));
+    }
+
+    private void updateCartButton() {
+        cartButton.setText("Cart (" + cart.totalQty() + ")");
+    }
+
+    /** Keeps the badge current and mirrors the signed-in customer's cart into the store. */
+    private void cartChanged(Cart.Change change, int line, FoodItem food, int variation) {
+        updateCartButton();
+        if (cartOwner == null)
+            return;
+        if (change == Cart.Change.CLEARED)
+            store.cartCleared(cartOwner);
+        else
+            store.cartLineChanged(cartOwner, food, variation, change == Cart.Change.REMOVED ? 0 : cart.qty(line));
+    }
+
+    /** Switches to {@code u}'s saved cart; what was added while signed out joins it and is saved too. */
+    private void bindCart(User u) {
+        String owner = u != null && u.role == Role.CUSTOMER ? u.username : null;
+        if (Objects.equals(owner, cartOwner))
+            return;
+        Cart guest = new Cart();
+        if (cartOwner == null)
+            guest.addAll(cart);
+        cartOwner = null; // detached first, so clearing leaves the saved cart alone
+        cart.clear();
+        if (owner != null) {
+            store.loadCart(owner, cart);
+            cartOwner = owner;
+            cart.addAll(guest);
+        }
+    }
+
+    // -------------------- dialogs & dashboards --------------------
+    /** CUSTOMER: profile settings — change password, address, phone */
+    private void showCustomerSettingsDialog() {
+        if (currentUser == null || currentUser.role != Role.CUSTOMER) {
+            JOptionPane.showMessageDialog(frame, "Only customers can edit profile.");
+            return;
+        }
+
+        JPanel p = new JPanel(new GridLayout(0, 1));
+
+        // Current info
+        JPasswordField oldPassFld = new JPasswordField();
+        JPasswordField newPassFld = new JPasswordField();
+        JTextField addrFld = new JTextField(currentUser.address);
+        JTextField phoneFld = new JTextField(currentUser.phone);
+        JButton changeImgBtn = new JButton("Change Profile Image");
+        JLabel imgSelectedLabel = new JLabel(
+                currentUser.profileImagePath == null ? "No image" : currentUser.profileImagePath);
+        changeImgBtn.addActionListener(ev -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+            if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                String pth = chooser.getSelectedFile().getAbsolutePath();
+                imgSelectedLabel.setText(chooser.getSelectedFile().getName());
+                currentUser.profileImagePath = pth; // temporarily set — will be saved on OK
+                imageChanged(currentUser.profileImagePath);
+            }
+        });
+        p.add(changeImgBtn);
+        p.add(imgSelectedLabel);
+
+        p.add(new JLabel("Enter current password:"));
+        p.add(oldPassFld);
+
+        p.add(new JLabel("New password:"));
+        p.add(newPassFld);
+
+        p.add(new JLabel("Address:"));
+        p.add(addrFld);
+
+        p.add(new JLabel("Phone number:"));
+        p.add(phoneFld);
+
+        int res = JOptionPane.showConfirmDialog(frame, p, "Profile Settings",
+                JOptionPane.OK_CANCEL_OPTION);
+
+        if (res == JOptionPane.OK_OPTION) {
+            String oldp = new String(oldPassFld.getPassword());
+            String newp = new String(newPassFld.getPassword());
+
+            // verify old password
+            if (!currentUser.password.equals(oldp)) {
+                JOptionPane.showMessageDialog(frame, "Incorrect current password.");
+                return;
+            }
+
+            String address = addrFld.getText().trim();
+            String phone = phoneFld.getText().trim();
+            userService.update(currentUser, u -> {
+                if (!newp.isBlank()) {
+                    u.password = newp;
+                }
+                u.address = address;
+                u.phone = phone;
+            });
+
+            log("user.update", null, "profile");
+            // update top bar avatar
+            Component[] rightComps = ((JPanel) ((JPanel) frame.getContentPane().getComponent(0)).getComponent(1))
+                    .getComponents();
+            for (Component c : rightComps) {
+                if (c instanceof JLabel) {
+                    User me = currentUser;
+                    setIconAsync((JLabel) c, () -> me == currentUser ? me.profileImagePath : null, 32, 32);
+                    break;
+                }
+            }
+
+            JOptionPane.showMessageDialog(frame, "Profile updated successfully!");
+        }
+    }
+
+    private void showLoginDialog() {
+        JPanel p = new JPanel(new GridLayout(0, 1));
+        JTextField userFld = new JTextField();
+        JPasswordField passFld = new JPasswordField();
+        p.add(new JLabel("Username:"));
+        p.add(userFld);
+        p.add(new JLabel("Password:"));
+        p.add(passFld);
+
+        int res = JOptionPane.showConfirmDialog(frame, p, "Login", JOptionPane.OK_CANCEL_OPTION);
+        if (res == JOptionPane.OK_OPTION) {
+            String u = userFld.getText().trim();
+            String pass = new String(passFld.getPassword());
+            User found = userService.login(u, pass);
+            if (found != null) {
+                currentUser = found;
+                bindCart(found);
+                if (avatarLabel != null) {
+                    User me = currentUser;
+                    setIconAsync(avatarLabel, () -> me == currentUser ? me.profileImagePath : null, 32, 32);
+                }
+                userLabel.setText("Logged in: " + currentUser.username + " [" + currentUser.role + "]");
+                dashboardButton.setEnabled(true);
+                // update dashboard button text and size for current role
+                String dashText;
+                if (currentUser.role == Role.RESTAURANT) dashText = "Manage Your Restaurant";
+                else if (currentUser.role == Role.CUSTOMER) dashText = "Your Orders";
+                else if (currentUser.role == Role.SHIPPER) dashText = "View Current Orders";
+                else if (currentUser.role == Role.CUSTOMER_SERVICE) dashText = "View Current Complaint";
+                else dashText = "Setting";
+                dashboardButton.setText(dashText);
+                FontMetrics fmDash = dashboardButton.getFontMetrics(dashboardButton.getFont());
+                int dashW = fmDash.stringWidth(dashText) + 40; // padding
+                dashboardButton.setPreferredSize(new Dimension(Math.max(dashW, 100), 30));
+                statusLabel.setText("Welcome back, " + currentUser.username + "!");
+                log("user.login", null, null);
+                refreshForRole();
+                // Hide login/register, show logout
+                loginBtn.setVisible(false);
+                registerBtn.setVisible(false);
+                logoutButton.setVisible(true);
+                cartButton.setVisible(currentUser.role == Role.CUSTOMER);
+                rightPanel.invalidate();
+                rightPanel.revalidate();
+                rightPanel.repaint();
+                topPanel.invalidate();
+                topPanel.revalidate();
+                topPanel.repaint();
+                frame.invalidate();
+                frame.revalidate();
+                frame.repaint();
+            } else {
+                JOptionPane.showMessageDialog(frame, "Invalid username/password");
+            }
+        }
+    }
+
+    private void showRegisterDialog() {
+        JDialog dlg = new JDialog(frame, "Register", true);
+        dlg.setSize(400, 350);
+        dlg.setLocationRelativeTo(frame);
+        dlg.getContentPane().setBackground(new Color(173, 216, 230)); // Light sky blue
+
+        JPanel p = new JPanel(new GridBagLayout());
+        p.setBackground(new Color(240, 248, 255));
+        p.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(8, 8, 8, 8);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+
+        // Username
+        p.add(new JLabel("Choose username:"), gbc);
+        gbc.gridx = 1;
+        JTextField userFld = new JTextField(16);
+        p.add(userFld, gbc);
+
+        // Password
+        gbc.gridx = 0;
+        gbc.gridy++;
+        p.add(new JLabel("Choose password:"), gbc);
+        gbc.gridx = 1;
+        JPasswordField passFld = new JPasswordField(16);
+        p.add(passFld, gbc);
+
+        // Role selector
+        gbc.gridx = 0;
+        gbc.gridy++;
+        p.add(new JLabel("Register as:"), gbc);
+        gbc.gridx = 1;
+        JComboBox<String> roleBox = new JComboBox<>(new String[] { "Customer", "Shipper", "Restaurant" });
+        p.add(roleBox, gbc);
+
+        // Shipper name field (hidden unless Shipper chosen)
+        gbc.gridx = 0;
+        gbc.gridy++;
+        JLabel shipperLbl = new JLabel("Shipper name:");
+        JTextField shipperFld = new JTextField(16);
+        // initially hidden
+        shipperLbl.setVisible(false);
+        shipperFld.setVisible(false);
+        p.add(shipperLbl, gbc);
+        gbc.gridx = 1;
+        p.add(shipperFld, gbc);
+
+        // Restaurant name field (hidden unless Restaurant chosen)
+        gbc.gridx = 0;
+        gbc.gridy++;
+        JLabel restLbl = new JLabel("Restaurant name:");
+        JTextField restFld = new JTextField(16);
+        // initially hidden
+        restLbl.setVisible(false);
+        restFld.setVisible(false);
+        p.add(restLbl, gbc);
+        gbc.gridx = 1;
+        p.add(restFld, gbc);
+
+        // Show/hide fields based on selection
+        roleBox.addActionListener(ae -> {
+            String sel = (String) roleBox.getSelectedItem();
+            boolean isShipper = "Shipper".equals(sel);
+            boolean isRest = "Restaurant".equals(sel);
+            shipperLbl.setVisible(isShipper);
+            shipperFld.setVisible(isShipper);
+            restLbl.setVisible(isRest);
+            restFld.setVisible(isRest);
+            // revalidate parent so changes appear
+            p.revalidate();
+            p.repaint();
+        });
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.setBackground(new Color(240, 248, 255));
+        JButton okBtn = new JButton("Register");
+        okBtn.setBackground(new Color(0, 191, 255));
+        okBtn.setForeground(Color.WHITE);
+        okBtn.setFocusPainted(false);
+        JButton cancelBtn = new JButton("Cancel");
+        cancelBtn.setBackground(new Color(255, 69, 0));
+        cancelBtn.setForeground(Color.WHITE);
+        cancelBtn.setFocusPainted(false);
+
+        okBtn.addActionListener(e -> {
+            String u = userFld.getText().trim();
+            String pass = new String(passFld.getPassword());
+            String roleChoice = (String) roleBox.getSelectedItem();
+
+            if (u.isEmpty() || pass.isEmpty()) {
+                JOptionPane.showMessageDialog(dlg, "Username and password required.");
+                return;
+            }
+            if (userService.get(u) != null) {
+                JOptionPane.showMessageDialog(dlg, "Username already taken.");
+                return;
+            }
+
+            Role assignedRole = Role.CUSTOMER;
+            if ("Shipper".equals(roleChoice))
+                assignedRole = Role.SHIPPER;
+            else if ("Restaurant".equals(roleChoice))
+                assignedRole = Role.RESTAURANT;
+
+            User nu = new User(u, pass, assignedRole);
+
+            // Handle shipper name
+            if (assignedRole == Role.SHIPPER) {
+                String sname = shipperFld.getText().trim();
+                if (sname.isEmpty()) {
+                    JOptionPane.showMessageDialog(dlg, "Please provide a shipper name.");
+                    return;
+                }
+                nu.shipperName = sname;
+            }
+
+            // Handle restaurant name
+            if (assignedRole == Role.RESTAURANT) {
+                String rname = restFld.getText().trim();
+                if (rname.isEmpty()) {
+                    JOptionPane.showMessageDialog(dlg, "Please provide a restaurant name.");
+                    return;
+                }
+                nu.restaurantName = rname;
+                nu.myCategories.add("Main");
+                nu.myCategories.add("Drinks");
+            }
+
+            refreshRestaurantList();
+            catListModel.addElement("All"); // only if you need to ensure 'All' exists
+            // optional: set some defaults
+            nu.address = "";
+            nu.phone = "";
+
+            try {
+                userService.register(nu);
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                return;
+            }
+            store.log(nu.username, "user.register", null, "role=" + assignedRole
+                    + (nu.shipperName == null ? "" : " shipper=" + nu.shipperName)
+                    + (nu.restaurantName == null ? "" : " rest=" + nu.restaurantName));
+            JOptionPane.showMessageDialog(dlg, "Registered. You can now login.");
+            dlg.dispose();
+        });
+
+        cancelBtn.addActionListener(e -> dlg.dispose());
+
+        buttonPanel.add(okBtn);
+        buttonPanel.add(cancelBtn);
+
+        dlg.setLayout(new BorderLayout());
+        dlg.add(p, BorderLayout.CENTER);
+        dlg.add(buttonPanel, BorderLayout.SOUTH);
+        dlg.setVisible(true);
+    }
+
+    // Rows of the cart dialog, read straight from the cart: row i is line i. A cart change
+    // repaints only the rows it touched instead of rebuilding the dialog.
+    private class CartListModel extends AbstractListModel<String> implements Cart.Listener {
+        private int rows = cart.size();
+
+        @Override
+        public int getSize() {
+            return rows;
+        }
+
+        @Override
+        public String getElementAt(int i) {
+            String var = cart.variationName(i);
+            return cart.qty(i) + " x " + cart.food(i).name + (var.isEmpty() ? "" : " (" + var + ")") + "  - VND " + Money.format(cart.lineTotal(i));
+        }
+
+        @Override
+        public void cartChanged(Cart.Change change, int line, FoodItem food, int variation) {
+            switch (change) {
+                case ADDED:
+                    rows++;
+                    fireIntervalAdded(this, line, line);
+                    break;
+                case UPDATED:
+                    fireContentsChanged(this, line, line);
+                    break;
+                case REMOVED:
+                    rows--;
+                    if (line < rows)
+                        fireContentsChanged(this, line, line); // the former last line
+                    fireIntervalRemoved(this, rows, rows);
+                    break;
+                default:
+                    int n = rows;
+                    rows = 0;
+                    if (n > 0)
+                        fireIntervalRemoved(this, 0, n - 1);
+            }
+        }
+    }
+
+    private void showCartDialog() {
+        tagAction("open cart");
+        if (cart.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "Cart is empty.");
+            return;
+        }
+        JDialog dlg = new JDialog(frame, "Cart", true);
+        dlg.setSize(600, 500);
+        dlg.setLocationRelativeTo(frame);
+        dlg.getContentPane().setBackground(new Color(173, 216, 230)); // Light sky blue
+
+        JPanel main = new JPanel(new BorderLayout());
+        main.setBackground(new Color(240, 248, 255));
+        CartListModel model = new CartListModel();
+        cancelOnClose(dlg, cart.listen(model));
+        JList<String> list = new JList<>(model);
+        main.add(new JScrollPane(list), BorderLayout.CENTER);
+
+        // Note text area
+        JPanel notePanel = new JPanel(new BorderLayout());
+        notePanel.setBorder(BorderFactory.createTitledBorder("Note for Restaurant (optional)"));
+        JTextArea noteArea = new JTextArea(4, 50);
+        noteArea.setLineWrap(true);
+        noteArea.setWrapStyleWord(true);
+        JScrollPane noteScroll = new JScrollPane(noteArea);
+        noteScroll.setPreferredSize(new Dimension(550, 80));
+        notePanel.add(noteScroll, BorderLayout.CENTER);
+        main.add(notePanel, BorderLayout.SOUTH);
+
+        JLabel totalLbl = new JLabel("Total: VND " + Money.format(cart.total()));
+        cancelOnClose(dlg, cart.listen((change, line, food, variation) -> totalLbl.setText("Total: VND " + Money.format(cart.total()))));
+        totalLbl.setBorder(new EmptyBorder(6, 6, 6, 6));
+        main.add(totalLbl, BorderLayout.NORTH);
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton checkout = new JButton("Checkout");
+        checkout.setBackground(new Color(0, 191, 255));
+        checkout.setForeground(Color.WHITE);
+        checkout.setFocusPainted(false);
+        checkout.addActionListener(e -> {
+            if (currentUser == null || currentUser.role != Role.CUSTOMER) {
+                JOptionPane.showMessageDialog(dlg, "You must be logged in as a customer to checkout.");
+                return;
+            }
+            // Payment method choice
+            String[] options = {"Cash on Delivery", "Online Payment"};
+            int choice = JOptionPane.showOptionDialog(dlg, "Choose payment method:", "Payment Method",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+            if (choice == JOptionPane.CLOSED_OPTION) return; // cancelled
+
+            boolean isCashOnDelivery = (choice == 0);
+
+            // create order
+            Order o;
+            try {
+                o = orderService.checkout(currentUser, cart, noteArea.getText());
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                return;
+            }
+            cart.clear();
+            log("order.place", o.id, "payment=" + (isCashOnDelivery ? "COD" : "Online"));
+            statusLabel.setText("Order placed! Order ID: " + o.id.toString().substring(0, 6));
+            dlg.dispose();
+
+            if (isCashOnDelivery) {
+                JOptionPane.showMessageDialog(frame, "Order placed!\nID: " + o.id + "\nTotal: VND " + Money.format(o.totalMinor) + "\nPayment: Cash on Delivery");
+            } else {
+                // Open payment dialog
+                JDialog paymentDialog = new JDialog(frame, "Payment", true);
+                paymentDialog.setLayout(new BorderLayout());
+                // QR Code panel
+                JPanel qrPanel = new JPanel() {
+                    @Override
+                    protected void paintComponent(Graphics g) {
+                        super.paintComponent(g);
+                        // Simple QR code pattern
+                        int size = Math.min(getWidth(), getHeight()) - 20;
+                        int cellSize = size / 21; // 21x21 grid
+                        int offsetX = (getWidth() - size) / 2;
+                        int offsetY = (getHeight() - size) / 2;
+                        g.setColor(Color.BLACK);
+                        // Draw a simple QR-like pattern
+                        for (int i = 0; i < 21; i++) {
+                            for (int j = 0; j < 21; j++) {
+                                // Create a pattern that looks like QR code
+                                boolean draw = false;
+                                if ((i < 7 && j < 7) || (i < 7 && j > 13) || (i > 13 && j < 7)) {
+                                    draw = true; // position squares
+                                } else if (i == 2 || j == 2 || i == 18 || j == 18) {
+                                    draw = true; // alignment
+                                } else if ((i + j) % 3 == 0) {
+                                    draw = true; // some pattern
+                                }
+                                if (draw) {
+                                    g.fillRect(offsetX + i * cellSize, offsetY + j * cellSize, cellSize, cellSize);
+                                }
+                            }
+                        }
+                    }
+                };
+                qrPanel.setPreferredSize(new Dimension(200, 200));
+                qrPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+                paymentDialog.add(qrPanel, BorderLayout.CENTER);
+                // Total label
+                JLabel totalLabel = new JLabel("Total: VND " + Money.format(o.totalMinor), SwingConstants.CENTER);
+                totalLabel.setFont(new Font("Arial", Font.BOLD, 16));
+                totalLabel.setBorder(new EmptyBorder(10, 10, 10, 10));
+                paymentDialog.add(totalLabel, BorderLayout.NORTH);
+                // Payment done button
+                JButton paymentDoneButton = new JButton("Payment Done");
+                paymentDoneButton.addActionListener(ev -> paymentDialog.dispose());
+                JPanel buttonPanel = new JPanel();
+                buttonPanel.add(paymentDoneButton);
+                paymentDialog.add(buttonPanel, BorderLayout.SOUTH);
+                paymentDialog.pack();
+                paymentDialog.setLocationRelativeTo(frame);
+                paymentDialog.setVisible(true);
+            }
+        });
+        bottom.add(checkout);
+
+        JButton removeBtn = new JButton("Remove Selected");
+        removeBtn.addActionListener(e -> {
+            int idx = list.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select an item to remove.");
+                return;
+            }
+            // the row, total and badge follow through the cart's listeners; at zero the last row moves up
+            cart.add(cart.food(idx), cart.variation(idx), -1);
+            if (cart.isEmpty()) {
+                dlg.dispose();
+                JOptionPane.showMessageDialog(frame, "Cart is now empty.");
+            } else {
+                list.setSelectedIndex(Math.min(idx, cart.size() - 1));
+            }
+        });
+        bottom.add(removeBtn);
+
+        JButton editAddr = new JButton("Edit address/phone");
+        editAddr.addActionListener(e -> {
+            int idx = list.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select an item first.");
+                return;
+            }
+            FoodItem f = cart.food(idx); // <-- FIX CHÍNH
+            if (currentUser != null) {
+                boolean isAdmin = currentUser.role == Role.ADMIN;
+                boolean isOwner = (currentUser.role == Role.RESTAURANT &&
+                        currentUser.restaurantName != null &&
+                        currentUser.restaurantName.equals(f.restaurantOwner));
+                if (isAdmin || isOwner) {
+                    JButton edit = new JButton("Edit");
+                    edit.addActionListener(ev -> {
+                        // open small edit dialog - name, price, category, image
+                        JTextField nameF = new JTextField(f.name);
+                        JTextField priceF = new JTextField(Money.plain(f.priceMinor));
+                        JTextField ratingF = new JTextField(String.valueOf(f.rating));
+                        String[] catArray;
+                        if (currentUser != null && currentUser.role == Role.RESTAURANT
+                                && !currentUser.myCategories.isEmpty()) {
+                            catArray = currentUser.myCategories.toArray(new String[0]);
+                        } else {
+                            catArray = catalogService.allCategories().toArray(new String[0]);
+                        }
+                        JComboBox<String> catBox = new JComboBox<>(catArray);
+                        catBox.setSelectedItem(f.category);
+                        JPanel p = new JPanel(new GridLayout(0, 1));
+                        p.add(new JLabel("Name:"));
+                        p.add(nameF);
+                        p.add(new JLabel("Price:"));
+                        p.add(priceF);
+                        p.add(new JLabel("Rating:"));
+                        p.add(ratingF);
+                        p.add(new JLabel("Category:"));
+                        p.add(catBox);
+
+                        // change image button (optional)
+                        JButton changeImg = new JButton("Change Image");
+                        JLabel imgLbl = new JLabel(f.imagePath == null ? "No image" : f.imagePath);
+                        final String[] newImg = { f.imagePath };
+                        changeImg.addActionListener(ae -> {
+                            JFileChooser chooser = new JFileChooser();
+                            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+                            if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                                newImg[0] = chooser.getSelectedFile().getAbsolutePath();
+                                imgLbl.setText(chooser.getSelectedFile().getName());
+                            }
+                        });
+                        p.add(changeImg);
+                        p.add(imgLbl);
+
+                        int r = JOptionPane.showConfirmDialog(frame, p, "Edit Food", JOptionPane.OK_CANCEL_OPTION);
+                        if (r == JOptionPane.OK_OPTION) {
+                            try {
+                                String name = nameF.getText().trim();
+                                long price = parsePrice(priceF.getText().trim());
+                                double rating = Double.parseDouble(ratingF.getText().trim());
+                                String category = (String) catBox.getSelectedItem();
+                                catalogService.update(f, x -> {
+                                    x.name = name;
+                                    x.priceMinor = price;
+                                    x.rating = rating;
+                                    x.category = category;
+                                    x.imagePath = newImg[0];
+                                });
+                                imageChanged(f.imagePath);
+                                refreshItems(catList.getSelectedValue());
+                            } catch (Exception ex) {
+                                JOptionPane.showMessageDialog(frame, "Invalid input.");
+                            }
+                        }
+                    });
+                    bottom.add(edit);
+
+                    JButton remove = new JButton("Remove");
+                    remove.addActionListener(ev -> {
+                        int confirm = JOptionPane.showConfirmDialog(frame, "Remove " + f.name + "?", "Confirm",
+                                JOptionPane.YES_NO_OPTION);
+                        if (confirm == JOptionPane.YES_OPTION) {
+                            catalogService.removeFood(f);
+                            refreshItems(catList.getSelectedValue());
+                            log("food.remove", null, f.name);
+                        }
+                    });
+                    bottom.add(remove);
+                }
+            }
+        });
+
+        // add Edit button to bottom and show dialog
+        bottom.add(editAddr);
+
+        notePanel.add(bottom, BorderLayout.SOUTH);
+        main.add(notePanel, BorderLayout.SOUTH);
+        dlg.getContentPane().add(main);
+        dlg.setVisible(true);
+    }
+
+    private void showDashboard() {
+        if (currentUser == null) {
+            JOptionPane.showMessageDialog(frame, "Login required.");
+            return;
+        }
+        switch (currentUser.role) {
+            case ADMIN:
+                showAdminPanel();
+                break;
+            case OWNER:
+                showOwnerPanel();
+                break;
+            case SHIPPER:
+                showShipperPanel();
+                break;
+            case ADMINISTRATOR:
+                showAdministratorPanel();
+                break;
+            case CUSTOMER_SERVICE:
+                showCustomerServicePanel();
+                break;
+            case CUSTOMER:
+                showCustomerPanel();
+                break;
+            case RESTAURANT:
+                showRestaurantPanel();
+                break;
+        }
+    }
+
+    // Never blocks: returns the cached icon, or null (caller shows its placeholder) while it decodes
+    private ImageIcon loadScaledImageIcon(String path, int w, int h) {
+        return loadScaledImageIcon(path, w, h, null);
+    }
+
+    private ImageIcon loadScaledImageIcon(String path, int w, int h, Runnable onReady) {
+        long t0 = System.nanoTime();
+        ImageIcon icon = images.request(path, w, h, onReady);
+        LOAD_ICON.since(t0);
+        return icon;
+    }
+
+    // called wherever a food or account image is (re)assigned, so an edited file is not served stale
+    private void imageChanged(String path) {
+        images.invalidate(path);
+    }
+
+    /** Sets the label's icon now if cached, otherwise when the decode finishes (if the path still applies). */
+    private void setIconAsync(JLabel label, java.util.function.Supplier<String> path, int w, int h) {
+        String p = path.get();
+        label.setIcon(loadScaledImageIcon(p, w, h, () -> {
+            if (Objects.equals(p, path.get()))
+                label.setIcon(loadScaledImageIcon(p, w, h));
+        }));
+    }
+
+    // Admin: add/remove categories & foods, and manage users
+    private void showAdminPanel() {
+        tagAction("open admin panel");
+        JDialog dlg = new JDialog(frame, "Admin Panel", true);
+        dlg.setSize(900, 600);
+        dlg.setLocationRelativeTo(frame);
+
+        JTabbedPane tabbedPane = new JTabbedPane();
+
+        // Tab 1: Menu Management
+        JPanel menuPanel = createMenuManagementPanel(dlg);
+        tabbedPane.addTab("Menu Management", menuPanel);
+
+        // Tab 2: User Management
+        JPanel userPanel = createUserManagementPanel(dlg);
+        tabbedPane.addTab("User Management", userPanel);
+
+        // Tab 3: Order Management
+        JPanel orderPanel = createAdminOrderManagementPanel(dlg);
+        tabbedPane.addTab("Order Management", orderPanel);
+
+        dlg.getContentPane().add(tabbedPane);
+        dlg.setVisible(true);
+    }
+
+    private JPanel createMenuManagementPanel(JDialog dlg) {
+        JPanel main = new JPanel(new BorderLayout());
+
+        // Left: list categories
+        DefaultListModel<String> catModel = new DefaultListModel<>();
+        catalogService.allCategories().forEach(catModel::addElement);
+        JList<String> cats = new JList<>(catModel);
+        cats.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        main.add(new JScrollPane(cats), BorderLayout.WEST);
+
+        // Right: foods list with add/remove
+        DefaultListModel<String> foodModel = new DefaultListModel<>();
+        List<FoodItem> listed = catalogService.all(); // row i of foodModel shows listed.get(i)
+        listed.forEach(f -> foodModel.addElement(f.category + " - " + f.name + " (VND " + Money.format(f.priceMinor) + ")"));
+        JList<String> foodList = new JList<>(foodModel);
+        main.add(new JScrollPane(foodList), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton addCat = new JButton("Add Category");
+        addCat.addActionListener(e -> {
+            String name = JOptionPane.showInputDialog(dlg, "Category name:");
+            if (name != null && !name.isBlank() && catalogService.addCategory(name)) {
+                catModel.addElement(name);
+                catListModel.addElement(name); // update main UI
+                log("category.add", null, name);
+            }
+        });
+        bottom.add(addCat);
+
+        JButton addFood = new JButton("Add Food");
+        addFood.addActionListener(e -> {
+            JTextField nameF = new JTextField();
+            JTextArea descF = new JTextArea(3, 20);
+            JScrollPane descScroll = new JScrollPane(descF);
+            JTextField priceF = new JTextField();
+            JTextField ratingF = new JTextField("4.0");
+            JComboBox<String> catBox = new JComboBox<>(catalogService.allCategories().toArray(new String[0]));
+            JPanel p = new JPanel(new GridLayout(0, 1));
+            p.add(new JLabel("Name:"));
+            p.add(nameF);
+            p.add(new JLabel("Description:"));
+            p.add(descScroll);
+            p.add(new JLabel("Price:"));
+            p.add(priceF);
+            p.add(new JLabel("Rating (0..5):"));
+            p.add(ratingF);
+            p.add(new JLabel("Category:"));
+            p.add(catBox);
+            JButton chooseImg = new JButton("Choose Image");
+            JLabel chosenLbl = new JLabel("No image selected");
+            final String[] chosenPath = { null };
+
+            chooseImg.addActionListener(ae2 -> {
+                JFileChooser chooser = new JFileChooser();
+                chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+                if (chooser.showOpenDialog(dlg) == JFileChooser.APPROVE_OPTION) {
+                    chosenPath[0] = chooser.getSelectedFile().getAbsolutePath();
+                    chosenLbl.setText(chooser.getSelectedFile().getName());
+                }
+            });
+
+            p.add(new JLabel("Food Image:"));
+            p.add(chooseImg);
+            p.add(chosenLbl);
+            refreshRestaurantList();
+
+            if (JOptionPane.showConfirmDialog(dlg, p, "Add Food",
+                    JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
+                try {
+                    String name = nameF.getText().trim();
+                    String desc = descF.getText().trim();
+                    long pr = parsePrice(priceF.getText().trim());
+                    double r = Double.parseDouble(ratingF.getText().trim());
+                    String c = (String) catBox.getSelectedItem();
+                    FoodItem nf = new FoodItem(name, desc, pr, r, randomPastelColor(), c);
+                    nf.imagePath = chosenPath[0]; // set selected image path (may be null)
+                    catalogService.addFood(nf);
+                    listed.add(nf);
+                    foodModel.addElement(nf.category + " - " + nf.name + " (VND " + Money.format(nf.priceMinor) + ")");
+                    refreshItems(catList.getSelectedValue());
+                    log("food.add", null, nf.name + (nf.imagePath == null ? "" : " (with image)"));
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(dlg, "Invalid input.");
+                }
+            }
+        });
+        bottom.add(addFood);
+
+        JButton removeFood = new JButton("Remove Selected Food");
+        removeFood.addActionListener(e -> {
+            int idx = foodList.getSelectedIndex();
+            if (idx >= 0) {
+                FoodItem f = listed.get(idx);
+                int c = JOptionPane.showConfirmDialog(dlg, "Remove " + f.name + "?", "Confirm",
+                        JOptionPane.YES_NO_OPTION);
+                if (c == JOptionPane.YES_OPTION) {
+                    catalogService.removeFood(f);
+                    listed.remove(idx);
+                    foodModel.remove(idx);
+                    refreshItems(catList.getSelectedValue());
+                    log("food.remove", null, f.name);
+                }
+            }
+        });
+        bottom.add(removeFood);
+        refreshRestaurantList();
+
+        JButton changeImg = new JButton("Change Image for Selected");
+        changeImg.addActionListener(ev -> {
+            int idx = foodList.getSelectedIndex();
+            if (idx < 0)
+                return;
+            FoodItem f = listed.get(idx);
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+            if (chooser.showOpenDialog(dlg) == JFileChooser.APPROVE_OPTION) {
+                String path = chooser.getSelectedFile().getAbsolutePath();
+                catalogService.update(f, x -> x.imagePath = path);
+                imageChanged(f.imagePath);
+                log("food.image", null, f.name);
+                refreshItems(catList.getSelectedValue());
+                JOptionPane.showMessageDialog(dlg, "Image updated for " + f.name);
+            }
+        });
+        bottom.add(changeImg);
+
+        main.add(bottom, BorderLayout.SOUTH);
+        return main;
+    }
+
+    private JPanel createUserManagementPanel(JDialog dlg) {
+        JPanel main = new JPanel(new BorderLayout());
+
+        // List of users
+        DefaultListModel<String> userModel = new DefaultListModel<>();
+        userService.all().forEach(u -> userModel.addElement(u.username + " - " + u.role));
+        JList<String> userList = new JList<>(userModel);
+        userList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        main.add(new JScrollPane(userList), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+
+        JButton addUser = new JButton("Add User");
+        addUser.addActionListener(e -> showAddEditUserDialog(dlg, null, userModel));
+        bottom.add(addUser);
+
+        JButton editUser = new JButton("Edit Selected User");
+        editUser.addActionListener(e -> {
+            int idx = userList.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select a user first.");
+                return;
+            }
+            String selected = userModel.get(idx);
+            String uname = selected.split(" - ")[0];
+            User u = userService.get(uname);
+            if (u != null) {
+                showAddEditUserDialog(dlg, u, userModel);
+            }
+        });
+        bottom.add(editUser);
+
+        JButton deleteUser = new JButton("Delete Selected User");
+        deleteUser.addActionListener(e -> {
+            int idx = userList.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select a user first.");
+                return;
+            }
+            String selected = userModel.get(idx);
+            String uname = selected.split(" - ")[0];
+            User u = userService.get(uname);
+            if (u != null) {
+                int confirm = JOptionPane.showConfirmDialog(dlg, "Delete user " + uname + "?", "Confirm",
+                        JOptionPane.YES_NO_OPTION);
+                if (confirm == JOptionPane.YES_OPTION) {
+                    userService.remove(uname);
+                    userModel.remove(idx);
+                    log("user.delete", null, uname);
+                    JOptionPane.showMessageDialog(dlg, "User deleted.");
+                }
+            }
+        });
+        bottom.add(deleteUser);
+
+        main.add(bottom, BorderLayout.SOUTH);
+        return main;
+    }
+
+    private void showAddEditUserDialog(JDialog parent, User editingUser, DefaultListModel<String> userModel) {
+        JPanel p = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(4, 4, 4, 4);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+
+        // Username
+        p.add(new JLabel("Username:"), gbc);
+        gbc.gridx = 1;
+        JTextField userFld = new JTextField(editingUser != null ? editingUser.username : "", 16);
+        if (editingUser != null) userFld.setEditable(false); // can't change username
+        p.add(userFld, gbc);
+
+        // Password
+        gbc.gridx = 0;
+        gbc.gridy++;
+        p.add(new JLabel("Password:"), gbc);
+        gbc.gridx = 1;
+        JTextField passFld = new JTextField(editingUser != null ? editingUser.password : "", 16);
+        p.add(passFld, gbc);
+
+        // Role
+        gbc.gridx = 0;
+        gbc.gridy++;
+        p.add(new JLabel("Role:"), gbc);
+        gbc.gridx = 1;
+        JComboBox<String> roleBox = new JComboBox<>(new String[] { "CUSTOMER", "SHIPPER", "RESTAURANT", "ADMIN", "OWNER", "ADMINISTRATOR", "CUSTOMER_SERVICE" });
+        if (editingUser != null) roleBox.setSelectedItem(editingUser.role.toString());
+        p.add(roleBox, gbc);
+
+        // Address
+        gbc.gridx = 0;
+        gbc.gridy++;
+        p.add(new JLabel("Address:"), gbc);
+        gbc.gridx = 1;
+        JTextField addrFld = new JTextField(editingUser != null ? editingUser.address : "", 16);
+        p.add(addrFld, gbc);
+
+        // Phone
+        gbc.gridx = 0;
+        gbc.gridy++;
+        p.add(new JLabel("Phone:"), gbc);
+        gbc.gridx = 1;
+        JTextField phoneFld = new JTextField(editingUser != null ? editingUser.phone : "", 16);
+        p.add(phoneFld, gbc);
+
+        // Profile Image
+        gbc.gridx = 0;
+        gbc.gridy++;
+        p.add(new JLabel("Profile Image:"), gbc);
+        gbc.gridx = 1;
+        JButton chooseImgBtn = new JButton("Choose Image");
+        JLabel imgLbl = new JLabel(editingUser != null && editingUser.profileImagePath != null ? editingUser.profileImagePath : "No image");
+        final String[] imgPath = { editingUser != null ? editingUser.profileImagePath : null };
+        chooseImgBtn.addActionListener(ae -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+            if (chooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
+                imgPath[0] = chooser.getSelectedFile().getAbsolutePath();
+                imgLbl.setText(chooser.getSelectedFile().getName());
+            }
+        });
+        JPanel imgPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        imgPanel.add(chooseImgBtn);
+        imgPanel.add(imgLbl);
+        p.add(imgPanel, gbc);
+
+        // Restaurant Name (if role is RESTAURANT)
+        gbc.gridx = 0;
+        gbc.gridy++;
+        JLabel restLbl = new JLabel("Restaurant Name:");
+        JTextField restFld = new JTextField(editingUser != null ? editingUser.restaurantName : "", 16);
+        restLbl.setVisible(false);
+        restFld.setVisible(false);
+        p.add(restLbl, gbc);
+        gbc.gridx = 1;
+        p.add(restFld, gbc);
+
+        // Show/hide restaurant field based on role
+        roleBox.addActionListener(ae -> {
+            String sel = (String) roleBox.getSelectedItem();
+            boolean isRest = "RESTAURANT".equals(sel);
+            restLbl.setVisible(isRest);
+            restFld.setVisible(isRest);
+            p.revalidate();
+            p.repaint();
+        });
+        if (editingUser != null && editingUser.role == Role.RESTAURANT) {
+            restLbl.setVisible(true);
+            restFld.setVisible(true);
+        }
+
+        int res = JOptionPane.showConfirmDialog(parent, p, editingUser == null ? "Add User" : "Edit User",
+                JOptionPane.OK_CANCEL_OPTION);
+        if (res == JOptionPane.OK_OPTION) {
+            String uname = userFld.getText().trim();
+            String pass = passFld.getText();
+            String roleStr = (String) roleBox.getSelectedItem();
+            Role role = Role.valueOf(roleStr);
+            String addr = addrFld.getText().trim();
+            String phone = phoneFld.getText().trim();
+
+            if (editingUser == null) {
+                // Add new user
+                if (uname.isEmpty() || pass.isEmpty()) {
+                    JOptionPane.showMessageDialog(parent, "Username and password required.");
+                    return;
+                }
+                User nu = new User(uname, pass, role);
+                nu.address = addr;
+                nu.phone = phone;
+                nu.profileImagePath = imgPath[0];
+                if (role == Role.RESTAURANT) {
+                    nu.restaurantName = restFld.getText().trim();
+                    nu.myCategories.add("All");
+                    nu.myCategories.add("Main");
+                }
+                try {
+                    userService.register(nu);
+                } catch (IllegalStateException ex) {
+                    JOptionPane.showMessageDialog(parent, ex.getMessage());
+                    return;
+                }
+                userModel.addElement(nu.username + " - " + nu.role);
+                log("user.add", null, uname + " role=" + role);
+                JOptionPane.showMessageDialog(parent, "User added.");
+            } else {
+                // Edit existing user
+                String restaurantName = restFld.getText().trim();
+                userService.update(editingUser, u -> {
+                    u.password = pass;
+                    u.role = role;
+                    u.address = addr;
+                    u.phone = phone;
+                    u.profileImagePath = imgPath[0];
+                    if (role == Role.RESTAURANT) {
+                        u.restaurantName = restaurantName;
+                    } else {
+                        u.restaurantName = null;
+                        u.myCategories.clear();
+                    }
+                });
+                imageChanged(editingUser.profileImagePath);
+                userModel.set(userModel.indexOf(editingUser.username + " - " + editingUser.role), editingUser.username + " - " + editingUser.role);
+                log("user.edit", null, editingUser.username);
+                JOptionPane.showMessageDialog(parent, "User updated.");
+            }
+        }
+    }
+
+    private JPanel createAdminOrderManagementPanel(JDialog dlg) {
+        JPanel main = new JPanel(new BorderLayout());
+
+        // List of all orders
+        DefaultListModel<UUID> orderModel = new DefaultListModel<>();
+        orderService.all().forEach(order -> orderModel.addElement(order.id));
+        store.forEachArchived(h -> orderModel.addElement(h.id));
+        cancelOnClose(dlg, bindOrderList(orderModel, o -> true));
+        JList<UUID> orderList = new JList<>(orderModel);
+        orderList.setCellRenderer(new OrderListRenderer());
+        orderList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        main.add(new JScrollPane(orderList), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+
+        JButton viewDetailsBtn = new JButton("View Details");
+        viewDetailsBtn.addActionListener(e -> {
+            int idx = orderList.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select an order first.");
+                return;
+            }
+            Order selectedOrder = orderService.get(orderModel.get(idx));
+            if (selectedOrder != null)
+                showOrderDetailsDialog(dlg, selectedOrder);
+        });
+        bottom.add(viewDetailsBtn);
+
+        JButton deleteOrderBtn = new JButton("Delete Order");
+        deleteOrderBtn.addActionListener(e -> {
+            int idx = orderList.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select an order first.");
+                return;
+            }
+            Order selectedOrder = orderService.get(orderModel.get(idx));
+            if (selectedOrder == null)
+                return;
+            int confirm = JOptionPane.showConfirmDialog(dlg, "Delete order " + selectedOrder.id + "?", "Confirm",
+                    JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                orderService.remove(selectedOrder);
+                orderModel.remove(idx);
+                log("order.delete", selectedOrder.id, null);
+                JOptionPane.showMessageDialog(dlg, "Order deleted.");
+            }
+        });
+        bottom.add(deleteOrderBtn);
+
+        main.add(bottom, BorderLayout.SOUTH);
+        return main;
+    }
+
+    private void showOrderDetailsDialog(JDialog parent, Order o) {
+        tagAction("open order details");
+        StringBuilder sb = new StringBuilder();
+        sb.append("Order ID: ").append(o.id).append("\n");
+        sb.append("Status: ").append(o.status).append("\n");
+        sb.append("Ordered at: ").append(o.created).append("\n");
+        sb.append("Address: ").append(o.addressSnapshot).append("\n");
+        sb.append("Phone: ").append(o.phoneSnapshot).append("\n\n");
+        sb.append("Items Ordered:\n");
+        for (OrderItem item : o.items) {
+            String variationText = item.variation.isEmpty() ? "" : " (" + item.variation + ")";
+            sb.append("- ").append(item.food.name).append(variationText).append(" x").append(item.qty).append("  VND ").append(Money.format(item.lineTotal())).append("\n");
+        }
+        sb.append("\nTotal: VND ").append(Money.format(o.totalMinor)).append("\n");
+
+        if (o.note != null && !o.note.isEmpty()) {
+            sb.append("\nCustomer Note: ").append(o.note).append("\n");
+        }
+
+        if (o.assignedShipper != null) {
+            User shipper = userService.get(o.assignedShipper);
+            if (shipper != null) {
+                sb.append("\nShipper Information:\n");
+                sb.append("Name: ").append(shipper.username).append("\n");
+                sb.append("Phone: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
+                RatingStats shipperRating = store.shipperRating(shipper.username);
+                sb.append("Rating: ").append(String.format("%.1f", shipperRating.average())).append(" (").append(shipperRating.count()).append(" reviews)\n");
+
+                if (o.status == OrderStatus.DELIVERING) {
+                    sb.append("\n🚚 Delivery Information:\n");
+                    sb.append("Shipper is currently delivering your order.\n");
+                    sb.append("Contact shipper: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
+                    sb.append("Estimated delivery: Soon\n");
+                }
+            }
+        } else {
+            sb.append("\nNo shipper assigned yet.\n");
+        }
+
+        JTextArea ta = new JTextArea(sb.toString());
+        ta.setEditable(false);
+        JScrollPane sp = new JScrollPane(ta);
+        sp.setPreferredSize(new Dimension(500, 400));
+        JOptionPane.showMessageDialog(parent, sp, "Order Details", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    private void showVirtualMapDialog(Order o) {
+        tagAction("open delivery map");
+        JDialog dlg = new JDialog(frame, "Track Shipper - Order " + o.id, true);
+        dlg.setSize(600, 500);
+        dlg.setLocationRelativeTo(frame);
+
+        JPanel mapPanel = new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                drawVirtualMap(g, getWidth(), getHeight(), o);
+            }
+        };
+        mapPanel.setBackground(Color.WHITE);
+        dlg.getContentPane().add(mapPanel);
+        dlg.setVisible(true);
+    }
+
+    private void drawVirtualMap(Graphics g, int width, int height, Order o) {
+        // Draw background (sky)
+        g.setColor(new Color(135, 206, 235)); // Sky blue
+        g.fillRect(0, 0, width, height);
+
+        // Draw roads (zigzag pattern)
+        g.setColor(Color.GRAY);
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setStroke(new BasicStroke(8)); // Thicker roads
+
+        // Horizontal zigzag roads
+        int[] yLevels = {120, 270, 420};
+        for (int y : yLevels) {
+            int x = 0;
+            while (x < width) {
+                int nextX = Math.min(x + 100 + (int)(Math.random() * 50), width);
+                int nextY = y + (int)(Math.random() * 40 - 20); // Slight vertical variation
+                g2d.drawLine(x, y, nextX, nextY);
+                x = nextX;
+                y = nextY;
+            }
+        }
+
+        // Vertical zigzag roads
+        int[] xLevels = {120, 270, 420};
+        for (int x : xLevels) {
+            int y = 0;
+            while (y < height) {
+                int nextY = Math.min(y + 100 + (int)(Math.random() * 50), height);
+                int nextX = x + (int)(Math.random() * 40 - 20); // Slight horizontal variation
+                g2d.drawLine(x, y, nextX, nextY);
+                x = nextX;
+                y = nextY;
+            }
+        }
+
+        // Reset stroke
+        g2d.setStroke(new BasicStroke());
+
+        // Draw yellow center lines on roads (simplified)
+        g.setColor(Color.YELLOW);
+        g2d.setStroke(new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{5, 5}, 0));
+        // For simplicity, draw some dashed lines along main roads
+        g2d.drawLine(0, 120, width, 120);
+        g2d.drawLine(0, 270, width, 270);
+        g2d.drawLine(0, 420, width, 420);
+        g2d.drawLine(120, 0, 120, height);
+        g2d.drawLine(270, 0, 270, height);
+        g2d.drawLine(420, 0, 420, height);
+        g2d.setStroke(new BasicStroke()); // Reset
+
+        // Draw houses
+        g.setColor(Color.ORANGE);
+        // Some houses around
+        int[][] housePositions = {
+            {50, 50}, {200, 50}, {350, 50}, {500, 50},
+            {50, 200}, {350, 200}, {500, 200},
+            {50, 350}, {200, 350}, {500, 350},
+            {50, 500}, {200, 500}, {350, 500}, {500, 500}
+        };
+        for (int[] pos : housePositions) {
+            if (pos[0] < width - 30 && pos[1] < height - 30) {
+                // House body
+                g.fillRect(pos[0], pos[1], 25, 20);
+                // Roof
+                g.setColor(Color.RED);
+                int[] xPoints = {pos[0], pos[0] + 12, pos[0] + 25};
+                int[] yPoints = {pos[1], pos[1] - 10, pos[1]};
+                g.fillPolygon(xPoints, yPoints, 3);
+                g.setColor(Color.ORANGE);
+            }
+        }
+
+        // Simulate customer location (a house)
+        int customerX = width / 2;
+        int customerY = height / 2;
+        g.setColor(Color.BLUE);
+        g.fillRect(customerX - 10, customerY - 10, 20, 15); // House
+        g.setColor(Color.RED);
+        int[] roofX = {customerX - 10, customerX, customerX + 10};
+        int[] roofY = {customerY - 10, customerY - 20, customerY - 10};
+        g.fillPolygon(roofX, roofY, 3);
+        g.setColor(Color.BLACK);
+        g.drawString("Your House", customerX - 25, customerY - 25);
+
+        // Simulate shipper location (moving van or something)
+        int shipperX = customerX + (int)(Math.random() * 200 - 100);
+        int shipperY = customerY + (int)(Math.random() * 200 - 100);
+        g.setColor(Color.GREEN);
+        g.fillRect(shipperX - 8, shipperY - 5, 16, 10); // Van body
+        g.setColor(Color.BLACK);
+        g.fillOval(shipperX - 10, shipperY + 5, 4, 4); // Wheels
+        g.fillOval(shipperX + 6, shipperY + 5, 4, 4);
+        g.drawString("🚚 Shipper", shipperX - 20, shipperY - 10);
+
+        // Draw a path line (dotted)
+        g.setColor(Color.RED);
+        Stroke dashed = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{9}, 0);
+        g2d.setStroke(dashed);
+        g2d.drawLine(customerX, customerY, shipperX, shipperY);
+        g2d.setStroke(new BasicStroke()); // Reset
+
+        // Add some labels
+        g.setColor(Color.BLACK);
+        g.drawString("Virtual Town Map - Shipper is delivering!", 10, 20);
+        g.drawString("Estimated arrival: Soon", 10, 40);
+    }
+
+    private void showRestaurantPanel() {
+        tagAction("open restaurant panel");
+        if (currentUser == null || currentUser.role != Role.RESTAURANT) {
+            JOptionPane.showMessageDialog(frame, "Only restaurant accounts can manage a menu.");
+            return;
+        }
+        JDialog dlg = new JDialog(frame, "Restaurant Panel - " + currentUser.restaurantName, true);
+        dlg.setSize(900, 600);
+        dlg.setLocationRelativeTo(frame);
+        JTabbedPane tabbedPane = new JTabbedPane();
+
+        // Tab 1: Menu Management
+        JPanel menuPanel = createRestaurantMenuManagementPanel(dlg);
+        tabbedPane.addTab("Menu", menuPanel);
+
+        // Tab 2: Order Management
+        JPanel orderPanel = createOrderManagementPanel(dlg);
+        tabbedPane.addTab("Orders", orderPanel);
+
+        // Tab 3: Settings
+        JPanel settingsPanel = createRestaurantSettingsPanel(dlg);
+        tabbedPane.addTab("Settings", settingsPanel);
+
+        // Tab 4: Sales
+        tabbedPane.addTab("Sales", buildSalesPanel(currentUser.restaurantName));
+
+        dlg.getContentPane().add(tabbedPane);
+        dlg.setVisible(true);
+    }
+
+    private JPanel createRestaurantSettingsPanel(JDialog dlg) {
+        JPanel main = new JPanel(new BorderLayout());
+        main.setBorder(new EmptyBorder(20, 20, 20, 20));
+
+        JLabel statusLabel = new JLabel("Restaurant Status: " + (currentUser.isOpen ? "OPEN" : "CLOSED"));
+        statusLabel.setFont(statusLabel.getFont().deriveFont(16f).deriveFont(Font.BOLD));
+        statusLabel.setForeground(currentUser.isOpen ? Color.GREEN : Color.RED);
+        main.add(statusLabel, BorderLayout.NORTH);
+
+        JPanel center = new JPanel(new GridLayout(0, 1, 10, 10));
+        JButton toggleBtn = new JButton(currentUser.isOpen ? "Close Restaurant" : "Open Restaurant");
+        toggleBtn.setBackground(new Color(0, 191, 255));
+        toggleBtn.setForeground(Color.WHITE);
+        toggleBtn.setFocusPainted(false);
+        toggleBtn.addActionListener(e -> {
+            userService.update(currentUser, u -> u.isOpen = !u.isOpen);
+            statusLabel.setText("Restaurant Status: " + (currentUser.isOpen ? "OPEN" : "CLOSED"));
+            statusLabel.setForeground(currentUser.isOpen ? Color.GREEN : Color.RED);
+            toggleBtn.setText(currentUser.isOpen ? "Close Restaurant" : "Open Restaurant");
+            // Update the restaurant list display
+            refreshRestaurantList();
+            // Refresh items if this restaurant is selected
+            if (restList.getSelectedValue() != null && restList.getSelectedValue().replace(" (Open)", "").replace(" (Closed)", "").equals(currentUser.restaurantName)) {
+                refreshItemsByRestaurant(currentUser.restaurantName);
+            }
+            log(currentUser.isOpen ? "restaurant.open" : "restaurant.close", null, currentUser.restaurantName);
+        });
+        center.add(toggleBtn);
+
+        JButton changeImgBtn = new JButton("Change Restaurant Logo");
+        changeImgBtn.setBackground(new Color(0, 191, 255));
+        changeImgBtn.setForeground(Color.WHITE);
+        changeImgBtn.setFocusPainted(false);
+        changeImgBtn.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+            if (chooser.showOpenDialog(dlg) == JFileChooser.APPROVE_OPTION) {
+                String path = chooser.getSelectedFile().getAbsolutePath();
+                userService.update(currentUser, u -> u.profileImagePath = path);
+                imageChanged(currentUser.profileImagePath);
+                refreshRestaurantList(); // Update the list to show new image
+                log("user.image", null, currentUser.username);
+                JOptionPane.showMessageDialog(dlg, "Restaurant image updated!");
+            }
+        });
+        center.add(changeImgBtn);
+        center.add(new JLabel(store.restaurantRating(currentUser.restaurantName).summary()));
+        main.add(center, BorderLayout.CENTER);
+
+        return main;
+    }
+
+    /** Variations as the menu dialogs edit them: "Large:5000, Small". */
+    private static String variationsText(FoodItem f) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < f.variations.size(); i++)
+            sb.append(i == 0 ? "" : ", ").append(f.variations.get(i)).append(':').append(Money.plain(f.variationPrice(i)));
+        return sb.toString();
+    }
+
+    /** Parses {@link #variationsText}; a missing or unreadable price counts as 0. */
+    private void setVariations(FoodItem fi, String text) {
+        List<String> names = new ArrayList<>();
+        long[] extras = new long[text.split(",").length];
+        if (!text.trim().isEmpty()) {
+            for (String part : text.split(",")) {
+                String[] namePrice = part.trim().split(":", 2);
+                long varPrice = 0;
+                if (namePrice.length > 1) {
+                    try {
+                        varPrice = parsePrice(namePrice[1].trim());
+                    } catch (Exception ex) {
+                        // ignore invalid price, set to 0
+                    }
+                }
+                extras[names.size()] = varPrice;
+                names.add(namePrice[0].trim());
+            }
+        }
+        fi.setVariations(names, extras);
+    }
+
+    private JPanel createRestaurantMenuManagementPanel(JDialog dlg) {
+        JPanel main = new JPanel(new BorderLayout());
+        main.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Food list with custom renderer
+        DefaultListModel<String> model = new DefaultListModel<>();
+        List<FoodItem> myFoods = currentUser.restaurantName == null ? new ArrayList<>()
+                : catalogService.browse(currentUser.restaurantName, null);
+        myFoods.forEach(f -> model.addElement(f.name + " - VND " + Money.format(f.priceMinor) + (f.inStock ? "" : " (Out of Stock)")));
+
+        JList<String> list = new JList<>(model);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new FoodListRenderer(myFoods));
+        list.setFixedCellHeight(120); // Increased height for bigger 100x100 images
+        JScrollPane listScroll = new JScrollPane(list);
+        listScroll.setPreferredSize(new Dimension(400, 400));
+
+        // Buttons panel
+        JPanel buttonsPanel = new JPanel(new GridLayout(0, 1, 5, 5));
+        buttonsPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JButton addBtn = new JButton("Add Food");
+        addBtn.setBackground(new Color(34, 139, 34));
+        addBtn.setForeground(Color.WHITE);
+        addBtn.setFocusPainted(false);
+        addBtn.setPreferredSize(new Dimension(150, 40));
+
+        JButton editBtn = new JButton("Edit Selected Food");
+        editBtn.setBackground(new Color(0, 191, 255));
+        editBtn.setForeground(Color.WHITE);
+        editBtn.setFocusPainted(false);
+        editBtn.setPreferredSize(new Dimension(150, 40));
+
+        JButton removeBtn = new JButton("Remove Selected Food");
+        removeBtn.setBackground(new Color(255, 69, 0));
+        removeBtn.setForeground(Color.WHITE);
+        removeBtn.setFocusPainted(false);
+        removeBtn.setPreferredSize(new Dimension(150, 40));
+
+        JButton stockBtn = new JButton("Add Stock/Remove Stock Selected Food");
+        stockBtn.setBackground(new Color(255, 215, 0));
+        stockBtn.setForeground(Color.BLACK);
+        stockBtn.setFocusPainted(false);
+        stockBtn.setPreferredSize(new Dimension(150, 40));
+
+        buttonsPanel.add(addBtn);
+        buttonsPanel.add(editBtn);
+        buttonsPanel.add(removeBtn);
+        buttonsPanel.add(stockBtn);
+
+        // Category management panel
+        JPanel catPanel = new JPanel(new BorderLayout());
+        catPanel.setBorder(BorderFactory.createTitledBorder("Categories"));
+        catPanel.setPreferredSize(new Dimension(200, 200));
+
+        DefaultListModel<String> catModel = new DefaultListModel<>();
+        currentUser.myCategories.forEach(catModel::addElement);
+        JList<String> catList = new JList<>(catModel);
+        catList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        JScrollPane catScroll = new JScrollPane(catList);
+
+        JPanel catButtons = new JPanel(new FlowLayout());
+        JButton addCatBtn = new JButton("Add");
+        JButton editCatBtn = new JButton("Edit");
+        JButton delCatBtn = new JButton("Remove");
+        catButtons.add(addCatBtn);
+        catButtons.add(editCatBtn);
+        catButtons.add(delCatBtn);
+
+        catPanel.add(catScroll, BorderLayout.CENTER);
+        catPanel.add(catButtons, BorderLayout.SOUTH);
+
+        // Right panel combining buttons and categories
+        JPanel rightPanel = new JPanel(new BorderLayout());
+        rightPanel.add(buttonsPanel, BorderLayout.NORTH);
+        rightPanel.add(catPanel, BorderLayout.CENTER);
+
+        // Split pane
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, listScroll, rightPanel);
+        splitPane.setDividerLocation(400);
+        splitPane.setResizeWeight(0.6);
+        main.add(splitPane, BorderLayout.CENTER);
+
+        // Action listeners
+        addBtn.addActionListener(e -> {
+            JDialog addDialog = new JDialog(dlg, "Add New Food", true);
+            addDialog.setSize(500, 600);
+            addDialog.setLocationRelativeTo(dlg);
+
+            JPanel panel = new JPanel(new GridBagLayout());
+            GridBagConstraints gbc = new GridBagConstraints();
+            gbc.insets = new Insets(5, 5, 5, 5);
+            gbc.fill = GridBagConstraints.HORIZONTAL;
+
+            JTextField nameField = new JTextField(20);
+            JTextArea descArea = new JTextArea(3, 20);
+            JScrollPane descScroll = new JScrollPane(descArea);
+            JTextField priceField = new JTextField(10);
+            JTextField variationsField = new JTextField(20); // New field for variations
+            JComboBox<String> catBox = new JComboBox<>(currentUser.myCategories.toArray(new String[0]));
+            JButton chooseImgBtn = new JButton("Choose Image");
+            JLabel imgLabel = new JLabel("No image selected");
+            final String[] imgPath = {null};
+
+            chooseImgBtn.addActionListener(ae -> {
+                JFileChooser chooser = new JFileChooser();
+                chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+                if (chooser.showOpenDialog(addDialog) == JFileChooser.APPROVE_OPTION) {
+                    imgPath[0] = chooser.getSelectedFile().getAbsolutePath();
+                    imgLabel.setText(new File(imgPath[0]).getName());
+                }
+            });
+
+            gbc.gridx = 0; gbc.gridy = 0; panel.add(new JLabel("Name:"), gbc);
+            gbc.gridx = 1; panel.add(nameField, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 1; panel.add(new JLabel("Description:"), gbc);
+            gbc.gridx = 1; gbc.fill = GridBagConstraints.BOTH; gbc.weighty = 1.0;
+            panel.add(descScroll, gbc);
+            gbc.weighty = 0; gbc.fill = GridBagConstraints.HORIZONTAL;
+
+            gbc.gridx = 0; gbc.gridy = 2; panel.add(new JLabel("Price (VND):"), gbc);
+            gbc.gridx = 1; panel.add(priceField, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 3; panel.add(new JLabel("Category:"), gbc);
+            gbc.gridx = 1; panel.add(catBox, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 4; panel.add(new JLabel("Variations:"), gbc);
+            gbc.gridx = 1; panel.add(variationsField, gbc);
+
+            JButton addVariationButton = new JButton("Add Variation");
+            addVariationButton.addActionListener(ae -> {
+                JTextField varNameField = new JTextField();
+                JTextField varPriceField = new JTextField("0");
+                JPanel varPanel = new JPanel(new GridLayout(0, 2));
+                varPanel.add(new JLabel("Variation Name:"));
+                varPanel.add(varNameField);
+                varPanel.add(new JLabel("Additional Price (VND):"));
+                varPanel.add(varPriceField);
+                int result = JOptionPane.showConfirmDialog(addDialog, varPanel, "Add Variation", JOptionPane.OK_CANCEL_OPTION);
+                if (result == JOptionPane.OK_OPTION) {
+                    String varName = varNameField.getText().trim();
+                    String varPriceStr = varPriceField.getText().trim();
+                    if (!varName.isEmpty()) {
+                        try {
+                            long varPrice = parsePrice(varPriceStr);
+                            String current = variationsField.getText().trim();
+                            String newVar = varName + ":" + Money.plain(varPrice);
+                            if (!current.isEmpty()) {
+                                variationsField.setText(current + ", " + newVar);
+                            } else {
+                                variationsField.setText(newVar);
+                            }
+                        } catch (Exception ex) {
+                            JOptionPane.showMessageDialog(addDialog, "Invalid price");
+                        }
+                    }
+                }
+            });
+            gbc.gridx = 0; gbc.gridy = 5; gbc.gridwidth = 2; panel.add(addVariationButton, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 6; panel.add(new JLabel("Image:"), gbc);
+            gbc.gridx = 1; panel.add(chooseImgBtn, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 7; gbc.gridwidth = 2; panel.add(imgLabel, gbc);
+
+            JPanel buttonPanel = new JPanel(new FlowLayout());
+            JButton okBtn = new JButton("Add");
+            JButton cancelBtn = new JButton("Cancel");
+            buttonPanel.add(okBtn);
+            buttonPanel.add(cancelBtn);
+
+            addDialog.add(panel, BorderLayout.CENTER);
+            addDialog.add(buttonPanel, BorderLayout.SOUTH);
+
+            okBtn.addActionListener(ae -> {
+                try {
+                    String name = nameField.getText().trim();
+                    String desc = descArea.getText().trim();
+                    long price = parsePrice(priceField.getText().trim());
+                    String cat = (String) catBox.getSelectedItem();
+                    FoodItem fi = new FoodItem(name, desc, price, 0, randomPastelColor(), cat);
+                    fi.restaurantOwner = currentUser.restaurantName;
+                    fi.imagePath = imgPath[0];
+                    imageChanged(fi.imagePath);
+                    setVariations(fi, variationsField.getText());
+                    catalogService.addFood(fi);
+                    myFoods.add(fi);
+                    model.addElement(fi.name + " - VND " + Money.format(fi.priceMinor));
+                    list.setCellRenderer(new FoodListRenderer(myFoods));
+                    list.revalidate();
+                    list.repaint();
+                    refreshItems("All");
+                    refreshRestaurantList();
+                    log("food.add", null, name);
+                    addDialog.dispose();
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(addDialog, "Invalid price");
+                }
+            });
+
+            cancelBtn.addActionListener(ae -> addDialog.dispose());
+
+            addDialog.setVisible(true);
+        });
+
+        editBtn.addActionListener(e -> {
+            int idx = list.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select a food item to edit");
+                return;
+            }
+            FoodItem fi = myFoods.get(idx);
+
+            JDialog editDialog = new JDialog(dlg, "Edit Food", true);
+            editDialog.setSize(500, 600);
+            editDialog.setLocationRelativeTo(dlg);
+
+            JPanel panel = new JPanel(new GridBagLayout());
+            GridBagConstraints gbc = new GridBagConstraints();
+            gbc.insets = new Insets(5, 5, 5, 5);
+            gbc.fill = GridBagConstraints.HORIZONTAL;
+
+            JTextField nameField = new JTextField(fi.name, 20);
+            JTextArea descArea = new JTextArea(fi.description, 3, 20);
+            JScrollPane descScroll = new JScrollPane(descArea);
+            JTextField priceField = new JTextField(Money.plain(fi.priceMinor), 10);
+            JTextField variationsField = new JTextField(variationsText(fi), 20);
+            JComboBox<String> catBox = new JComboBox<>(currentUser.myCategories.toArray(new String[0]));
+            catBox.setSelectedItem(fi.category);
+            JButton chooseImgBtn = new JButton("Choose Image");
+            JLabel imgLabel = new JLabel(fi.imagePath != null ? new File(fi.imagePath).getName() : "No image selected");
+            final String[] imgPath = {fi.imagePath};
+
+            chooseImgBtn.addActionListener(ae -> {
+                JFileChooser chooser = new JFileChooser();
+                chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+                if (chooser.showOpenDialog(editDialog) == JFileChooser.APPROVE_OPTION) {
+                    imgPath[0] = chooser.getSelectedFile().getAbsolutePath();
+                    imgLabel.setText(new File(imgPath[0]).getName());
+                }
+            });
+
+            gbc.gridx = 0; gbc.gridy = 0; panel.add(new JLabel("Name:"), gbc);
+            gbc.gridx = 1; panel.add(nameField, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 1; panel.add(new JLabel("Description:"), gbc);
+            gbc.gridx = 1; gbc.fill = GridBagConstraints.BOTH; gbc.weighty = 1.0;
+            panel.add(descScroll, gbc);
+            gbc.weighty = 0; gbc.fill = GridBagConstraints.HORIZONTAL;
+
+            gbc.gridx = 0; gbc.gridy = 2; panel.add(new JLabel("Price (VND):"), gbc);
+            gbc.gridx = 1; panel.add(priceField, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 3; panel.add(new JLabel("Category:"), gbc);
+            gbc.gridx = 1; panel.add(catBox, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 4; panel.add(new JLabel("Variations:"), gbc);
+            gbc.gridx = 1; panel.add(variationsField, gbc);
+
+            JButton addVariationButton = new JButton("Add Variation");
+            addVariationButton.addActionListener(ae -> {
+                JTextField varNameField = new JTextField();
+                JTextField varPriceField = new JTextField("0");
+                JPanel varPanel = new JPanel(new GridLayout(0, 2));
+                varPanel.add(new JLabel("Variation Name:"));
+                varPanel.add(varNameField);
+                varPanel.add(new JLabel("Additional Price (VND):"));
+                varPanel.add(varPriceField);
+                int result = JOptionPane.showConfirmDialog(editDialog, varPanel, "Add Variation", JOptionPane.OK_CANCEL_OPTION);
+                if (result == JOptionPane.OK_OPTION) {
+                    String varName = varNameField.getText().trim();
+                    String varPriceStr = varPriceField.getText().trim();
+                    if (!varName.isEmpty()) {
+                        try {
+                            long varPrice = parsePrice(varPriceStr);
+                            String current = variationsField.getText().trim();
+                            String newVar = varName + ":" + Money.plain(varPrice);
+                            if (!current.isEmpty()) {
+                                variationsField.setText(current + ", " + newVar);
+                            } else {
+                                variationsField.setText(newVar);
+                            }
+                        } catch (Exception ex) {
+                            JOptionPane.showMessageDialog(editDialog, "Invalid price");
+                        }
+                    }
+                }
+            });
+            gbc.gridx = 0; gbc.gridy = 5; gbc.gridwidth = 2; panel.add(addVariationButton, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 6; panel.add(new JLabel("Image:"), gbc);
+            gbc.gridx = 1; panel.add(chooseImgBtn, gbc);
+
+            gbc.gridx = 0; gbc.gridy = 7; gbc.gridwidth = 2; panel.add(imgLabel, gbc);
+
+            JPanel buttonPanel = new JPanel(new FlowLayout());
+            JButton okBtn = new JButton("Update");
+            JButton cancelBtn = new JButton("Cancel");
+            buttonPanel.add(okBtn);
+            buttonPanel.add(cancelBtn);
+
+            editDialog.add(panel, BorderLayout.CENTER);
+            editDialog.add(buttonPanel, BorderLayout.SOUTH);
+
+            okBtn.addActionListener(ae -> {
+                try {
+                    String name = nameField.getText().trim();
+                    String desc = descArea.getText().trim();
+                    long price = parsePrice(priceField.getText().trim());
+                    String category = (String) catBox.getSelectedItem();
+                    catalogService.update(fi, x -> {
+                        x.name = name;
+                        x.description = desc;
+                        x.priceMinor = price;
+                        x.category = category;
+                        setVariations(x, variationsField.getText());
+                        x.imagePath = imgPath[0];
+                    });
+                    imageChanged(fi.imagePath);
+                    model.set(idx, fi.name + " - VND " + Money.format(fi.priceMinor));
+                    list.setCellRenderer(new FoodListRenderer(myFoods));
+                    list.revalidate();
+                    list.repaint();
+                    refreshItems("All");
+                    refreshRestaurantList();
+                    log("food.edit", null, fi.name);
+                    editDialog.dispose();
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(editDialog, "Invalid price");
+                }
+            });
+
+            cancelBtn.addActionListener(ae -> editDialog.dispose());
+
+            editDialog.setVisible(true);
+        });
+
+        removeBtn.addActionListener(e -> {
+            int idx = list.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select a food item to remove");
+                return;
+            }
+            FoodItem fi = myFoods.get(idx);
+            int confirm = JOptionPane.showConfirmDialog(dlg, "Remove '" + fi.name + "'?", "Confirm Removal", JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                catalogService.removeFood(fi);
+                myFoods.remove(idx);
+                model.remove(idx);
+                list.setCellRenderer(new FoodListRenderer(myFoods));
+                list.revalidate();
+                list.repaint();
+                refreshItems("All");
+                refreshRestaurantList();
+                log("food.remove", null, fi.name);
+            }
+        });
+
+        stockBtn.addActionListener(e -> {
+            int idx = list.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select a food item to toggle stock");
+                return;
+            }
+            FoodItem fi = myFoods.get(idx);
+            catalogService.update(fi, x -> x.inStock = !x.inStock);
+            model.set(idx, fi.name + " - VND " + Money.format(fi.priceMinor) + (fi.inStock ? "" : " (Out of Stock)"));
+            list.revalidate();
+            list.repaint();
+            refreshItems("All");
+            log("food.stock", null, fi.name + (fi.inStock ? " in stock" : " out of stock"));
+        });
+
+        // Category action listeners
+        addCatBtn.addActionListener(e -> {
+            String name = JOptionPane.showInputDialog(dlg, "New category name:");
+            if (name != null && !name.trim().isEmpty()) {
+                name = name.trim();
+                if (!currentUser.myCategories.contains(name)) {
+                    String added = name;
+                    userService.update(currentUser, u -> u.myCategories.add(added));
+                    catModel.addElement(name);
+                    refreshItemsByRestaurant(currentUser.restaurantName);
+                } else {
+                    JOptionPane.showMessageDialog(dlg, "Category already exists");
+                }
+            }
+        });
+
+        editCatBtn.addActionListener(e -> {
+            int idx = catList.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select a category to edit");
+                return;
+            }
+            String oldName = catModel.get(idx);
+            String newName = JOptionPane.showInputDialog(dlg, "New name:", oldName);
+            if (newName != null && !newName.trim().isEmpty()) {
+                String renamed = newName.trim();
+                userService.update(currentUser, u -> u.myCategories.set(idx, renamed));
+                catModel.set(idx, renamed);
+                // Update foods with this category
+                catalogService.recategorize(currentUser.restaurantName, oldName, renamed);
+                refreshItemsByRestaurant(currentUser.restaurantName);
+            }
+        });
+
+        delCatBtn.addActionListener(e -> {
+            int idx = catList.getSelectedIndex();
+            if (idx < 0) {
+                JOptionPane.showMessageDialog(dlg, "Please select a category to remove");
+                return;
+            }
+            String name = catModel.get(idx);
+            if ("All".equals(name)) {
+                JOptionPane.showMessageDialog(dlg, "Cannot remove 'All' category");
+                return;
+            }
+            int confirm = JOptionPane.showConfirmDialog(dlg, "Remove category '" + name + "'? Foods in this category will be moved to 'All'.", "Confirm", JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                userService.update(currentUser, u -> u.myCategories.remove(name));
+                catModel.remove(idx);
+                // Move foods to "All"
+                catalogService.recategorize(currentUser.restaurantName, name, "All");
+                refreshItemsByRestaurant(currentUser.restaurantName);
+            }
+        });
+
+        return main;
+    }
+
+    private JPanel createOrderManagementPanel(JDialog dlg) {
+        JPanel main = new JPanel(new BorderLayout());
+
+        DefaultListModel<UUID> ordersModel = new DefaultListModel<>();
+        // orders that have foods from this restaurant
+        orderService.forRestaurant(currentUser.restaurantName).forEach(o -> ordersModel.addElement(o.id));
+        store.forEachArchived(OrderArchive.KEY_RESTAURANT + currentUser.restaurantName, h -> ordersModel.addElement(h.id));
+        String restaurantName = currentUser.restaurantName;
+        cancelOnClose(dlg, bindOrderList(ordersModel, o -> servesRestaurant(o, restaurantName)));
+        JList<UUID> ordersList = new JList<>(ordersModel);
+        ordersList.setCellRenderer(new OrderListRenderer());
+        main.add(new JScrollPane(ordersList), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel();
+        JButton prepare = new JButton("Mark PREPARING");
+        JButton ready = new JButton("Mark READY FOR PICKUP");
+        JButton cancel = new JButton("Cancel Order");
+        JButton viewDetails = new JButton("View Order Details");
+        prepare.addActionListener(e -> {
+            int i = ordersList.getSelectedIndex();
+            if (i < 0) return;
+            Order o = orderService.get(ordersModel.get(i));
+            if (o != null) {
+                try {
+                    orderService.setStatus(o, OrderStatus.PREPARING);
+                } catch (IllegalStateException ex) {
+                    JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                    return;
+                }
+                log("order.status", o.id, "PREPARING");
+                ordersModel.set(i, o.id);
+            }
+        });
+        ready.addActionListener(e -> {
+            int i = ordersList.getSelectedIndex();
+            if (i < 0) return;
+            Order o = orderService.get(ordersModel.get(i));
+            if (o != null) {
+                try {
+                    orderService.setStatus(o, OrderStatus.READY_FOR_PICKUP);
+                } catch (IllegalStateException ex) {
+                    JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                    return;
+                }
+                log("order.status", o.id, "READY_FOR_PICKUP");
+                ordersModel.set(i, o.id);
+            }
+        });
+        cancel.addActionListener(e -> {
+            int i = ordersList.getSelectedIndex();
+            if (i < 0) return;
+            Order o = orderService.get(ordersModel.get(i));
+            if (o == null) return;
+            try {
+                orderService.checkCancellable(o, currentUser);
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                return;
+            }
+            int confirm = JOptionPane.showConfirmDialog(dlg, "Cancel this order?", "Confirm", JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                try {
+                    orderService.cancel(o, currentUser);
+                } catch (IllegalStateException ex) {
+                    JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                    return;
+                }
+                log("order.cancel", o.id, "by restaurant");
+                ordersModel.set(i, o.id);
+                JOptionPane.showMessageDialog(dlg, "Order cancelled.");
+            }
+        });
+        viewDetails.addActionListener(e -> {
+            int i = ordersList.getSelectedIndex();
+            if (i < 0) return;
+            Order o = orderService.get(ordersModel.get(i));
+            if (o == null) return;
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("Order ID: ").append(o.id).append("\n");
+            sb.append("Status: ").append(o.status).append("\n");
+            sb.append("Ordered at: ").append(o.created).append("\n");
+            sb.append("Address: ").append(o.addressSnapshot).append("\n");
+            sb.append("Phone: ").append(o.phoneSnapshot).append("\n\n");
+            sb.append("Items Ordered:\n");
+            for (OrderItem item : o.items) {
+                String variationText = item.variation.isEmpty() ? "" : " (" + item.variation + ")";
+                sb.append("- ").append(item.food.name).append(variationText).append(" x").append(item.qty).append("  VND ").append(Money.format(item.lineTotal())).append("\n");
+            }
+            sb.append("\nTotal: VND ").append(Money.format(o.totalMinor)).append("\n");
+
+            if (o.note != null && !o.note.isEmpty()) {
+                sb.append("\nCustomer Note: ").append(o.note).append("\n");
+            }
+
+            if (o.assignedShipper != null) {
+                User shipper = userService.get(o.assignedShipper);
+                if (shipper != null) {
+                    sb.append("\nShipper Information:\n");
+                    sb.append("Name: ").append(shipper.shipperName != null ? shipper.shipperName : shipper.username).append("\n");
+                    sb.append("Phone: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
+                    RatingStats shipperRating = store.shipperRating(shipper.username);
+                    sb.append("Rating: ").append(String.format("%.1f", shipperRating.average())).append(" (").append(shipperRating.count()).append(" reviews)\n");
+
+                    if (o.status == OrderStatus.DELIVERING) {
+                        sb.append("\n🚚 Delivery Information:\n");
+                        sb.append("Shipper is currently delivering your order.\n");
+                        sb.append("Contact shipper: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
+                        sb.append("Estimated delivery: Soon\n");
+                    }
+                }
+            } else {
+                sb.append("\nNo shipper assigned yet.\n");
+            }
+
+            JTextArea ta = new JTextArea(sb.toString());
+            ta.setEditable(false);
+            JScrollPane sp = new JScrollPane(ta);
+            sp.setPreferredSize(new Dimension(500, 400));
+            JOptionPane.showMessageDialog(dlg, sp, "Order Details", JOptionPane.PLAIN_MESSAGE);
+        });
+        bottom.add(prepare);
+        bottom.add(ready);
+        bottom.add(cancel);
+        bottom.add(viewDetails);
+        main.add(bottom, BorderLayout.SOUTH);
+        return main;
+    }
+
+    // Owner: view orders, mark preparing / ready
+    private void showOwnerPanel() {
+        tagAction("open owner panel");
+        JDialog dlg = new JDialog(frame, "Owner - Orders", true);
+        dlg.setSize(800, 500);
+        dlg.setLocationRelativeTo(frame);
+        JPanel main = new JPanel(new BorderLayout());
+
+        DefaultListModel<UUID> ordersModel = new DefaultListModel<>();
+        orderService.all().forEach(o -> ordersModel.addElement(o.id));
+        store.forEachArchived(h -> ordersModel.addElement(h.id)); // listed after the active ones
+        cancelOnClose(dlg, bindOrderList(ordersModel, o -> true));
+        JList<UUID> ordersList = new JList<>(ordersModel);
+        ordersList.setCellRenderer(new OrderListRenderer());
+        main.add(new JScrollPane(ordersList), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel();
+        JButton prepare = new JButton("Mark PREPARING");
+        JButton ready = new JButton("Mark READY FOR PICKUP");
+        prepare.addActionListener(e -> {
+            int i = ordersList.getSelectedIndex();
+            if (i < 0)
+                return;
+            Order o = orderService.active(ordersModel.get(i));
+            if (o == null)
+                return; // archived orders are settled and read-only
+            try {
+                orderService.setStatus(o, OrderStatus.PREPARING);
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                return;
+            }
+            log("order.status", o.id, "PREPARING");
+            ordersModel.set(i, o.id);
+        });
+        ready.addActionListener(e -> {
+            int i = ordersList.getSelectedIndex();
+            if (i < 0)
+                return;
+            Order o = orderService.active(ordersModel.get(i));
+            if (o == null)
+                return; // archived orders are settled and read-only
+            try {
+                orderService.setStatus(o, OrderStatus.READY_FOR_PICKUP);
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                return;
+            }
+            log("order.status", o.id, "READY_FOR_PICKUP");
+            ordersModel.set(i, o.id);
+        });
+        bottom.add(prepare);
+        bottom.add(ready);
+        main.add(bottom, BorderLayout.SOUTH);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Orders", main);
+        tabs.addTab("Sales", buildSalesPanel(SalesAnalytics.ALL));
+        dlg.getContentPane().add(tabs);
+        dlg.setVisible(true);
+    }
+
+    /** Sales dashboard from the analytics rollups; `restaurant` is SalesAnalytics.ALL for the owner. */
+    private JPanel buildSalesPanel(String restaurant) {
+        JPanel main = new JPanel(new BorderLayout());
+        JTextArea report = new JTextArea();
+        report.setEditable(false);
+        report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        Runnable refresh = () -> {
+            report.setText(salesReport(restaurant));
+            report.setCaretPosition(0);
+        };
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refresh.run());
+        buttons.add(refreshBtn);
+        if (SalesAnalytics.ALL.equals(restaurant)) {
+            JButton rebuild = new JButton("Rebuild from archive");
+            rebuild.addActionListener(e -> {
+                long t0 = System.currentTimeMillis();
+                store.sales.rebuild();
+                refresh.run();
+                log("sales.rebuild", null, (System.currentTimeMillis() - t0) + " ms");
+            });
+            buttons.add(rebuild);
+        }
+        refresh.run();
+        main.add(buttons, BorderLayout.NORTH);
+        main.add(new JScrollPane(report), BorderLayout.CENTER);
+        return main;
+    }
+
+    private String salesReport(String restaurant) {
+        SalesAnalytics sales = store.sales;
+        SalesAnalytics.Row total = sales.total(restaurant);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Delivered sales").append(SalesAnalytics.ALL.equals(restaurant) ? "" : " - " + restaurant).append("\n");
+        sb.append(String.format("Revenue: VND %s   Items sold: %d   Orders: %d%n%n", formatPrice(Money.toVnd(total.revenueMinor)), total.qty,
+                total.orders));
+        if (SalesAnalytics.ALL.equals(restaurant)) {
+            sb.append("Restaurants\n");
+            for (SalesAnalytics.Row r : sales.restaurants())
+                sb.append(String.format("  %-28s VND %14s  %6d items  %5d orders%n", r.key, formatPrice(Money.toVnd(r.revenueMinor)), r.qty, r.orders));
+            sb.append("\n");
+        }
+        sb.append("Top items\n");
+        int rank = 1;
+        for (SalesAnalytics.Row f : sales.topFoods(restaurant, 10))
+            sb.append(String.format("  %2d. %-28s VND %14s  x%d%n", rank++, f.key, formatPrice(Money.toVnd(f.revenueMinor)), f.qty));
+        sb.append("\nBy hour\n");
+        long[] byHour = sales.revenueByHour(restaurant);
+        long[] qtyByHour = sales.qtyByHour(restaurant);
+        long peak = Arrays.stream(byHour).max().orElse(0);
+        for (int h = 0; h < 24; h++) {
+            if (qtyByHour[h] == 0)
+                continue;
+            int bar = peak == 0 ? 0 : (int) Math.round((double) byHour[h] / peak * 30);
+            sb.append(String.format("  %02d:00 %-30s VND %s%s%n", h, "#".repeat(bar), formatPrice(Money.toVnd(byHour[h])),
+                    byHour[h] == peak ? "  <- peak" : ""));
+        }
+        sb.append("\nLast 14 days\n");
+        for (SalesAnalytics.Row d : sales.daily(restaurant, 14))
+            sb.append(String.format("  %s  VND %14s  %d items%n", d.key, formatPrice(Money.toVnd(d.revenueMinor)), d.qty));
+        return sb.toString();
+    }
+
+    // Shipper: accept and mark shipped/delivered
+    private void showShipperPanel() {
+        tagAction("open shipper panel");
+        JPanel right = new JPanel(new GridLayout(0, 1, 6, 6));
+        JButton accept = new JButton("Accept (Assign to me)");
+        JButton view = new JButton("View Details");
+        JButton myOrdersBtn = new JButton("My Orders");
+        right.add(accept);
+        right.add(view);
+        right.add(myOrdersBtn);
+        if (currentUser == null || currentUser.role != Role.SHIPPER) {
+            JOptionPane.showMessageDialog(frame, "Only shippers can open this panel.");
+            return;
+        }
+        JDialog dlg = new JDialog(frame, "Shipper - Orders", true);
+        dlg.setSize(900, 500);
+        dlg.setLocationRelativeTo(frame);
+        JPanel main = new JPanel(new BorderLayout());
+        JButton fileComplaintBtn = new JButton("File Complaint");
+        right.add(fileComplaintBtn);
+        fileComplaintBtn.addActionListener(e -> {
+            String text = JOptionPane.showInputDialog(dlg, "Describe your complaint:");
+            if (text != null && !text.isBlank()) {
+                orderService.fileComplaint(currentUser, text);
+                log("complaint.file", null, null);
+                JOptionPane.showMessageDialog(dlg, "Complaint submitted.");
+            }
+        });
+        DefaultListModel<UUID> model = new DefaultListModel<>();
+        // show available orders (not assigned), oldest first
+        List<Order> available = new ArrayList<>();
+        for (Order o : orderService.withStatus(OrderStatus.PLACED))
+            if (o.assignedShipper == null)
+                available.add(o);
+        for (Order o : orderService.withStatus(OrderStatus.READY_FOR_PICKUP))
+            if (o.assignedShipper == null)
+                available.add(o);
+        available.sort(Comparator.comparing(o -> o.created));
+        available.forEach(o -> model.addElement(o.id));
+        cancelOnClose(dlg, bindOrderList(model, o -> o.assignedShipper == null
+                && (o.status == OrderStatus.PLACED || o.status == OrderStatus.READY_FOR_PICKUP)));
+
+        JList<UUID> list = new JList<>(model);
+        list.setCellRenderer(new OrderListRenderer());
+        main.add(new JScrollPane(list), BorderLayout.CENTER);
+
+        // orders the dispatcher offers to this shipper are pushed to the top of the list
+        User me = currentUser;
+        Map<UUID, DispatchEngine.Offer> offers = new HashMap<>();
+        dispatch.online(me, offer -> SwingUtilities.invokeLater(() -> {
+            offers.put(offer.order.id, offer);
+            model.removeElement(offer.order.id);
+            model.add(0, offer.order.id);
+            list.setSelectedIndex(0);
+            dlg.setTitle(String.format("Shipper - Orders (new offer [%s], %.1f km away)",
+                    offer.order.id.toString().substring(0, 6), offer.distanceKm));
+        }));
+
+        accept.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0)
+                return;
+            Order o = orderService.get(model.get(i));
+            if (o == null)
+                return;
+            DispatchEngine.Offer offer = offers.remove(o.id);
+            // an expired offer may have moved on; the order can still be taken by hand while it is ready
+            if (!(offer != null && offer.accept()) && !orderService.accept(o, currentUser)) {
+                JOptionPane.showMessageDialog(dlg, o.assignedShipper != null
+                        ? "This order was already accepted by " + o.assignedShipper
+                        : "This order is not ready for pickup yet.");
+                return;
+            }
+            log("order.accept", o.id, null);
+            model.remove(i);
+            JOptionPane.showMessageDialog(dlg, "Order accepted. Open 'My Orders' to manage it.");
+        });
+
+        view.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0)
+                return;
+            Order o = orderService.get(model.get(i));
+            if (o == null)
+                return;
+            JOptionPane.showMessageDialog(dlg, formatOrderDetailed(o));
+        });
+
+        myOrdersBtn.addActionListener(e -> {
+            // show orders assigned to me
+            DefaultListModel<UUID> myModel = new DefaultListModel<>();
+            orderService.forShipper(currentUser.username).forEach(o -> myModel.addElement(o.id));
+            store.forEachArchived(OrderArchive.KEY_SHIPPER + currentUser.username, h -> myModel.addElement(h.id));
+            JList<UUID> myList = new JList<>(myModel);
+            myList.setCellRenderer(new OrderListRenderer());
+            JButton inTransit = new JButton("Mark DELIVERING");
+            JButton delivered = new JButton("Mark DELIVERED");
+            JButton chatBtn = new JButton("Open Chat");
+            JPanel bot = new JPanel();
+            bot.add(inTransit);
+            bot.add(delivered);
+            bot.add(chatBtn);
+
+            JDialog md = new JDialog(dlg, "My Orders - " + currentUser.username, true);
+            cancelOnClose(md, bindOrderList(myModel, o -> me.username.equals(o.assignedShipper)));
+            md.setSize(800, 450);
+            md.setLocationRelativeTo(dlg);
+            md.getContentPane().add(new JScrollPane(myList), BorderLayout.CENTER);
+            md.getContentPane().add(bot, BorderLayout.SOUTH);
+
+            inTransit.addActionListener(ae -> {
+                int sel = myList.getSelectedIndex();
+                if (sel < 0)
+                    return;
+                Order o = orderService.get(myModel.get(sel));
+                if (o != null && orderService.advance(o, currentUser, OrderStatus.ACCEPTED_BY_SHIPPER, OrderStatus.DELIVERING)) {
+                    log("order.status", o.id, "DELIVERING");
+                    myModel.set(sel, o.id);
+                }
+            });
+
+            delivered.addActionListener(ae -> {
+                int sel = myList.getSelectedIndex();
+                if (sel < 0)
+                    return;
+                Order o = orderService.get(myModel.get(sel));
+                if (o != null && orderService.advance(o, currentUser, OrderStatus.DELIVERING, OrderStatus.DELIVERED)) {
+                    log("order.status", o.id, "DELIVERED, chat archived");
+                    myModel.set(sel, o.id);
+                }
+            });
+
+            chatBtn.addActionListener(ae -> {
+                int sel = myList.getSelectedIndex();
+                if (sel < 0)
+                    return;
+                Order o = orderService.get(myModel.get(sel));
+                if (o != null && (o.status == OrderStatus.ACCEPTED_BY_SHIPPER || o.status == OrderStatus.DELIVERING)) {
+                    showChatDialog(o);
+                } else {
+                    JOptionPane.showMessageDialog(md, "Chat available only when order is accepted by shipper or delivering.");
+                }
+            });
+
+            md.setVisible(true);
+        });
+
+        main.add(right, BorderLayout.EAST);
+        dlg.getContentPane().add(main);
+        dlg.setVisible(true);
+        dispatch.offline(me); // open offers go to other shippers in the next window
+    }
+
+    // Administrator: manage customer accounts & view logs, apply discounts
+    private void showAdministratorPanel() {
+        tagAction("open administrator panel");
+        JDialog dlg = new JDialog(frame, "Administrator - Accounts & Logs", true);
+        dlg.setSize(800, 600);
+        dlg.setLocationRelativeTo(frame);
+        JPanel main = new JPanel(new BorderLayout());
+        DefaultListModel<String> userModel = new DefaultListModel<>();
+        userService.all().forEach(u -> userModel.addElement(u.username + " - " + u.role));
+        JList<String> userList = new JList<>(userModel);
+        main.add(new JScrollPane(userList), BorderLayout.WEST);
+
+        JTabbedPane center = new JTabbedPane();
+        center.addTab("Log", buildLogViewer());
+        center.addTab("Metrics", buildMetricsView(dlg));
+        main.add(center, BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel();
+        JButton disable = new JButton("Delete Selected Customer");
+        disable.addActionListener(e -> {
+            int i = userList.getSelectedIndex();
+            if (i < 0)
+                return;
+            String s = userModel.get(i);
+            String uname = s.split(" - ")[0];
+            User u = userService.get(uname);
+            if (u != null && u.role == Role.CUSTOMER) {
+                userService.remove(uname);
+                userModel.remove(i);
+                log("user.delete", null, uname);
+                JOptionPane.showMessageDialog(dlg, "Deleted " + uname);
+            } else {
+                JOptionPane.showMessageDialog(dlg, "Can only delete customers.");
+            }
+        });
+        JButton changeUserImg = new JButton("Change User Image");
+        changeUserImg.addActionListener(ev -> {
+            int i = userList.getSelectedIndex();
+            if (i < 0)
+                return;
+            String s = userModel.get(i);
+            String uname = s.split(" - ")[0];
+            User u = userService.get(uname);
+            if (u == null)
+                return;
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileFilter(new FileNameExtensionFilter("Image files", "png", "jpg", "jpeg"));
+            if (chooser.showOpenDialog(dlg) == JFileChooser.APPROVE_OPTION) {
+                String path = chooser.getSelectedFile().getAbsolutePath();
+                userService.update(u, x -> x.profileImagePath = path);
+                imageChanged(u.profileImagePath);
+                log("user.image", null, u.username);
+                JOptionPane.showMessageDialog(dlg, "Profile image updated for " + u.username);
+            }
+        });
+        bottom.add(changeUserImg);
+        JButton viewAllOrders = new JButton("View All Orders");
+        viewAllOrders.addActionListener(e -> {
+            // one line per order; the full order is only decoded when it is selected
+            DefaultListModel<UUID> allModel = new DefaultListModel<>();
+            orderService.all().forEach(o -> allModel.addElement(o.id));
+            store.forEachArchived(h -> allModel.addElement(h.id));
+            EventBus.Subscription live = bindOrderList(allModel, o -> true);
+            JList<UUID> allList = new JList<>(allModel);
+            allList.setCellRenderer(new OrderListRenderer());
+            allList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            JTextArea ta = new JTextArea();
+            ta.setEditable(false);
+            allList.addListSelectionListener(le -> {
+                if (le.getValueIsAdjusting())
+                    return;
+                Order o = orderService.get(allList.getSelectedValue());
+                ta.setText(o == null ? "" : formatOrderDetailed(o));
+                ta.setCaretPosition(0);
+            });
+            JSplitPane sp = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, new JScrollPane(allList), new JScrollPane(ta));
+            sp.setDividerLocation(330);
+            sp.setPreferredSize(new Dimension(800, 400));
+            JOptionPane.showMessageDialog(dlg, sp, "Orders", JOptionPane.PLAIN_MESSAGE);
+            live.cancel();
+        });
+        bottom.add(disable);
+        bottom.add(viewAllOrders);
+        main.add(bottom, BorderLayout.SOUTH);
+
+        dlg.getContentPane().add(main);
+        dlg.setVisible(true);
+    }
+
+    private static final int METRICS_REFRESH_MS = 2000;
+
+    /** Text dump of the metrics registry, refreshed while the dialog is open. */
+    private JPanel buildMetricsView(JDialog dlg) {
+        JPanel panel = new JPanel(new BorderLayout());
+        JTextArea text = new JTextArea();
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        Runnable refresh = () -> {
+            int caret = text.getCaretPosition();
+            text.setText(Metrics.REGISTRY.dump());
+            text.setCaretPosition(Math.min(caret, text.getDocument().getLength()));
+        };
+        refresh.run();
+        javax.swing.Timer timer = new javax.swing.Timer(METRICS_REFRESH_MS, e -> {
+            if (text.isShowing())
+                refresh.run();
+        });
+        timer.start();
+        dlg.addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentHidden(java.awt.event.ComponentEvent e) {
+                timer.stop();
+            }
+        });
+        JLabel hint = new JLabel(" Refreshed every " + METRICS_REFRESH_MS / 1000 + " s; also on JMX as " + Metrics.OBJECT_NAME);
+        panel.add(hint, BorderLayout.NORTH);
+        panel.add(new JScrollPane(text), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private static final int LOG_PAGE = 200;
+
+    /** Op log, newest first, one page at a time; filters by actor, action prefix and text or order id. */
+    private JPanel buildLogViewer() {
+        JPanel panel = new JPanel(new BorderLayout());
+        DefaultListModel<OpLog.Entry> model = new DefaultListModel<>();
+        JList<OpLog.Entry> list = new JList<>(model);
+        list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JTextField actor = new JTextField(8), action = new JTextField(8), text = new JTextField(10);
+        JButton newer = new JButton("< Newer"), older = new JButton("Older >");
+        JLabel info = new JLabel();
+        int[] from = { 0 };
+        Runnable load = () -> {
+            OpLog.Filter filter = new OpLog.Filter(actor.getText(), action.getText(), text.getText());
+            List<OpLog.Entry> page = store.ops.page(filter, from[0], LOG_PAGE);
+            model.clear();
+            page.forEach(model::addElement);
+            newer.setEnabled(from[0] > 0);
+            older.setEnabled(page.size() == LOG_PAGE);
+            long dropped = store.ops.dropped();
+            info.setText(" entries " + (from[0] + 1) + "-" + (from[0] + page.size()) + (dropped > 0 ? ", " + dropped + " dropped" : ""));
+        };
+        JButton apply = new JButton("Filter");
+        apply.addActionListener(e -> {
+            from[0] = 0;
+            load.run();
+        });
+        newer.addActionListener(e -> {
+            from[0] = Math.max(0, from[0] - LOG_PAGE);
+            load.run();
+        });
+        older.addActionListener(e -> {
+            from[0] += LOG_PAGE;
+            load.run();
+        });
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        bar.add(new JLabel("Actor"));
+        bar.add(actor);
+        bar.add(new JLabel("Action"));
+        bar.add(action);
+        bar.add(new JLabel("Text/order"));
+        bar.add(text);
+        bar.add(apply);
+        bar.add(newer);
+        bar.add(older);
+        bar.add(info);
+        panel.add(bar, BorderLayout.NORTH);
+        panel.add(new JScrollPane(list), BorderLayout.CENTER);
+        load.run();
+        return panel;
+    }
+
+    // Customer service: see complaints and resolve
+    private void showCustomerServicePanel() {
+        tagAction("open customer service panel");
+        JDialog dlg = new JDialog(frame, "Customer Service - Complaints", true);
+        dlg.setSize(800, 500);
+        dlg.setLocationRelativeTo(frame);
+        JPanel main = new JPanel(new BorderLayout());
+
+        // holds Complaint entries and order ids
+        DefaultListModel<Object> model = new DefaultListModel<>();
+        // Add complaints
+        for (Complaint c : orderService.complaints())
+            model.addElement(c);
+
+        // Add orders with complaints; archived complaint text is decoded once, not on every paint
+        Map<UUID, String> orderComplaints = new HashMap<>();
+        for (Order o : orderService.all()) {
+            if (o.complaint != null)
+                model.addElement(o.id);
+        }
+        store.forEachArchived(OrderArchive.KEY_COMPLAINT, h -> {
+            Order o = orderService.get(h.id);
+            if (o != null && o.complaint != null) {
+                orderComplaints.put(o.id, o.complaint);
+                model.addElement(o.id);
+            }
+        });
+
+        cancelOnClose(dlg, store.events.subscribeOnEdt(EventBus.Topic.COMPLAINT, batch -> {
+            for (EventBus.Event e : batch) {
+                if (!model.contains(e.subject))
+                    model.add(0, e.subject);
+            }
+        }));
+        cancelOnClose(dlg, store.events.subscribeOnEdt(EventBus.Topic.ORDER, batch -> {
+            for (EventBus.Event e : EventBus.latestById(batch)) {
+                Order o = (Order) e.subject;
+                int idx = model.indexOf(e.id);
+                if (o != null && o.complaint != null) {
+                    if (o.archived)
+                        orderComplaints.put(o.id, o.complaint);
+                    if (idx < 0)
+                        model.add(0, e.id);
+                    else
+                        model.set(idx, e.id);
+                } else if (idx >= 0) {
+                    model.remove(idx);
+                }
+            }
+        }));
+
+        JList<Object> list = new JList<>(model);
+        list.setCellRenderer(new OrderListRenderer(id -> {
+            Order active = orderService.active(id);
+            String complaint = active != null ? active.complaint : orderComplaints.get(id);
+            return orderLine(id) + " COMPLAINT: " + complaint;
+        }));
+        main.add(new JScrollPane(list), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel();
+        JButton resolve = new JButton("Resolve & Refund");
+        resolve.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0)
+                return;
+            Object entry = model.get(i);
+            Order o = entry instanceof UUID ? orderService.get((UUID) entry) : null;
+            if (o != null) {
+                orderService.resolveComplaint(o);
+                model.remove(i);
+                log("complaint.resolve", o.id, null);
+                JOptionPane.showMessageDialog(dlg, "Resolved. (In real system, would issue refund/credit)");
+            }
+        });
+        JButton view = new JButton("View Order Details");
+        view.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0)
+                return;
+            Object entry = model.get(i);
+            Order o = entry instanceof UUID ? orderService.get((UUID) entry) : null;
+            if (o != null)
+                JOptionPane.showMessageDialog(dlg, formatOrderDetailed(o));
+        });
+        bottom.add(view);
+        bottom.add(resolve);
+        main.add(bottom, BorderLayout.SOUTH);
+
+        dlg.getContentPane().add(main);
+        dlg.setVisible(true);
+    }
+
+    // Customer panel: my orders, complaint
+    // CUSTOMER: View orders + profile settings
+    private void showCustomerPanel() {
+        tagAction("open customer panel");
+        // Show customer's own orders
+        DefaultListModel<UUID> model = new DefaultListModel<>();
+        orderService.forCustomer(currentUser.username).forEach(o -> model.addElement(o.id));
+        store.forEachArchived(OrderArchive.KEY_CUSTOMER + currentUser.username, h -> model.addElement(h.id));
+        JDialog dlg = new JDialog(frame, "Customer Dashboard", true);
+        User me = currentUser;
+        cancelOnClose(dlg, bindOrderList(model, o -> o.customer != null && me.username.equals(o.customer.username)));
+        dlg.setSize(700, 600);
+        dlg.setLocationRelativeTo(frame);
+        dlg.getContentPane().setBackground(new Color(245, 245, 245));
+
+        JPanel main = new JPanel(new BorderLayout());
+        main.setBorder(new EmptyBorder(10, 10, 10, 10));
+        main.setBackground(new Color(245, 245, 245));
+
+        JList<UUID> list = new JList<>(model);
+        list.setCellRenderer(new OrderListRenderer());
+        main.add(new JScrollPane(list), BorderLayout.CENTER);
+
+        JButton chatBtn = new JButton("Open Chat");
+        chatBtn.setBackground(new Color(100, 149, 237));
+        chatBtn.setForeground(Color.WHITE);
+        chatBtn.setFocusPainted(false);
+        chatBtn.setOpaque(true);
+        chatBtn.setPreferredSize(new Dimension(80, 25));
+        chatBtn.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0)
+                return;
+            Order o = orderService.get(model.get(i));
+            if (o != null && (o.status == OrderStatus.ACCEPTED_BY_SHIPPER || o.status == OrderStatus.DELIVERING)) {
+                showChatDialog(o);
+            } else {
+                JOptionPane.showMessageDialog(dlg, "Chat available only when order is accepted by shipper or delivering.");
+            }
+        });
+        JPanel bottom = new JPanel(new GridLayout(0, 4, 8, 8));
+        bottom.setBackground(new Color(245, 245, 245));
+        bottom.add(chatBtn);
+
+        // NEW BUTTON: Profile settings
+        JButton settingsBtn = new JButton("Profile Settings");
+        settingsBtn.setBackground(new Color(147, 112, 219));
+        settingsBtn.setForeground(Color.WHITE);
+        settingsBtn.setFocusPainted(false);
+        settingsBtn.setOpaque(true);
+        settingsBtn.setPreferredSize(new Dimension(80, 25));
+        settingsBtn.addActionListener(e -> showCustomerSettingsDialog());
+        bottom.add(settingsBtn);
+
+        JButton complainBtn = new JButton("File Complaint");
+        complainBtn.setBackground(new Color(255, 165, 0));
+        complainBtn.setForeground(Color.WHITE);
+        complainBtn.setFocusPainted(false);
+        complainBtn.setOpaque(true);
+        complainBtn.setPreferredSize(new Dimension(80, 25));
+        complainBtn.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0)
+                return;
+            Order o = orderService.get(model.get(i));
+            if (o == null)
+                return;
+
+            String text = JOptionPane.showInputDialog(dlg,
+                    "Describe your issue for order " + o.id + ":");
+
+            if (text != null && !text.isBlank()) {
+                orderService.complain(o, text);
+                log("complaint.file", o.id, null);
+                JOptionPane.showMessageDialog(dlg, "Complaint submitted.");
+            }
+        });
+        bottom.add(complainBtn);
+
+        JButton rateBtn = new JButton("Rate Delivered Order");
+        rateBtn.setBackground(new Color(60, 179, 113));
+        rateBtn.setForeground(Color.WHITE);
+        rateBtn.setFocusPainted(false);
+        rateBtn.setOpaque(true);
+        rateBtn.setPreferredSize(new Dimension(80, 25));
+        rateBtn.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0)
+                return;
+            Order o = orderService.get(model.get(i));
+            if (o == null || o.status != OrderStatus.DELIVERED)
+                return;
+            if (o.shipperRating != null) {
+                JOptionPane.showMessageDialog(frame, "This order has already been rated.");
+                return;
+            }
+            showRateOrderDialog(o);
+        });
+        bottom.add(rateBtn);
+
+        JButton cancelBtn = new JButton("Cancel Order");
+        cancelBtn.setBackground(new Color(220, 20, 60));
+        cancelBtn.setForeground(Color.WHITE);
+        cancelBtn.setFocusPainted(false);
+        cancelBtn.setOpaque(true);
+        cancelBtn.setPreferredSize(new Dimension(80, 25));
+        cancelBtn.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0) return;
+            Order o = orderService.get(model.get(i));
+            if (o == null) return;
+            try {
+                orderService.checkCancellable(o, currentUser);
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                return;
+            }
+            int confirm = JOptionPane.showConfirmDialog(dlg, "Cancel this order?", "Confirm", JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                try {
+                    orderService.cancel(o, currentUser);
+                } catch (IllegalStateException ex) {
+                    JOptionPane.showMessageDialog(dlg, ex.getMessage());
+                    return;
+                }
+                log("order.cancel", o.id, "by customer");
+                model.set(i, o.id);
+                JOptionPane.showMessageDialog(dlg, "Order cancelled.");
+            }
+        });
+        bottom.add(cancelBtn);
+
+        JButton orderHistoryBtn = new JButton("View more order");
+        orderHistoryBtn.setBackground(new Color(32, 178, 170));
+        orderHistoryBtn.setForeground(Color.WHITE);
+        orderHistoryBtn.setFocusPainted(false);
+        orderHistoryBtn.setPreferredSize(new Dimension(80, 25));
+        orderHistoryBtn.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0) return;
+            Order o = orderService.get(model.get(i));
+            if (o == null) return;
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("Order ID: ").append(o.id).append("\n");
+            sb.append("Status: ").append(o.status).append("\n");
+            sb.append("Ordered at: ").append(o.created).append("\n");
+            sb.append("Address: ").append(o.addressSnapshot).append("\n");
+            sb.append("Phone: ").append(o.phoneSnapshot).append("\n\n");
+            sb.append("Items Ordered:\n");
+            for (OrderItem item : o.items) {
+                String variationText = item.variation.isEmpty() ? "" : " (" + item.variation + ")";
+                sb.append("- ").append(item.food.name).append(variationText).append(" x").append(item.qty).append("  VND ").append(Money.format(item.lineTotal())).append("\n");
+            }
+            sb.append("\nTotal: VND ").append(Money.format(o.totalMinor)).append("\n");
+
+            if (o.note != null && !o.note.isEmpty()) {
+                sb.append("\nCustomer Note: ").append(o.note).append("\n");
+            }
+
+            if (o.assignedShipper != null) {
+                User shipper = userService.get(o.assignedShipper);
+                if (shipper != null) {
+                    sb.append("\nShipper Information:\n");
+                    sb.append("Name: ").append(shipper.shipperName != null ? shipper.shipperName : shipper.username).append("\n");
+                    sb.append("Phone: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
+                    RatingStats shipperRating = store.shipperRating(shipper.username);
+                    sb.append("Rating: ").append(String.format("%.1f", shipperRating.average())).append(" (").append(shipperRating.count()).append(" reviews)\n");
+
+                    if (o.status == OrderStatus.DELIVERING) {
+                        sb.append("\n🚚 Delivery Information:\n");
+                        sb.append("Shipper is currently delivering your order.\n");
+                        sb.append("Contact shipper: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
+                        sb.append("Estimated delivery: Soon\n");
+                    }
+                }
+            } else {
+                sb.append("\nNo shipper assigned yet.\n");
+            }
+
+            JTextArea ta = new JTextArea(sb.toString());
+            ta.setEditable(false);
+            JScrollPane sp = new JScrollPane(ta);
+            sp.setPreferredSize(new Dimension(500, 400));
+            JOptionPane.showMessageDialog(dlg, sp, "Order Details", JOptionPane.PLAIN_MESSAGE);
+        });
+        bottom.add(orderHistoryBtn);
+
+        JButton trackShipperBtn = new JButton("Track Shipper");
+        trackShipperBtn.setBackground(new Color(0, 191, 255));
+        trackShipperBtn.setForeground(Color.WHITE);
+        trackShipperBtn.setFocusPainted(false);
+        trackShipperBtn.setPreferredSize(new Dimension(80, 25));
+        trackShipperBtn.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0) return;
+            Order o = orderService.get(model.get(i));
+            if (o == null) return;
+            if (o.status != OrderStatus.DELIVERING || o.assignedShipper == null) {
+                JOptionPane.showMessageDialog(dlg, "Tracking available only when order is being delivered.");
+                return;
+            }
+            showVirtualMapDialog(o);
+        });
+        bottom.add(trackShipperBtn);
+
+        JButton reorderBtn = new JButton("Reorder");
+        reorderBtn.setBackground(new Color(124, 252, 0));
+        reorderBtn.setForeground(Color.BLACK);
+        reorderBtn.setFocusPainted(false);
+        reorderBtn.setPreferredSize(new Dimension(80, 25));
+        reorderBtn.addActionListener(e -> {
+            int i = list.getSelectedIndex();
+            if (i < 0) return;
+            Order o = orderService.get(model.get(i));
+            if (o == null) return;
+
+            // Add all items from the order to cart, at today's prices
+            int dropped = 0;
+            for (OrderItem item : o.items) {
+                int v = item.food.variationIndex(item.variation);
+                if (v == Cart.NO_VARIATION && !item.variation.isEmpty()) {
+                    dropped++; // that variation is no longer on the menu
+                    continue;
+                }
+                cart.add(item.food, v, item.qty);
+            }
+            JOptionPane.showMessageDialog(dlg, "Items added to cart! You can now checkout."
+                    + (dropped == 0 ? "" : "\n" + dropped + " item(s) are no longer offered and were left out."));
+        });
+        bottom.add(reorderBtn);
+
+        main.add(bottom, BorderLayout.SOUTH);
+
+        dlg.getContentPane().add(main);
+        dlg.setVisible(true);
+    }
+
+    private static final int REVIEW_PAGE = 50;
+
+    private void showFoodReviewsDialog(FoodItem f) {
+        tagAction("open reviews");
+        JDialog dlg = new JDialog(frame, "Reviews for " + f.name, true);
+        dlg.setSize(400, 300);
+        dlg.setLocationRelativeTo(frame);
+
+        RatingStats stats = store.foodRating(f);
+        JLabel summary = new JLabel(stats.summary());
+        summary.setBorder(new EmptyBorder(4, 6, 4, 6));
+        dlg.getContentPane().add(summary, BorderLayout.NORTH);
+
+        // newest first, one page at a time from the review store
+        DefaultListModel<String> model = new DefaultListModel<>();
+        JButton more = new JButton("Load more");
+        Runnable nextPage = () -> {
+            try {
+                List<Review> page = store.reviews.page(ReviewStore.Kind.FOOD, f.id.toString(), model.size(), REVIEW_PAGE);
+                for (Review r : page)
+                    model.addElement("⭐ " + r.stars + " - " + (r.author != null ? r.author + ": " : "") + r.comment);
+                more.setEnabled(model.size() < stats.count());
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        };
+        more.addActionListener(e -> nextPage.run());
+        nextPage.run();
+
+        JList<String> list = new JList<>(model);
+        dlg.getContentPane().add(new JScrollPane(list), BorderLayout.CENTER);
+        dlg.getContentPane().add(more, BorderLayout.SOUTH);
+        dlg.setVisible(true);
+    }
+
+    private void showRateOrderDialog(FoodDeliveryApp.Order o) {
+        tagAction("open rating dialog");
+        JPanel p = new JPanel();
+        p.setLayout(new BoxLayout(p, BoxLayout.Y_AXIS));
+
+        // Food ratings
+        p.add(new JLabel("Rate the foods:"));
+        Map<FoodItem, JComboBox<Integer>> foodRatingBoxes = new HashMap<>();
+        Map<FoodItem, JTextArea> foodCommentAreas = new HashMap<>();
+        for (OrderItem item : o.items) {
+            JPanel foodPanel = new JPanel(new BorderLayout());
+            foodPanel.setBorder(BorderFactory.createTitledBorder(item.food.name));
+            JComboBox<Integer> ratingBox = new JComboBox<>(new Integer[]{0,1,2,3,4,5});
+            ratingBox.setSelectedItem(5); // default
+            foodRatingBoxes.put(item.food, ratingBox);
+            JTextArea commentArea = new JTextArea(2, 20);
+            foodCommentAreas.put(item.food, commentArea);
+            foodPanel.add(new JLabel("Rating:"), BorderLayout.WEST);
+            foodPanel.add(ratingBox, BorderLayout.CENTER);
+            foodPanel.add(new JScrollPane(commentArea), BorderLayout.SOUTH);
+            p.add(foodPanel);
+        }
+
+        // Shipper rating
+        JPanel shipperPanel = new JPanel(new BorderLayout());
+        shipperPanel.setBorder(BorderFactory.createTitledBorder("Rate the Shipper"));
+        JComboBox<Integer> shipperRatingBox = new JComboBox<>(new Integer[]{0,1,2,3,4,5});
+        shipperRatingBox.setSelectedItem(5);
+        JTextArea shipperCommentArea = new JTextArea(2, 20);
+        shipperPanel.add(new JLabel("Rating:"), BorderLayout.WEST);
+        shipperPanel.add(shipperRatingBox, BorderLayout.CENTER);
+        shipperPanel.add(new JScrollPane(shipperCommentArea), BorderLayout.SOUTH);
+        p.add(shipperPanel);
+
+        JScrollPane scroll = new JScrollPane(p);
+        scroll.setPreferredSize(new Dimension(500, 400));
+
+        int res = JOptionPane.showConfirmDialog(frame, scroll, "Rate Order", JOptionPane.OK_CANCEL_OPTION);
+        if (res == JOptionPane.OK_OPTION) {
+            // Save ratings and comments
+            Map<FoodItem, Integer> ratings = new HashMap<>();
+            Map<FoodItem, String> comments = new HashMap<>();
+            foodRatingBoxes.forEach((f, box) -> ratings.put(f, (Integer) box.getSelectedItem()));
+            foodCommentAreas.forEach((f, area) -> comments.put(f, area.getText().trim()));
+            try {
+                orderService.rate(o, ratings, comments, (Integer) shipperRatingBox.getSelectedItem(),
+                        shipperCommentArea.getText().trim());
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(frame, ex.getMessage());
+                return;
+            }
+            log("order.rate", o.id, null);
+            JOptionPane.showMessageDialog(frame, "Thank you for your feedback!");
+        }
+    }
+    private void showChatDialog(Order o) {
+        tagAction("open chat");
+        JDialog dlg = new JDialog(frame, "Chat - Order " + o.id.toString().substring(0, 6), true);
+        dlg.setSize(600, 400);
+        dlg.setLocationRelativeTo(frame);
+        JPanel main = new JPanel(new BorderLayout());
+
+        DefaultListModel<String> model = new DefaultListModel<>();
+        for (Message m : store.chatHistory(o)) {
+            model.addElement(String.format("[%tR] %s: %s", m.time, m.sender, m.text));
+        }
+        JList<String> list = new JList<>(model);
+        main.add(new JScrollPane(list), BorderLayout.CENTER);
+
+        JPanel bottom = new JPanel(new BorderLayout(4, 4));
+        JTextField input = new JTextField();
+        JButton send = new JButton("Send");
+        Runnable closeChat = () -> {
+            input.setEnabled(false);
+            send.setEnabled(false);
+            input.setText("Order " + o.status + " - chat closed");
+        };
+        if (o.status == OrderStatus.DELIVERED || o.status == OrderStatus.CANCELLED)
+            closeChat.run();
+        // messages from the other side (and our own sends) arrive as CHAT events
+        cancelOnClose(dlg, store.events.subscribeOnEdt(EventBus.Topic.CHAT, batch -> {
+            for (EventBus.Event e : batch) {
+                if (!o.id.equals(e.id))
+                    continue;
+                Message m = (Message) e.subject;
+                if (m == null)
+                    closeChat.run(); // delivered; history moved to disk, keep showing it
+                else
+                    model.addElement(String.format("[%tR] %s: %s", m.time, m.sender, m.text));
+            }
+            list.ensureIndexIsVisible(model.size() - 1);
+        }));
+
+        send.addActionListener(e -> {
+            String txt = input.getText().trim();
+            if (txt.isEmpty())
+                return;
+            try {
+                orderService.chat(o, currentUser, txt);
+                input.setText("");
+            } catch (IllegalStateException ex) {
+                JOptionPane.showMessageDialog(dlg, ex.getMessage());
+            }
+        });
+
+        bottom.add(input, BorderLayout.CENTER);
+        bottom.add(send, BorderLayout.EAST);
+        main.add(bottom, BorderLayout.SOUTH);
+
+        dlg.getContentPane().add(main);
+        dlg.setVisible(true);
+    }
+
+    /** Logs an action by the current user. */
+    private void log(String action, UUID order, String detail) {
+        store.log(currentUser == null ? null : currentUser.username, action, order, detail);
+    }
+
+    private void refreshForRole() {
+        // enabling/disabling admin inline controls is easier to handle by re-creating
+        // UI
+        refreshItems(catList.getSelectedValue());
+    }
+
+    private Color randomPastelColor() {
+        Random r = new Random();
+        int red = 150 + r.nextInt(106);
+        int green = 150 + r.nextInt(106);
+        int blue = 150 + r.nextInt(106);
+        return new Color(red, green, blue);
+    }
+
+    /** The one-line summary shown in order lists; archived orders only need their header. */
+    private String orderLine(UUID id) {
+        Order o = orderService.active(id);
+        if (o != null)
+            return formatOrderLine(o);
+        try {
+            OrderArchive.Header h = store.archive.header(id);
+            if (h != null)
+                return formatOrderLine(h);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        return "[" + id.toString().substring(0, 6) + "] (deleted)";
+    }
+
+    private String formatOrderLine(Order o) {
+        return String.format("[%s] %s - VND %s - %s", o.id.toString().substring(0, 6), o.customer.username, Money.format(o.totalMinor),
+                o.status);
+    }
+
+    private String formatOrderDetailed(Order o) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Order ID: ").append(o.id).append("\n");
+        sb.append("Customer: ").append(o.customer.username).append("\n");
+        sb.append("Address: ").append(o.addressSnapshot).append("\n");
+        sb.append("Phone: ").append(o.phoneSnapshot).append("\n");
+        sb.append("Created: ").append(o.created).append("\n");
+        sb.append("Status: ").append(o.status).append("\n");
+        sb.append("Items:\n");
+        for (OrderItem it : o.items) {
+            sb.append("  - ").append(it.food.name).append(it.variation.isEmpty() ? "" : " (" + it.variation + ")").append(" x").append(it.qty).append("  VND ")
+                    .append(Money.format(it.lineTotal())).append("\n");
+        }
+        sb.append("Total: VND ").append(Money.format(o.totalMinor)).append("\n");
+        if (o.complaint != null)
+            sb.append("Complaint: ").append(o.complaint).append("\n");
+        if (o.assignedShipper != null) {
+            User shipper = userService.get(o.assignedShipper);
+            String shipperDisplay = shipper != null && shipper.shipperName != null ? shipper.shipperName : o.assignedShipper;
+            sb.append("Shipper: ").append(shipperDisplay).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private String formatOrderLine(OrderArchive.Header h) {
+        return String.format("[%s] %s - VND %s - %s", h.id.toString().substring(0, 6), h.customer, Money.format(h.totalMinor),
+                h.status);
+    }
+
+    // Order lists hold order ids; the line is formatted when the cell is painted, so a status
+    // change only needs the row to be re-set rather than the whole list rebuilt
+    /** Keeps a list of order ids in step with ORDER events; changed rows repaint in place. */
+    private EventBus.Subscription bindOrderList(DefaultListModel<UUID> model, java.util.function.Predicate<Order> belongs) {
+        return store.events.subscribeOnEdt(EventBus.Topic.ORDER, batch -> {
+            for (EventBus.Event e : EventBus.latestById(batch)) {
+                Order o = (Order) e.subject;
+                int idx = model.indexOf(e.id);
+                boolean keep = o != null && belongs.test(o);
+                if (keep && idx < 0)
+                    model.add(0, e.id); // newest first
+                else if (!keep && idx >= 0)
+                    model.remove(idx);
+                else if (keep)
+                    model.set(idx, e.id); // fires contentsChanged for this row only
+            }
+        });
+    }
+
+    /** Drops a subscription when the window is hidden or disposed. */
+    private static void cancelOnClose(Window w, EventBus.Subscription sub) {
+        w.addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentHidden(java.awt.event.ComponentEvent e) {
+                sub.cancel();
+            }
+        });
+        w.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                sub.cancel();
+            }
+        });
+    }
+
+    private static boolean servesRestaurant(Order o, String restaurantName) {
+        for (OrderItem it : o.items) {
+            if (restaurantName != null && restaurantName.equals(it.food.restaurantOwner))
+                return true;
+        }
+        return false;
+    }
+
+    class OrderListRenderer extends DefaultListCellRenderer {
+        private final java.util.function.Function<UUID, String> text;
+
+        OrderListRenderer() {
+            this(id -> orderLines.computeIfAbsent(id, FoodDeliveryApp.this::orderLine));
+        }
+
+        OrderListRenderer(java.util.function.Function<UUID, String> text) {
+            this.text = text;
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected,
+                boolean cellHasFocus) {
+            Object shown = value instanceof UUID ? text.apply((UUID) value) : value;
+            return super.getListCellRendererComponent(list, shown, index, isSelected, cellHasFocus);
+        }
+    }
+
+    private void loadCategories() {
+        List<String> categories = new ArrayList<>();
+        categories.add("All"); // Thêm đúng một lần
+        categories.addAll(catalogService.categories()); // already distinct, in first-seen order
+        catList.setListData(categories.toArray(new String[0])); // cập nhật UI
+        if (categories.size() > 0) {
+            catList.setSelectedIndex(0);
+        }
+    }
+
+    private void loadCategoriesForRestaurant(String restaurantName) {
+        if (restaurantName == null) {
+            return; // Don't load if restaurant name is null
+        }
+        List<String> categories = new ArrayList<>();
+        categories.add("All");
+        for (String c : catalogService.categoriesForRestaurant(restaurantName)) {
+            if (!c.isBlank())
+                categories.add(c);
+        }
+        catList.setListData(categories.toArray(new String[0]));
+        if (categories.size() > 0) {
+            catList.setSelectedIndex(0);
+        }
+    }
+
+    // Custom renderer for restaurant list with status colors
+    private class RestaurantListRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            JPanel panel = new JPanel(new BorderLayout());
+            panel.setOpaque(true);
+            if (isSelected) {
+                panel.setBackground(list.getSelectionBackground());
+            } else {
+                panel.setBackground(list.getBackground());
+            }
+
+            String text = (String) value;
+            String restaurantName = text.replace(" (Open)", "").replace(" (Closed)", "");
+            String status = text.contains(" (Open)") ? " (Open)" : text.contains(" (Closed)") ? " (Closed)" : "";
+
+            // Find the restaurant user
+            User restUser = userService.restaurant(restaurantName);
+
+            // Icon - now smaller for better performance
+            ImageIcon icon = null;
+            if (restUser != null && restUser.profileImagePath != null) {
+                icon = loadScaledImageIcon(restUser.profileImagePath, 120, 120, list::repaint);
+            }
+            if (icon == null) {
+                // Default icon or no icon
+                icon = new ImageIcon(); // empty
+            }
+            JLabel iconLabel = new JLabel(icon);
+            iconLabel.setPreferredSize(new Dimension(120, 120));
+            iconLabel.setHorizontalAlignment(SwingConstants.CENTER); // Center the image
+            panel.add(iconLabel, BorderLayout.NORTH);
+
+            // Text - now centered below the image
+            JLabel textLabel = new JLabel("<html><center>" + restaurantName + "<br>" + status + "</center></html>");
+            textLabel.setFont(textLabel.getFont().deriveFont(14f)); // Bigger font
+            textLabel.setHorizontalAlignment(SwingConstants.CENTER); // Center the text
+            if (isSelected) {
+                textLabel.setForeground(Color.BLACK); // Dark color when selected
+            } else {
+                // Original colors when not selected
+                if (status.contains("Open")) {
+                    textLabel.setForeground(Color.GREEN);
+                } else if (status.contains("Closed")) {
+                    textLabel.setForeground(Color.RED);
+                } else {
+                    textLabel.setForeground(Color.BLACK); // Default color
+                }
+            }
+            panel.add(textLabel, BorderLayout.CENTER);
+
+            return panel;
+        }
+    }
+
+    private class FoodListRenderer extends DefaultListCellRenderer {
+        private List<FoodItem> foods;
+
+        public FoodListRenderer(List<FoodItem> foods) {
+            this.foods = foods;
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            JPanel panel = new JPanel(new BorderLayout());
+            panel.setOpaque(true);
+            if (isSelected) {
+                panel.setBackground(list.getSelectionBackground());
+            } else {
+                panel.setBackground(list.getBackground());
+            }
+
+            if (index >= 0 && index < foods.size()) {
+                FoodItem f = foods.get(index);
+                // Icon - bigger square image
+                ImageIcon icon = loadScaledImageIcon(f.imagePath, 100, 100, list::repaint);
+                if (icon == null) {
+                    icon = new ImageIcon(); // empty
+                }
+                JLabel iconLabel = new JLabel(icon);
+                iconLabel.setPreferredSize(new Dimension(100, 100));
+                panel.add(iconLabel, BorderLayout.WEST);
+
+                // Text
+                String text = f.name + " (VND " + Money.format(f.priceMinor) + ")";
+                if (f.description != null && !f.description.isEmpty()) {
+                    text += " - " + f.description;
+                }
+                JLabel textLabel = new JLabel(text);
+                panel.add(textLabel, BorderLayout.CENTER);
+            }
+
+            return panel;
+        }
+    }
+
+    // -------------------- Main --------------------
+    public static void main(String[] args) {
+        if (args.length > 0 && Arrays.asList("--bench", "--stress", "--bench-dispatch", "--soak").contains(args[0])) {
+            System.setProperty("java.awt.headless", "true");
+            try {
+                if ("--bench".equals(args[0]))
+                    Benchmarks.main(args);
+                else if ("--stress".equals(args[0]))
+                    Benchmarks.stress(args);
+                else if ("--soak".equals(args[0]))
+                    Benchmarks.soak(args);
+                else
+                    Benchmarks.dispatch(args);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+            return;
+        }
+        if (args.length > 0 && ("--server".equals(args[0]) || "--bench-server".equals(args[0]))) {
+            System.setProperty("java.awt.headless", "true");
+            try {
+                if ("--server".equals(args[0]))
+                    ApiServer.main(args);
+                else
+                    ApiServer.bench(args);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+            return;
+        }
+        try {
+            new FoodDeliveryApp();
+        } catch (Throwable t) {
+            t.printStackTrace();
+            try (java.io.PrintWriter pw = new java.io.PrintWriter(new java.io.FileWriter("error.log", true))) {
+                pw.println(new java.util.Date());
+                t.printStackTrace(pw);
+                pw.println();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+            javax.swing.SwingUtilities.invokeLater(() -> {
+                JOptionPane.showMessageDialog(null, "Application failed to start. See error.log in project folder.\n" + t,
+                        "Startup Error", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+
+    // -------------------- API server --------------------
+    // Shared JSON/HTTP front end over the services, run with `--server [port] [workers]` so every
+    // storefront and shipper terminal talks to one store instead of its own data file. Callers
+    // authenticate with HTTP Basic against the user table. Requests run on a fixed worker pool.
+    static class ApiServer {
+        static final int MAX_LINE_QTY = 99; // per order line; bigger orders go through the restaurant
+
+        private final Store store;
+        private final UserService users;
+        private final CatalogService catalog;
+        private final OrderService orders;
+        private final com.sun.net.httpserver.HttpServer http;
+        private final java.util.concurrent.ExecutorService workers;
+
+        ApiServer(Store store, int port, int workerThreads) throws IOException {
+            this.store = store;
+            this.users = new UserService(store);
+            this.catalog = new CatalogService(store);
+            this.orders = new OrderService(store);
+            // small JSON replies otherwise sit behind Nagle + delayed ACK for ~40 ms each
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+            this.http = com.sun.net.httpserver.HttpServer.create(new java.net.InetSocketAddress(port), 256);
+            java.util.concurrent.atomic.AtomicInteger n = new java.util.concurrent.atomic.AtomicInteger();
+            this.workers = java.util.concurrent.Executors.newFixedThreadPool(workerThreads, r -> {
+                Thread t = new Thread(r, "api-worker-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            http.setExecutor(workers);
+            http.createContext("/api/", this::handle);
+        }
 
-        JButton cancelBtn = new JButton("Cancel Order");
-        cancelBtn.setBackground(new Color(220, 20, 60));
-        cancelBtn.setForeground(Color.WHITE);
-        cancelBtn.setFocusPainted(false);
-        cancelBtn.setOpaque(true);
-        cancelBtn.setPreferredSize(new Dimension(80, 25));
-        cancelBtn.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0) return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o == null) return;
-            if (o.customer != currentUser) {
-                JOptionPane.showMessageDialog(dlg, "You can only cancel your own orders.");
-                return;
+        void start() {
+            http.start();
+        }
+
+        int port() {
+            return http.getAddress().getPort();
+        }
+
+        void stop() {
+            http.stop(0);
+            workers.shutdown();
+        }
+
+        /** Thrown by handlers to answer with a status code and an error message. */
+        static class ApiException extends RuntimeException {
+            final int status;
+
+            ApiException(int status, String message) {
+                super(message);
+                this.status = status;
             }
-            if (o.status != OrderStatus.PLACED) {
-                JOptionPane.showMessageDialog(dlg, "Can only cancel orders that are placed.");
-                return;
+        }
+
+        private void handle(com.sun.net.httpserver.HttpExchange ex) throws IOException {
+            int status = 200;
+            Object body;
+            try {
+                body = route(ex.getRequestMethod(), ex.getRequestURI().getPath().split("/"), ex);
+            } catch (ApiException e) {
+                status = e.status;
+                body = Collections.singletonMap("error", e.getMessage());
+            } catch (IllegalStateException e) {
+                status = 409; // business rule refused the change
+                body = Collections.singletonMap("error", e.getMessage());
+            } catch (IllegalArgumentException | ClassCastException | NullPointerException e) {
+                status = 400;
+                body = Collections.singletonMap("error", "Bad request: " + e.getMessage());
+            } catch (Exception e) {
+                e.printStackTrace();
+                status = 500;
+                body = Collections.singletonMap("error", String.valueOf(e));
             }
-            long diff = new Date().getTime() - o.created.getTime();
-            if (diff > 60000) { // 1 minute = 60000 ms
-                JOptionPane.showMessageDialog(dlg, "Cannot cancel order after 1 minute.");
-                return;
+            byte[] out = Json.write(body).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            if (status == 401)
+                ex.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"food-delivery\"");
+            ex.sendResponseHeaders(status, out.length);
+            try (java.io.OutputStream os = ex.getResponseBody()) {
+                os.write(out);
             }
-            int confirm = JOptionPane.showConfirmDialog(dlg, "Cancel this order?", "Confirm", JOptionPane.YES_NO_OPTION);
-            if (confirm == JOptionPane.YES_OPTION) {
-                o.status = OrderStatus.CANCELLED;
-                log("Order " + o.id + " cancelled by customer " + currentUser.username);
-                model.set(i, formatOrderLine(o));
-                JOptionPane.showMessageDialog(dlg, "Order cancelled.");
+        }
+
+        // path is "/api/<resource>/..." so parts[0] is "" and parts[1] is "api"
+        private Object route(String method, String[] p, com.sun.net.httpserver.HttpExchange ex) throws IOException {
+            String resource = p.length > 2 ? p[2] : "";
+            boolean get = "GET".equals(method), post = "POST".equals(method);
+            if (get && p.length == 3) {
+                switch (resource) {
+                    case "catalog": {
+                        Map<String, String> q = query(ex);
+                        List<Object> out = new ArrayList<>();
+                        for (FoodItem f : catalog.browse(q.get("restaurant"), q.get("category")))
+                            out.add(foodJson(f));
+                        return out;
+                    }
+                    case "search": {
+                        Map<String, String> q = query(ex);
+                        int limit = Math.min(500, Integer.parseInt(q.getOrDefault("limit", "50")));
+                        List<Object> out = new ArrayList<>();
+                        for (FoodItem f : catalog.search(q.getOrDefault("q", ""), limit))
+                            out.add(foodJson(f));
+                        return out;
+                    }
+                    case "restaurants":
+                        return catalog.restaurants();
+                    case "categories":
+                        return catalog.categories();
+                    default:
+                        break;
+                }
             }
-        });
-        bottom.add(cancelBtn);
+            if (get && p.length == 5 && "foods".equals(resource) && "reviews".equals(p[4])) {
+                FoodItem f = catalog.get(parseId(p[3]));
+                if (f == null)
+                    throw new ApiException(404, "No such food.");
+                Map<String, String> q = query(ex);
+                int from = Integer.parseInt(q.getOrDefault("from", "0"));
+                int limit = Math.min(200, Integer.parseInt(q.getOrDefault("limit", "50")));
+                List<Object> out = new ArrayList<>();
+                for (Review r : store.reviews.page(ReviewStore.Kind.FOOD, f.id.toString(), from, limit)) {
+                    Map<String, Object> j = new LinkedHashMap<>();
+                    j.put("author", r.author);
+                    j.put("stars", r.stars);
+                    j.put("comment", r.comment);
+                    j.put("time", r.time.getTime());
+                    out.add(j);
+                }
+                return out;
+            }
+            if (get && p.length == 3 && "sales".equals(resource)) {
+                User me = authenticate(ex);
+                String restaurant;
+                if (me.role == Role.RESTAURANT)
+                    restaurant = me.restaurantName;
+                else if (isStaff(me))
+                    restaurant = query(ex).getOrDefault("restaurant", SalesAnalytics.ALL);
+                else
+                    throw new ApiException(403, "Only restaurant and staff accounts can see sales.");
+                return salesJson(restaurant);
+            }
+            if (!"orders".equals(resource))
+                throw new ApiException(404, "No such resource: " + ex.getRequestURI().getPath());
+
+            User me = authenticate(ex);
+            if (p.length == 3) {
+                if (get)
+                    return ordersJson(ordersOf(me));
+                if (post)
+                    return orderJson(checkout(me, body(ex)));
+            }
+            if (p.length == 4 && get && "available".equals(p[3])) {
+                requireRole(me, Role.SHIPPER);
+                return ordersJson(orders.available());
+            }
+            if (p.length < 4)
+                throw new ApiException(405, method + " not allowed here");
+            Order o = orders.get(parseId(p[3]));
+            if (o == null)
+                throw new ApiException(404, "No such order: " + p[3]);
+            String action = p.length > 4 ? p[4] : "";
+            if (get && action.isEmpty()) {
+                requireParty(me, o);
+                return orderJson(o);
+            }
+            if (post && "status".equals(action))
+                return orderJson(transition(me, o, OrderStatus.valueOf(str(body(ex), "status"))));
+            if (post && "accept".equals(action)) {
+                requireRole(me, Role.SHIPPER);
+                if (!orders.accept(o, me))
+                    throw new IllegalStateException(o.assignedShipper != null
+                            ? "This order was already accepted by " + o.assignedShipper
+                            : "Order " + o.id + " is " + o.status + ", not READY_FOR_PICKUP.");
+                store.log(me.username, "order.accept", o.id, "api");
+                return orderJson(o);
+            }
+            if ("chat".equals(action)) {
+                requireParty(me, o);
+                if (post) {
+                    String text = str(body(ex), "text").trim();
+                    if (text.isEmpty())
+                        throw new IllegalArgumentException("empty message");
+                    orders.chat(o, me, text);
+                }
+                return store.withReadLock(() -> {
+                    List<Object> out = new ArrayList<>();
+                    for (Message m : store.chatHistory(o)) {
+                        Map<String, Object> j = new LinkedHashMap<>();
+                        j.put("sender", m.sender);
+                        j.put("text", m.text);
+                        j.put("time", m.time.getTime());
+                        out.add(j);
+                    }
+                    return out;
+                });
+            }
+            if (post && "rating".equals(action)) {
+                if (o.customer != me)
+                    throw new ApiException(403, "Only the customer can rate this order.");
+                if (o.status != OrderStatus.DELIVERED)
+                    throw new IllegalStateException("Only delivered orders can be rated.");
+                if (o.shipperRating != null)
+                    throw new IllegalStateException("This order has already been rated.");
+                rate(o, body(ex));
+                store.log(me.username, "order.rate", o.id, "api");
+                return orderJson(o);
+            }
+            throw new ApiException(404, "No such action: " + method + " " + ex.getRequestURI().getPath());
+        }
 
-        JButton orderHistoryBtn = new JButton("View more order");
-        orderHistoryBtn.setBackground(new Color(32, 178, 170));
-        orderHistoryBtn.setForeground(Color.WHITE);
-        orderHistoryBtn.setFocusPainted(false);
-        orderHistoryBtn.setPreferredSize(new Dimension(80, 25));
-        orderHistoryBtn.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0) return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o == null) return;
+        private User authenticate(com.sun.net.httpserver.HttpExchange ex) {
+            String auth = ex.getRequestHeaders().getFirst("Authorization");
+            if (auth != null && auth.startsWith("Basic ")) {
+                String pair = new String(Base64.getDecoder().decode(auth.substring(6).trim()),
+                        java.nio.charset.StandardCharsets.UTF_8);
+                int colon = pair.indexOf(':');
+                User u = colon < 0 ? null : users.login(pair.substring(0, colon), pair.substring(colon + 1));
+                if (u != null)
+                    return u;
+            }
+            throw new ApiException(401, "Login required.");
+        }
 
-            StringBuilder sb = new StringBuilder();
-            sb.append("Order ID: ").append(o.id).append("\n");
-            sb.append("Status: ").append(o.status).append("\n");
-            sb.append("Ordered at: ").append(o.created).append("\n");
-            sb.append("Address: ").append(o.addressSnapshot).append("\n");
-            sb.append("Phone: ").append(o.phoneSnapshot).append("\n\n");
-            sb.append("Items Ordered:\n");
-            for (OrderItem item : o.items) {
-                double itemPrice = item.food.price + item.food.variationPrices.getOrDefault(item.variation, 0.0);
-                String variationText = item.variation.isEmpty() ? "" : " (" + item.variation + ")";
-                sb.append("- ").append(item.food.name).append(variationText).append(" x").append(item.qty).append("  VND ").append(formatPrice(itemPrice * item.qty)).append("\n");
+        private static void requireRole(User me, Role role) {
+            if (me.role != role)
+                throw new ApiException(403, "Only " + role + " accounts can do this.");
+        }
+
+        private static boolean isStaff(User me) {
+            return me.role == Role.ADMIN || me.role == Role.OWNER || me.role == Role.ADMINISTRATOR
+                    || me.role == Role.CUSTOMER_SERVICE;
+        }
+
+        private static boolean servesOrder(User restaurant, Order o) {
+            if (restaurant.role != Role.RESTAURANT || restaurant.restaurantName == null)
+                return false;
+            for (OrderItem it : o.items) {
+                if (restaurant.restaurantName.equals(it.food.restaurantOwner))
+                    return true;
             }
-            sb.append("\nTotal: VND ").append(String.format("%.2f", o.total)).append("\n");
+            return false;
+        }
 
-            if (o.note != null && !o.note.isEmpty()) {
-                sb.append("\nCustomer Note: ").append(o.note).append("\n");
+        /** Customer, assigned shipper, one of the restaurants on the order, or staff. */
+        private static void requireParty(User me, Order o) {
+            if (o.customer == me || me.username.equals(o.assignedShipper) || servesOrder(me, o) || isStaff(me))
+                return;
+            throw new ApiException(403, "Not your order.");
+        }
+
+        private Collection<Order> ordersOf(User me) {
+            switch (me.role) {
+                case CUSTOMER:
+                    return orders.forCustomer(me.username);
+                case SHIPPER:
+                    return orders.forShipper(me.username);
+                case RESTAURANT:
+                    return me.restaurantName == null ? Collections.emptyList() : orders.forRestaurant(me.restaurantName);
+                default:
+                    return orders.all();
             }
+        }
 
-            if (o.assignedShipper != null) {
-                User shipper = users.get(o.assignedShipper);
-                if (shipper != null) {
-                    sb.append("\nShipper Information:\n");
-                    sb.append("Name: ").append(shipper.shipperName != null ? shipper.shipperName : shipper.username).append("\n");
-                    sb.append("Phone: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
-                    sb.append("Rating: ").append(String.format("%.1f", shipper.shipperRatings.stream().mapToDouble(d -> d).average().orElse(0))).append(" (").append(shipper.shipperRatings.size()).append(" reviews)\n");
+        private Order checkout(User me, Map<String, Object> req) {
+            Cart cart = new Cart();
+            for (Object line : (List<?>) req.get("items")) {
+                Map<?, ?> item = (Map<?, ?>) line;
+                FoodItem f = catalog.get(parseId((String) item.get("food")));
+                if (f == null)
+                    throw new ApiException(404, "No such food: " + item.get("food"));
+                Object variation = item.get("variation");
+                int qty = item.containsKey("qty") ? quantity(item.get("qty")) : 1;
+                cart.add(f, (String) variation, qty); // unknown variation -> IllegalArgumentException -> 400
+            }
+            Order o = orders.checkout(me, cart, (String) req.get("note"));
+            store.log(me.username, "order.place", o.id, "api");
+            return o;
+        }
 
-                    if (o.status == OrderStatus.DELIVERING) {
-                        sb.append("\n🚚 Delivery Information:\n");
-                        sb.append("Shipper is currently delivering your order.\n");
-                        sb.append("Contact shipper: ").append(shipper.phone != null ? shipper.phone : "N/A").append("\n");
-                        sb.append("Estimated delivery: Soon\n");
-                    }
+        private Order transition(User me, Order o, OrderStatus to) {
+            switch (to) {
+                case PREPARING:
+                case READY_FOR_PICKUP:
+                    if (!servesOrder(me, o) && me.role != Role.OWNER)
+                        throw new ApiException(403, "Only the restaurant can do this.");
+                    orders.setStatus(o, to);
+                    break;
+                case DELIVERING:
+                case DELIVERED: {
+                    requireRole(me, Role.SHIPPER);
+                    OrderStatus from = to == OrderStatus.DELIVERING ? OrderStatus.ACCEPTED_BY_SHIPPER : OrderStatus.DELIVERING;
+                    if (!orders.advance(o, me, from, to))
+                        throw new IllegalStateException("Order " + o.id + " is " + o.status + ", not " + from + ".");
+                    break;
                 }
-            } else {
-                sb.append("\nNo shipper assigned yet.\n");
+                case CANCELLED:
+                    if (o.customer != me && !servesOrder(me, o))
+                        throw new ApiException(403, "Not your order.");
+                    orders.cancel(o, me);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Use the accept action for " + to);
             }
+            store.log(me.username, "order.status", o.id, to + " (api)");
+            return o;
+        }
 
-            JTextArea ta = new JTextArea(sb.toString());
-            ta.setEditable(false);
-            JScrollPane sp = new JScrollPane(ta);
-            sp.setPreferredSize(new Dimension(500, 400));
-            JOptionPane.showMessageDialog(dlg, sp, "Order Details", JOptionPane.PLAIN_MESSAGE);
-        });
-        bottom.add(orderHistoryBtn);
+        private void rate(Order o, Map<String, Object> req) {
+            Map<FoodItem, Integer> ratings = new HashMap<>();
+            Map<FoodItem, String> comments = new HashMap<>();
+            Map<?, ?> foods = (Map<?, ?>) req.getOrDefault("foods", Collections.emptyMap());
+            Map<?, ?> notes = (Map<?, ?>) req.getOrDefault("comments", Collections.emptyMap());
+            for (OrderItem it : o.items) {
+                String key = it.food.id.toString();
+                if (foods.containsKey(key))
+                    ratings.put(it.food, stars(foods.get(key)));
+                if (notes.containsKey(key))
+                    comments.put(it.food, ((String) notes.get(key)).trim());
+            }
+            Object comment = req.get("shipperComment");
+            orders.rate(o, ratings, comments, stars(req.getOrDefault("shipper", 5.0)),
+                    comment == null ? "" : ((String) comment).trim());
+        }
 
-        JButton trackShipperBtn = new JButton("Track Shipper");
-        trackShipperBtn.setBackground(new Color(0, 191, 255));
-        trackShipperBtn.setForeground(Color.WHITE);
-        trackShipperBtn.setFocusPainted(false);
-        trackShipperBtn.setPreferredSize(new Dimension(80, 25));
-        trackShipperBtn.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0) return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o == null) return;
-            if (o.status != OrderStatus.DELIVERING || o.assignedShipper == null) {
-                JOptionPane.showMessageDialog(dlg, "Tracking available only when order is being delivered.");
-                return;
+        /** A line's quantity: a whole number from 1 to MAX_LINE_QTY. */
+        private static int quantity(Object v) {
+            double d = ((Number) v).doubleValue();
+            if (d != Math.rint(d) || d < 1 || d > MAX_LINE_QTY)
+                throw new IllegalArgumentException("qty must be a whole number from 1 to " + MAX_LINE_QTY);
+            return (int) d;
+        }
+
+        private static int stars(Object v) {
+            int n = ((Number) v).intValue();
+            if (n < 0 || n > 5)
+                throw new IllegalArgumentException("rating must be 0-5");
+            return n;
+        }
+
+        private static UUID parseId(String s) {
+            return UUID.fromString(s); // IllegalArgumentException -> 400
+        }
+
+        private static String str(Map<String, Object> req, String key) {
+            Object v = req.get(key);
+            if (!(v instanceof String))
+                throw new IllegalArgumentException("missing \"" + key + "\"");
+            return (String) v;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<String, Object> body(com.sun.net.httpserver.HttpExchange ex) throws IOException {
+            try (java.io.InputStream in = ex.getRequestBody()) {
+                Object v = Json.parse(new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8));
+                if (!(v instanceof Map))
+                    throw new IllegalArgumentException("expected a JSON object");
+                return (Map<String, Object>) v;
             }
-            showVirtualMapDialog(o);
-        });
-        bottom.add(trackShipperBtn);
+        }
 
-        JButton reorderBtn = new JButton("Reorder");
-        reorderBtn.setBackground(new Color(124, 252, 0));
-        reorderBtn.setForeground(Color.BLACK);
-        reorderBtn.setFocusPainted(false);
-        reorderBtn.setPreferredSize(new Dimension(80, 25));
-        reorderBtn.addActionListener(e -> {
-            int i = list.getSelectedIndex();
-            if (i < 0) return;
-            Order o = findOrderFromDisplay(model.get(i));
-            if (o == null) return;
+        private static Map<String, String> query(com.sun.net.httpserver.HttpExchange ex) {
+            Map<String, String> q = new HashMap<>();
+            String raw = ex.getRequestURI().getRawQuery();
+            if (raw == null)
+                return q;
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0)
+                    q.put(java.net.URLDecoder.decode(pair.substring(0, eq), java.nio.charset.StandardCharsets.UTF_8),
+                            java.net.URLDecoder.decode(pair.substring(eq + 1), java.nio.charset.StandardCharsets.UTF_8));
+            }
+            return q;
+        }
 
-            // Add all items from the order to cart
-            for (OrderItem item : o.items) {
-                cart.computeIfAbsent(item.food, k -> new HashMap<>()).merge(item.variation, item.qty, Integer::sum);
+        Map<String, Object> salesJson(String restaurant) {
+            SalesAnalytics.Row total = store.sales.total(restaurant);
+            Map<String, Object> j = new LinkedHashMap<>();
+            j.put("restaurant", restaurant);
+            j.put("revenue", Money.toVnd(total.revenueMinor));
+            j.put("items", total.qty);
+            j.put("orders", total.orders);
+            List<Object> top = new ArrayList<>();
+            for (SalesAnalytics.Row f : store.sales.topFoods(restaurant, 10)) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("food", f.key);
+                row.put("revenue", Money.toVnd(f.revenueMinor));
+                row.put("items", f.qty);
+                top.add(row);
             }
-            updateCartButton();
-            JOptionPane.showMessageDialog(dlg, "Items added to cart! You can now checkout.");
-        });
-        bottom.add(reorderBtn);
+            j.put("topFoods", top);
+            List<Object> hours = new ArrayList<>();
+            for (long v : store.sales.revenueByHour(restaurant))
+                hours.add(Money.toVnd(v));
+            j.put("revenueByHour", hours);
+            List<Object> days = new ArrayList<>();
+            for (SalesAnalytics.Row d : store.sales.daily(restaurant, 14)) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("day", d.key);
+                row.put("revenue", Money.toVnd(d.revenueMinor));
+                row.put("items", d.qty);
+                days.add(row);
+            }
+            j.put("daily", days);
+            return j;
+        }
 
-        main.add(bottom, BorderLayout.SOUTH);
+        Map<String, Object> foodJson(FoodItem f) {
+            RatingStats rating = store.foodRating(f);
+            Map<String, Object> j = new LinkedHashMap<>();
+            j.put("id", f.id.toString());
+            j.put("name", f.name);
+            j.put("description", f.description);
+            j.put("price", Money.toVnd(f.priceMinor));
+            j.put("rating", f.rating);
+            j.put("reviews", rating.count());
+            j.put("recentRating", rating.decayedAverage());
+            j.put("category", f.category);
+            j.put("restaurant", f.restaurantOwner);
+            j.put("inStock", f.inStock);
+            Map<String, Object> variations = new LinkedHashMap<>();
+            for (int i = 0; i < f.variations.size(); i++)
+                variations.put(f.variations.get(i), Money.toVnd(f.variationPrice(i)));
+            j.put("variations", variations);
+            return j;
+        }
 
-        dlg.getContentPane().add(main);
-        dlg.setVisible(true);
-    }
+        private List<Object> ordersJson(Collection<Order> list) {
+            return store.withReadLock(() -> {
+                List<Object> out = new ArrayList<>(list.size());
+                for (Order o : list)
+                    out.add(orderFields(o));
+                return out;
+            });
+        }
 
-    private void showFoodReviewsDialog(FoodItem f) {
-        JDialog dlg = new JDialog(frame, "Reviews for " + f.name, true);
-        dlg.setSize(400, 300);
-        dlg.setLocationRelativeTo(frame);
+        private Map<String, Object> orderJson(Order o) {
+            return store.withReadLock(() -> orderFields(o));
+        }
 
-        DefaultListModel<String> model = new DefaultListModel<>();
-        for (int i = 0; i < f.ratings.size(); i++) {
-            String comment = i < f.comments.size() ? f.comments.get(i) : "";
-            model.addElement("⭐ " + f.ratings.get(i) + " - " + comment);
+        private static Map<String, Object> orderFields(Order o) {
+            Map<String, Object> j = new LinkedHashMap<>();
+            j.put("id", o.id.toString());
+            j.put("customer", o.customer == null ? null : o.customer.username);
+            j.put("status", o.status.name());
+            j.put("total", Money.toVnd(o.totalMinor));
+            j.put("created", o.created.getTime());
+            j.put("shipper", o.assignedShipper);
+            j.put("address", o.addressSnapshot);
+            j.put("phone", o.phoneSnapshot);
+            j.put("note", o.note);
+            j.put("complaint", o.complaint);
+            List<Object> items = new ArrayList<>();
+            for (OrderItem it : o.items) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("food", it.food.id.toString());
+                line.put("name", it.food.name);
+                line.put("restaurant", it.food.restaurantOwner);
+                line.put("variation", it.variation);
+                line.put("price", Money.toVnd(it.unitMinor));
+                line.put("qty", it.qty);
+                items.add(line);
+            }
+            j.put("items", items);
+            j.put("shipperRating", o.shipperRating);
+            return j;
         }
 
-        JList<String> list = new JList<>(model);
-        dlg.getContentPane().add(new JScrollPane(list));
-        dlg.setVisible(true);
-    }
+        /** Minimal JSON for the API: objects become LinkedHashMaps, arrays Lists, numbers Doubles. */
+        static class Json {
+            static String write(Object v) {
+                StringBuilder sb = new StringBuilder(256);
+                write(v, sb);
+                return sb.toString();
+            }
 
-    private void showRateOrderDialog(FoodDeliveryApp.Order o) {
-        JPanel p = new JPanel();
-        p.setLayout(new BoxLayout(p, BoxLayout.Y_AXIS));
+            private static void write(Object v, StringBuilder sb) {
+                if (v == null) {
+                    sb.append("null");
+                } else if (v instanceof String) {
+                    quote((String) v, sb);
+                } else if (v instanceof Number || v instanceof Boolean) {
+                    sb.append(v);
+                } else if (v instanceof Map) {
+                    sb.append('{');
+                    boolean first = true;
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) {
+                        if (!first)
+                            sb.append(',');
+                        first = false;
+                        quote(String.valueOf(e.getKey()), sb);
+                        sb.append(':');
+                        write(e.getValue(), sb);
+                    }
+                    sb.append('}');
+                } else if (v instanceof Collection) {
+                    sb.append('[');
+                    boolean first = true;
+                    for (Object o : (Collection<?>) v) {
+                        if (!first)
+                            sb.append(',');
+                        first = false;
+                        write(o, sb);
+                    }
+                    sb.append(']');
+                } else {
+                    quote(v.toString(), sb);
+                }
+            }
 
-        // Food ratings
-        p.add(new JLabel("Rate the foods:"));
-        Map<FoodItem, JComboBox<Integer>> foodRatingBoxes = new HashMap<>();
-        Map<FoodItem, JTextArea> foodCommentAreas = new HashMap<>();
-        for (OrderItem item : o.items) {
-            JPanel foodPanel = new JPanel(new BorderLayout());
-            foodPanel.setBorder(BorderFactory.createTitledBorder(item.food.name));
-            JComboBox<Integer> ratingBox = new JComboBox<>(new Integer[]{0,1,2,3,4,5});
-            ratingBox.setSelectedItem(5); // default
-            foodRatingBoxes.put(item.food, ratingBox);
-            JTextArea commentArea = new JTextArea(2, 20);
-            foodCommentAreas.put(item.food, commentArea);
-            foodPanel.add(new JLabel("Rating:"), BorderLayout.WEST);
-            foodPanel.add(ratingBox, BorderLayout.CENTER);
-            foodPanel.add(new JScrollPane(commentArea), BorderLayout.SOUTH);
-            p.add(foodPanel);
-        }
+            private static void quote(String s, StringBuilder sb) {
+                sb.append('"');
+                for (int i = 0; i < s.length(); i++) {
+                    char c = s.charAt(i);
+                    switch (c) {
+                        case '"': sb.append("\\\""); break;
+                        case '\\': sb.append("\\\\"); break;
+                        case '\n': sb.append("\\n"); break;
+                        case '\r': sb.append("\\r"); break;
+                        case '\t': sb.append("\\t"); break;
+                        default:
+                            if (c < 0x20)
+                                sb.append(String.format("\\u%04x", (int) c));
+                            else
+                                sb.append(c);
+                    }
+                }
+                sb.append('"');
+            }
 
-        // Shipper rating
-        JPanel shipperPanel = new JPanel(new BorderLayout());
-        shipperPanel.setBorder(BorderFactory.createTitledBorder("Rate the Shipper"));
-        JComboBox<Integer> shipperRatingBox = new JComboBox<>(new Integer[]{0,1,2,3,4,5});
-        shipperRatingBox.setSelectedItem(5);
-        JTextArea shipperCommentArea = new JTextArea(2, 20);
-        shipperPanel.add(new JLabel("Rating:"), BorderLayout.WEST);
-        shipperPanel.add(shipperRatingBox, BorderLayout.CENTER);
-        shipperPanel.add(new JScrollPane(shipperCommentArea), BorderLayout.SOUTH);
-        p.add(shipperPanel);
+            static Object parse(String s) {
+                int[] pos = {0};
+                Object v = value(s, pos);
+                skip(s, pos);
+                if (pos[0] != s.length())
+                    throw new IllegalArgumentException("trailing characters at " + pos[0]);
+                return v;
+            }
 
-        JScrollPane scroll = new JScrollPane(p);
-        scroll.setPreferredSize(new Dimension(500, 400));
+            private static void skip(String s, int[] pos) {
+                while (pos[0] < s.length() && Character.isWhitespace(s.charAt(pos[0])))
+                    pos[0]++;
+            }
 
-        int res = JOptionPane.showConfirmDialog(frame, scroll, "Rate Order", JOptionPane.OK_CANCEL_OPTION);
-        if (res == JOptionPane.OK_OPTION) {
-            // Save ratings and comments
-            for (OrderItem item : o.items) {
-                FoodItem f = item.food;
-                int rating = (Integer) foodRatingBoxes.get(f).getSelectedItem();
-                String comment = foodCommentAreas.get(f).getText().trim();
-                o.foodRatings.put(f, (double) rating);
-                if (!comment.isEmpty()) {
-                    o.foodComments.put(f, comment);
-                    f.comments.add(comment);
-                }
-                f.ratings.add((double) rating);
-                f.updateRating();
-            }
-            int shipperRating = (Integer) shipperRatingBox.getSelectedItem();
-            String shipperComment = shipperCommentArea.getText().trim();
-            o.shipperRating = (double) shipperRating;
-            if (!shipperComment.isEmpty()) {
-                o.shipperComment = shipperComment;
-                User shipper = users.get(o.assignedShipper);
-                if (shipper != null) {
-                    shipper.shipperRatings.add((double) shipperRating);
-                    shipper.shipperComments.add(shipperComment);
+            private static Object value(String s, int[] pos) {
+                skip(s, pos);
+                if (pos[0] >= s.length())
+                    throw new IllegalArgumentException("unexpected end of JSON");
+                char c = s.charAt(pos[0]);
+                if (c == '{') {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    pos[0]++;
+                    skip(s, pos);
+                    if (peek(s, pos) == '}') {
+                        pos[0]++;
+                        return m;
+                    }
+                    while (true) {
+                        skip(s, pos);
+                        String key = string(s, pos);
+                        skip(s, pos);
+                        expect(s, pos, ':');
+                        m.put(key, value(s, pos));
+                        skip(s, pos);
+                        if (peek(s, pos) == ',') {
+                            pos[0]++;
+                            continue;
+                        }
+                        expect(s, pos, '}');
+                        return m;
+                    }
+                }
+                if (c == '[') {
+                    List<Object> l = new ArrayList<>();
+                    pos[0]++;
+                    skip(s, pos);
+                    if (peek(s, pos) == ']') {
+                        pos[0]++;
+                        return l;
+                    }
+                    while (true) {
+                        l.add(value(s, pos));
+                        skip(s, pos);
+                        if (peek(s, pos) == ',') {
+                            pos[0]++;
+                            continue;
+                        }
+                        expect(s, pos, ']');
+                        return l;
+                    }
                 }
+                if (c == '"')
+                    return string(s, pos);
+                if (s.startsWith("true", pos[0])) {
+                    pos[0] += 4;
+                    return Boolean.TRUE;
+                }
+                if (s.startsWith("false", pos[0])) {
+                    pos[0] += 5;
+                    return Boolean.FALSE;
+                }
+                if (s.startsWith("null", pos[0])) {
+                    pos[0] += 4;
+                    return null;
+                }
+                int start = pos[0];
+                while (pos[0] < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos[0])) >= 0)
+                    pos[0]++;
+                if (start == pos[0])
+                    throw new IllegalArgumentException("unexpected '" + c + "' at " + start);
+                return Double.parseDouble(s.substring(start, pos[0]));
             }
-            log("Customer " + currentUser.username + " rated order " + o.id);
-            JOptionPane.showMessageDialog(frame, "Thank you for your feedback!");
-        }
-    }
-    private void showChatDialog(Order o) {
-        JDialog dlg = new JDialog(frame, "Chat - Order " + o.id.toString().substring(0, 6), true);
-        dlg.setSize(600, 400);
-        dlg.setLocationRelativeTo(frame);
-        JPanel main = new JPanel(new BorderLayout());
 
-        DefaultListModel<String> model = new DefaultListModel<>();
-        for (Message m : o.chat) {
-            model.addElement(String.format("[%tR] %s: %s", m.time, m.sender, m.text));
-        }
-        JList<String> list = new JList<>(model);
-        main.add(new JScrollPane(list), BorderLayout.CENTER);
+            private static String string(String s, int[] pos) {
+                expect(s, pos, '"');
+                StringBuilder sb = new StringBuilder();
+                while (true) {
+                    if (pos[0] >= s.length())
+                        throw new IllegalArgumentException("unterminated string");
+                    char c = s.charAt(pos[0]++);
+                    if (c == '"')
+                        return sb.toString();
+                    if (c != '\\') {
+                        sb.append(c);
+                        continue;
+                    }
+                    char e = peek(s, pos);
+                    pos[0]++;
+                    switch (e) {
+                        case 'n': sb.append('\n'); break;
+                        case 'r': sb.append('\r'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'b': sb.append('\b'); break;
+                        case 'f': sb.append('\f'); break;
+                        case 'u':
+                            if (pos[0] + 4 > s.length())
+                                throw new IllegalArgumentException("unterminated string");
+                            sb.append((char) Integer.parseInt(s.substring(pos[0], pos[0] + 4), 16));
+                            pos[0] += 4;
+                            break;
+                        default: sb.append(e); // \" \\ \/
+                    }
+                }
+            }
 
-        JPanel bottom = new JPanel(new BorderLayout(4, 4));
-        JTextField input = new JTextField();
-        JButton send = new JButton("Send");
+            /** The next character; running out of input is malformed JSON (400), not an index error. */
+            private static char peek(String s, int[] pos) {
+                if (pos[0] >= s.length())
+                    throw new IllegalArgumentException("unexpected end of JSON");
+                return s.charAt(pos[0]);
+            }
 
-        send.addActionListener(e -> {
-            String txt = input.getText().trim();
-            if (txt.isEmpty())
-                return;
-            Message m = new Message(currentUser.username, txt);
-            o.chat.add(m);
-            model.addElement(String.format("[%tR] %s: %s", m.time, m.sender, m.text));
-            input.setText("");
-        });
+            private static void expect(String s, int[] pos, char c) {
+                if (pos[0] >= s.length() || s.charAt(pos[0]) != c)
+                    throw new IllegalArgumentException("expected '" + c + "' at " + pos[0]);
+                pos[0]++;
+            }
+        }
 
-        bottom.add(input, BorderLayout.CENTER);
-        bottom.add(send, BorderLayout.EAST);
-        main.add(bottom, BorderLayout.SOUTH);
+        /** Starts the server on the real data files and keeps it running until the process is stopped. */
+        static void main(String[] args) throws Exception {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 4;
+            Store store = new Store("food_delivery_app_data.bin", "food_delivery_app_data.journal",
+                    "food_delivery_app_orders.archive", "food_delivery_app_chat.history",
+                    "food_delivery_app_reviews.log", "food_delivery_app_logs");
+            store.loadData();
+            ApiServer server = new ApiServer(store, port, threads);
+            Metrics.registerMBean();
+            java.util.concurrent.ScheduledExecutorService checkpoints = java.util.concurrent.Executors
+                    .newSingleThreadScheduledExecutor();
+            checkpoints.scheduleWithFixedDelay(store::checkpointIfNeeded, Store.CHECKPOINT_CHECK_MS,
+                    Store.CHECKPOINT_CHECK_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                checkpoints.shutdown();
+                store.close();
+            }));
+            server.start();
+            System.out.println("API server listening on port " + server.port() + " with " + threads + " workers");
+        }
+
+        /**
+         * Requests/sec of the API against calling the services in-process, on a throwaway store in a
+         * temp directory: `--bench-server [clients] [seconds] [workers]`.
+         */
+        static void bench(String[] args) throws Exception {
+            int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+            int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors() * 4;
+            File dir = java.nio.file.Files.createTempDirectory("api-bench").toFile();
+            Store store = new Store(new File(dir, "data.bin").getPath(), new File(dir, "data.journal").getPath(),
+                    new File(dir, "orders.archive").getPath(),
+                    new File(dir, "chat.history").getPath(), new File(dir, "reviews.log").getPath(),
+                    new File(dir, "logs").getPath());
+            store.loadData(); // seeds the demo restaurant, menu and customer1
+            ApiServer server = new ApiServer(store, 0, threads);
+            server.start();
+            try {
+                User customer = server.users.get("customer1");
+                FoodItem food = server.catalog.browse(null, null).get(0);
+                Cart cart = new Cart();
+                cart.add(food, Cart.NO_VARIATION, 1);
+                String base = "http://127.0.0.1:" + server.port() + "/api";
+                String auth = "Basic " + Base64.getEncoder().encodeToString(
+                        "customer1:pass123".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                String order = "{\"items\":[{\"food\":\"" + food.id + "\",\"qty\":1}]}";
+                java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
+                        .version(java.net.http.HttpClient.Version.HTTP_1_1).build();
+                java.net.http.HttpRequest browse = java.net.http.HttpRequest.newBuilder(
+                        java.net.URI.create(base + "/catalog?category=All")).GET().build();
+                java.net.http.HttpRequest place = java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + "/orders"))
+                        .header("Authorization", auth).header("Content-Type", "application/json")
+                        .POST(java.net.http.HttpRequest.BodyPublishers.ofString(order)).build();
+
+                System.out.println("# clients=" + clients + " workers=" + threads + " seconds=" + seconds);
+                System.out.println("# name\tclients\trequests\treq_per_s\tmean_us");
+                load("catalog.inMemory", clients, seconds, () -> {
+                    List<Object> out = new ArrayList<>();
+                    for (FoodItem f : server.catalog.browse(null, "All"))
+                        out.add(server.foodJson(f));
+                    return Json.write(out).length();
+                });
+                load("catalog.http", clients, seconds, () -> send(client, browse));
+                load("checkout.inMemory", clients, seconds,
+                        () -> Json.write(server.orderJson(server.orders.checkout(customer, cart, null))).length());
+                load("checkout.http", clients, seconds, () -> send(client, place));
+            } finally {
+                server.stop();
+                store.close();
+            }
+        }
 
-        dlg.getContentPane().add(main);
-        dlg.setVisible(true);
-    }
+        private static int send(java.net.http.HttpClient client, java.net.http.HttpRequest req) throws Exception {
+            java.net.http.HttpResponse<String> res = client.send(req, java.net.http.HttpResponse.BodyHandlers.ofString());
+            if (res.statusCode() != 200)
+                throw new IllegalStateException("HTTP " + res.statusCode() + ": " + res.body());
+            return res.body().length();
+        }
 
-    private void log(String line) {
-        String entry = new Date() + " - " + line;
-        logs.add(entry);
-        System.out.println(entry); // also print to console
+        /** Runs `op` in a closed loop from `clients` threads for a warmup second, then `seconds`. */
+        private static void load(String name, int clients, int seconds, Benchmarks.Op op) throws Exception {
+            java.util.concurrent.atomic.AtomicBoolean measuring = new java.util.concurrent.atomic.AtomicBoolean();
+            java.util.concurrent.atomic.AtomicBoolean stop = new java.util.concurrent.atomic.AtomicBoolean();
+            java.util.concurrent.atomic.LongAdder count = new java.util.concurrent.atomic.LongAdder();
+            java.util.concurrent.atomic.LongAdder nanos = new java.util.concurrent.atomic.LongAdder();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                Thread t = new Thread(() -> {
+                    try {
+                        while (!stop.get()) {
+                            long t0 = System.nanoTime();
+                            Benchmarks.sink += op.run().hashCode();
+                            if (measuring.get()) {
+                                nanos.add(System.nanoTime() - t0);
+                                count.increment();
+                            }
+                        }
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                    }
+                }, "bench-client-" + i);
+                threads.add(t);
+                t.start();
+            }
+            Thread.sleep(1000);
+            measuring.set(true);
+            long t0 = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            measuring.set(false);
+            long elapsed = System.nanoTime() - t0;
+            stop.set(true);
+            for (Thread t : threads)
+                t.join();
+            long n = count.sum();
+            System.out.println(name + "\t" + clients + "\t" + n + "\t" + (long) (n * 1e9 / elapsed) + "\t"
+                    + (n == 0 ? 0 : nanos.sum() / n / 1000));
+        }
     }
 
-    private void refreshForRole() {
-        // enabling/disabling admin inline controls is easier to handle by re-creating
-        // UI
-        refreshItems(catList.getSelectedValue());
-    }
+    // -------------------- Benchmarks --------------------
+    // Headless micro-benchmarks for the hot paths, run with `--bench [foods] [users] [orders]`.
+    // No Swing is started. Each case warms up, then times single invocations for a fixed window
+    // and prints one tab-separated line (name, ops, mean/p50/p99 ns) so runs can be diffed.
+    static class Benchmarks {
+        private static final long WARMUP_MS = 1000, MEASURE_MS = 2000;
+        private static final int MAX_SAMPLES = 1 << 20;
+        static volatile long sink; // consumes results so the JIT cannot drop the work
+
+        interface Op {
+            Object run() throws Exception;
+        }
 
-    private Color randomPastelColor() {
-        Random r = new Random();
-        int red = 150 + r.nextInt(106);
-        int green = 150 + r.nextInt(106);
-        int blue = 150 + r.nextInt(106);
-        return new Color(red, green, blue);
-    }
+        static void main(String[] args) throws Exception {
+            int nFoods = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+            int nUsers = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+            int nOrders = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+            System.out.println("# dataset: foods=" + nFoods + " users=" + nUsers + " orders=" + nOrders);
+            DataBundle db = synthetic(nFoods, nUsers, nOrders, new Random(42));
+            System.out.println("# name\tops\tmean_ns\tp50_ns\tp99_ns");
+
+            // refreshItems-style filtering: the old full scan vs the catalog index
+            CatalogIndex catalog = new CatalogIndex();
+            catalog.rebuild(db.foods);
+            String category = db.foods.get(0).category;
+            String restaurant = db.foods.get(0).restaurantOwner;
+            run("filter.category.scan", () -> db.foods.stream().filter(f -> category.equals(f.category))
+                    .collect(Collectors.toList()).size());
+            run("filter.category.index", () -> new ArrayList<>(catalog.byCategory(category)).size());
+            run("filter.restaurantCategory.scan", () -> db.foods.stream()
+                    .filter(f -> restaurant.equals(f.restaurantOwner)).filter(f -> category.equals(f.category))
+                    .collect(Collectors.toList()).size());
+            run("filter.restaurantCategory.index",
+                    () -> new ArrayList<>(catalog.byRestaurantAndCategory(restaurant, category)).size());
+
+            // menu search: a substring scan over names vs the inverted index (prefix, typo, accents)
+            SearchIndex search = new SearchIndex();
+            search.rebuild(db.foods);
+            run("search.scan", () -> db.foods.stream().filter(f -> f.name.toLowerCase().contains("phở bò"))
+                    .limit(50).count());
+            run("search.index.exact", () -> search.search("phở bò", 50).size());
+            run("search.index.unaccented", () -> search.search("pho bo", 50).size());
+            run("search.index.prefix", () -> search.search("banh m", 50).size());
+            run("search.index.typo", () -> search.search("nuogn tom", 50).size());
+
+            // Order.recalcTotal, and the cart's running total and line updates
+            Order big = db.orders.get(0);
+            run("order.recalcTotal", () -> {
+                big.recalcTotal();
+                return big.totalMinor;
+            });
+            Cart cart = new Cart();
+            Random r = new Random(7);
+            for (int i = 0; i < 20; i++) {
+                FoodItem f = db.foods.get(r.nextInt(db.foods.size()));
+                cart.add(f, f.variations.isEmpty() ? Cart.NO_VARIATION : 0, 1 + r.nextInt(3));
+            }
+            run("cart.total", cart::total);
+            FoodItem extra = db.foods.get(0);
+            run("cart.addRemove", () -> { // the Add click and "Remove Selected" on a 20-line cart
+                cart.add(extra, Cart.NO_VARIATION, 1);
+                return cart.add(extra, Cart.NO_VARIATION, -1);
+            });
 
-    private String formatOrderLine(Order o) {
-        return String.format("[%s] %s - VND %s - %s", o.id.toString().substring(0, 6), o.customer.username, formatPrice(o.total),
-                o.status);
-    }
+            // order lookup: the old display-line prefix scan vs the order index
+            OrderIndex orderIndex = new OrderIndex();
+            orderIndex.rebuild(db.orders);
+            Order last = db.orders.get(db.orders.size() - 1);
+            String display = "[" + last.id.toString().substring(0, 6) + "] " + last.customer.username;
+            run("order.findByDisplay.scan", () -> {
+                for (Order o : db.orders)
+                    if (display.contains(o.id.toString().substring(0, 6)))
+                        return o;
+                return null;
+            });
+            run("order.findById.index", () -> orderIndex.get(last.id));
+            run("order.byCustomer.index", () -> orderIndex.byCustomer(last.customer.username).size());
+
+            // a food rating: the old average over the full list vs the running aggregate
+            FoodItem rated = db.foods.get(1);
+            List<Double> ratings = new ArrayList<>();
+            RatingStats stats = new RatingStats();
+            for (int i = 0; i < 1000; i++) {
+                ratings.add(1.0 + r.nextInt(5));
+                stats.add(1 + r.nextInt(5), i);
+            }
+            run("rating.average.scan", () -> {
+                rated.rating = ratings.stream().mapToDouble(d -> d).average().orElse(0);
+                return rated.rating;
+            });
+            run("rating.add.aggregate", () -> {
+                stats.add(1 + r.nextInt(5), System.currentTimeMillis());
+                return stats.average();
+            });
 
-    private String formatOrderDetailed(Order o) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Order ID: ").append(o.id).append("\n");
-        sb.append("Customer: ").append(o.customer.username).append("\n");
-        sb.append("Address: ").append(o.addressSnapshot).append("\n");
-        sb.append("Phone: ").append(o.phoneSnapshot).append("\n");
-        sb.append("Created: ").append(o.created).append("\n");
-        sb.append("Status: ").append(o.status).append("\n");
-        sb.append("Items:\n");
-        for (OrderItem it : o.items) {
-            double itemPrice = it.food.price + it.food.variationPrices.getOrDefault(it.variation, 0.0);
-            sb.append("  - ").append(it.food.name).append(it.variation.isEmpty() ? "" : " (" + it.variation + ")").append(" x").append(it.qty).append("  VND ")
-                    .append(formatPrice(itemPrice * it.qty)).append("\n");
+            // saveData/loadData round-trip through the snapshot codec
+            File tmp = File.createTempFile("bench", ".bin");
+            tmp.deleteOnExit();
+            run("snapshot.write", () -> {
+                try (DataOutputStream out = new DataOutputStream(
+                        new java.io.BufferedOutputStream(new java.io.FileOutputStream(tmp), 1 << 16))) {
+                    SnapshotCodec.write(db, out);
+                }
+                return tmp.length();
+            });
+            System.out.println("# snapshot bytes: " + tmp.length());
+            run("snapshot.read", () -> {
+                try (java.io.InputStream in = new java.io.BufferedInputStream(new java.io.FileInputStream(tmp), 1 << 16)) {
+                    return SnapshotCodec.read(in).orders.size();
+                }
+            });
         }
-        sb.append("Total: VND ").append(formatPrice(o.total)).append("\n");
-        if (o.complaint != null)
-            sb.append("Complaint: ").append(o.complaint).append("\n");
-        if (o.assignedShipper != null) {
-            User shipper = users.get(o.assignedShipper);
-            String shipperDisplay = shipper != null && shipper.shipperName != null ? shipper.shipperName : o.assignedShipper;
-            sb.append("Shipper: ").append(shipperDisplay).append("\n");
+
+        static void run(String name, Op op) throws Exception {
+            long end = System.nanoTime() + WARMUP_MS * 1_000_000;
+            while (System.nanoTime() < end)
+                consume(op.run());
+            long[] samples = new long[1024];
+            int n = 0;
+            long total = 0;
+            end = System.nanoTime() + MEASURE_MS * 1_000_000;
+            while (true) {
+                long t0 = System.nanoTime();
+                consume(op.run());
+                long t1 = System.nanoTime();
+                if (n == samples.length)
+                    samples = Arrays.copyOf(samples, n * 2);
+                samples[n++] = t1 - t0;
+                total += t1 - t0;
+                if (t1 >= end || n == MAX_SAMPLES)
+                    break;
+            }
+            Arrays.sort(samples, 0, n);
+            System.out.println(name + "\t" + n + "\t" + total / n + "\t" + samples[n / 2] + "\t"
+                    + samples[Math.min(n - 1, (int) (n * 0.99))]);
         }
-        return sb.toString();
-    }
 
-    // Find an order by the display line (naive)
-    private Order findOrderFromDisplay(String display) {
-        if (display == null)
-            return null;
-        for (Order o : orders) {
-            if (display.contains(o.id.toString().substring(0, 6)))
-                return o;
+        private static void consume(Object o) {
+            sink += o == null ? 0 : o.hashCode();
         }
-        return null;
-    }
 
-    private void loadCategories() {
-        categories.clear(); // Quan trọng: xóa toàn bộ trước
-        categories.add("All"); // Thêm đúng một lần
-        for (FoodItem f : foods) {
-            if (f.category != null && !categories.contains(f.category)) {
-                categories.add(f.category);
+        /**
+         * Order state machine under contention, run with `--stress [shippers] [orders]`: restaurant
+         * threads push orders to READY while customers try to cancel them and hundreds of shipper
+         * threads race to accept and deliver. Exits non-zero when an invariant is broken.
+         */
+        static void stress(String[] args) throws Exception {
+            int nShippers = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+            int nOrders = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+            File dir = java.nio.file.Files.createTempDirectory("order-stress").toFile();
+            Store store = new Store(new File(dir, "data.bin").getPath(), new File(dir, "data.journal").getPath(),
+                    new File(dir, "orders.archive").getPath(),
+                    new File(dir, "chat.history").getPath(), new File(dir, "reviews.log").getPath(),
+                    new File(dir, "logs").getPath());
+            store.loadData();
+            UserService users = new UserService(store);
+            OrderService orders = new OrderService(store);
+            User customer = users.get("customer1");
+            FoodItem food = store.foods.get(0);
+            Cart cart = new Cart();
+            cart.add(food, Cart.NO_VARIATION, 1);
+            List<Order> placed = new ArrayList<>(nOrders);
+            for (int i = 0; i < nOrders; i++)
+                placed.add(orders.checkout(customer, cart, null));
+            List<User> shippers = new ArrayList<>();
+            for (int i = 0; i < nShippers; i++) {
+                User s = new User("stress-shipper" + i, "pw", Role.SHIPPER);
+                users.register(s);
+                shippers.add(s);
+            }
+
+            // per order: how many shippers believe they won it, and how many cancels succeeded
+            java.util.concurrent.atomic.AtomicIntegerArray accepted = new java.util.concurrent.atomic.AtomicIntegerArray(nOrders);
+            java.util.concurrent.atomic.AtomicIntegerArray cancelled = new java.util.concurrent.atomic.AtomicIntegerArray(nOrders);
+            String[] winner = new String[nOrders];
+            java.util.concurrent.atomic.AtomicInteger settled = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+            long deadline = System.nanoTime() + 120_000_000_000L; // an order stuck mid-pipeline must not hang the run
+            List<Thread> threads = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                int first = r;
+                threads.add(new Thread(() -> {
+                    await(start);
+                    for (int i = first; i < nOrders; i += 4) {
+                        Order o = placed.get(i);
+                        try {
+                            orders.setStatus(o, OrderStatus.PREPARING);
+                            orders.setStatus(o, OrderStatus.READY_FOR_PICKUP);
+                        } catch (IllegalStateException lostToCancel) {
+                            // the customer cancelled first
+                        }
+                    }
+                }, "stress-restaurant-" + r));
+            }
+            for (int c = 0; c < 4; c++) {
+                int first = c;
+                threads.add(new Thread(() -> {
+                    await(start);
+                    for (int i = first; i < nOrders; i += 8) { // about one order in eight gets a cancel attempt
+                        try {
+                            orders.cancel(placed.get(i), customer);
+                            cancelled.incrementAndGet(i);
+                            settled.incrementAndGet();
+                        } catch (IllegalStateException tooLate) {
+                            // already being prepared
+                        }
+                    }
+                }, "stress-customer-" + c));
             }
+            for (User s : shippers) {
+                threads.add(new Thread(() -> {
+                    // sweep from a random offset so many shippers collide on the same ready orders
+                    int i = new Random(s.username.hashCode()).nextInt(nOrders);
+                    await(start);
+                    while (settled.get() < nOrders && System.nanoTime() < deadline) {
+                        i = (i + 1) % nOrders;
+                        Order o = placed.get(i);
+                        if (o.status != OrderStatus.READY_FOR_PICKUP || !orders.accept(o, s))
+                            continue;
+                        accepted.incrementAndGet(i);
+                        winner[i] = s.username;
+                        if (orders.advance(o, s, OrderStatus.ACCEPTED_BY_SHIPPER, OrderStatus.DELIVERING)
+                                && orders.advance(o, s, OrderStatus.DELIVERING, OrderStatus.DELIVERED))
+                            settled.incrementAndGet();
+                    }
+                }, "stress-" + s.username));
+            }
+            long t0 = System.nanoTime();
+            for (Thread t : threads)
+                t.start();
+            start.countDown();
+            for (Thread t : threads)
+                t.join();
+            long elapsedMs = (System.nanoTime() - t0) / 1_000_000;
+
+            int violations = 0, delivered = 0, cancels = 0;
+            for (int i = 0; i < nOrders; i++) {
+                Order o = placed.get(i);
+                boolean ok;
+                if (o.status == OrderStatus.DELIVERED) {
+                    delivered++;
+                    ok = accepted.get(i) == 1 && cancelled.get(i) == 0 && winner[i] != null
+                            && winner[i].equals(o.assignedShipper);
+                } else if (o.status == OrderStatus.CANCELLED) {
+                    cancels++;
+                    ok = accepted.get(i) == 0 && cancelled.get(i) == 1 && o.assignedShipper == null;
+                } else {
+                    ok = false; // stuck mid-pipeline
+                }
+                if (!ok) {
+                    violations++;
+                    if (violations <= 10)
+                        System.out.println("violation: order " + i + " status=" + o.status + " accepts="
+                                + accepted.get(i) + " cancels=" + cancelled.get(i) + " shipper=" + o.assignedShipper);
+                }
+            }
+            System.out.println("# stress: shippers=" + nShippers + " orders=" + nOrders + " threads=" + threads.size());
+            System.out.println("delivered=" + delivered + " cancelled=" + cancels + " violations=" + violations
+                    + " elapsed_ms=" + elapsedMs);
+            store.close();
+            if (violations > 0)
+                System.exit(1);
         }
-        catList.setListData(categories.toArray(new String[0])); // cập nhật UI
-        if (categories.size() > 0) {
-            catList.setSelectedIndex(0);
+
+        /**
+         * Dispatch under load, run with `--bench-dispatch [ordersPerMin] [shippers] [seconds] [windowMs]`:
+         * orders turn READY at a fixed rate and simulated shippers answer offers after a short think
+         * time (one in ten declines), then drive their order to DELIVERED. Prints assignment
+         * throughput and ready-to-accepted latency.
+         */
+        static void dispatch(String[] args) throws Exception {
+            int perMinute = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+            int nShippers = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+            int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+            long windowMs = args.length > 4 ? Long.parseLong(args[4]) : 250;
+            File dir = java.nio.file.Files.createTempDirectory("dispatch-bench").toFile();
+            Store store = new Store(new File(dir, "data.bin").getPath(), new File(dir, "data.journal").getPath(),
+                    new File(dir, "orders.archive").getPath(),
+                    new File(dir, "chat.history").getPath(), new File(dir, "reviews.log").getPath(),
+                    new File(dir, "logs").getPath());
+            store.loadData();
+            UserService users = new UserService(store);
+            OrderService orders = new OrderService(store);
+            DispatchEngine engine = new DispatchEngine(orders, windowMs);
+            java.util.concurrent.ScheduledExecutorService sim = java.util.concurrent.Executors.newScheduledThreadPool(4);
+            long[] latencies = new long[perMinute * (seconds + 60) / 60 + 16];
+            java.util.concurrent.atomic.AtomicInteger accepted = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.atomic.AtomicInteger declines = new java.util.concurrent.atomic.AtomicInteger();
+            Random seeds = new Random(42);
+            for (int i = 0; i < nShippers; i++) {
+                User s = new User("sim-shipper" + i, "pw", Role.SHIPPER);
+                users.register(s);
+                for (int k = 0; k < 5; k++)
+                    store.reviews.add(ReviewStore.Kind.SHIPPER, s.username, null, new Review(null, 3 + seeds.nextInt(3), "", new Date()));
+                engine.online(s, offer -> sim.schedule(() -> {
+                    java.util.concurrent.ThreadLocalRandom rnd = java.util.concurrent.ThreadLocalRandom.current();
+                    if (rnd.nextInt(10) == 0) {
+                        declines.incrementAndGet();
+                        offer.decline();
+                        return;
+                    }
+                    if (!offer.accept())
+                        return;
+                    int n = accepted.getAndIncrement();
+                    if (n < latencies.length)
+                        latencies[n] = System.currentTimeMillis() - offer.readyAt;
+                    Order o = offer.order;
+                    sim.schedule(() -> {
+                        orders.advance(o, s, OrderStatus.ACCEPTED_BY_SHIPPER, OrderStatus.DELIVERING);
+                        sim.schedule(() -> orders.advance(o, s, OrderStatus.DELIVERING, OrderStatus.DELIVERED),
+                                500 + rnd.nextInt(1500), java.util.concurrent.TimeUnit.MILLISECONDS);
+                    }, 200 + rnd.nextInt(600), java.util.concurrent.TimeUnit.MILLISECONDS);
+                }, 5 + java.util.concurrent.ThreadLocalRandom.current().nextInt(50),
+                        java.util.concurrent.TimeUnit.MILLISECONDS));
+            }
+            engine.start();
+
+            User customer = users.get("customer1");
+            List<FoodItem> menu = new ArrayList<>(store.foods);
+            java.util.concurrent.atomic.AtomicInteger generated = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.ScheduledExecutorService gen = java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
+            gen.scheduleAtFixedRate(() -> {
+                Cart cart = new Cart();
+                cart.add(menu.get(generated.get() % menu.size()), Cart.NO_VARIATION, 1);
+                Order o = orders.checkout(customer, cart, null);
+                orders.setStatus(o, OrderStatus.PREPARING);
+                orders.setStatus(o, OrderStatus.READY_FOR_PICKUP);
+                generated.incrementAndGet();
+            }, 0, 60_000_000L / perMinute, java.util.concurrent.TimeUnit.MICROSECONDS);
+            long t0 = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            gen.shutdown();
+            gen.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS);
+            long drainUntil = System.currentTimeMillis() + 10_000;
+            while (engine.backlog() > 0 && System.currentTimeMillis() < drainUntil)
+                Thread.sleep(50);
+            double minutes = (System.nanoTime() - t0) / 60e9;
+            engine.stop();
+            sim.shutdownNow();
+
+            int n = Math.min(accepted.get(), latencies.length);
+            long[] sorted = Arrays.copyOf(latencies, n);
+            Arrays.sort(sorted);
+            System.out.println("# dispatch: target=" + perMinute + "/min shippers=" + nShippers + " seconds=" + seconds
+                    + " window_ms=" + windowMs);
+            System.out.println("generated=" + generated.get() + " assigned=" + accepted.get() + " offers="
+                    + engine.offersMade() + " declines=" + declines.get() + " backlog=" + engine.backlog());
+            System.out.println("assigned_per_min=" + (long) (accepted.get() / minutes));
+            if (n > 0)
+                System.out.println("ready_to_accepted_ms p50=" + sorted[n / 2] + " p90=" + sorted[(int) (n * 0.9)]
+                        + " p99=" + sorted[Math.min(n - 1, (int) (n * 0.99))] + " max=" + sorted[n - 1]);
+            store.close();
         }
-    }
 
-    private void loadCategoriesForRestaurant(String restaurantName) {
-        if (restaurantName == null) {
-            return; // Don't load if restaurant name is null
+        /**
+         * Soak test, run with `--soak [ordersPerSec] [seconds] [customers] [restaurants] [shippers] [mix]`:
+         * customers arrive at a fixed rate, browse, check out and sometimes cancel or chat; restaurants
+         * poll their orders and move them to READY; shippers poll the ready list, race to accept and
+         * deliver; customers rate what arrives. `mix` sets the percentages, e.g.
+         * "browse=60,cancel=5,chat=30,rate=50". Prints throughput, heap and GC every few seconds, then
+         * latency percentiles per operation and a consistency check of every order, in memory and
+         * after reopening the files. Exits non-zero when an order is double-assigned or a status
+         * update was lost.
+         */
+        static void soak(String[] args) throws Exception {
+            Soak soak = new Soak(args.length > 1 ? Integer.parseInt(args[1]) : 100,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 60,
+                    args.length > 3 ? Integer.parseInt(args[3]) : 1000,
+                    args.length > 4 ? Integer.parseInt(args[4]) : 40,
+                    args.length > 5 ? Integer.parseInt(args[5]) : 150,
+                    args.length > 6 ? args[6] : "");
+            if (soak.run() > 0)
+                System.exit(1);
         }
-        categories.clear();
-        categories.add("All");
-        for (FoodItem f : foods) {
-            if (restaurantName.equals(f.restaurantOwner)) {
-                if (f.category != null && !f.category.isBlank() && !categories.contains(f.category)) {
-                    categories.add(f.category);
+
+        static final class Soak {
+            private static final long POLL_MS = 50; // how often restaurant and shipper screens refresh
+            private static final long REPORT_MS = 5000;
+            private static final long DRAIN_MS = 30_000; // after arrivals stop, time allowed to settle what is in flight
+            private static final String[] CHAT = { "Đến đâu rồi bạn?", "Cho mình thêm tương ớt nhé", "Mình ở cổng sau",
+                    "Sắp tới chưa?", "Cảm ơn!" };
+
+            final int perSecond, seconds, nCustomers, nRestaurants, nShippers;
+            int browsePct = 60, cancelPct = 5, chatPct = 30, ratePct = 50;
+
+            private Store store;
+            private UserService users;
+            private OrderService orders;
+            private CatalogService catalog;
+            private final List<User> customers = new ArrayList<>();
+            private final List<User> restaurants = new ArrayList<>();
+            private final List<User> shippers = new ArrayList<>();
+            private final Map<String, Metrics.Histogram> latencies = new java.util.concurrent.ConcurrentSkipListMap<>();
+            private final Map<String, java.util.concurrent.atomic.LongAdder> counters = new java.util.concurrent.ConcurrentSkipListMap<>();
+
+            // what the actors believe happened, checked against the store at the end
+            private final Queue<UUID> placed = new java.util.concurrent.ConcurrentLinkedQueue<>();
+            private final Map<UUID, OrderStatus> expected = new java.util.concurrent.ConcurrentHashMap<>();
+            private final Map<UUID, String> winners = new java.util.concurrent.ConcurrentHashMap<>();
+            private final Map<UUID, Long> charged = new java.util.concurrent.ConcurrentHashMap<>(); // cart total at checkout
+            private final Map<UUID, Integer> transitions = new java.util.concurrent.ConcurrentHashMap<>(); // bit per status reached
+            private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+            private volatile boolean running = true;
+
+            Soak(int perSecond, int seconds, int nCustomers, int nRestaurants, int nShippers, String mix) {
+                this.perSecond = perSecond;
+                this.seconds = seconds;
+                this.nCustomers = nCustomers;
+                this.nRestaurants = nRestaurants;
+                this.nShippers = nShippers;
+                for (String part : mix.split(",")) {
+                    String[] kv = part.split("=");
+                    if (kv.length != 2)
+                        continue;
+                    int pct = Integer.parseInt(kv[1].trim());
+                    switch (kv[0].trim()) {
+                        case "browse":
+                            browsePct = pct;
+                            break;
+                        case "cancel":
+                            cancelPct = pct;
+                            break;
+                        case "chat":
+                            chatPct = pct;
+                            break;
+                        case "rate":
+                            ratePct = pct;
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown mix key " + kv[0]);
+                    }
                 }
             }
-        }
-        catList.setListData(categories.toArray(new String[0]));
-        if (categories.size() > 0) {
-            catList.setSelectedIndex(0);
-        }
-    }
 
-    // Custom renderer for restaurant list with status colors
-    private class RestaurantListRenderer extends DefaultListCellRenderer {
-        @Override
-        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-            JPanel panel = new JPanel(new BorderLayout());
-            panel.setOpaque(true);
-            if (isSelected) {
-                panel.setBackground(list.getSelectionBackground());
-            } else {
-                panel.setBackground(list.getBackground());
+            /** Runs the whole soak and returns the number of violations. */
+            int run() throws Exception {
+                File dir = java.nio.file.Files.createTempDirectory("soak").toFile();
+                String[] files = { new File(dir, "data.bin").getPath(), new File(dir, "data.journal").getPath(),
+                        new File(dir, "orders.archive").getPath(), new File(dir, "chat.history").getPath(),
+                        new File(dir, "reviews.log").getPath(), new File(dir, "logs").getPath() };
+                store = new Store(files[0], files[1], files[2], files[3], files[4], files[5]);
+                store.loadData();
+                users = new UserService(store);
+                orders = new OrderService(store);
+                catalog = new CatalogService(store);
+                populate();
+                System.out.println("# soak: " + perSecond + " orders/s for " + seconds + " s, customers=" + nCustomers
+                        + " restaurants=" + nRestaurants + " shippers=" + nShippers + " mix browse=" + browsePct
+                        + "% cancel=" + cancelPct + "% chat=" + chatPct + "% rate=" + ratePct + "%");
+
+                int customerThreads = Math.max(2, Math.min(64, nCustomers / 10));
+                java.util.concurrent.ExecutorService customerPool = java.util.concurrent.Executors.newFixedThreadPool(customerThreads);
+                java.util.concurrent.ScheduledExecutorService timers = java.util.concurrent.Executors.newScheduledThreadPool(2);
+                timers.scheduleWithFixedDelay(store::checkpointIfNeeded, 5, 5, java.util.concurrent.TimeUnit.SECONDS);
+                List<Thread> actors = new ArrayList<>();
+                for (User r : restaurants)
+                    actors.add(new Thread(() -> restaurantLoop(r), "soak-" + r.username));
+                for (User s : shippers)
+                    actors.add(new Thread(() -> shipperLoop(s, customerPool), "soak-" + s.username));
+                actors.forEach(Thread::start);
+
+                long t0 = System.nanoTime();
+                java.util.concurrent.atomic.AtomicLong arrivals = new java.util.concurrent.atomic.AtomicLong();
+                java.util.concurrent.ScheduledFuture<?> generator = timers.scheduleAtFixedRate(() -> {
+                    long due = System.nanoTime();
+                    User c = customers.get((int) (arrivals.getAndIncrement() % customers.size()));
+                    customerPool.execute(() -> session(c, due));
+                }, 0, 1_000_000L / perSecond, java.util.concurrent.TimeUnit.MICROSECONDS);
+                Reporter reporter = new Reporter(t0);
+                java.util.concurrent.ScheduledFuture<?> reports = timers.scheduleAtFixedRate(reporter::print, REPORT_MS,
+                        REPORT_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+
+                Thread.sleep(seconds * 1000L);
+                generator.cancel(false);
+                long drainUntil = System.currentTimeMillis() + DRAIN_MS;
+                while (inFlight() > 0 && System.currentTimeMillis() < drainUntil)
+                    Thread.sleep(100);
+                double elapsed = (System.nanoTime() - t0) / 1e9;
+                running = false;
+                for (Thread t : actors)
+                    t.join();
+                customerPool.shutdown();
+                customerPool.awaitTermination(10, java.util.concurrent.TimeUnit.SECONDS);
+                reports.cancel(false);
+                timers.shutdown();
+                timers.awaitTermination(10, java.util.concurrent.TimeUnit.SECONDS);
+                reporter.print();
+
+                System.out.println("# totals over " + String.format(Locale.US, "%.1f", elapsed) + " s");
+                counters.forEach((name, n) -> System.out.println(name + "=" + n.sum()));
+                System.out.println("# op\tcount\tper_s\tp50_us\tp90_us\tp99_us\tmax_us");
+                latencies.forEach((name, h) -> {
+                    long n = h.count();
+                    System.out.println(name + "\t" + n + "\t" + (long) (n / elapsed) + "\t" + h.percentile(0.5) / 1000
+                            + "\t" + h.percentile(0.9) / 1000 + "\t" + h.percentile(0.99) / 1000 + "\t" + h.max() / 1000);
+                });
+                System.out.println("peak_heap_mb=" + reporter.peakHeap / (1 << 20) + " gc_count=" + gcCount()
+                        + " gc_ms=" + gcMillis());
+
+                System.out.print(Metrics.REGISTRY.dump()); // the store-side view of the same run
+
+                verify("memory");
+                store.close();
+                store = new Store(files[0], files[1], files[2], files[3], files[4], files[5]);
+                store.loadData(); // replays the journal the run left behind
+                orders = new OrderService(store);
+                verify("reopened");
+                store.close();
+                System.out.println("in_flight_at_end=" + inFlight() + " violations=" + violations.size());
+                synchronized (violations) {
+                    violations.stream().limit(20).forEach(v -> System.out.println("violation: " + v));
+                }
+                return violations.size();
             }
 
-            String text = (String) value;
-            String restaurantName = text.replace(" (Open)", "").replace(" (Closed)", "");
-            String status = text.contains(" (Open)") ? " (Open)" : text.contains(" (Closed)") ? " (Closed)" : "";
+            /** Restaurants with a small menu each, customers with addresses, and shippers. */
+            private void populate() {
+                Random r = new Random(42);
+                List<String> categories = catalog.categories();
+                categories.remove("All");
+                for (int i = 0; i < nRestaurants; i++) {
+                    User u = new User("soak-rest" + i, "pw", Role.RESTAURANT);
+                    u.restaurantName = "Quán " + DISHES[i % DISHES.length] + " " + i;
+                    users.register(u);
+                    restaurants.add(u);
+                    for (int k = 0; k < 12; k++) {
+                        FoodItem f = new FoodItem(DISHES[r.nextInt(DISHES.length)] + " " + TOPPINGS[r.nextInt(TOPPINGS.length)],
+                                "Soak item", Money.of(20_000 + r.nextInt(100) * 1000), 0, Color.LIGHT_GRAY,
+                                categories.isEmpty() ? "Other" : categories.get(r.nextInt(categories.size())));
+                        f.restaurantOwner = u.restaurantName;
+                        if (k % 3 == 0)
+                            f.addVariation("Large", Money.of(10_000));
+                        catalog.save(f);
+                    }
+                }
+                for (int i = 0; i < nCustomers; i++) {
+                    User u = new User("soak-customer" + i, "pw", Role.CUSTOMER);
+                    u.address = i + " Lê Lợi, Q1";
+                    u.phone = "09" + (20_000_000 + i);
+                    users.register(u);
+                    customers.add(u);
+                }
+                for (int i = 0; i < nShippers; i++) {
+                    User u = new User("soak-shipper" + i, "pw", Role.SHIPPER);
+                    users.register(u);
+                    shippers.add(u);
+                }
+            }
 
-            // Find the restaurant user
-            User restUser = users.values().stream()
-                .filter(u -> u.role == Role.RESTAURANT && restaurantName.equals(u.restaurantName))
-                .findFirst().orElse(null);
+            /** One arrival: what showCartDialog and the menu do for a customer, then maybe cancel or chat. */
+            private void session(User customer, long arrivedAt) {
+                java.util.concurrent.ThreadLocalRandom rnd = java.util.concurrent.ThreadLocalRandom.current();
+                User restaurant = restaurants.get(rnd.nextInt(restaurants.size()));
+                if (rnd.nextInt(100) < browsePct)
+                    timed("browse", () -> rnd.nextBoolean() ? catalog.search(DISHES[rnd.nextInt(DISHES.length)], 50)
+                            : catalog.browse(restaurant.restaurantName, null));
+                List<FoodItem> menu = catalog.browse(restaurant.restaurantName, null);
+                if (menu.isEmpty())
+                    return;
+                Cart cart = new Cart();
+                for (int i = 1 + rnd.nextInt(3); i > 0; i--) {
+                    FoodItem f = menu.get(rnd.nextInt(menu.size()));
+                    cart.add(f, f.variations.isEmpty() || rnd.nextBoolean() ? Cart.NO_VARIATION : 0, 1 + rnd.nextInt(2));
+                }
+                long cartTotal = cart.total(); // soak menus never change price, so checkout must charge this
+                Order o;
+                try {
+                    o = timed("checkout", () -> orders.checkout(customer, cart, null));
+                } catch (IllegalStateException rejected) {
+                    count("checkout.rejected");
+                    return;
+                }
+                charged.put(o.id, cartTotal);
+                latency("arrival_to_placed").record(System.nanoTime() - arrivedAt); // includes queueing behind other arrivals
+                store.log(customer.username, "order.place", o.id, "soak");
+                placed.add(o.id);
+                reached(o, OrderStatus.PLACED);
+                if (rnd.nextInt(100) < cancelPct) {
+                    try {
+                        timed("cancel", () -> {
+                            orders.cancel(o, customer);
+                            return null;
+                        });
+                        reached(o, OrderStatus.CANCELLED);
+                        store.log(customer.username, "order.cancel", o.id, "soak");
+                    } catch (IllegalStateException tooLate) {
+                        count("cancel.too_late");
+                    }
+                } else if (rnd.nextInt(100) < chatPct) {
+                    chat(o, customer);
+                }
+            }
 
-            // Icon - now smaller for better performance
-            ImageIcon icon = null;
-            if (restUser != null && restUser.profileImagePath != null) {
-                icon = loadScaledImageIcon(restUser.profileImagePath, 120, 120);
+            /** createOrderManagementPanel on a refresh timer: PLACED -> PREPARING, then READY on the next pass. */
+            private void restaurantLoop(User r) {
+                Set<UUID> preparing = new HashSet<>();
+                while (running) {
+                    for (Order o : orders.forRestaurant(r.restaurantName)) {
+                        OrderStatus to;
+                        if (o.status == OrderStatus.PLACED)
+                            to = OrderStatus.PREPARING;
+                        else if (o.status == OrderStatus.PREPARING && preparing.remove(o.id))
+                            to = OrderStatus.READY_FOR_PICKUP;
+                        else
+                            continue;
+                        try {
+                            timed("restaurant.status", () -> {
+                                orders.setStatus(o, to);
+                                return null;
+                            });
+                            reached(o, to);
+                            if (to == OrderStatus.PREPARING)
+                                preparing.add(o.id);
+                        } catch (IllegalStateException lost) {
+                            count("restaurant.lost_to_cancel");
+                        }
+                    }
+                    pause(POLL_MS);
+                }
             }
-            if (icon == null) {
-                // Default icon or no icon
-                icon = new ImageIcon(); // empty
+
+            /** showShipperPanel: pick from the available list, accept, deliver, then the customer rates. */
+            private void shipperLoop(User s, java.util.concurrent.ExecutorService customerPool) {
+                java.util.concurrent.ThreadLocalRandom rnd = java.util.concurrent.ThreadLocalRandom.current();
+                while (running) {
+                    List<Order> ready = orders.available();
+                    if (ready.isEmpty()) {
+                        pause(POLL_MS);
+                        continue;
+                    }
+                    Order o = ready.get(rnd.nextInt(ready.size()));
+                    boolean won = timed("shipper.accept", () -> orders.accept(o, s));
+                    if (!won) {
+                        count("shipper.accept_lost");
+                        continue;
+                    }
+                    String other = winners.putIfAbsent(o.id, s.username);
+                    if (other != null)
+                        violations.add("order " + o.id + " accepted by both " + other + " and " + s.username);
+                    reached(o, OrderStatus.ACCEPTED_BY_SHIPPER);
+                    store.log(s.username, "order.accept", o.id, "soak");
+                    if (rnd.nextInt(100) < chatPct)
+                        chat(o, s);
+                    pause(20 + rnd.nextInt(80)); // riding to the restaurant
+                    if (!advance(o, s, OrderStatus.ACCEPTED_BY_SHIPPER, OrderStatus.DELIVERING))
+                        continue;
+                    pause(20 + rnd.nextInt(80));
+                    if (!advance(o, s, OrderStatus.DELIVERING, OrderStatus.DELIVERED))
+                        continue;
+                    if (rnd.nextInt(100) < ratePct && !customerPool.isShutdown())
+                        customerPool.execute(() -> rate(o));
+                }
             }
-            JLabel iconLabel = new JLabel(icon);
-            iconLabel.setPreferredSize(new Dimension(120, 120));
-            iconLabel.setHorizontalAlignment(SwingConstants.CENTER); // Center the image
-            panel.add(iconLabel, BorderLayout.NORTH);
 
-            // Text - now centered below the image
-            JLabel textLabel = new JLabel("<html><center>" + restaurantName + "<br>" + status + "</center></html>");
-            textLabel.setFont(textLabel.getFont().deriveFont(14f)); // Bigger font
-            textLabel.setHorizontalAlignment(SwingConstants.CENTER); // Center the text
-            if (isSelected) {
-                textLabel.setForeground(Color.BLACK); // Dark color when selected
-            } else {
-                // Original colors when not selected
-                if (status.contains("Open")) {
-                    textLabel.setForeground(Color.GREEN);
-                } else if (status.contains("Closed")) {
-                    textLabel.setForeground(Color.RED);
+            private boolean advance(Order o, User s, OrderStatus from, OrderStatus to) {
+                boolean ok = timed("shipper.advance", () -> orders.advance(o, s, from, to));
+                if (ok) {
+                    reached(o, to);
+                    store.log(s.username, "order.status", o.id, to + " (soak)");
                 } else {
-                    textLabel.setForeground(Color.BLACK); // Default color
+                    violations.add("order " + o.id + " assigned to " + s.username + " refused " + from + " -> " + to
+                            + ", status " + o.status);
                 }
+                return ok;
             }
-            panel.add(textLabel, BorderLayout.CENTER);
 
-            return panel;
-        }
-    }
+            /** showRateOrderDialog: every food plus the shipper. */
+            private void rate(Order o) {
+                java.util.concurrent.ThreadLocalRandom rnd = java.util.concurrent.ThreadLocalRandom.current();
+                Map<FoodItem, Integer> stars = new HashMap<>();
+                for (OrderItem item : o.items)
+                    stars.put(item.food, 1 + rnd.nextInt(5));
+                timed("rate", () -> {
+                    orders.rate(o, stars, Collections.emptyMap(), 1 + rnd.nextInt(5), "");
+                    return null;
+                });
+                store.log(o.customer.username, "order.rate", o.id, "soak");
+            }
 
-    private class FoodListRenderer extends DefaultListCellRenderer {
-        private List<FoodItem> foods;
+            private void chat(Order o, User sender) {
+                try {
+                    timed("chat", () -> orders.chat(o, sender, CHAT[java.util.concurrent.ThreadLocalRandom.current().nextInt(CHAT.length)]));
+                } catch (IllegalStateException closed) {
+                    count("chat.closed");
+                }
+            }
 
-        public FoodListRenderer(List<FoodItem> foods) {
-            this.foods = foods;
-        }
+            /** Records a successful transition; reaching the same status twice means two actors both won it. */
+            private void reached(Order o, OrderStatus to) {
+                int bit = 1 << to.ordinal();
+                Integer before = transitions.get(o.id);
+                while (true) {
+                    if (before != null && (before & bit) != 0) {
+                        violations.add("order " + o.id + " moved to " + to + " twice");
+                        break;
+                    }
+                    if (before == null ? transitions.putIfAbsent(o.id, bit) == null
+                            : transitions.replace(o.id, before, before | bit))
+                        break;
+                    before = transitions.get(o.id);
+                }
+                // the latest step along the pipeline wins, whichever thread records it last
+                expected.merge(o.id, to, (a, b) -> rank(b) > rank(a) ? b : a);
+                count("reached." + to.name().toLowerCase());
+            }
 
-        @Override
-        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-            JPanel panel = new JPanel(new BorderLayout());
-            panel.setOpaque(true);
-            if (isSelected) {
-                panel.setBackground(list.getSelectionBackground());
-            } else {
-                panel.setBackground(list.getBackground());
+            private static int rank(OrderStatus s) {
+                return s == OrderStatus.CANCELLED ? Integer.MAX_VALUE : s.ordinal();
             }
 
-            if (index >= 0 && index < foods.size()) {
-                FoodItem f = foods.get(index);
-                // Icon - bigger square image
-                ImageIcon icon = loadScaledImageIcon(f.imagePath, 100, 100);
-                if (icon == null) {
-                    icon = new ImageIcon(); // empty
+            /**
+             * Every placed order must be in the state its actors last moved it to, with the shipper that won it,
+             * and charge exactly what its cart came to.
+             */
+            private void verify(String phase) {
+                int checked = 0, before = violations.size();
+                for (UUID id : placed) {
+                    Order o = orders.get(id);
+                    checked++;
+                    if (o == null) {
+                        violations.add(phase + ": order " + id + " is missing");
+                        continue;
+                    }
+                    OrderStatus want = expected.get(id);
+                    if (o.status != want)
+                        violations.add(phase + ": order " + id + " is " + o.status + " but was last moved to " + want);
+                    String winner = winners.get(id);
+                    if (!Objects.equals(winner, o.assignedShipper))
+                        violations.add(phase + ": order " + id + " has shipper " + o.assignedShipper + " but " + winner + " won it");
+                    long lines = 0;
+                    for (OrderItem it : o.items)
+                        lines += it.lineTotal();
+                    Long cartTotal = charged.get(id);
+                    if (cartTotal == null || o.totalMinor != cartTotal || lines != cartTotal)
+                        violations.add(phase + ": order " + id + " totals " + o.totalMinor + " with lines of " + lines
+                                + " but the cart came to " + cartTotal);
                 }
-                JLabel iconLabel = new JLabel(icon);
-                iconLabel.setPreferredSize(new Dimension(100, 100));
-                panel.add(iconLabel, BorderLayout.WEST);
+                System.out.println("# verify " + phase + ": orders=" + checked + " new_violations=" + (violations.size() - before));
+            }
 
-                // Text
-                String text = f.name + " (VND " + f.price + ")";
-                if (f.description != null && !f.description.isEmpty()) {
-                    text += " - " + f.description;
+            private long inFlight() {
+                return placed.stream().map(expected::get)
+                        .filter(s -> s != OrderStatus.DELIVERED && s != OrderStatus.CANCELLED).count();
+            }
+
+            private <T> T timed(String op, java.util.concurrent.Callable<T> call) {
+                long t0 = System.nanoTime();
+                try {
+                    return call.call();
+                } catch (RuntimeException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                } finally {
+                    latency(op).record(System.nanoTime() - t0);
                 }
-                JLabel textLabel = new JLabel(text);
-                panel.add(textLabel, BorderLayout.CENTER);
             }
 
-            return panel;
+            private Metrics.Histogram latency(String op) {
+                return latencies.computeIfAbsent(op, k -> new Metrics.Histogram());
+            }
+
+            private void count(String name) {
+                counters.computeIfAbsent(name, k -> new java.util.concurrent.atomic.LongAdder()).increment();
+            }
+
+            private static void pause(long ms) {
+                try {
+                    Thread.sleep(ms);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            private static long gcCount() {
+                return java.lang.management.ManagementFactory.getGarbageCollectorMXBeans().stream()
+                        .mapToLong(java.lang.management.GarbageCollectorMXBean::getCollectionCount).sum();
+            }
+
+            private static long gcMillis() {
+                return java.lang.management.ManagementFactory.getGarbageCollectorMXBeans().stream()
+                        .mapToLong(java.lang.management.GarbageCollectorMXBean::getCollectionTime).sum();
+            }
+
+            /** One line per interval: completed orders, heap after the interval, GC activity. */
+            private final class Reporter {
+                private final long t0;
+                private long lastAt, lastPlaced, lastDelivered, lastGcCount, lastGcMs;
+                long peakHeap;
+
+                Reporter(long t0) {
+                    this.t0 = t0;
+                    this.lastAt = t0;
+                }
+
+                synchronized void print() {
+                    long now = System.nanoTime();
+                    long placedNow = counter("reached.placed"), deliveredNow = counter("reached.delivered");
+                    long gcN = gcCount(), gcMs = gcMillis();
+                    long heap = java.lang.management.ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+                    peakHeap = Math.max(peakHeap, heap);
+                    double secs = Math.max(1e-9, (now - lastAt) / 1e9);
+                    System.out.println(String.format(Locale.US,
+                            "t=%ds placed/s=%.0f delivered/s=%.0f in_flight=%d live_orders=%d heap_mb=%d gc=%d/%dms",
+                            (now - t0) / 1_000_000_000L, (placedNow - lastPlaced) / secs, (deliveredNow - lastDelivered) / secs,
+                            inFlight(), store.withReadLock(() -> store.orders.size()), heap / (1 << 20),
+                            gcN - lastGcCount, gcMs - lastGcMs));
+                    lastAt = now;
+                    lastPlaced = placedNow;
+                    lastDelivered = deliveredNow;
+                    lastGcCount = gcN;
+                    lastGcMs = gcMs;
+                }
+
+                private long counter(String name) {
+                    java.util.concurrent.atomic.LongAdder n = counters.get(name);
+                    return n == null ? 0 : n.sum();
+                }
+            }
         }
-    }
 
-    // -------------------- Main --------------------
-    public static void main(String[] args) {
-        try {
-            new FoodDeliveryApp();
-        } catch (Throwable t) {
-            t.printStackTrace();
-            try (java.io.PrintWriter pw = new java.io.PrintWriter(new java.io.FileWriter("error.log", true))) {
-                pw.println(new java.util.Date());
-                t.printStackTrace(pw);
-                pw.println();
-            } catch (Exception ex) {
-                ex.printStackTrace();
+        private static void await(java.util.concurrent.CountDownLatch latch) {
+            try {
+                latch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
             }
-            javax.swing.SwingUtilities.invokeLater(() -> {
-                JOptionPane.showMessageDialog(null, "Application failed to start. See error.log in project folder.\n" + t,
-                        "Startup Error", JOptionPane.ERROR_MESSAGE);
-            });
+        }
+
+        /** Deterministic dataset shaped like the real one: restaurants own foods, customers place orders. */
+        private static final String[] DISHES = { "Phở", "Bún", "Cơm tấm", "Bánh mì", "Gỏi cuốn", "Chả giò", "Hủ tiếu",
+                "Mì xào", "Cháo", "Bánh xèo", "Lẩu", "Pizza", "Burger", "Trà sữa", "Cà phê" };
+        private static final String[] TOPPINGS = { "bò", "gà", "heo quay", "tôm", "cá", "mực", "sả ớt", "nướng",
+                "chiên giòn", "đặc biệt", "chay", "phô mai", "trân châu", "sữa đá", "thập cẩm" };
+
+        static DataBundle synthetic(int nFoods, int nUsers, int nOrders, Random r) {
+            DataBundle db = new DataBundle();
+            db.users = new HashMap<>();
+            db.foods = new ArrayList<>(nFoods);
+            db.categories = new ArrayList<>();
+            db.orders = new ArrayList<>(nOrders);
+            db.logs = new ArrayList<>();
+            db.complaints = new ArrayList<>();
+            db.categories.add("All");
+            for (int c = 0; c < 20; c++)
+                db.categories.add("Category " + c);
+            int nRestaurants = Math.max(1, nFoods / 50);
+            List<User> customers = new ArrayList<>();
+            for (int i = 0; i < nUsers; i++) {
+                User u;
+                if (i < nRestaurants) {
+                    u = new User("rest" + i, "pw", Role.RESTAURANT);
+                    u.restaurantName = "Restaurant " + i;
+                } else if (i % 20 == 0) {
+                    u = new User("shipper" + i, "pw", Role.SHIPPER);
+                } else {
+                    u = new User("customer" + i, "pw", Role.CUSTOMER);
+                    u.address = i + " Street";
+                    u.phone = "09" + (10_000_000 + i);
+                    customers.add(u);
+                }
+                db.users.put(u.username, u);
+            }
+            if (customers.isEmpty()) {
+                User u = new User("customer", "pw", Role.CUSTOMER);
+                db.users.put(u.username, u);
+                customers.add(u);
+            }
+            for (int i = 0; i < nFoods; i++) {
+                String name = DISHES[r.nextInt(DISHES.length)] + " " + TOPPINGS[r.nextInt(TOPPINGS.length)] + " " + i;
+                FoodItem f = new FoodItem(name, "Synthetic item " + i + ", " + TOPPINGS[r.nextInt(TOPPINGS.length)],
+                        Money.of(10_000 + r.nextInt(200) * 1000), r.nextInt(6),
+                        Color.LIGHT_GRAY, db.categories.get(1 + r.nextInt(20)));
+                f.restaurantOwner = "Restaurant " + (i % nRestaurants);
+                if (i % 3 == 0)
+                    f.addVariation("Large", Money.of(5000));
+                db.foods.add(f);
+            }
+            OrderStatus[] statuses = OrderStatus.values();
+            for (int i = 0; i < nOrders; i++) {
+                Order o = new Order();
+                o.customer = customers.get(r.nextInt(customers.size()));
+                int lines = 1 + r.nextInt(5);
+                for (int k = 0; k < lines; k++) {
+                    FoodItem f = db.foods.get(r.nextInt(db.foods.size()));
+                    o.items.add(new OrderItem(f, 1 + r.nextInt(3), f.variations.isEmpty() ? "" : f.variations.get(0)));
+                }
+                o.status = statuses[r.nextInt(statuses.length)];
+                o.addressSnapshot = o.customer.address;
+                o.phoneSnapshot = o.customer.phone;
+                o.recalcTotal();
+                db.orders.add(o);
+            }
+            return db;
         }
     }
 
@@ -3573,6 +11625,13 @@ public class FoodDeliveryApp {
             return d;
         }
 
+        /** How many cells of a fixed width fit on one row of {@code width}, using the same rule as layoutSize. */
+        int columns(Container target, int width, int cellWidth) {
+            Insets insets = target.getInsets();
+            int maxWidth = width - (insets.left + insets.right + getHgap() * 2);
+            return Math.max(1, (maxWidth + getHgap()) / (cellWidth + getHgap()));
+        }
+
         private Dimension layoutSize(Container target, boolean preferred) {
             synchronized (target.getTreeLock()) {
                 int targetWidth = target.getWidth();